@@ -0,0 +1,74 @@
+package edu.tsinghua.lyf;
+
+import java.util.Arrays;
+
+/**
+ * Dinic's algorithm: builds a BFS level graph and saturates it with a
+ * blocking flow before building the next level graph.
+ */
+public class dinicEngine implements flowEngine{
+	private int[] level;
+	private int[] iter;//current arc of each vertex in the level graph
+	private int[] queue;
+
+	private void allocate(int nodenumber){
+		if(level == null || level.length < nodenumber){
+			level = new int[nodenumber];
+			iter = new int[nodenumber];
+			queue = new int[nodenumber];
+		}
+	}
+
+	private boolean bfs(residualGraph residual, int source, int dest){
+		Arrays.fill(level, 0, residual.nodenumber, -1);
+		int first = 0;
+		int last = 0;
+		queue[last++] = source;
+		level[source] = 0;
+		while(first < last){
+			int index = queue[first++];
+			for(int arc = residual.head[index];arc != -1;arc = residual.next[arc]){
+				int i = residual.to[arc];
+				if(residual.capacity[arc] > 0 && level[i] == -1){
+					level[i] = level[index] + 1;
+					queue[last++] = i;
+				}
+			}
+		}
+		return level[dest] != -1;
+	}
+
+	private int dfs(residualGraph residual, int index, int dest, int limit){
+		if(index == dest)
+			return limit;
+		for(;iter[index] != -1;iter[index] = residual.next[iter[index]]){
+			int arc = iter[index];
+			int i = residual.to[arc];
+			if(residual.capacity[arc] > 0 && level[i] == level[index] + 1){
+				int temp = dfs(residual,i,dest,Math.min(limit,residual.capacity[arc]));
+				if(temp > 0){
+					residual.push(arc, temp);
+					return temp;
+				}
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public int augment(residualGraph residual, int source, int dest, int limit){
+		if(source == dest)
+			return 0;
+		allocate(residual.nodenumber);
+		int total = 0;
+		while(limit != 0 && bfs(residual,source,dest)){
+			System.arraycopy(residual.head, 0, iter, 0, residual.nodenumber);
+			int temp;
+			while(limit != 0 && (temp = dfs(residual,source,dest,limit)) > 0){
+				total += temp;
+				limit -= temp;
+			}
+		}
+		return total;
+	}
+}
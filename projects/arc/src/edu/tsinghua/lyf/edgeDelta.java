@@ -0,0 +1,36 @@
+package edu.tsinghua.lyf;
+
+import edu.wisc.cs.arc.graphs.Vertex;
+
+/**
+ * A capacity change on the edge between two ETG vertices; a negative change
+ * removes capacity (e.g., a failed link) and a positive change adds it back.
+ */
+public class edgeDelta{
+	private final Vertex source;
+	private final Vertex dest;
+	private final int change;
+
+	public edgeDelta(Vertex source, Vertex dest, int change){
+		this.source = source;
+		this.dest = dest;
+		this.change = change;
+	}
+
+	public Vertex getSource(){
+		return source;
+	}
+
+	public Vertex getDest(){
+		return dest;
+	}
+
+	public int getChange(){
+		return change;
+	}
+
+	@Override
+	public String toString(){
+		return source + "->" + dest + " " + (change > 0 ? "+" : "") + change;
+	}
+}
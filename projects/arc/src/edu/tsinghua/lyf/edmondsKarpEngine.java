@@ -0,0 +1,62 @@
+package edu.tsinghua.lyf;
+
+import java.util.Arrays;
+
+/**
+ * Augments along shortest residual paths found with BFS (Edmonds-Karp).
+ */
+public class edmondsKarpEngine implements flowEngine{
+	private int[] flow;//bottleneck from the source to each vertex
+	private int[] pre;//arc used to reach each vertex
+	private int[] queue;
+
+	private void allocate(int nodenumber){
+		if(pre == null || pre.length < nodenumber){
+			flow = new int[nodenumber];
+			pre = new int[nodenumber];
+			queue = new int[nodenumber];
+		}
+	}
+
+	private int bfs(residualGraph residual, int source, int dest, int weight){
+		int first = 0;
+		int last = 0;
+		queue[last++] = source;
+		Arrays.fill(pre, 0, residual.nodenumber, -1);
+		pre[source] = -2;
+		flow[source] = Integer.MAX_VALUE;
+		while(first < last){
+			int index = queue[first++];
+			if(index == dest)
+				break;
+			for(int arc = residual.head[index];arc != -1;arc = residual.next[arc]){
+				int i = residual.to[arc];
+				if(residual.capacity[arc] > 0 && pre[i] == -1){
+					pre[i] = arc;
+					flow[i] = Math.min(flow[index],Math.min(residual.capacity[arc],weight));
+					queue[last++] = i;
+				}
+			}
+		}
+		if(pre[dest] != -1)
+			return flow[dest];
+		return -1;
+	}
+
+	@Override
+	public int augment(residualGraph residual, int source, int dest, int limit){
+		allocate(residual.nodenumber);
+		int total = 0;
+		while(limit != 0){
+			int temp = bfs(residual,source,dest,limit);
+			if(temp <= 0)
+				break;
+			total += temp;
+			for(int end = dest;end != source;end = residual.getSource(pre[end])){
+				residual.push(pre[end], temp);
+			}
+			limit -= temp;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,19 @@
+package edu.tsinghua.lyf;
+
+/**
+ * Algorithm used by {@link maxFlow} to push additional flow through a
+ * {@link residualGraph}. Engines keep scratch space between calls, so an
+ * instance must not be shared by concurrently used maxFlow objects.
+ */
+public interface flowEngine{
+	/**
+	 * Push as much flow as possible, but no more than limit, from source to
+	 * dest using the current residual capacities.
+	 * @param residual the residual graph to update
+	 * @param source the vertex index flow is pushed from
+	 * @param dest the vertex index flow is pushed to
+	 * @param limit the maximum amount of flow to push
+	 * @return the amount of flow pushed
+	 */
+	public int augment(residualGraph residual, int source, int dest, int limit);
+}
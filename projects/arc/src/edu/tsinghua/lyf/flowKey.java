@@ -0,0 +1,65 @@
+package edu.tsinghua.lyf;
+
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.Vertex;
+
+/**
+ * Key of a cached maxFlow: the flow and the source and destination vertices
+ * between which its max flow is computed.
+ */
+public class flowKey{
+	private final Flow flow;
+	private final Vertex Svertex;
+	private final Vertex Dvertex;
+	private final int hash;
+
+	public flowKey(Flow flow, Vertex Svertex, Vertex Dvertex){
+		this.flow = flow;
+		this.Svertex = Svertex;
+		this.Dvertex = Dvertex;
+		int hash = (flow == null ? 0 : flow.hashCode());
+		hash = 31 * hash + Svertex.hashCode();
+		hash = 31 * hash + Dvertex.hashCode();
+		this.hash = hash;
+	}
+
+	public Flow getFlow(){
+		return flow;
+	}
+
+	public Vertex getSvertex(){
+		return Svertex;
+	}
+
+	public Vertex getDvertex(){
+		return Dvertex;
+	}
+
+	@Override
+	public int hashCode(){
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object other){
+		if(this == other){
+			return true;
+		}
+		if(!(other instanceof flowKey)){
+			return false;
+		}
+		flowKey otherKey = (flowKey)other;
+		if(hash != otherKey.hash){
+			return false;
+		}
+		if(flow == null ? otherKey.flow != null : !flow.equals(otherKey.flow)){
+			return false;
+		}
+		return Svertex.equals(otherKey.Svertex) && Dvertex.equals(otherKey.Dvertex);
+	}
+
+	@Override
+	public String toString(){
+		return flow + " " + Svertex + "->" + Dvertex;
+	}
+}
@@ -1,45 +1,69 @@
 package edu.tsinghua.lyf;
 
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 
 import org.jgrapht.graph.DefaultDirectedWeightedGraph;
 
 import edu.wisc.cs.arc.graphs.DirectedEdge;
 import edu.wisc.cs.arc.graphs.Vertex;
-import edu.wisc.cs.arc.graphs.Vertex.VertexType;
 
 public class maxFlow{
+	public static final int INFINITE_CAPACITY = 10000;//ߵ
 	public int maxV = Integer.MAX_VALUE;
-	public int[][] capacity;//ͳƸͼǰߺͺʣ
-	public int[][] graph;//ڼ¼ǰͼ
-	public int[] flow;//ͳƴԴ㵽ͼһӵ
-	public int[] pre;//ڼ¼ǰﶥǰ
+	public residualGraph residual;//ͳƸͼǰߺͺʣ¼ǰͼ
+	public flowEngine engine;//Ѱ㷨
 	public int result = 0;
 	public int nodenumber = 0;
-	public DefaultDirectedWeightedGraph<Vertex,DirectedEdge> inputgraph;
-	public ArrayList<Vertex> nodelist;
-	public ArrayList<DirectedEdge> edgelist;
+	public DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph;
+	public vertexIndex nodelist;//㵽±
+	public ArrayList<DirectedEdge<Vertex>> edgelist;
 	public Vertex Svertex;
 	public Vertex Dvertex;
 	public int Snodeindex;
 	public int Dnodeindex;
-	
+	private boolean[] sourceSide;//ͼԴɴĶ㣬СԴһ࣬ʧЧ
+	private boolean[] sinkSide;//ͼܵĶ㣬ʧЧ
+	private int[] queue;//BFS
+	private HashSet<Vertex> changedVertices;//ϴθº޸漰Ķ㣻Ϊnullʱ仯δ֪Ҫɨͼ
+
+	//޸һӰ
+	private enum deltaEffect {
+		CANNOT_CHANGE,//䣬ֻ޸Ĳͼ
+		CAN_ONLY_DECREASE,//ҪȡֻܼС
+		MUST_RECOMPUTE//Ҫ
+	}
+
 	public maxFlow(){
-		
+
 	}
-	
-	public maxFlow(DefaultDirectedWeightedGraph<Vertex,DirectedEdge> inputgraph)
+
+	public maxFlow(DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph)
 	{
+		this(inputgraph, new dinicEngine(), null);
+	}
+
+	public maxFlow(DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph, flowEngine engine)
+	{
+		this(inputgraph, engine, null);
+	}
+
+	//baseIndexΪETGĹΪnull
+	public maxFlow(DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph, flowEngine engine, vertexIndex baseIndex)
+	{
+		this.engine = engine;
 		this.inputgraph = inputgraph;
-		nodelist = new ArrayList<Vertex>(inputgraph.vertexSet());
-		edgelist = new ArrayList<DirectedEdge>(inputgraph.edgeSet());
+		nodelist = new vertexIndex(baseIndex);
+		for(Vertex vertex : inputgraph.vertexSet()) {
+			nodelist.add(vertex);
+		}
+		edgelist = new ArrayList<DirectedEdge<Vertex>>(inputgraph.edgeSet());
 		nodenumber = nodelist.size();
-		capacity = new int[nodenumber][nodenumber];
-		graph = new int[nodenumber][nodenumber];
-		flow = new int[nodenumber];
-		pre = new int[nodenumber];
-		
+		residual = new residualGraph(nodenumber, edgelist.size());
+
 		for(int i = 0; i<edgelist.size();i++){
 			int Sindex = nodelist.indexOf(edgelist.get(i).getSource());
 			int Dindex = nodelist.indexOf(edgelist.get(i).getDestination());
@@ -47,259 +71,389 @@ public class maxFlow{
 			{
 				continue;
 			}
-			if(edgelist.get(i).getWeight()>10000)
-			{
-				capacity[Sindex][Dindex] = 10000;
-				graph[Sindex][Dindex] = 10000;
-			}else{
-				capacity[Sindex][Dindex] += (int) (edgelist.get(i).getWeight());
-				graph[Sindex][Dindex] += (int)(edgelist.get(i).getWeight());
-			}
+			residual.addCapacity(Sindex, Dindex, getCapacity(edgelist.get(i)));
 		}
+		changedVertices = new HashSet<Vertex>();
 	}
-	
-	public int bfs(int source, int dest, int weight) {  //ʹBFSѰҸͼ·
-        ArrayList<Integer> list = new ArrayList<Integer>();
-        list.add(source);      //ԴΪsource
-        for(int i = 0;i < nodenumber;i++) {
-            pre[i] = -1;   //ʼжǰΪ-1
-        }
-        pre[source] = source;     //Դǰ趨ΪԼ
-        flow[source] = maxV; //Դǰ㵽Դ趨Ϊ
-        while(!list.isEmpty()) {
-            int index = list.get(0);
-            list.remove(0);
-            if(index == dest)
-                break;
-            for(int i = 0;i < capacity.length;i++) {
-                if(capacity[index][i] > 0 && pre[i] == -1) {//iδҵﶥiʣʱ
-                    pre[i] = index;  //iǰΪindex
-                    flow[i] = Math.min(flow[index],Math.min( capacity[index][i],weight));
-                    list.add(i);
-                }
-            }
-        }
-        if(pre[dest] != -1)
-            return flow[dest];
-        return -1;
+
+	private static int getCapacity(DirectedEdge<Vertex> edge){
+		if(edge.getWeight()>INFINITE_CAPACITY)
+		{
+			return INFINITE_CAPACITY;
+		}
+		return (int)(edge.getWeight());
+	}
+
+	private int addNode(Vertex vertex){
+		nodelist.add(vertex);
+		residual.addNode();
+		nodenumber++;
+		return nodenumber - 1;
+	}
+
+    private int augment(int source, int dest, int weight) {
+    	return engine.augment(residual, source, dest, weight);
     }
-	
-    public int bfs_remove(int source, int dest, int weight) {  //ʹBFSѰҸͼ·
-        ArrayList<Integer> list = new ArrayList<Integer>();
-        list.add(source);      //ԴΪsource
-        for(int i = 0;i < nodenumber;i++) {
-            pre[i] = -1;   //ʼжǰΪ-1
-        }
-        pre[source] = source;     //Դǰ趨ΪԼ
-        flow[source] = maxV; //Դǰ㵽Դ趨Ϊ
-        while(!list.isEmpty()) {
-            int index = list.get(0);
-            list.remove(0);
-            if(index == dest)
-                break;
-            for(int i = 0;i < capacity.length;i++) {
-                if(capacity[index][i] > 0 && pre[i] == -1) {//iδҵﶥiʣʱ
-                    pre[i] = index;  //iǰΪindex
-                    flow[i] = Math.min(flow[index],Math.min( capacity[index][i],weight));
-                    list.add(i);
-                }
-            }
-        }
-        if(pre[dest] != -1)
-            return flow[dest];
-        return -1;
+
+    //ӻϼchange˱ȡ
+    private int removeCapacity(int arc, int change) {
+    	invalidateCut();
+    	change = Math.min(change, residual.graph[arc]);
+    	residual.graph[arc] -= change;
+    	if(change <= residual.capacity[arc]) {
+    		residual.capacity[arc] -= change;
+    		return 0;
+    	}
+    	int excess = change - residual.capacity[arc];
+    	residual.capacity[arc] = 0;
+    	residual.capacity[arc^1] -= excess;
+    	int src = residual.getSource(arc);
+    	int dst = residual.to[arc];
+    	//ȳƹû
+    	excess -= augment(src, dst, excess);
+    	if(excess > 0) {
+    		if(src != Snodeindex) {
+    			augment(src,Snodeindex,excess);
+    		}
+    		if(dst != Dnodeindex) {
+    			augment(Dnodeindex,dst,excess);
+    		}
+    	}
+    	return excess;
+    }
+
+    //Ϊͼ֪仯漰Ķ㣬ֻȽЩıߣɨͼ
+    public void findDiff(DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph) {
+    	this.inputgraph = inputgraph;
+    	if(changedVertices != null) {
+    		findDiff(changedVertices);
+    	}else {
+    		rescan();
+    	}
+    	changedVertices = new HashSet<Vertex>();
     }
-    
-    public void findDiff(DefaultDirectedWeightedGraph<Vertex,DirectedEdge> inputgraph) {
-    	int[][] newgraph = new int[nodenumber][nodenumber];
-		nodelist = new ArrayList<Vertex>(inputgraph.vertexSet());
-		edgelist = new ArrayList<DirectedEdge>(inputgraph.edgeSet());
+
+    //ֻȽϸߺͳߣͼûеĻΪ0
+    private void findDiff(HashSet<Vertex> vertices) {
+    	HashMap<Integer,Integer> newgraph = new HashMap<Integer,Integer>();
+    	for(Vertex vertex : vertices) {
+    		int index = nodelist.indexOf(vertex);
+    		if(inputgraph.containsVertex(vertex)) {
+    			if(index == -1) {
+    				index = addNode(vertex);
+    			}
+    			for(DirectedEdge<Vertex> edge : inputgraph.outgoingEdgesOf(vertex)) {
+    				newgraph.put(residual.getOrAddArc(index, indexOrAdd(edge.getDestination())), getCapacity(edge));
+    			}
+    			for(DirectedEdge<Vertex> edge : inputgraph.incomingEdgesOf(vertex)) {
+    				newgraph.put(residual.getOrAddArc(indexOrAdd(edge.getSource()), index), getCapacity(edge));
+    			}
+    		}
+    		if(index == -1) {
+    			continue;
+    		}
+    		for(int arc = residual.head[index]; arc != -1; arc = residual.next[arc]) {
+    			int forward = arc & ~1;
+    			if(!newgraph.containsKey(forward)) {
+    				newgraph.put(forward, 0);
+    			}
+    		}
+    	}
+    	ArrayList<edge> edgeAdd = new ArrayList<edge>();
+    	ArrayList<edge> edgeDel = new ArrayList<edge>();
+    	for(Map.Entry<Integer,Integer> capacity : newgraph.entrySet()) {
+    		int arc = capacity.getKey();
+    		int newcapacity = capacity.getValue();
+    		if(newcapacity>residual.graph[arc]) {
+    			edgeAdd.add(new edge(residual.getSource(arc),residual.to[arc],newcapacity-residual.graph[arc]));
+    		}else if(newcapacity<residual.graph[arc]) {
+    			edgeDel.add(new edge(residual.getSource(arc),residual.to[arc],residual.graph[arc]-newcapacity));
+    		}
+    	}
+    	if(edgeAdd.size() + edgeDel.size() > 0) {
+    		applyChanges(edgeAdd, edgeDel);
+    	}
+    }
+
+    private int indexOrAdd(Vertex vertex) {
+    	int index = nodelist.indexOf(vertex);
+    	if(index == -1) {
+    		index = addNode(vertex);
+    	}
+    	return index;
+    }
+
+    //ɨͼͼлȽ
+    private void rescan() {
+		edgelist = new ArrayList<DirectedEdge<Vertex>>(inputgraph.edgeSet());
+		for(Vertex vertex : inputgraph.vertexSet()) {
+			if(nodelist.indexOf(vertex) == -1) {
+				addNode(vertex);
+			}
+		}
+		HashMap<Integer,Integer> newgraph = new HashMap<Integer,Integer>();
 		for(int i = 0; i<edgelist.size();i++){
 			int Sindex = nodelist.indexOf(edgelist.get(i).getSource());
 			int Dindex = nodelist.indexOf(edgelist.get(i).getDestination());
-			if(edgelist.get(i).getWeight()>10000)
-			{
-				newgraph[Sindex][Dindex] = 10000;
-			}else{
-				newgraph[Sindex][Dindex] += (int)(edgelist.get(i).getWeight());
-			}
+			int arc = residual.getOrAddArc(Sindex, Dindex);
+			Integer old = newgraph.get(arc);
+			newgraph.put(arc, (old == null ? 0 : old) + getCapacity(edgelist.get(i)));
 		}
     	ArrayList<edge> edgeAdd = new ArrayList<edge>();
     	ArrayList<edge> edgeDel = new ArrayList<edge>();
-    	for(int i = 0; i<nodenumber;i++) {
-    		for(int j = 0;j<nodenumber;j++) {
-    			if(newgraph[i][j]>graph[i][j]) {
-    				edgeAdd.add(new edge(i,j,newgraph[i][j]-graph[i][j]));
-    			}else if(newgraph[i][j]<graph[i][j]) {
-    				edgeDel.add(new edge(i,j,graph[i][j]-newgraph[i][j]));
-    			}
+    	for(int arc = 0; arc<residual.arcnumber;arc += 2) {
+    		Integer capacity = newgraph.get(arc);
+    		int newcapacity = (capacity == null ? 0 : capacity);
+    		if(newcapacity>residual.graph[arc]) {
+    			edgeAdd.add(new edge(residual.getSource(arc),residual.to[arc],newcapacity-residual.graph[arc]));
+    		}else if(newcapacity<residual.graph[arc]) {
+    			edgeDel.add(new edge(residual.getSource(arc),residual.to[arc],residual.graph[arc]-newcapacity));
     		}
     	}
-    	for(edge temp:edgeDel) {
-    		if(temp.change<=capacity[temp.src][temp.dst]) {
-    			capacity[temp.src][temp.dst] -= temp.change;
-    			graph[temp.src][temp.dst] -= temp.change;
+    	applyChanges(edgeAdd, edgeDel);
+    }
+
+    //Ǳ仯漰Ķ㣬´θʱɨͼ
+    public void invalidateDeltas() {
+    	changedVertices = null;
+    }
+
+    //޸Ļֻ޸еĻͬһϵ޸Ⱥϲ
+    //Ȼȡбɾͳһһ
+    //޸漰Ķ㱻¼´findDiffֻȽЩı
+    //ر޸ĵĻµresult
+    public int applyDeltas(Collection<edgeDelta> deltas) {
+    	HashMap<Integer,Integer> changes = new HashMap<Integer,Integer>();
+    	for(edgeDelta delta : deltas) {
+    		if(changedVertices != null) {
+    			changedVertices.add(delta.getSource());
+    			changedVertices.add(delta.getDest());
+    		}
+    		int Sindex = nodelist.indexOf(delta.getSource());
+    		int Dindex = nodelist.indexOf(delta.getDest());
+    		if((Sindex==-1)||(Dindex==-1)) {
     			continue;
-    		}else {
-    			temp.change -= capacity[temp.src][temp.dst];
-    			graph[temp.src][temp.dst] -= capacity[temp.src][temp.dst];
-    			capacity[temp.src][temp.dst] = 0;
     		}
-    		if(temp.src != Snodeindex) {
-    			getResult(temp.src,Snodeindex,temp.change);
+    		int arc = residual.getArc(Sindex,Dindex);
+    		if(arc==-1) {
+    			continue;
+    		}
+    		Integer old = changes.get(arc);
+    		changes.put(arc, (old == null ? 0 : old) + delta.getChange());
+    	}
+    	ArrayList<edge> edgeAdd = new ArrayList<edge>();
+    	ArrayList<edge> edgeDel = new ArrayList<edge>();
+    	for(Map.Entry<Integer,Integer> change : changes.entrySet()) {
+    		int arc = change.getKey();
+    		if(change.getValue()>0) {
+    			int add = Math.min(change.getValue(), INFINITE_CAPACITY - residual.graph[arc]);
+    			if(add>0) {
+    				edgeAdd.add(new edge(residual.getSource(arc),residual.to[arc],add));
+    			}
+    		}else if(change.getValue()<0 && residual.graph[arc]>0) {
+    			edgeDel.add(new edge(residual.getSource(arc),residual.to[arc],-change.getValue()));
     		}
-    		if(temp.dst != Dnodeindex) {
-    			getResult(Dnodeindex,temp.dst,temp.change);
+    	}
+    	if(edgeAdd.size() + edgeDel.size() > 0) {
+    		applyChanges(edgeAdd, edgeDel);
+    	}
+    	return edgeAdd.size() + edgeDel.size();
+    }
+
+    //ı޸ֻĲͼȡͳһһ
+    private void applyChanges(ArrayList<edge> edgeAdd, ArrayList<edge> edgeDel) {
+    	ArrayList<edge> slowDel = new ArrayList<edge>();
+    	for(edge temp:edgeDel) {
+    		int arc = residual.getArc(temp.src,temp.dst);
+    		if(classify(arc, -temp.change) == deltaEffect.CANNOT_CHANGE) {
+    			//ʣ㹻ǰȻ
+    			int change = Math.min(temp.change, residual.graph[arc]);
+    			residual.graph[arc] -= change;
+    			residual.capacity[arc] -= change;
+    			if(residual.capacity[arc] == 0) {
+    				//ͺԴһС
+    				invalidateCut();
+    			}
+    		}else {
+    			slowDel.add(temp);
     		}
-    		graph[temp.src][temp.dst] -= temp.change;
-    		result -= temp.change;
     	}
+    	ArrayList<edge> slowAdd = new ArrayList<edge>();
     	for(edge temp:edgeAdd) {
-    		capacity[temp.src][temp.dst] += temp.change;
-    		graph[temp.src][temp.dst] += temp.change;
+    		int arc = residual.getArc(temp.src,temp.dst);
+    		if(classify(arc, temp.change) == deltaEffect.CANNOT_CHANGE) {
+    			residual.addCapacity(temp.src,temp.dst,temp.change);
+    			//µʣԴһһ
+    			if(sourceSide[temp.src] && !sourceSide[temp.dst]) {
+    				markReachable(sourceSide, temp.dst, false);
+    			}
+    			if(sinkSide[temp.dst] && !sinkSide[temp.src]) {
+    				markReachable(sinkSide, temp.src, true);
+    			}
+    		}else {
+    			slowAdd.add(temp);
+    		}
+    	}
+    	if(slowDel.isEmpty() && slowAdd.isEmpty()) {
+    		return;
+    	}
+    	for(edge temp:slowDel) {
+    		result -= removeCapacity(residual.getArc(temp.src,temp.dst), temp.change);
+    	}
+    	for(edge temp:slowAdd) {
+    		residual.addCapacity(temp.src,temp.dst,temp.change);
     	}
     	result += getResult(Snodeindex,Dnodeindex,maxV);
-    	return;
     }
-    
+
+    //ж޸һӰ죬޸Ĳͼ
+    private deltaEffect classify(int arc, int change) {
+    	if(change<0) {
+    		//ֻҪʣ㹻ǰȻ
+    		if(Math.min(-change, residual.graph[arc]) <= residual.capacity[arc]) {
+    			return deltaEffect.CANNOT_CHANGE;
+    		}
+    		return deltaEffect.CAN_ONLY_DECREASE;
+    	}
+    	if(change==0) {
+    		return deltaEffect.CANNOT_CHANGE;
+    	}
+    	//ԽСĻ·
+    	computeSides();
+    	if(!inMinCut(arc)) {
+    		return deltaEffect.CANNOT_CHANGE;
+    	}
+    	//ԽСĻҪָܵĶ
+    	if(sinkSide[residual.to[arc]]) {
+    		return deltaEffect.MUST_RECOMPUTE;
+    	}
+    	return deltaEffect.CANNOT_CHANGE;
+    }
+
+    private void computeSides() {
+    	if(sourceSide != null && sourceSide.length == residual.nodenumber) {
+    		return;
+    	}
+    	sourceSide = new boolean[residual.nodenumber];
+    	markReachable(sourceSide, Snodeindex, false);
+    	sinkSide = new boolean[residual.nodenumber];
+    	markReachable(sinkSide, Dnodeindex, true);
+    }
+
+    //ǷԴһָһ࣬ǰcomputeSides
+    private boolean inMinCut(int arc) {
+    	return sourceSide[residual.getSource(arc)] && !sourceSide[residual.to[arc]];
+    }
+
+    private void invalidateCut() {
+    	sourceSide = null;
+    	sinkSide = null;
+    }
+
+    //ڲͼдstartBFSǿɴĶ㣻reverseΪtrueʱܵstartĶ
+    private void markReachable(boolean[] reached, int start, boolean reverse) {
+    	if(queue == null || queue.length < residual.nodenumber) {
+    		queue = new int[residual.nodenumber];
+    	}
+    	int headIndex = 0, tailIndex = 0;
+    	reached[start] = true;
+    	queue[tailIndex++] = start;
+    	while(headIndex < tailIndex) {
+    		int u = queue[headIndex++];
+    		for(int arc = residual.head[u]; arc != -1; arc = residual.next[arc]) {
+    			int v = residual.to[arc];
+    			int capacity = reverse ? residual.capacity[arc^1] : residual.capacity[arc];
+    			if(!reached[v] && capacity > 0) {
+    				reached[v] = true;
+    				queue[tailIndex++] = v;
+    			}
+    		}
+    	}
+    }
+
     public void addResult(int source, int dest){
-    	capacity[source][dest] += 1;
-		graph[source][dest] += 1;
+    	residual.addCapacity(source,dest,1);
 		getResult(Svertex,Dvertex);
     }
-    
-    public void addResult(Vertex source, Vertex dest){
-    	//if(dest.getType() == VertexType.SOURCE){
-    	//	//System.out.println("okasi");
-    	//}
-    	//boolean changea = false;
-    	//boolean changeb = false;
-    	int Snodeindex = nodelist.indexOf(source);
-    	if(Snodeindex == -1){
-    	//	changea = true;
-    		source.changeType();
-    		Snodeindex = nodelist.indexOf(source);
+
+    //㲻ͼʱͻĶӦ±ꣻ޸Ķ㱾
+    //Ϊеļ
+    private int indexOfEndpoint(Vertex vertex){
+    	int index = nodelist.indexOf(vertex);
+    	if(index == -1){
+    		index = nodelist.indexOfCounterpart(vertex);
     	}
-		int Dnodeindex = nodelist.indexOf(dest);
-		if(Dnodeindex == -1){
-		//	changeb = true;
-			dest.changeType();
-			Dnodeindex = nodelist.indexOf(dest);
+    	return index;
+    }
+
+    public void addResult(Vertex source, Vertex dest){
+    	int Snodeindex = indexOfEndpoint(source);
+		int Dnodeindex = indexOfEndpoint(dest);
+		if((Snodeindex==-1)||(Dnodeindex==-1)){
+			return;
 		}
-		capacity[Snodeindex][Dnodeindex] += 1;
-		graph[Snodeindex][Dnodeindex] += 1;
-		
-		//if(changea){
-    	//	source.changeType();
-    	//}
-    	
-    	//if(changeb){
-    	//	dest.changeType();
-    	//}
+		residual.addCapacity(Snodeindex,Dnodeindex,1);
 		getResult(Svertex,Dvertex);
     }
-    
+
     public void getResult(Vertex source, Vertex dest){
     	Svertex = source;
     	Dvertex = dest;
     	Snodeindex = nodelist.indexOf(Svertex);
     	Dnodeindex = nodelist.indexOf(Dvertex);
-    	result += getResult(nodelist.indexOf(source),nodelist.indexOf(dest),maxV);
+    	result += getResult(Snodeindex,Dnodeindex,maxV);
     }
-    
+
     public int getResult(int source, int dest,int weight) {
-    	int tempresult = 0;
-        int temp = bfs(source,dest,weight);
-        while((temp != -1)&&(weight!=0)) {
-            tempresult = tempresult + temp;
-            int start = pre[dest];
-            int end = dest;
-            while(start != source) {
-                capacity[start][end] -= temp;   //ǰʣtemp
-                capacity[end][start] += temp;   //ʣtemp
-                end = start;
-                start = pre[end];
-            }
-            capacity[source][end] -= temp;
-            capacity[end][source] += temp;
-            weight -= temp;
-            temp = bfs(source,dest,weight);
-        }
+    	invalidateCut();
+    	int tempresult = augment(source,dest,weight);
         if(tempresult == 0){
-        	//Vertex testS = new Vertex(VertexType.SOURCE);
         	maxFlowutil.setZeroVertex(Svertex, Dvertex);
         }
-        //System.out.println(result);
-        //System.out.println(Svertex);
-        //System.out.println(Dvertex);
         return tempresult;
     }
-    
-    public void getResult_remove(Vertex removeSource, Vertex removeDest, int value){
-    	int a = nodelist.indexOf(Svertex);
-    	int b = nodelist.indexOf(Dvertex);
-    	//boolean changea = false;
-    	//boolean changeb = false;
-   
-    	int removea = nodelist.indexOf(removeSource);
-    	if(removea == -1){
-    	//	changea = true;
-    		removeSource.changeType();
-    		removea = nodelist.indexOf(removeSource);
-    	}
-		int removeb = nodelist.indexOf(removeDest);
-		if(removeb == -1){
-		//	changeb = true;
-			removeDest.changeType();
-			removeb = nodelist.indexOf(removeDest);
-		}
-		//System.out.println(graph[removea][removeb]);
-		//System.out.println(capacity[removea][removeb]);
-    	int remove = Math.min(graph[removea][removeb]-capacity[removea][removeb], value);
-    	if(remove!=0){
-    		if(!removeSource.equals(Svertex) ){
-    			getResult_remove(removea,a,remove);
+
+    //СԴڲͼпɴĶָ򲻿ɴﶥǰ
+    private ArrayList<Integer> getMinCutArcs() {
+    	computeSides();
+    	ArrayList<Integer> cutArcs = new ArrayList<Integer>();
+    	for(int arc = 0; arc < residual.arcnumber; arc += 2) {
+    		if(inMinCut(arc) && residual.graph[arc] > 0) {
+    			cutArcs.add(arc);
     		}
-    		if(!removeDest.equals(Dvertex)){
-    			getResult_remove(b,removeb,remove);
+    	}
+    	return cutArcs;
+    }
+
+    //Сеıߣһμõͼ
+    public ArrayList<DirectedEdge<Vertex>> getMinCut() {
+    	ArrayList<DirectedEdge<Vertex>> cut = new ArrayList<DirectedEdge<Vertex>>();
+    	for(int arc : getMinCutArcs()) {
+    		DirectedEdge<Vertex> edge = inputgraph.getEdge(nodelist.get(residual.getSource(arc)), nodelist.get(residual.to[arc]));
+    		if(edge != null) {
+    			cut.add(edge);
     		}
     	}
-    	graph[removea][removeb] -= value;
-    	capacity[removea][removeb] -= value;
+    	return cut;
+    }
+
+    public void getResult_remove(Vertex removeSource, Vertex removeDest, int value){
+    	int removea = indexOfEndpoint(removeSource);
+		int removeb = indexOfEndpoint(removeDest);
+		int arc = residual.getArc(removea,removeb);
+		if(arc == -1){
+			return;
+		}
+		int remove = removeCapacity(arc, value);
     	result -= remove;
     	if(remove!=0)
     	{
-    		getResult(a,b,maxV);
+    		result += getResult(Snodeindex,Dnodeindex,maxV);
     	}
-    	
-    	//if(changea){
-    	//	removeSource.changeType();
-    	//}
-    	
-    	//if(changeb){
-    	//	removeSource.changeType();
-    	//}
-    	//System.out.println(result);
-        //System.out.println(Svertex);
-        //System.out.println(Dvertex);
     }
-    
+
     public void getResult_remove(int source, int dest,int weight) {
-        int temp = bfs(source,dest,weight);
-        while(temp != -1) {
-            int start = pre[dest];
-            int end = dest;
-            while(start != source) {
-                capacity[start][end] -= temp;   //ǰʣtemp
-                capacity[end][start] += temp;   //ʣtemp
-                end = start;
-                start = pre[end];
-            }
-            capacity[source][end] -= temp;
-            capacity[end][source] += temp;
-            temp = bfs(source,dest,weight);
-        }
-        return;
+        augment(source,dest,weight);
     }
-	
-}
\ No newline at end of file
+
+}
@@ -1,66 +1,136 @@
 package edu.tsinghua.lyf;
 
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import org.jgrapht.graph.DefaultDirectedWeightedGraph;
 
 import edu.wisc.cs.arc.graphs.DirectedEdge;
+import edu.wisc.cs.arc.graphs.DirectedEdge.EdgeType;
+import edu.wisc.cs.arc.graphs.Flow;
 import edu.wisc.cs.arc.graphs.Vertex;
 
 public class maxFlowutil{
-	public static ArrayList<maxFlow> maxFlowList = new ArrayList<maxFlow>();
-	public static int directCosttime = 0;
-	public static int incrementalCosttime = 0;
-	public static Vertex Szero;
-	public static Vertex Dzero;
+	//cached max flows; kept across runs so later runs can update them incrementally
+	public static ConcurrentHashMap<flowKey,maxFlow> maxFlowMap = new ConcurrentHashMap<flowKey,maxFlow>();
+	public static AtomicLong directCosttime = new AtomicLong();
+	public static AtomicLong incrementalCosttime = new AtomicLong();
+	public static volatile Vertex Szero;
+	public static volatile Vertex Dzero;
 	
-	public static int getResult(DefaultDirectedWeightedGraph<Vertex,DirectedEdge> inputgraph, Vertex Svertex, Vertex Dvertex){
-		int result = -1;
-		for(int i = 0;i<maxFlowList.size();i++)
-		{
-			if(maxFlowList.get(i).Svertex.equals(Svertex)&&maxFlowList.get(i).Dvertex.equals(Dvertex)){
-				maxFlowList.get(i).findDiff(inputgraph);
-				return maxFlowList.get(i).result;
+	public static final String EDMONDS_KARP = "edmondskarp";
+	public static final String DINIC = "dinic";
+	public static final String PUSH_RELABEL = "pushrelabel";
+	
+	//returns a new engine with the given name, or null if the name is unknown
+	public static flowEngine newEngine(String name){
+		if(EDMONDS_KARP.equals(name)){
+			return new edmondsKarpEngine();
+		}else if(DINIC.equals(name)){
+			return new dinicEngine();
+		}else if(PUSH_RELABEL.equals(name)){
+			return new pushRelabelEngine();
+		}
+		return null;
+	}
+	
+	public static int getResult(DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph, Vertex Svertex, Vertex Dvertex){
+		return getResult(null, inputgraph, Svertex, Dvertex, DINIC, null);
+	}
+	
+	public static int getResult(DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph, Vertex Svertex, Vertex Dvertex, String engineName){
+		return getResult(null, inputgraph, Svertex, Dvertex, engineName, null);
+	}
+	
+	//baseIndex is the shared vertex index of the base ETG, or null;
+	//each cached maxFlow is locked while its max flow is computed or updated
+	public static int getResult(Flow flow, final DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> inputgraph, Vertex Svertex, Vertex Dvertex, String engineName, final vertexIndex baseIndex){
+		final flowEngine engine = newEngine(engineName);
+		if(null == engine){
+			throw new IllegalArgumentException("Unknown max-flow engine: " + engineName);
+		}
+		//the residual graph is only built when the flow is not cached yet
+		maxFlow cached = maxFlowMap.computeIfAbsent(new flowKey(flow, Svertex, Dvertex),
+				new Function<flowKey,maxFlow>(){
+					@Override
+					public maxFlow apply(flowKey key){
+						return new maxFlow(inputgraph, engine, baseIndex);
+					}
+				});
+		synchronized(cached){
+			if(null == cached.Svertex){
+				long starttime = System.nanoTime();
+				cached.getResult(Svertex, Dvertex);
+				long endtime = System.nanoTime();
+				directCosttime.addAndGet(endtime-starttime);
+				return cached.result;
+			}
+			if(cached.engine.getClass() != engine.getClass()){
+				cached.engine = engine;
 			}
+			cached.findDiff(inputgraph);
+			return cached.result;
 		}
-		maxFlow newMaxFlow = new maxFlow(inputgraph);
-		long starttime = System.nanoTime();
-		newMaxFlow.getResult(Svertex, Dvertex);
-		long endtime = System.nanoTime();
-		directCosttime += endtime-starttime;
-		result = newMaxFlow.result;
-		maxFlowList.add(newMaxFlow);
-		return result;
 	}
 	
-	public static void testadd(){
-		long starttime = System.nanoTime();
-		ArrayList<Integer> result = new ArrayList<Integer>();
-		for(int i = 0;i<maxFlowList.size();i++){
-			maxFlowList.get(i).addResult(Szero,Dzero);
-			result.add(maxFlowList.get(i).result);
+	//returns the min cut of a cached max flow, or null if it is not cached
+	public static ArrayList<DirectedEdge<Vertex>> getMinCut(Flow flow, Vertex Svertex, Vertex Dvertex){
+		maxFlow cached = maxFlowMap.get(new flowKey(flow, Svertex, Dvertex));
+		if(cached == null){
+			return null;
 		}
-		long endtime = System.nanoTime();
-		incrementalCosttime += endtime-starttime;
-		System.out.println("directtime:" + directCosttime);
-		System.out.println("incretime:" + incrementalCosttime);
+		synchronized(cached){
+			return cached.getMinCut();
+		}
+	}
+	
+	//capacity of an ETG edge in the unit-weight graphs whose max flows are
+	//cached: a link can fail, any other edge cannot
+	public static int getUnitCapacity(DirectedEdge<?> edge){
+		if(EdgeType.INTER_DEVICE == edge.getType()){
+			return 1;
+		}
+		return maxFlow.INFINITE_CAPACITY;
 	}
 	
-	public static void testdel(){
+	//applies a batch of capacity changes to every cached max flow, repairing
+	//each one with a single augmentation pass; returns the new max flow of
+	//every cached flow whose graph contains at least one of the changed edges;
+	//the next getResult for a flow only re-checks the edges of the vertices
+	//the deltas touch, where the flow's own ETG may differ from the base ETG
+	public static Map<flowKey,Integer> applyDeltas(Collection<edgeDelta> deltas){
 		long starttime = System.nanoTime();
-		ArrayList<Integer> result = new ArrayList<Integer>();
-		for(int i = 0;i<maxFlowList.size();i++){
-			maxFlowList.get(i).getResult_remove(Szero,Dzero,1);
-			result.add(maxFlowList.get(i).result);
+		Map<flowKey,Integer> result = new HashMap<flowKey,Integer>();
+		for(Map.Entry<flowKey,maxFlow> entry : maxFlowMap.entrySet()){
+			maxFlow cached = entry.getValue();
+			synchronized(cached){
+				if(cached.applyDeltas(deltas) > 0){
+					result.put(entry.getKey(), cached.result);
+				}
+			}
 		}
 		long endtime = System.nanoTime();
-		incrementalCosttime += endtime-starttime;
-		System.out.println("directtime:" + directCosttime);
-		System.out.println("incretime:" + incrementalCosttime);
+		incrementalCosttime.addAndGet(endtime-starttime);
+		return result;
+	}
+	
+	//forgets which vertices changed since each cached max flow was last
+	//updated, so the next getResult rescans the flow's whole graph; used when
+	//the graphs changed without a batch of deltas describing the change
+	public static void invalidateDeltas(){
+		for(maxFlow cached : maxFlowMap.values()){
+			synchronized(cached){
+				cached.invalidateDeltas();
+			}
+		}
 	}
 	
-	public static void setZeroVertex(Vertex SZero, Vertex DZero)
+	public static synchronized void setZeroVertex(Vertex SZero, Vertex DZero)
 	{
 		Szero = SZero;
 		Dzero = DZero;
@@ -0,0 +1,142 @@
+package edu.tsinghua.lyf;
+
+import java.util.Arrays;
+
+/**
+ * FIFO push-relabel with the gap heuristic. The flow limit is enforced with
+ * a virtual super source, placed at height n+1, that feeds exactly limit
+ * units into the source. Excess that cannot reach the sink is eventually
+ * pushed back to it.
+ */
+public class pushRelabelEngine implements flowEngine{
+	private int[] height;
+	private int[] excess;
+	private int[] current;//current arc of each vertex
+	private int[] count;//number of vertices at each height
+	private int[] queue;
+	private boolean[] active;
+	private int superFlow;//residual capacity from the source back to the super source
+
+	private void allocate(int nodenumber){
+		if(height == null || height.length < nodenumber){
+			height = new int[nodenumber];
+			excess = new int[nodenumber];
+			current = new int[nodenumber];
+			count = new int[2 * nodenumber + 4];
+			queue = new int[nodenumber];
+			active = new boolean[nodenumber];
+		}
+	}
+
+	//exact distances to dest in the residual graph
+	private void globalRelabel(residualGraph residual, int dest, int top){
+		int n = residual.nodenumber;
+		Arrays.fill(height, 0, n, -1);
+		Arrays.fill(count, 0, 2 * n + 4, 0);
+		int first = 0;
+		int last = 0;
+		queue[last++] = dest;
+		height[dest] = 0;
+		while(first < last){
+			int index = queue[first++];
+			for(int arc = residual.head[index];arc != -1;arc = residual.next[arc]){
+				int i = residual.to[arc];
+				if(residual.capacity[arc^1] > 0 && height[i] == -1){
+					height[i] = height[index] + 1;
+					queue[last++] = i;
+				}
+			}
+		}
+		for(int i = 0;i < n;i++){
+			if(height[i] == -1){
+				height[i] = top + 1;
+			}
+			count[height[i]]++;
+		}
+	}
+
+	private void relabel(residualGraph residual, int index, int source, int top){
+		int oldHeight = height[index];
+		int newHeight = Integer.MAX_VALUE;
+		for(int arc = residual.head[index];arc != -1;arc = residual.next[arc]){
+			if(residual.capacity[arc] > 0){
+				newHeight = Math.min(newHeight, height[residual.to[arc]] + 1);
+			}
+		}
+		if(index == source && superFlow > 0){
+			newHeight = Math.min(newHeight, top + 1);
+		}
+		count[oldHeight]--;
+		if(count[oldHeight] == 0 && oldHeight < top){
+			//gap: nothing above oldHeight can reach the sink anymore
+			for(int i = 0;i < residual.nodenumber;i++){
+				if(height[i] > oldHeight && height[i] < top){
+					count[height[i]]--;
+					height[i] = top + 1;
+					count[height[i]]++;
+					current[i] = residual.head[i];
+				}
+			}
+			newHeight = Math.max(newHeight, top + 1);
+		}
+		height[index] = newHeight;
+		count[newHeight]++;
+		current[index] = residual.head[index];
+	}
+
+	@Override
+	public int augment(residualGraph residual, int source, int dest, int limit){
+		if(source == dest || limit == 0)
+			return 0;
+		int n = residual.nodenumber;
+		int top = n + 1;
+		allocate(n);
+		globalRelabel(residual, dest, top);
+		if(height[source] > top)
+			return 0;
+		Arrays.fill(excess, 0, n, 0);
+		Arrays.fill(active, 0, n, false);
+		System.arraycopy(residual.head, 0, current, 0, n);
+		superFlow = limit;
+		excess[source] = limit;
+		int first = 0;
+		int size = 0;
+		queue[0] = source;
+		active[source] = true;
+		size++;
+		while(size > 0){
+			int index = queue[first];
+			first = (first + 1) % n;
+			size--;
+			active[index] = false;
+			while(excess[index] > 0){
+				int arc = current[index];
+				if(arc == -1){
+					if(index == source && superFlow > 0 && height[index] == top + 1){
+						int temp = Math.min(excess[index], superFlow);
+						superFlow -= temp;
+						excess[index] -= temp;
+						continue;
+					}
+					relabel(residual, index, source, top);
+					continue;
+				}
+				int i = residual.to[arc];
+				if(residual.capacity[arc] > 0 && height[index] == height[i] + 1){
+					int temp = Math.min(excess[index], residual.capacity[arc]);
+					residual.push(arc, temp);
+					excess[index] -= temp;
+					excess[i] += temp;
+					if(i != dest && !active[i]){
+						active[i] = true;
+						queue[(first + size) % n] = i;
+						size++;
+					}
+				}else{
+					current[index] = residual.next[arc];
+				}
+			}
+		}
+		return excess[dest];
+	}
+}
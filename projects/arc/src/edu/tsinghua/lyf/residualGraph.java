@@ -0,0 +1,101 @@
+package edu.tsinghua.lyf;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Sparse residual graph used by {@link maxFlow}. Arcs are stored in
+ * forward-star adjacency arrays and always come in pairs: arc e is a
+ * forward arc and arc e^1 is its reverse arc, so memory grows with the
+ * number of edges rather than with the number of vertices squared.
+ */
+public class residualGraph{
+	public int nodenumber = 0;
+	public int arcnumber = 0;
+	public int[] head;//first outgoing arc of each vertex
+	public int[] next;//next outgoing arc of the same vertex
+	public int[] to;//head vertex of each arc
+	public int[] capacity;//residual capacity of each arc
+	public int[] graph;//capacity in the current graph, 0 for reverse arcs
+	private HashMap<Long,Integer> arcIndex;//(src,dst) -> forward arc
+
+	public residualGraph(int nodenumber, int edgenumber){
+		this.nodenumber = nodenumber;
+		head = new int[Math.max(nodenumber, 1)];
+		Arrays.fill(head, -1);
+		int arcs = Math.max(2 * edgenumber, 2);
+		next = new int[arcs];
+		to = new int[arcs];
+		capacity = new int[arcs];
+		graph = new int[arcs];
+		arcIndex = new HashMap<Long,Integer>();
+	}
+
+	public int addNode(){
+		if(nodenumber == head.length){
+			int oldLength = head.length;
+			head = Arrays.copyOf(head, oldLength * 2);
+			Arrays.fill(head, oldLength, head.length, -1);
+		}
+		head[nodenumber] = -1;
+		return nodenumber++;
+	}
+
+	private static long key(int src, int dst){
+		return ((long)src << 32) | (dst & 0xffffffffL);
+	}
+
+	public int getArc(int src, int dst){
+		Integer arc = arcIndex.get(key(src,dst));
+		if(arc == null){
+			return -1;
+		}
+		return arc;
+	}
+
+	public int getOrAddArc(int src, int dst){
+		int arc = getArc(src,dst);
+		if(arc != -1){
+			return arc;
+		}
+		if(arcnumber + 2 > to.length){
+			int length = to.length * 2;
+			next = Arrays.copyOf(next, length);
+			to = Arrays.copyOf(to, length);
+			capacity = Arrays.copyOf(capacity, length);
+			graph = Arrays.copyOf(graph, length);
+		}
+		arc = arcnumber;
+		to[arc] = dst;
+		next[arc] = head[src];
+		head[src] = arc;
+		to[arc^1] = src;
+		next[arc^1] = head[dst];
+		head[dst] = arc^1;
+		arcnumber += 2;
+		arcIndex.put(key(src,dst), arc);
+		return arc;
+	}
+
+	//adds capacity to the forward arc, creating it if needed
+	public int addCapacity(int src, int dst, int change){
+		int arc = getOrAddArc(src,dst);
+		capacity[arc] += change;
+		graph[arc] += change;
+		return arc;
+	}
+
+	public int getSource(int arc){
+		return to[arc^1];
+	}
+
+	public int getFlow(int arc){
+		return graph[arc] - capacity[arc];
+	}
+
+	//pushes flow along an arc
+	public void push(int arc, int value){
+		capacity[arc] -= value;
+		capacity[arc^1] += value;
+	}
+}
@@ -0,0 +1,109 @@
+package edu.tsinghua.lyf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+import edu.wisc.cs.arc.graphs.Vertex;
+import edu.wisc.cs.arc.graphs.Vertex.VertexType;
+
+/**
+ * Dense vertex-to-int index. A base index is built once from the vertices
+ * of a base ETG and is only read afterwards, so it can be shared by the
+ * maxFlow instances of all flows. Each instance extends it with a local
+ * index holding the vertices (e.g., flow sources and destinations) the base
+ * ETG does not contain.
+ */
+public class vertexIndex{
+	private vertexIndex parent;
+	private int offset;//number of vertices in the parent index
+	private HashMap<Vertex,Integer> index;
+	private ArrayList<Vertex> vertices;
+	private HashMap<String,Integer> endpoints;//flow source and destination vertices, by name
+
+	public vertexIndex(Collection<? extends Vertex> vertices){
+		this((vertexIndex)null);
+		this.index = new HashMap<Vertex,Integer>(vertices.size() * 2);
+		for(Vertex vertex : vertices){
+			add(vertex);
+		}
+	}
+
+	public vertexIndex(vertexIndex parent){
+		this.parent = parent;
+		this.offset = (parent == null ? 0 : parent.size());
+		this.index = new HashMap<Vertex,Integer>();
+		this.vertices = new ArrayList<Vertex>();
+		this.endpoints = new HashMap<String,Integer>();
+	}
+
+	public int indexOf(Vertex vertex){
+		if(parent != null){
+			int i = parent.indexOf(vertex);
+			if(i != -1){
+				return i;
+			}
+		}
+		Integer i = index.get(vertex);
+		if(i == null){
+			return -1;
+		}
+		return i;
+	}
+
+	//returns the index of the flow source (destination) vertex whose name is
+	//the name of the given flow destination (source) vertex with its type
+	//swapped, or -1; the given vertex is not modified
+	public int indexOfCounterpart(Vertex vertex){
+		String name;
+		if(vertex.getType() == VertexType.SOURCE){
+			name = vertex.getName().replace("SOURCE", "DESTINATION");
+		}else if(vertex.getType() == VertexType.DESTINATION){
+			name = vertex.getName().replace("DESTINATION", "SOURCE");
+		}else{
+			return -1;
+		}
+		return indexOfEndpoint(name);
+	}
+
+	private int indexOfEndpoint(String name){
+		if(parent != null){
+			int i = parent.indexOfEndpoint(name);
+			if(i != -1){
+				return i;
+			}
+		}
+		Integer i = endpoints.get(name);
+		if(i == null){
+			return -1;
+		}
+		return i;
+	}
+
+	//returns the index of the vertex, adding it if it is not indexed yet
+	public int add(Vertex vertex){
+		int i = indexOf(vertex);
+		if(i != -1){
+			return i;
+		}
+		i = offset + vertices.size();
+		index.put(vertex, i);
+		vertices.add(vertex);
+		if(vertex.getType() == VertexType.SOURCE
+				|| vertex.getType() == VertexType.DESTINATION){
+			endpoints.put(vertex.getName(), i);
+		}
+		return i;
+	}
+
+	public Vertex get(int i){
+		if(i < offset){
+			return parent.get(i);
+		}
+		return vertices.get(i - offset);
+	}
+
+	public int size(){
+		return offset + vertices.size();
+	}
+}
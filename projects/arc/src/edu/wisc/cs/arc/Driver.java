@@ -15,7 +15,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import edu.tsinghua.lyf.maxFlowutil;
 import edu.wisc.cs.arc.graphs.*;
 
 import org.apache.commons.cli.ParseException;
@@ -23,10 +22,6 @@ import org.apache.commons.io.FileUtils;
 import org.batfish.representation.Ip;
 import org.batfish.representation.VendorConfiguration;
 import org.batfish.representation.cisco.CiscoVendorConfiguration;
-import org.batfish.representation.cisco.ExtendedAccessList;
-import org.batfish.representation.cisco.StandardAccessList;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.FloydWarshallShortestPaths;
 
 import edu.wisc.cs.arc.configs.ConfigurationParser;
 import edu.wisc.cs.arc.graphs.Process.ProcessType;
@@ -36,9 +31,11 @@ import edu.wisc.cs.arc.verifiers.AlwaysReachable;
 import edu.wisc.cs.arc.verifiers.ComputedPaths;
 import edu.wisc.cs.arc.verifiers.CurrentlyBlocked;
 import edu.wisc.cs.arc.verifiers.Equivalent;
+import edu.wisc.cs.arc.verifiers.FailureScenarios;
 import edu.wisc.cs.arc.virl.Scenario;
 import edu.wisc.cs.arc.virl.VirlConfigurationGenerator;
 import edu.wisc.cs.arc.virl.VirlOutputParser;
+import edu.wisc.cs.arc.virl.VirlOutputParser.ScenarioIterator;
 
 /**
  * Starts the ETG generator.
@@ -60,14 +57,33 @@ public class Driver {
 
 		logger.info(settings.toString());
 
-		// Parse configurations
-		ConfigurationParser parser = new ConfigurationParser(logger,
-				settings.getConfigsDirection(), settings.shouldParallelize());
+		// Reuse parsed configurations and ETGs cached on disk, if requested
+		EtgCache cache = null;
+		if (settings.shouldUseCache()) {
+			cache = new EtgCache(settings);
+		}
+
+		// Parse configurations, or load them from the cache
 		long startTime = System.currentTimeMillis();
-		Map<String, VendorConfiguration> vendorConfigs = parser.parse();
-		Map<String, String> rawConfigs = parser.getRawConfigurations();
+		Map<String, VendorConfiguration> vendorConfigs;
+		Map<String, String> rawConfigs;
+		if (cache != null) {
+			vendorConfigs = cache.loadConfigurations(settings);
+			rawConfigs = cache.getRawConfigurations();
+		}
+		else {
+			ConfigurationParser parser = new ConfigurationParser(logger,
+					settings.getConfigsDirection(),
+					settings.shouldParallelize());
+			vendorConfigs = parser.parse();
+			rawConfigs = parser.getRawConfigurations();
+		}
 		long endTime = System.currentTimeMillis();
 		System.out.println("TIME: parse "+(endTime - startTime)+" ms");
+		if (cache != null) {
+			System.out.println("COUNT: cachedConfigs "
+					+ cache.getConfigurationHits());
+		}
 
 		// Exclude non-routers, if requested
 		if (settings.shouldExcludeNonRouters()) {
@@ -133,9 +149,25 @@ public class Driver {
 			logger.info("\t"+device.getName());
 		}
 
-		// Generate device-based ETG
+		// Generate device-based ETG, or load the ETGs from the cache
 		logger.info("*** Generate device-based ETG ***");
-		DeviceGraph deviceEtg = new DeviceGraph(devices, settings);
+		DeviceGraph deviceEtg = null;
+		ProcessGraph processEtg = null;
+		ExtendedTopologyGraph baseEtg = null;
+		boolean cachedEtgs = false;
+		startTime = System.currentTimeMillis();
+		if (cache != null && cache.loadEtgs(settings)) {
+			cachedEtgs = true;
+			deviceEtg = cache.getDeviceEtg();
+			processEtg = cache.getProcessEtg();
+			baseEtg = cache.getBaseEtg();
+			endTime = System.currentTimeMillis();
+			System.out.println("TIME: loadCachedETGs "+(endTime - startTime)
+					+" ms");
+		}
+		else {
+			deviceEtg = new DeviceGraph(devices, settings);
+		}
 		System.out.println("COUNT: deviceETGVertices "
 				+ deviceEtg.getVertexCount());
 		System.out.println("COUNT: deviceETGEdges "
@@ -143,15 +175,19 @@ public class Driver {
 
 		// Create process-based ETG
 		logger.info("*** Generate process-based ETG ***");
-		startTime = System.currentTimeMillis();
-		ProcessGraph processEtg = new ProcessGraph(deviceEtg, settings);
-		ExtendedTopologyGraph baseEtg = processEtg;
-		endTime = System.currentTimeMillis();
+		if (null == processEtg) {
+			startTime = System.currentTimeMillis();
+			processEtg = new ProcessGraph(deviceEtg, settings);
+			endTime = System.currentTimeMillis();
+		}
+		if (null == baseEtg) {
+			baseEtg = processEtg;
+		}
 		System.out.println("TIME: baseETG "+(endTime - startTime)+" ms");
 		logger.info(baseEtg.toString());
 
 		// Convert process-based ETG to interface-based ETG
-		if (settings.shouldGenerateInterfaceETG()) {
+		if (settings.shouldGenerateInterfaceETG() && !cachedEtgs) {
 			logger.info("*** Generate interface-based ETG ***");
 			baseEtg = new InterfaceGraph(processEtg);
 		}
@@ -168,20 +204,25 @@ public class Driver {
 		System.out.println("COUNT: staticProcesses "
 				+ processEtg.numberOfType(ProcessType.STATIC));
 
-		FloydWarshallShortestPaths<Vertex,DirectedEdge<Vertex>> fwsp =
-				new FloydWarshallShortestPaths<Vertex, DirectedEdge<Vertex>>(
-						baseEtg.getGraph());
-		// TODO : Check if this definition of diameter is correct. Is it the max
-		// of all the pair-wise shortest paths or the longest path through the
-		// graph ?
-		int diameter = 0;
-		for (GraphPath<Vertex,DirectedEdge<Vertex>> path :
-				fwsp.getShortestPaths()) {
-			if (path.getEdgeList().size() > diameter) {
-				diameter = path.getEdgeList().size();
+		// Compute the number of hops on the longest of the shortest paths
+		// between all pairs of vertices, if requested
+		if (settings.shouldComputeDiameter()) {
+			startTime = System.currentTimeMillis();
+			GraphDiameter diameter = new GraphDiameter(
+					baseEtg.toCompactGraph());
+			if (GraphDiameter.EXACT.equals(settings.getDiameterMode())) {
+				System.out.println("COUNT: baseETGDiameter "
+						+ diameter.getDiameter(settings.shouldParallelize()
+								? settings.getThreadCount() : 1));
+			}
+			else {
+				System.out.println("COUNT: baseETGDiameterLowerBound "
+						+ diameter.getDiameterLowerBound());
 			}
+			endTime = System.currentTimeMillis();
+			System.out.println("TIME: diameter " + (endTime - startTime)
+					+ " ms");
 		}
-		System.out.println("COUNT: baseETGDiameter " + diameter);
 
 		// Generate Base Instance Graph
 		logger.info("*** Generate instance-based ETG ***");
@@ -233,9 +274,21 @@ public class Driver {
         long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("MEM: preFlowETGs " + memoryBefore);*/
 
-		if (settings.shouldGenerateFlowETGs()) {
-			// Create ETGs for every possible flow
-			flowEtgs = generateFlowETGs(settings, baseEtg, policyGroups, devices);
+		if (cachedEtgs) {
+			flowEtgs = cache.getFlowEtgs();
+		}
+		else {
+			if (settings.shouldGenerateFlowETGs()) {
+				// Create ETGs for every possible flow
+				flowEtgs = generateFlowETGs(settings, baseEtg, policyGroups,
+						devices);
+			}
+
+			// Store ETGs in the cache before they are pruned
+			if (cache != null) {
+				cache.storeEtgs(settings, deviceEtg, processEtg, baseEtg,
+						flowEtgs);
+			}
 		}
 
 		/* // Measure memory usage
@@ -337,7 +390,7 @@ public class Driver {
 		logger.info("*** Processed Policy Groups ***");
 		startTime = System.currentTimeMillis();
 		Set<PolicyGroup> nonOverlappingGroups =
-				PolicyGroup.getNonOverlapping(groups);
+				PolicyGroupAtomizer.atomize(groups);
 		endTime = System.currentTimeMillis();
 		System.out.println("TIME: separatePolicyGroups " +
 				(endTime - startTime) + " ms");
@@ -390,37 +443,20 @@ public class Driver {
 
 		// Create a queue of flows for which to construct ETGs
 		Queue<Flow> queue = new ConcurrentLinkedQueue<Flow>();
-		List<Flow> flows = new ArrayList<Flow>(policyGroups.size()
-				* policyGroups.size() - policyGroups.size());
-		for (PolicyGroup source : policyGroups) {
-			for (PolicyGroup destination : policyGroups) {
-				if (source.equals(destination)) {
-					continue;
-				}
-				Flow flow = new Flow(source, destination);
-				flows.add(flow);
-			}
-		}
+		// Determine which flows need flow-specific ETGs and which flows can
+		// use an ETG with multiple sources and a common destination
+		FlowPlanner planner = new FlowPlanner(policyGroups, devices);
 
 		System.out.println("Flows requiring specific ETGs:");
+		for (Flow flow : planner.getCustomFlows()) {
+			System.out.println(flow.toString());
+			queue.add(flow);
+		}
+
 		Map<PolicyGroup, List<PolicyGroup>> dstToSources =
-				new HashMap<PolicyGroup, List<PolicyGroup>>();
-		// Check if a flow needs a custom ETG or we can use an ETG with multiple
-		// sources and a common destination
-		for (Flow flow : flows) {
-			if (flowNeedsCustomEtg(flow, devices)) {
-				System.out.println(flow.toString());
-				queue.add(flow);
-			}
-			else {
-				if (!dstToSources.containsKey(flow.getDestination())) {
-					dstToSources.put(flow.getDestination(),
-							new ArrayList<PolicyGroup>());
-					Flow wildcardFlow = new Flow(flow.getDestination());
-					queue.add(wildcardFlow);
-				}
-				dstToSources.get(flow.getDestination()).add(flow.getSource());
-			}
+				planner.getWildcardSources();
+		for (PolicyGroup destination : dstToSources.keySet()) {
+			queue.add(new Flow(destination));
 		}
 
 		System.out.println("Flows requiring general ETGs:");
@@ -459,9 +495,11 @@ public class Driver {
         long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("MEM: preFlowETGs " + memoryBefore);*/
 
-		// Generate flow-specific ETGs
+		// Generate flow-specific ETGs, sharing ACL decisions between them
 		Map<Flow, ExtendedTopologyGraph> flowEtgs =
 				new LinkedHashMap<Flow, ExtendedTopologyGraph>();
+		AclDecisionCache aclDecisions = new AclDecisionCache();
+		baseEtg.setAclDecisionCache(aclDecisions);
 		long startTime = System.currentTimeMillis();
 		if (settings.shouldParallelize()) {
 			// Create a thread pool
@@ -515,6 +553,7 @@ public class Driver {
 		}
 		long endTime = System.currentTimeMillis();
 		System.out.println("TIME: flowETGs "+(endTime - startTime)+" ms");
+		logger.debug("ACL decisions: " + aclDecisions);
 
         /*// Measure memory usage
         try {
@@ -541,57 +580,6 @@ public class Driver {
 		return flowEtgs;
 	}
 
-	/**
-	 * Given a flow, and a list of network devices, check if the flow contains any ACL blocking its traffic class
-	 */
-	private static boolean flowNeedsCustomEtg(Flow flow, List<Device> devices) {
-		for (Device device : devices) {
-			for (Interface deviceIface: device.getInterfaces()) {
-				if (deviceIface.hasPrefix()) {
-					if ((flow.getDestination().contains(deviceIface.getPrefix()) &&
-							checkIfIncomingIsBlocked(flow, deviceIface)) ||
-							flow.getSource().contains(deviceIface.getPrefix()) &&
-									checkIfOutgoingIsBlocked(flow, deviceIface)) {
-						return true;
-					}
-				}
-			}
-
-			// FIXME: Also check for static routes
-		}
-		return false;
-	}
-
-	private static boolean checkIfIncomingIsBlocked(Flow flow, Interface deviceIface) {
-		if (deviceIface.getIncomingFilter() != null) {
-			Device device = deviceIface.getDevice();
-			StandardAccessList stdAcl = device.getStandardAcl(
-					deviceIface.getIncomingFilter());
-			ExtendedAccessList extAcl = device.getExtendedAcl(
-					deviceIface.getIncomingFilter());
-			if ((stdAcl != null && flow.isBlocked(stdAcl))
-					|| (extAcl != null && flow.isBlocked(extAcl))) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private static boolean checkIfOutgoingIsBlocked(Flow flow, Interface deviceIface) {
-		if (deviceIface.getOutgoingFilter() != null) {
-			Device device = deviceIface.getDevice();
-			StandardAccessList stdAcl = device.getStandardAcl(
-					deviceIface.getOutgoingFilter());
-			ExtendedAccessList extAcl = device.getExtendedAcl(
-					deviceIface.getOutgoingFilter());
-			if ((stdAcl != null && flow.isBlocked(stdAcl))
-					|| (extAcl != null && flow.isBlocked(extAcl))) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/**
 	 * Serialize the ETGs.
 	 * @param "serializedETGsFile" file where the serialized ETGs should be stored
@@ -859,9 +847,41 @@ public class Driver {
 				}
 			}
 		}
+
+		// Verify reachability in enumerated link failure scenarios
+		if (settings.shouldVerifyFailureScenarios()) {
+			int maxFailures = settings.getMaxLinkFailures();
+			FailureScenarios verifier = new FailureScenarios(flowEtgs,
+					settings, deviceEtg);
+
+			// Run verification
+			long startTime = System.currentTimeMillis();
+			Map<Flow, Boolean> results = verifier.verifyAll(maxFailures);
+			long endTime = System.currentTimeMillis();
+			System.out.println("COUNT: failureScenarios "
+					+ verifier.getScenarioCount(maxFailures));
+			System.out.println("COUNT: failureScenariosExamined "
+					+ verifier.getExaminedCount());
+			System.out.println("TIME: failureScenarios "
+					+ (endTime - startTime) + " ms");
+
+			// Output results, including the failures that disconnect each flow
+			if (!settings.shouldSummarizeVerificationResults()) {
+				System.out.println("*** Failure Scenarios (<= "
+						+ maxFailures + " link failures) ***");
+				for (Entry<Flow, Boolean> result : results.entrySet()) {
+					System.out.print("\t" + result.getValue() + "\t"
+							+ result.getKey());
+					if (!result.getValue()) {
+						System.out.print("\tfailures: "
+								+ verifier.getDisconnectingFailures(
+										result.getKey()));
+					}
+					System.out.println();
+				}
+			}
+		}
 		
-		//maxFlowutil.testadd();
-		//maxFlowutil.testdel();
 		//DirectedEdgeFactory newedge = new DirectedEdgeFactory("20.0.0.0-20.0.0.255 1-65535 [TCP, UDP]");
 
 		// Verify always isolated
@@ -870,13 +890,16 @@ public class Driver {
 
 			// Run verification
 			long startTime = System.currentTimeMillis();
-			Map<Flow,Map<Flow,Boolean>> results =
-					new LinkedHashMap<Flow,Map<Flow,Boolean>>();
-			for (Flow flow : flowEtgs.keySet()) {
-				Map<Flow,Boolean> flowResults = verifier.verifyAll(flow);
-				if (!settings.shouldSummarizeVerificationResults()) {
-					results.put(flow, flowResults);
-				}
+			Map<Flow,Map<Flow,Boolean>> results = null;
+			if (!settings.shouldSummarizeVerificationResults()) {
+				results = verifier.verifyAllPairs();
+			}
+			else {
+				long isolatedPairs = verifier.countIsolatedPairs();
+				long allPairs = (long)flowEtgs.size() * flowEtgs.size();
+				System.out.println("COUNT: alwaysIsolatedTrue " + isolatedPairs);
+				System.out.println("COUNT: alwaysIsolatedFalse "
+						+ (allPairs - isolatedPairs));
 			}
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: alwaysIsolated " + (endTime - startTime)
@@ -917,10 +940,17 @@ public class Driver {
 					settings.getFIBfile(), deviceEtg, settings.getLogger());
 			Map<Scenario,Map<Flow,Boolean>> results =
 					new LinkedHashMap<Scenario,Map<Flow,Boolean>>();
-			for (Scenario scenario : virlOutputParser.parse()) {
-				Map<Flow,Boolean> scenarioResults =
-						verifier.verifyAll(scenario);
-				results.put(scenario, scenarioResults);
+			ScenarioIterator scenarios = virlOutputParser.parseIncrementally();
+			try {
+				while (scenarios.hasNext()) {
+					Scenario scenario = scenarios.next();
+					Map<Flow,Boolean> scenarioResults =
+							verifier.verifyAll(scenario);
+					results.put(scenario, scenarioResults);
+				}
+			}
+			finally {
+				scenarios.close();
 			}
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: computedPaths "+(endTime - startTime)
@@ -0,0 +1,429 @@
+package edu.wisc.cs.arc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.batfish.common.BatfishException;
+import org.batfish.representation.VendorConfiguration;
+
+import edu.wisc.cs.arc.configs.ConfigurationParser;
+import edu.wisc.cs.arc.graphs.DeviceGraph;
+import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.ProcessGraph;
+
+/**
+ * Stores parsed configurations and ETGs on disk, so a run reloads them rather
+ * than parsing configurations and constructing ETGs again. Each parsed
+ * configuration is keyed by a hash of its configuration file's text, so only
+ * configuration files whose text has not been seen before are parsed. Entries
+ * that are missing or cannot be read are rebuilt and written to the cache.
+ *
+ * The ETGs are stored as a single entry keyed by a hash of the
+ * configurations directory and the settings that affect ETG construction.
+ * The entry records a hash of the text of every configuration file, and is
+ * only loaded if the hash matches. Every flow ETG is customized from the base
+ * ETG, which depends on every configuration, so a change to any configuration
+ * rebuilds all ETGs. Storing the ETGs replaces the entry for the same
+ * directory and settings, so the cache holds at most one set of ETGs for
+ * each configurations directory and combination of settings.
+ */
+@SuppressWarnings("rawtypes")
+public class EtgCache {
+
+	/** Version of the cache format; included in every key, so entries written
+	 * by an incompatible version are never read */
+	private static final String FORMAT_VERSION = "2";
+
+	/** Subdirectory in which parsed configurations are stored */
+	private static final String CONFIGS_DIRECTORY = "configs";
+
+	/** Subdirectory in which ETGs are stored */
+	private static final String ETGS_DIRECTORY = "etgs";
+
+	/** Suffix of cache entry files */
+	private static final String ENTRY_SUFFIX = ".ser";
+
+	/** Directory in which entries are stored */
+	private File directory;
+
+	/** Logger */
+	private Logger logger;
+
+	/** Raw configurations, keyed by hostname */
+	private Map<String, String> rawConfigs;
+
+	/** Hash of the text of every configuration file; null if configurations
+	 * have not been loaded */
+	private String configsHash;
+
+	/** Number of configurations loaded from the cache */
+	private int configHits;
+
+	/** Device-based ETG loaded from or stored in the cache */
+	private DeviceGraph deviceEtg;
+
+	/** Process-based ETG loaded from or stored in the cache */
+	private ProcessGraph processEtg;
+
+	/** Base ETG loaded from or stored in the cache */
+	private ExtendedTopologyGraph baseEtg;
+
+	/** Flow ETGs loaded from or stored in the cache; null if flow ETGs were
+	 * not generated */
+	private Map<Flow, ? extends ExtendedTopologyGraph> flowEtgs;
+
+	/**
+	 * Create a cache.
+	 * @param settings settings for this run, which name the cache directory
+	 */
+	public EtgCache(Settings settings) {
+		this.directory = Paths.get(settings.getCacheDirectory()).toFile();
+		this.logger = settings.getLogger();
+		this.rawConfigs = new TreeMap<String, String>();
+		this.configsHash = null;
+		this.configHits = 0;
+	}
+
+	/**
+	 * Read the configuration files, loading the parsed form of each file from
+	 * the cache and parsing the files that are not in the cache.
+	 * @param settings settings for this run
+	 * @return parsed configurations, keyed by hostname
+	 */
+	public Map<String, VendorConfiguration> loadConfigurations(
+			Settings settings) {
+		ConfigurationParser parser = new ConfigurationParser(this.logger,
+				settings.getConfigsDirection(), settings.shouldParallelize());
+		Map<File, String> configurationData = null;
+		try {
+			configurationData = parser.readConfigurationFiles();
+		}
+		catch (BatfishException e) {
+			throw new GeneratorException("Failed to read configs", e);
+		}
+
+		// Load the configurations whose text has been parsed before
+		Map<String, VendorConfiguration> vendorConfigs =
+				new TreeMap<String, VendorConfiguration>();
+		Map<File, String> missingFiles = new TreeMap<File, String>();
+		Map<File, String> fileHashes = new TreeMap<File, String>();
+		List<String> hashes = new ArrayList<String>();
+		for (Entry<File, String> entry : configurationData.entrySet()) {
+			String hash = hash(entry.getValue());
+			fileHashes.put(entry.getKey(), hash);
+			hashes.add(hash);
+			Object[] cached = this.read(
+					this.getEntryFile(CONFIGS_DIRECTORY, hash));
+			if (null == cached) {
+				missingFiles.put(entry.getKey(), entry.getValue());
+				continue;
+			}
+			String hostname = (String)cached[0];
+			this.addConfiguration(vendorConfigs, hostname,
+					(VendorConfiguration)cached[1], entry.getValue());
+			this.configHits++;
+		}
+		logger.info("Loaded " + this.configHits + " configurations from cache;"
+				+ " parsing " + missingFiles.size() + " configuration files");
+
+		// Parse the remaining configurations and add them to the cache
+		if (missingFiles.size() > 0) {
+			Map<String, VendorConfiguration> parsedConfigs =
+					parser.parse(missingFiles);
+			if (null == parsedConfigs) {
+				throw new GeneratorException("Failed to parse configs");
+			}
+			for (Entry<File, String> entry :
+					parser.getHostnames().entrySet()) {
+				String hostname = entry.getValue();
+				VendorConfiguration vendorConfig = parsedConfigs.get(hostname);
+				this.addConfiguration(vendorConfigs, hostname, vendorConfig,
+						missingFiles.get(entry.getKey()));
+				this.write(this.getEntryFile(CONFIGS_DIRECTORY,
+						fileHashes.get(entry.getKey())),
+						new Object[] { hostname, vendorConfig });
+			}
+		}
+
+		// Order hashes so the key does not depend on file names
+		Collections.sort(hashes);
+		StringBuilder allHashes = new StringBuilder();
+		for (String hash : hashes) {
+			allHashes.append(hash).append('\n');
+		}
+		this.configsHash = hash(allHashes.toString());
+		return vendorConfigs;
+	}
+
+	/**
+	 * Add a parsed configuration to those loaded during this run.
+	 * @param vendorConfigs parsed configurations loaded so far
+	 * @param hostname the hostname declared in the configuration
+	 * @param vendorConfig the parsed configuration
+	 * @param text the raw configuration
+	 */
+	private void addConfiguration(
+			Map<String, VendorConfiguration> vendorConfigs, String hostname,
+			VendorConfiguration vendorConfig, String text) {
+		if (vendorConfigs.containsKey(hostname)) {
+			throw new GeneratorException("Duplicate hostname: " + hostname);
+		}
+		vendorConfigs.put(hostname, vendorConfig);
+		this.rawConfigs.put(hostname, text);
+	}
+
+	/**
+	 * Get the raw configurations.
+	 * @return raw configurations, keyed by hostname
+	 */
+	public Map<String, String> getRawConfigurations() {
+		return this.rawConfigs;
+	}
+
+	/**
+	 * Get the number of configurations loaded from the cache.
+	 * @return number of configurations that were not parsed
+	 */
+	public int getConfigurationHits() {
+		return this.configHits;
+	}
+
+	/**
+	 * Load the ETGs for the configurations and settings of this run from the
+	 * cache.
+	 * @param settings settings for this run
+	 * @return true if the ETGs were loaded, false if they are not in the cache
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean loadEtgs(Settings settings) {
+		if (null == this.configsHash) {
+			throw new GeneratorException("Configurations must be loaded"
+					+ " before ETGs");
+		}
+		Object[] cached = this.read(
+				this.getEntryFile(ETGS_DIRECTORY, this.getEtgsKey(settings)));
+		if (null == cached || !this.configsHash.equals(cached[0])) {
+			return false;
+		}
+		this.deviceEtg = (DeviceGraph)cached[1];
+		this.processEtg = (ProcessGraph)cached[2];
+		this.baseEtg = (ExtendedTopologyGraph)cached[3];
+		this.flowEtgs = (Map<Flow, ? extends ExtendedTopologyGraph>)cached[4];
+
+		// Settings and loggers are not serialized
+		Map<ExtendedTopologyGraph, Boolean> etgs =
+				new IdentityHashMap<ExtendedTopologyGraph, Boolean>();
+		etgs.put(this.deviceEtg, true);
+		etgs.put(this.processEtg, true);
+		if (this.processEtg.getInstanceEtg() != null) {
+			etgs.put(this.processEtg.getInstanceEtg(), true);
+		}
+		etgs.put(this.baseEtg, true);
+		if (this.flowEtgs != null) {
+			for (ExtendedTopologyGraph flowEtg : this.flowEtgs.values()) {
+				etgs.put(flowEtg, true);
+			}
+		}
+		for (ExtendedTopologyGraph etg : etgs.keySet()) {
+			etg.setSettings(settings);
+		}
+		return true;
+	}
+
+	/**
+	 * Store the ETGs for the configurations and settings of this run in the
+	 * cache, replacing the ETGs stored for other configurations with the same
+	 * settings. The ETGs must be stored before they are pruned.
+	 * @param settings settings for this run
+	 * @param deviceEtg device-based ETG
+	 * @param processEtg process-based ETG
+	 * @param baseEtg the ETG on which flow ETGs are based
+	 * @param flowEtgs the ETG for each flow; null if flow ETGs were not
+	 * 		generated
+	 */
+	public void storeEtgs(Settings settings, DeviceGraph deviceEtg,
+			ProcessGraph processEtg, ExtendedTopologyGraph baseEtg,
+			Map<Flow, ? extends ExtendedTopologyGraph> flowEtgs) {
+		this.deviceEtg = deviceEtg;
+		this.processEtg = processEtg;
+		this.baseEtg = baseEtg;
+		this.flowEtgs = flowEtgs;
+		if (null == this.configsHash) {
+			throw new GeneratorException("Configurations must be loaded"
+					+ " before ETGs");
+		}
+		this.write(this.getEntryFile(ETGS_DIRECTORY, this.getEtgsKey(settings)),
+				new Object[] { this.configsHash, deviceEtg, processEtg, baseEtg,
+						flowEtgs });
+	}
+
+	/**
+	 * Get the device-based ETG.
+	 * @return device-based ETG, or null if ETGs have not been loaded
+	 */
+	public DeviceGraph getDeviceEtg() {
+		return this.deviceEtg;
+	}
+
+	/**
+	 * Get the process-based ETG.
+	 * @return process-based ETG, or null if ETGs have not been loaded
+	 */
+	public ProcessGraph getProcessEtg() {
+		return this.processEtg;
+	}
+
+	/**
+	 * Get the ETG on which flow ETGs are based.
+	 * @return base ETG, or null if ETGs have not been loaded
+	 */
+	public ExtendedTopologyGraph getBaseEtg() {
+		return this.baseEtg;
+	}
+
+	/**
+	 * Get the flow ETGs.
+	 * @return the ETG for each flow, or null if flow ETGs were not generated
+	 */
+	public Map<Flow, ? extends ExtendedTopologyGraph> getFlowEtgs() {
+		return this.flowEtgs;
+	}
+
+	/**
+	 * Compute the key for the ETGs of this run. The key does not depend on
+	 * the text of the configurations, so ETGs stored after the configurations
+	 * change replace those stored for the old configurations.
+	 * @param settings settings for this run
+	 * @return hash of the configurations directory and the settings that
+	 * 		affect ETG construction
+	 */
+	private String getEtgsKey(Settings settings) {
+		String key = "configsDirectory=" + Paths.get(
+					settings.getConfigsDirection()).toAbsolutePath().normalize()
+				+ "\nroutersOnly=" + settings.shouldExcludeNonRouters()
+				+ "\nanonymize=" + settings.shouldAnonymize()
+				+ "\nuseDescriptions="
+					+ settings.shouldUseInterfaceDescriptions()
+				+ "\nwarnAssumptions=" + settings.shouldWarnAssumptions()
+				+ "\ninterfaceBased=" + settings.shouldGenerateInterfaceETG()
+				+ "\nflowEtgs=" + settings.shouldGenerateFlowETGs()
+				+ "\nentireFlowspace="
+					+ settings.shouldIncludeEntireFlowspace()
+				+ "\ninternalOnly=" + settings.shouldExcludeExternalFlows()
+				+ "\nminPolicyGroupsSize=" + settings.getMinPolicyGroupsSize();
+		return hash(key);
+	}
+
+	/**
+	 * Get the file in which an entry is stored.
+	 * @param subdirectory subdirectory for the type of entry
+	 * @param key the entry's key
+	 * @return the file for the entry
+	 */
+	private File getEntryFile(String subdirectory, String key) {
+		return Paths.get(this.directory.getPath(), subdirectory,
+				key + ENTRY_SUFFIX).toFile();
+	}
+
+	/**
+	 * Read an entry from the cache.
+	 * @param file the file in which the entry is stored
+	 * @return the entry, or null if it does not exist or cannot be read
+	 */
+	private Object[] read(File file) {
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			ObjectInputStream objIn = new ObjectInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				Object entry = objIn.readObject();
+				return (entry instanceof Object[] ? (Object[])entry : null);
+			}
+			finally {
+				objIn.close();
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			logger.warn("Ignoring unreadable cache entry " + file + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Write an entry to the cache. The entry is written to a temporary file
+	 * that is then renamed, so concurrent runs never read a partial entry. The
+	 * temporary file is removed if the entry cannot be written.
+	 * @param file the file in which to store the entry
+	 * @param entry the entry to store
+	 */
+	private void write(File file, Object entry) {
+		File tmpFile = null;
+		boolean moved = false;
+		try {
+			file.getParentFile().mkdirs();
+			tmpFile = File.createTempFile(file.getName(), ".tmp",
+					file.getParentFile());
+			ObjectOutputStream objOut = new ObjectOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				objOut.writeObject(entry);
+			}
+			finally {
+				objOut.close();
+			}
+			Files.move(tmpFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+		} catch (IOException e) {
+			logger.warn("Failed to write cache entry " + file + ": " + e);
+		} finally {
+			// Do not leave a partial entry behind
+			if (tmpFile != null && !moved) {
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Compute the hash of some text.
+	 * @param text the text to hash
+	 * @return hexadecimal SHA-256 hash of the text and the cache format
+	 */
+	private static String hash(String text) {
+		MessageDigest digest = null;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new GeneratorException("SHA-256 is not supported", e);
+		}
+		digest.update(FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+		byte[] bytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,377 @@
+package edu.wisc.cs.arc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.batfish.common.BatfishException;
+import org.batfish.representation.VendorConfiguration;
+import org.batfish.representation.cisco.CiscoVendorConfiguration;
+
+import edu.tsinghua.lyf.edgeDelta;
+import edu.tsinghua.lyf.maxFlowutil;
+import edu.wisc.cs.arc.configs.ConfigurationParser;
+import edu.wisc.cs.arc.graphs.Device;
+import edu.wisc.cs.arc.graphs.DeviceGraph;
+import edu.wisc.cs.arc.graphs.DirectedEdge;
+import edu.wisc.cs.arc.graphs.Process;
+import edu.wisc.cs.arc.graphs.ProcessGraph;
+import edu.wisc.cs.arc.graphs.ProcessVertex;
+
+/**
+ * Retains parsed configurations, devices, and ETGs across runs, so a run only
+ * re-parses the configuration files whose text changed since the previous run
+ * and only rebuilds the corresponding parts of the process-based ETG.
+ * Configuration files are matched across runs by file name, so successive
+ * snapshots of a network may be stored in different directories.
+ */
+public class IncrementalSession {
+
+	/** Text of each configuration file, keyed by file name */
+	private Map<String, String> fileTexts;
+
+	/** Hostname declared in each configuration file, keyed by file name */
+	private Map<String, String> fileHostnames;
+
+	/** Parsed configurations, keyed by hostname */
+	private Map<String, VendorConfiguration> vendorConfigs;
+
+	/** Raw configurations, keyed by hostname */
+	private Map<String, String> rawConfigs;
+
+	/** Devices, keyed by hostname */
+	private Map<String, Device> devices;
+
+	/** Devices whose configurations were removed since the ETGs were built */
+	private List<Device> removedDevices;
+
+	/** Devices whose configurations were added since the ETGs were built */
+	private List<Device> addedDevices;
+
+	/** Device-based ETG built during the previous run */
+	private DeviceGraph deviceEtg;
+
+	/** Process-based ETG built during the previous run */
+	private ProcessGraph processEtg;
+
+	/** Capacity changes on the edges of the devices that changed when the
+	 * ETGs were last built */
+	private List<edgeDelta> edgeDeltas;
+
+	/** Settings that affect how devices and ETGs are constructed */
+	private boolean routersOnly;
+	private boolean useDescriptions;
+	private boolean warnAssumptions;
+
+	/**
+	 * Create an empty session.
+	 * @param settings settings for the first run
+	 */
+	public IncrementalSession(Settings settings) {
+		this.fileTexts = new TreeMap<String, String>();
+		this.fileHostnames = new TreeMap<String, String>();
+		this.vendorConfigs = new TreeMap<String, VendorConfiguration>();
+		this.rawConfigs = new TreeMap<String, String>();
+		this.devices = new TreeMap<String, Device>();
+		this.removedDevices = new ArrayList<Device>();
+		this.addedDevices = new ArrayList<Device>();
+		this.edgeDeltas = new ArrayList<edgeDelta>();
+		this.routersOnly = settings.shouldExcludeNonRouters();
+		this.useDescriptions = settings.shouldUseInterfaceDescriptions();
+		this.warnAssumptions = settings.shouldWarnAssumptions();
+	}
+
+	/**
+	 * Determine if devices and ETGs retained by the session can be reused for
+	 * a run with the given settings.
+	 * @param settings settings for the next run
+	 * @return true if the session can be reused, otherwise false
+	 */
+	public boolean isCompatible(Settings settings) {
+		return (this.routersOnly == settings.shouldExcludeNonRouters()
+				&& this.useDescriptions
+					== settings.shouldUseInterfaceDescriptions()
+				&& this.warnAssumptions == settings.shouldWarnAssumptions());
+	}
+
+	/**
+	 * Read the configuration files and parse those whose text changed since
+	 * the previous run.
+	 * @param settings settings for this run
+	 * @return the number of devices that were removed, added, or changed
+	 */
+	public int loadConfigurations(Settings settings) {
+		Logger logger = settings.getLogger();
+		ConfigurationParser parser = new ConfigurationParser(logger,
+				settings.getConfigsDirection(), settings.shouldParallelize());
+		Map<File, String> configurationData = null;
+		try {
+			configurationData = parser.readConfigurationFiles();
+		}
+		catch (BatfishException e) {
+			throw new GeneratorException("Failed to read configs", e);
+		}
+
+		// Compare the text of each file against the previous run
+		Map<String, String> currentTexts = new TreeMap<String, String>();
+		Map<File, String> changedFiles = new TreeMap<File, String>();
+		Set<String> staleFiles = new HashSet<String>(this.fileTexts.keySet());
+		for (Entry<File, String> entry : configurationData.entrySet()) {
+			String fileName = entry.getKey().getName();
+			currentTexts.put(fileName, entry.getValue());
+			if (!entry.getValue().equals(this.fileTexts.get(fileName))) {
+				changedFiles.put(entry.getKey(), entry.getValue());
+			}
+			else {
+				staleFiles.remove(fileName);
+			}
+		}
+		this.fileTexts = currentTexts;
+
+		// Drop devices whose configuration files changed or disappeared
+		Set<String> changedDevices = new HashSet<String>();
+		for (String fileName : staleFiles) {
+			String hostname = this.fileHostnames.remove(fileName);
+			if (null == hostname) {
+				continue;
+			}
+			this.vendorConfigs.remove(hostname);
+			this.rawConfigs.remove(hostname);
+			Device device = this.devices.remove(hostname);
+			if (device != null) {
+				this.removedDevices.add(device);
+				changedDevices.add(hostname);
+			}
+		}
+		logger.info("Reusing " + this.devices.size() + " devices; parsing "
+				+ changedFiles.size() + " changed configuration files");
+
+		// Parse changed configuration files
+		Map<String, VendorConfiguration> parsedConfigs =
+				parser.parse(changedFiles);
+		if (null == parsedConfigs) {
+			throw new GeneratorException("Failed to parse configs");
+		}
+		for (Entry<File, String> entry : parser.getHostnames().entrySet()) {
+			this.fileHostnames.put(entry.getKey().getName(), entry.getValue());
+		}
+
+		// Extract configuration details for new and changed devices
+		for (Entry<String, VendorConfiguration> entry :
+				parsedConfigs.entrySet()) {
+			if (!(entry.getValue() instanceof CiscoVendorConfiguration)) {
+				throw new GeneratorException(
+						"Only Cisco configurations are supported");
+			}
+			CiscoVendorConfiguration ciscoConfig =
+					(CiscoVendorConfiguration)entry.getValue();
+
+			// Exclude non-routers, if requested
+			if (this.routersOnly
+					&& 0 == ciscoConfig.getBgpProcesses().size()
+					&& 0 == ciscoConfig.getOspfProcesses().size()) {
+				continue;
+			}
+
+			if (this.devices.containsKey(entry.getKey())) {
+				throw new GeneratorException("Duplicate hostname: "
+						+ entry.getKey());
+			}
+			this.vendorConfigs.put(entry.getKey(), ciscoConfig);
+			this.rawConfigs.put(entry.getKey(),
+					parser.getRawConfigurations().get(entry.getKey()));
+			Device device = new Device(entry.getKey(), ciscoConfig, logger);
+			this.devices.put(entry.getKey(), device);
+			this.addedDevices.add(device);
+			changedDevices.add(entry.getKey());
+		}
+
+		return changedDevices.size();
+	}
+
+	/**
+	 * Build the device- and process-based ETGs, reusing the ETGs from the
+	 * previous run when possible. The capacity changes on the edges of the
+	 * changed devices are applied to the cached max flows, so the max flows
+	 * are repaired without rescanning each flow's ETG.
+	 * @param settings settings for this run
+	 */
+	public void buildEtgs(Settings settings) {
+		this.edgeDeltas = new ArrayList<edgeDelta>();
+		if (null == this.processEtg) {
+			this.deviceEtg = new DeviceGraph(this.getDevices(), settings);
+			this.processEtg = new ProcessGraph(this.deviceEtg, settings);
+
+			// Max flows cached before this session was started cannot be
+			// repaired from the session's edge deltas
+			maxFlowutil.invalidateDeltas();
+		}
+		else if (this.removedDevices.size() > 0
+				|| this.addedDevices.size() > 0) {
+			Map<ProcessVertex, Map<ProcessVertex, Integer>> oldCapacities =
+					this.getCapacities(this.removedDevices);
+			this.deviceEtg = new DeviceGraph(this.getDevices(), settings);
+			this.processEtg.updateDevices(this.deviceEtg, this.removedDevices,
+					this.addedDevices);
+			Map<ProcessVertex, Map<ProcessVertex, Integer>> newCapacities =
+					this.getCapacities(this.addedDevices);
+			this.edgeDeltas = getDeltas(oldCapacities, newCapacities);
+		}
+		this.removedDevices.clear();
+		this.addedDevices.clear();
+
+		if (this.edgeDeltas.size() > 0) {
+			Map<?, Integer> repaired = maxFlowutil.applyDeltas(this.edgeDeltas);
+			settings.getLogger().info("Applied " + this.edgeDeltas.size()
+					+ " edge deltas; " + repaired.size()
+					+ " cached max flows contain a changed edge");
+		}
+	}
+
+	/**
+	 * Get the unit capacities of the edges into and out of the routing
+	 * processes of some devices in the process-based ETG.
+	 * @param devices devices whose edges to include
+	 * @return capacity of each edge, keyed by source and destination vertex
+	 */
+	private Map<ProcessVertex, Map<ProcessVertex, Integer>> getCapacities(
+			List<Device> devices) {
+		Map<ProcessVertex, Map<ProcessVertex, Integer>> capacities =
+				new LinkedHashMap<ProcessVertex, Map<ProcessVertex, Integer>>();
+		for (Device device : devices) {
+			for (Process process : device.getRoutingProcesses()) {
+				for (ProcessVertex vertex : Arrays.asList(
+						process.getInVertex(), process.getOutVertex())) {
+					if (!this.processEtg.getGraph().containsVertex(vertex)) {
+						continue;
+					}
+					for (DirectedEdge<ProcessVertex> edge :
+							this.processEtg.getIncomingEdges(vertex)) {
+						putCapacity(capacities, edge);
+					}
+					for (DirectedEdge<ProcessVertex> edge :
+							this.processEtg.getOutgoingEdges(vertex)) {
+						putCapacity(capacities, edge);
+					}
+				}
+			}
+		}
+		return capacities;
+	}
+
+	/**
+	 * Record the unit capacity of an edge.
+	 * @param capacities capacities, keyed by source and destination vertex
+	 * @param edge the edge whose capacity to record
+	 */
+	private static void putCapacity(
+			Map<ProcessVertex, Map<ProcessVertex, Integer>> capacities,
+			DirectedEdge<ProcessVertex> edge) {
+		Map<ProcessVertex, Integer> destinations =
+				capacities.get(edge.getSource());
+		if (null == destinations) {
+			destinations = new LinkedHashMap<ProcessVertex, Integer>();
+			capacities.put(edge.getSource(), destinations);
+		}
+		destinations.put(edge.getDestination(),
+				maxFlowutil.getUnitCapacity(edge));
+	}
+
+	/**
+	 * Compute the capacity change of every edge of the changed devices. An
+	 * edge whose capacity did not change gets a zero delta, because a flow's
+	 * ETG may still block it differently after the devices changed.
+	 * @param oldCapacities capacities before the devices changed
+	 * @param newCapacities capacities after the devices changed
+	 * @return a delta for every edge in either set of capacities
+	 */
+	private static List<edgeDelta> getDeltas(
+			Map<ProcessVertex, Map<ProcessVertex, Integer>> oldCapacities,
+			Map<ProcessVertex, Map<ProcessVertex, Integer>> newCapacities) {
+		List<edgeDelta> deltas = new ArrayList<edgeDelta>();
+		Set<ProcessVertex> sources = new LinkedHashSet<ProcessVertex>(
+				oldCapacities.keySet());
+		sources.addAll(newCapacities.keySet());
+		for (ProcessVertex source : sources) {
+			Map<ProcessVertex, Integer> oldDestinations =
+					oldCapacities.get(source);
+			Map<ProcessVertex, Integer> newDestinations =
+					newCapacities.get(source);
+			Set<ProcessVertex> destinations =
+					new LinkedHashSet<ProcessVertex>();
+			if (oldDestinations != null) {
+				destinations.addAll(oldDestinations.keySet());
+			}
+			if (newDestinations != null) {
+				destinations.addAll(newDestinations.keySet());
+			}
+			for (ProcessVertex destination : destinations) {
+				Integer oldCapacity = (null == oldDestinations ? null
+						: oldDestinations.get(destination));
+				Integer newCapacity = (null == newDestinations ? null
+						: newDestinations.get(destination));
+				deltas.add(new edgeDelta(source, destination,
+						(null == newCapacity ? 0 : newCapacity)
+						- (null == oldCapacity ? 0 : oldCapacity)));
+			}
+		}
+		return deltas;
+	}
+
+	/**
+	 * Get the capacity changes applied to the cached max flows when the ETGs
+	 * were last built.
+	 * @return a delta for every edge of the changed devices
+	 */
+	public List<edgeDelta> getEdgeDeltas() {
+		return this.edgeDeltas;
+	}
+
+	/**
+	 * Get the parsed configurations.
+	 * @return parsed configurations, keyed by hostname
+	 */
+	public Map<String, VendorConfiguration> getVendorConfigurations() {
+		return this.vendorConfigs;
+	}
+
+	/**
+	 * Get the raw configurations.
+	 * @return raw configurations, keyed by hostname
+	 */
+	public Map<String, String> getRawConfigurations() {
+		return this.rawConfigs;
+	}
+
+	/**
+	 * Get the devices.
+	 * @return devices, ordered by hostname
+	 */
+	public List<Device> getDevices() {
+		return new ArrayList<Device>(this.devices.values());
+	}
+
+	/**
+	 * Get the device-based ETG.
+	 * @return device-based ETG, or null if it has not been built
+	 */
+	public DeviceGraph getDeviceEtg() {
+		return this.deviceEtg;
+	}
+
+	/**
+	 * Get the process-based ETG.
+	 * @return process-based ETG, or null if it has not been built
+	 */
+	public ProcessGraph getProcessEtg() {
+		return this.processEtg;
+	}
+}
@@ -58,6 +58,15 @@ public class Logger {
 		this.write(msg, Level.DEBUG);
 	}
 	
+    /**
+     * Check if debug messages are logged, so callers can avoid constructing
+     * debug messages that will not be output.
+     * @return true if debug messages are logged; otherwise false
+     */
+    public boolean isDebugEnabled() {
+    	return (this.levelEnabled.compareTo(Level.DEBUG) >= 0);
+    }
+	
     /**
      * Output a message to the log if the level is higher than or equal to
      * the currently enabled logging level.
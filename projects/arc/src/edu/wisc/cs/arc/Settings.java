@@ -10,6 +10,10 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import edu.tsinghua.lyf.maxFlowutil;
+import edu.wisc.cs.arc.graphs.GraphDiameter;
+import edu.wisc.cs.arc.verifiers.VerificationResultSink;
+
 /**
  * Stores and parses settings for the ETG generator/verifier.
  * @author Aaron Gember-Jacobson (agember@cs.wisc.edu)
@@ -24,6 +28,7 @@ public class Settings {
 	private final static String ANONYMIZE = "anon";
 	private final static String IGNORED_POLICY_GROUP_SIZE = "minhosts";
 	private final static String PARALLELIZE = "parallelize";
+	private final static String THREADS = "threads";
 	private final static String GENERATE_GRAPHS = "graphs";
 	private final static String SERIALIZE_ETGS = "serialize";
 	private final static String WARN_ASSUMPTIONS = "warn";
@@ -43,9 +48,17 @@ public class Settings {
 	private final static String VERIFY_ALWAYS_BLOCKED = "vab";
 	private final static String VERIFY_ALWAYS_REACHABLE = "var";
 	private final static String VERIFY_ALWAYS_ISOLATED = "vai";
+	private final static String VERIFY_FAILURE_SCENARIOS = "failures";
 	private final static String VERIFY_PATHS = "vpaths";
 	private final static String VERIFY_EQUIVALENCE = "veq";
 	private final static String DETAILED_TIMING = "t";
+	private final static String MAX_FLOW_ENGINE = "maxflow";
+	private final static String INCREMENTAL = "incremental";
+	private final static String CACHE = "cache";
+	private final static String COMPACT = "compact";
+	private final static String RESULTS_FORMAT = "results";
+	private final static String RESULTS_FILE = "resultsfile";
+	private final static String DIAMETER = "diameter";
 	
 	/** Where are the config files store? */
 	private String configsDirectory;
@@ -59,6 +72,9 @@ public class Settings {
 	/** Should ETGs be generated and verified in parallel? */
 	private boolean parallelize;
 	
+	/** How many threads should be used to verify ETGs in parallel? */
+	private int threads;
+	
 	/** Where should graph files be stored? */
 	private String graphsDirectory;
 	
@@ -113,6 +129,10 @@ public class Settings {
 	/** Should the always isolated verifier be run? */
 	private boolean verifyAlwaysIsolated;
 	
+	/** Maximum number of link failures in the scenarios to enumerate; -1 if
+	 * scenarios should not be enumerated */
+	private int verifyFailureScenarios;
+	
 	/** Should the paths verifier be run? */
 	private String verifyPaths;
 	
@@ -122,6 +142,31 @@ public class Settings {
 	/** Should per-flow timing information be output during verification? */
 	private boolean perflowVerifcationTimes;
 	
+	/** Which max-flow algorithm should be used for verifying always 
+	 * reachable? */
+	private String maxFlowEngine;
+	
+	/** Should devices whose configurations are unchanged since the previous
+	 * run be reused? */
+	private boolean incremental;
+	
+	/** Where should parsed configurations and ETGs be cached? null if they
+	 * should not be cached */
+	private String cacheDirectory;
+	
+	/** Should verifiers run on compact, array-based forms of the ETGs? */
+	private boolean compact;
+	
+	/** How should verification results be output? */
+	private String resultsFormat;
+	
+	/** Where should verification results be written? */
+	private String resultsFile;
+	
+	/** How should the diameter of the base ETG be computed? null if it
+	 * should not be computed */
+	private String diameter;
+	
 	/** Logger */
 	private Logger logger;
 	
@@ -171,6 +216,16 @@ public class Settings {
 					"Ignored policy group size is not a number");
 		}
 		this.parallelize = line.hasOption(PARALLELIZE);
+		try {
+			this.threads = Integer.parseInt(line.getOptionValue(THREADS,
+					Integer.toString(
+					Runtime.getRuntime().availableProcessors())));
+		} catch(NumberFormatException e) {
+			throw new ParseException("Thread count is not a number");
+		}
+		if (this.threads < 1) {
+			throw new ParseException("Thread count must be at least 1");
+		}
 		this.graphsDirectory = line.getOptionValue(GENERATE_GRAPHS);
 		this.serializedETGsFile = line.getOptionValue(SERIALIZE_ETGS);
 		this.warnAssumptions = line.hasOption(WARN_ASSUMPTIONS);
@@ -190,6 +245,7 @@ public class Settings {
 			this.verifyAlwaysBlocked = true;
 			this.verifyAlwaysReachable = 1;
 			this.verifyAlwaysIsolated = true;
+			this.verifyFailureScenarios = -1;
 		}
 		else {
 			this.verifyCurrentlyBlocked = 
@@ -203,10 +259,57 @@ public class Settings {
 						"Failure bound is not a number");
 			}
 			this.verifyAlwaysIsolated = line.hasOption(VERIFY_ALWAYS_ISOLATED);
+			try {
+				this.verifyFailureScenarios = Integer.parseInt(
+						line.getOptionValue(VERIFY_FAILURE_SCENARIOS, "-1"));
+			} catch(NumberFormatException e) {
+				throw new ParseException(
+						"Failure bound is not a number");
+			}
 			this.verifyPaths = line.getOptionValue(VERIFY_PATHS);
 			this.verifyEquivalence = line.getOptionValue(VERIFY_EQUIVALENCE);
 		}
 		this.perflowVerifcationTimes = line.hasOption(DETAILED_TIMING);
+		this.maxFlowEngine = line.getOptionValue(MAX_FLOW_ENGINE,
+				maxFlowutil.DINIC);
+		if (null == maxFlowutil.newEngine(this.maxFlowEngine)) {
+			throw new ParseException("Unknown max-flow engine: " 
+					+ this.maxFlowEngine);
+		}
+		this.incremental = line.hasOption(INCREMENTAL);
+		if (this.incremental && this.anonymize) {
+			throw new ParseException("Option -" + INCREMENTAL 
+					+ " cannot be combined with -" + ANONYMIZE);
+		}
+		this.cacheDirectory = line.getOptionValue(CACHE);
+		if (this.incremental && this.cacheDirectory != null) {
+			throw new ParseException("Option -" + INCREMENTAL 
+					+ " cannot be combined with -" + CACHE);
+		}
+		this.compact = line.hasOption(COMPACT);
+		this.resultsFormat = line.getOptionValue(RESULTS_FORMAT,
+				VerificationResultSink.STDOUT);
+		this.resultsFile = line.getOptionValue(RESULTS_FILE);
+		if (!VerificationResultSink.STDOUT.equals(this.resultsFormat)
+				&& !VerificationResultSink.COUNT.equals(this.resultsFormat)
+				&& !VerificationResultSink.CSV.equals(this.resultsFormat)
+				&& !VerificationResultSink.NDJSON.equals(this.resultsFormat)) {
+			throw new ParseException("Unknown results format: "
+					+ this.resultsFormat);
+		}
+		if ((VerificationResultSink.CSV.equals(this.resultsFormat)
+				|| VerificationResultSink.NDJSON.equals(this.resultsFormat))
+				&& null == this.resultsFile) {
+			throw new ParseException("Option -" + RESULTS_FORMAT + " "
+					+ this.resultsFormat + " requires -" + RESULTS_FILE);
+		}
+		this.diameter = line.getOptionValue(DIAMETER);
+		if (this.diameter != null
+				&& !GraphDiameter.EXACT.equals(this.diameter)
+				&& !GraphDiameter.BOUND.equals(this.diameter)) {
+			throw new ParseException("Unknown diameter mode: "
+					+ this.diameter);
+		}
 	}
 	
 	/**
@@ -235,6 +338,11 @@ public class Settings {
 		options.addOption(PARALLELIZE, false,
 				"Generate and verify ETGs in parallel");
 		
+		option = new Option(THREADS, true,
+				"Use N threads to verify ETGs in parallel");
+		option.setArgName("N");
+		options.addOption(option);
+		
 		option = new Option(GENERATE_GRAPHS, true,
 				"Generate graph files in DIR");
 		option.setArgName("DIR");
@@ -299,6 +407,12 @@ public class Settings {
 		options.addOption(VERIFY_ALWAYS_ISOLATED, false,
 				"Verify always isolated");
 		
+		option = new Option(VERIFY_FAILURE_SCENARIOS, true,
+				"Verify reachable in every scenario with at most K link"
+				+ " failures");
+		option.setArgName("K");
+		options.addOption(option);
+		
 		option = new Option(VERIFY_PATHS, true, 
 				"Verify paths computed using ETGs are equivalent to paths"
 				+ " computed using output from Parse Cisco Virtual Internet"
@@ -314,6 +428,46 @@ public class Settings {
 		
 		options.addOption(DETAILED_TIMING, false,
 				"Output per-flow (pair) verification times information");
+		
+		option = new Option(MAX_FLOW_ENGINE, true,
+				"Use ENGINE (" + maxFlowutil.EDMONDS_KARP + ", " 
+				+ maxFlowutil.DINIC + ", or " + maxFlowutil.PUSH_RELABEL 
+				+ ") to compute max flows when verifying always reachable");
+		option.setArgName("ENGINE");
+		options.addOption(option);
+		
+		options.addOption(INCREMENTAL, false,
+				"Only re-parse and rebuild devices whose configurations changed"
+				+ " since the previous run");
+		
+		option = new Option(CACHE, true,
+				"Reuse parsed configurations and ETGs cached in DIR, keyed by"
+				+ " the contents of the configuration files");
+		option.setArgName("DIR");
+		options.addOption(option);
+		
+		options.addOption(COMPACT, false,
+				"Verify using compact, array-based forms of the ETGs");
+		
+		option = new Option(RESULTS_FORMAT, true,
+				"Output verification results as FORMAT ("
+				+ VerificationResultSink.STDOUT + ", "
+				+ VerificationResultSink.COUNT + ", "
+				+ VerificationResultSink.CSV + ", or "
+				+ VerificationResultSink.NDJSON + ")");
+		option.setArgName("FORMAT");
+		options.addOption(option);
+		
+		option = new Option(RESULTS_FILE, true,
+				"Write verification results to FILE");
+		option.setArgName("FILE");
+		options.addOption(option);
+		
+		option = new Option(DIAMETER, true,
+				"Compute the base ETG's diameter using MODE ("
+				+ GraphDiameter.EXACT + " or " + GraphDiameter.BOUND + ")");
+		option.setArgName("MODE");
+		options.addOption(option);
 		return options;
 	}
 	
@@ -359,6 +513,14 @@ public class Settings {
 		return this.parallelize;
 	}
 	
+	/**
+	 * Get the number of threads to use when verifying ETGs in parallel.
+	 * @return number of verification threads
+	 */
+	public int getThreadCount() {
+		return this.threads;
+	}
+	
 	/**
 	 * Determine if graph files should be generated.
 	 * @return true if graph files should be generated, otherwise false
@@ -540,6 +702,23 @@ public class Settings {
 		return this.verifyAlwaysIsolated;
 	}
 	
+	/**
+	 * Determine whether link failure scenarios should be enumerated.
+	 * @return true if the verifier should be run, otherwise false
+	 */
+	public boolean shouldVerifyFailureScenarios() {
+		return (this.verifyFailureScenarios >= 0);
+	}
+	
+	/**
+	 * Determine the maximum number of link failures in the scenarios to
+	 * enumerate.
+	 * @return the maximum number of link failures
+	 */
+	public int getMaxLinkFailures() {
+		return this.verifyFailureScenarios;
+	}
+	
 	/**
 	 * Determine whether the paths verifier should be run.
 	 * @return true if the verifier should be run, otherwise false
@@ -584,6 +763,83 @@ public class Settings {
 		return this.perflowVerifcationTimes;
 	}
 	
+	/**
+	 * Determine which max-flow algorithm should be used when verifying always
+	 * reachable.
+	 * @return the name of the max-flow engine
+	 */
+	public String getMaxFlowEngine() {
+		return this.maxFlowEngine;
+	}
+	
+	/**
+	 * Determine if devices whose configurations are unchanged since the
+	 * previous run should be reused.
+	 * @return true if only changed devices should be rebuilt, otherwise false
+	 */
+	public boolean shouldRunIncrementally() {
+		return this.incremental;
+	}
+	
+	/**
+	 * Determine if parsed configurations and ETGs should be cached on disk.
+	 * @return true if a cache should be used, otherwise false
+	 */
+	public boolean shouldUseCache() {
+		return (this.cacheDirectory != null);
+	}
+	
+	/**
+	 * Determine where parsed configurations and ETGs should be cached.
+	 * @return the directory in which to store cached entries
+	 */
+	public String getCacheDirectory() {
+		return this.cacheDirectory;
+	}
+	
+	/**
+	 * Determine if verifiers should run on compact, array-based forms of the
+	 * ETGs.
+	 * @return true if compact ETGs should be used, otherwise false
+	 */
+	public boolean shouldUseCompactEtgs() {
+		return this.compact;
+	}
+	
+	/**
+	 * Determine how verification results should be output.
+	 * @return the name of the results format
+	 */
+	public String getResultsFormat() {
+		return this.resultsFormat;
+	}
+	
+	/**
+	 * Get the path to the file where verification results should be written.
+	 * @return path to the results file; null if results are not written to a
+	 * 		file
+	 */
+	public String getResultsFile() {
+		return this.resultsFile;
+	}
+	
+	/**
+	 * Determine if the diameter of the base ETG should be computed.
+	 * @return true if the diameter should be computed, otherwise false
+	 */
+	public boolean shouldComputeDiameter() {
+		return (this.diameter != null);
+	}
+	
+	/**
+	 * Determine how the diameter of the base ETG should be computed.
+	 * @return {@link GraphDiameter#EXACT} or {@link GraphDiameter#BOUND}; null
+	 * 		if the diameter should not be computed
+	 */
+	public String getDiameterMode() {
+		return this.diameter;
+	}
+	
 	/**
 	 * Get the logger.
 	 * @return logger for producing output
@@ -604,20 +860,31 @@ public class Settings {
 				+ this.useDescriptions;
 		result += "\nConvert process-based ETG to interface-based ETG: "
 				+ this.interfaceBased;
-		result += "\nParallelize: " + this.parallelize;
+		result += "\nParallelize: " + this.parallelize + " threads="
+				+ this.threads;
+		result += "\nIncremental: " + this.incremental;
+		result += "\nCache directory: " + this.cacheDirectory;
 		result += "\nPrune: " + this.prune;
+		result += "\nCompact: " + this.compact;
 		result += "\nGraphs directory: " + this.graphsDirectory;
 		result += "\nSerialized ETGs file: " + this.serializedETGsFile;
 		result += "\nVerify currently blocked: " + this.verifyCurrentlyBlocked;
 		result += "\nVerify always blocked: " + this.verifyAlwaysBlocked;
 		result += "\nVerify always reachable: "
 				+ this.shouldVerifyAlwaysReachable() + " K="
-				+ this.verifyAlwaysReachable;
+				+ this.verifyAlwaysReachable
+				+ " engine=" + this.maxFlowEngine;
 		result += "\nVerify always isolated: " + this.verifyAlwaysIsolated;
+		result += "\nVerify failure scenarios: "
+				+ this.shouldVerifyFailureScenarios() + " K="
+				+ this.verifyFailureScenarios;
 		result += "\nVerify paths: "+this.shouldVerifyPaths() + " VIRL log=" 
 				+ this.verifyPaths;
 		result += "\nVerify equivalence: "+this.shouldVerifyEquivalence()
 				+ " Comparison ETGs=" + this.getComparisonETGsFile();
+		result += "\nResults format: " + this.resultsFormat + " file="
+				+ this.resultsFile;
+		result += "\nDiameter: " + this.diameter;
 		return result;
 	}
 }
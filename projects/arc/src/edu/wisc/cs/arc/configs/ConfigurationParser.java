@@ -46,6 +46,7 @@ public class ConfigurationParser {
 	private Map<String, VendorConfiguration> vendorConfigurations;
 	private Map<String, Configuration> genericConfigurations;
 	private Map<String, String> rawConfigurations;
+	private Map<File, String> hostnames;
 
 	public ConfigurationParser(Logger logger, String path, boolean parallelize){
 		this.logger = logger;
@@ -64,7 +65,21 @@ public class ConfigurationParser {
 
 	public Map<String, VendorConfiguration> parse() {
 		try {
-			Map<File, String> configurationData = this.readConfigurationFiles();
+			return this.parse(this.readConfigurationFiles());
+		}
+		catch (BatfishException e) {
+			throw new GeneratorException("Failed to parse configs", e);
+		}
+	}
+	
+	/**
+	 * Parse a subset of the configuration files.
+	 * @param configurationData the text of each configuration file to parse
+	 * @return the parsed configurations, keyed by lowercase hostname
+	 */
+	public Map<String, VendorConfiguration> parse(
+			Map<File, String> configurationData) {
+		try {
 			this.vendorConfigurations = 
 					this.parseVendorConfigurations(configurationData);
 			//this.genericConfigurations = 
@@ -84,7 +99,11 @@ public class ConfigurationParser {
 		return this.genericConfigurations;
 	}
 
-	private Map<File, String> readConfigurationFiles() {
+	/**
+	 * Read the text of every configuration file in the configs directory.
+	 * @return the text of each configuration file
+	 */
+	public Map<File, String> readConfigurationFiles() {
 		logger.info("*** Reading configuration files ***");
 		Map<File, String> configurationData = new TreeMap<File, String>();
 		File configsPath = Paths.get(path).toFile();
@@ -137,6 +156,7 @@ public class ConfigurationParser {
 	    Map<String, VendorConfiguration> vendorConfigurations = new TreeMap<String, VendorConfiguration>();
 	    List<ParseVendorConfigurationJob> jobs = new ArrayList<ParseVendorConfigurationJob>();
 	    this.rawConfigurations = new TreeMap<String, String>();
+	    this.hostnames = new TreeMap<File, String>();
 
 	    boolean processingError = false;
 	    for (File currentFile : configurationData.keySet()) {
@@ -205,6 +225,7 @@ public class ConfigurationParser {
 	    						vendorConfigurations.put(hostname, vc);
 	    						this.rawConfigurations.put(hostname, 
 	    								configurationData.get(result.getFile()));
+	    						this.hostnames.put(result.getFile(), hostname);
 	    					}
 	    				}
 	    			}
@@ -283,4 +304,12 @@ public class ConfigurationParser {
 	public Map<String, String> getRawConfigurations() {
 		return this.rawConfigurations;
 	}
+	
+	/**
+	 * Get the hostname declared in each successfully parsed file.
+	 * @return lowercase hostnames keyed by configuration file
+	 */
+	public Map<File, String> getHostnames() {
+		return this.hostnames;
+	}
 }
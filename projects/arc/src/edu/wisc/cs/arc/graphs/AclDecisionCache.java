@@ -0,0 +1,162 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers whether a compiled ACL blocks traffic between policy groups, so
+ * each decision is evaluated once per run even though the same ACL is checked
+ * for every flow-specific ETG that contains an edge with the ACL. The cache is
+ * safe to share between threads constructing ETGs.
+ */
+public class AclDecisionCache {
+
+	/** Default maximum number of decisions to remember */
+	public static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+	/** Number of bits used for each policy group identifier in a key */
+	private static final int GROUP_BITS = 22;
+
+	/** Number of bits used for the ACL identifier in a key */
+	private static final int ACL_BITS = 63 - 2 * GROUP_BITS;
+
+	/** Identifiers assigned to ACLs */
+	private ConcurrentMap<CompiledAcl, Integer> aclIds;
+
+	/** Identifiers assigned to policy groups */
+	private ConcurrentMap<PolicyGroup, Integer> groupIds;
+
+	/** Next identifier to assign to an ACL */
+	private AtomicInteger nextAclId;
+
+	/** Next identifier to assign to a policy group; 0 is reserved for
+	 * decisions that do not depend on a policy group */
+	private AtomicInteger nextGroupId;
+
+	/** Cached decisions, keyed by ACL and policy group identifiers */
+	private ConcurrentMap<Long, Boolean> decisions;
+
+	/** Maximum number of decisions to remember */
+	private int maxSize;
+
+	/** Number of lookups answered from the cache */
+	private AtomicLong hits;
+
+	/** Number of lookups that required evaluating the ACL */
+	private AtomicLong misses;
+
+	/**
+	 * Create a cache that holds up to the default number of decisions.
+	 */
+	public AclDecisionCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Create a cache.
+	 * @param maxSize maximum number of decisions to remember; once the cache
+	 * 			is full, new decisions are evaluated but not remembered
+	 */
+	public AclDecisionCache(int maxSize) {
+		this.aclIds = new ConcurrentHashMap<CompiledAcl, Integer>();
+		this.groupIds = new ConcurrentHashMap<PolicyGroup, Integer>();
+		this.nextAclId = new AtomicInteger(0);
+		this.nextGroupId = new AtomicInteger(1);
+		this.decisions = new ConcurrentHashMap<Long, Boolean>();
+		this.maxSize = maxSize;
+		this.hits = new AtomicLong(0);
+		this.misses = new AtomicLong(0);
+	}
+
+	/**
+	 * Checks if a compiled ACL blocks a flow.
+	 * @param acl the ACL to check
+	 * @param flow the flow whose traffic should be checked
+	 * @return true if the flow is blocked by the ACL; otherwise false
+	 */
+	public boolean isBlocked(CompiledAcl acl, Flow flow) {
+		PolicyGroup source = flow.getSource();
+		PolicyGroup destination = (acl.isExtended() ? flow.getDestination()
+				: null);
+		if (null == source || (acl.isExtended() && null == destination)) {
+			return flow.isBlocked(acl);
+		}
+
+		long aclId = getId(this.aclIds, acl, this.nextAclId);
+		long sourceId = getId(this.groupIds, source, this.nextGroupId);
+		long destinationId = (null == destination ? 0
+				: getId(this.groupIds, destination, this.nextGroupId));
+		if (aclId >= (1L << ACL_BITS) || sourceId >= (1L << GROUP_BITS)
+				|| destinationId >= (1L << GROUP_BITS)) {
+			this.misses.incrementAndGet();
+			return flow.isBlocked(acl);
+		}
+		Long key = (aclId << (2 * GROUP_BITS)) | (sourceId << GROUP_BITS)
+				| destinationId;
+
+		Boolean blocked = this.decisions.get(key);
+		if (blocked != null) {
+			this.hits.incrementAndGet();
+			return blocked;
+		}
+		this.misses.incrementAndGet();
+		blocked = flow.isBlocked(acl);
+		if (this.decisions.size() < this.maxSize) {
+			this.decisions.put(key, blocked);
+		}
+		return blocked;
+	}
+
+	/**
+	 * Get the identifier for an object, assigning a new identifier if the
+	 * object does not already have one.
+	 * @param ids identifiers assigned so far
+	 * @param object the object whose identifier to get
+	 * @param nextId the next unassigned identifier
+	 * @return the object's identifier
+	 */
+	private static <T> int getId(ConcurrentMap<T, Integer> ids, T object,
+			AtomicInteger nextId) {
+		Integer id = ids.get(object);
+		if (null == id) {
+			Integer newId = nextId.getAndIncrement();
+			id = ids.putIfAbsent(object, newId);
+			if (null == id) {
+				id = newId;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Get the number of lookups answered from the cache.
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Get the number of lookups that required evaluating an ACL.
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Get the number of decisions currently remembered.
+	 * @return number of cached decisions
+	 */
+	public int size() {
+		return this.decisions.size();
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + this.getHits() + " misses=" + this.getMisses()
+				+ " size=" + this.size();
+	}
+}
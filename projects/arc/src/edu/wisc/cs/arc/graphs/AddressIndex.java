@@ -0,0 +1,174 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.batfish.representation.Ip;
+
+/**
+ * Index of interface addresses, so the interfaces whose address falls within
+ * a policy group can be found with a binary search rather than by checking
+ * every address in the network. Addresses are identified by their position in
+ * the map from which the index was built, and lookups return positions in
+ * that order.
+ */
+public class AddressIndex {
+	
+	/** Addresses, in the order of the map from which the index was built */
+	private List<Entry<Ip, Map<Device, Interface>>> entries;
+	
+	/** Addresses in ascending order */
+	private long[] sortedAddresses;
+	
+	/** Position of each address in ascending order */
+	private int[] sortedPositions;
+	
+	/**
+	 * Index interface addresses.
+	 * @param interfacesByAddress the interfaces on each device with each
+	 * 			address
+	 */
+	public AddressIndex(Map<Ip, Map<Device, Interface>> interfacesByAddress) {
+		this.entries = new ArrayList<Entry<Ip, Map<Device, Interface>>>(
+				interfacesByAddress.entrySet());
+		
+		Integer[] order = new Integer[this.entries.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(getAddress(a).asLong(),
+						getAddress(b).asLong());
+			}
+		});
+		
+		this.sortedAddresses = new long[order.length];
+		this.sortedPositions = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			this.sortedPositions[i] = order[i];
+			this.sortedAddresses[i] = getAddress(order[i]).asLong();
+		}
+	}
+	
+	/**
+	 * Get the addresses that fall within a policy group.
+	 * @param group the policy group whose address range to check
+	 * @return positions of the addresses in the policy group, in the order of
+	 * 			the map from which the index was built
+	 */
+	public int[] getContained(PolicyGroup group) {
+		return this.getContained(group, this.findFirst(
+				group.getStartIp().asLong(), 0));
+	}
+	
+	/**
+	 * Get the addresses that fall within each of several policy groups. The
+	 * groups are visited in ascending order of their start address, and the
+	 * search for each group continues from where the search for the previous
+	 * group stopped, so all groups are answered in one sweep over the index.
+	 * @param groups the policy groups whose address ranges to check
+	 * @return positions of the addresses in each policy group, in the order of
+	 * 			the groups; the positions for a group are in the order of the
+	 * 			map from which the index was built
+	 */
+	public int[][] getContained(final List<PolicyGroup> groups) {
+		Integer[] order = new Integer[groups.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(groups.get(a).getStartIp().asLong(),
+						groups.get(b).getStartIp().asLong());
+			}
+		});
+		
+		int[][] contained = new int[order.length][];
+		int first = 0;
+		for (int i : order) {
+			PolicyGroup group = groups.get(i);
+			first = this.findFirst(group.getStartIp().asLong(), first);
+			contained[i] = this.getContained(group, first);
+		}
+		return contained;
+	}
+	
+	/**
+	 * Find the first address that is not below the start of a range. The
+	 * search gallops forward from a known lower bound and then performs a
+	 * binary search, so its cost grows with the distance skipped rather than
+	 * with the size of the index.
+	 * @param start the start of the range
+	 * @param from index, in ascending order, of an address that is not above
+	 * 			the first such address
+	 * @return index of the first address, in ascending order, that is not
+	 * 			below the start
+	 */
+	private int findFirst(long start, int from) {
+		int low = from;
+		int high = from;
+		int step = 1;
+		while (high < this.sortedAddresses.length
+				&& this.sortedAddresses[high] < start) {
+			low = high + 1;
+			high += step;
+			step <<= 1;
+		}
+		high = Math.min(high, this.sortedAddresses.length);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.sortedAddresses[middle] < start) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Get the addresses that fall within a policy group, starting from the
+	 * first address that is not below the start of the group.
+	 * @param group the policy group whose address range to check
+	 * @param first index, in ascending order, of the first address that is
+	 * 			not below the start of the group
+	 * @return positions of the addresses in the policy group, in the order of
+	 * 			the map from which the index was built
+	 */
+	private int[] getContained(PolicyGroup group, int first) {
+		long end = group.getEndIp().asLong();
+		int last = first;
+		while (last < this.sortedAddresses.length
+				&& this.sortedAddresses[last] <= end) {
+			last++;
+		}
+		int[] positions = Arrays.copyOfRange(this.sortedPositions, first, last);
+		Arrays.sort(positions);
+		return positions;
+	}
+	
+	/**
+	 * Get an indexed address.
+	 * @param position position of the address
+	 * @return the address
+	 */
+	public Ip getAddress(int position) {
+		return this.entries.get(position).getKey();
+	}
+	
+	/**
+	 * Get the interfaces with an indexed address.
+	 * @param position position of the address
+	 * @return the interface on each device with the address
+	 */
+	public Map<Device, Interface> getInterfaces(int position) {
+		return this.entries.get(position).getValue();
+	}
+}
@@ -0,0 +1,685 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import edu.wisc.cs.arc.graphs.DirectedEdge.EdgeType;
+
+/**
+ * An immutable, array-based form of an extended topology graph. Vertices are
+ * identified by integers and edges are stored in compressed sparse row form:
+ * the edges leaving a vertex occupy a contiguous range of edge identifiers,
+ * and the weight, type, and blocked flag of each edge are stored in primitive
+ * arrays indexed by edge identifier. Compact graphs created from the same base
+ * compact graph share its vertex identifiers.
+ */
+public class CompactGraph implements Serializable {
+	private static final long serialVersionUID = -2318706317469937315L;
+
+	/** Edge types, indexed by their ordinal */
+	private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+
+	/** Flow whose extended topology graph this is */
+	private Flow flow;
+
+	/** Vertices shared with other compact graphs, indexed by identifier */
+	private Vertex[] sharedVertices;
+
+	/** Identifiers of shared vertices */
+	private Map<Vertex,Integer> sharedIds;
+
+	/** Vertices that are specific to this graph, indexed by identifier minus
+	 * the number of shared vertices */
+	private Vertex[] localVertices;
+
+	/** Identifiers of vertices that are specific to this graph */
+	private Map<Vertex,Integer> localIds;
+
+	/** Identifiers of the vertices representing the flow's sources */
+	private Map<PolicyGroup,Integer> flowSourceIds;
+
+	/** Identifier of the vertex representing the flow's destination */
+	private int flowDestinationId;
+
+	/** Source vertex of each edge */
+	private int[] edgeSources;
+
+	/** Destination vertex of each edge */
+	private int[] edgeDestinations;
+
+	/** Weight of each edge */
+	private double[] edgeWeights;
+
+	/** Ordinal of the type of each edge */
+	private byte[] edgeTypes;
+
+	/** Whether an ACL blocks the flow on each edge */
+	private boolean[] edgeBlocked;
+
+	/** Edges leaving vertex v are outOffsets[v] to outOffsets[v+1]-1 */
+	private int[] outOffsets;
+
+	/** Edges entering vertex v are inEdges[inOffsets[v]] to
+	 * inEdges[inOffsets[v+1]-1] */
+	private int[] inOffsets;
+
+	/** Edges ordered by destination vertex */
+	private int[] inEdges;
+
+	/**
+	 * Create a compact form of an extended topology graph.
+	 * @param etg the extended topology graph to convert
+	 * @param base compact graph whose vertex identifiers should be reused;
+	 *		null to assign new identifiers to all vertices
+	 */
+	<V extends Vertex> CompactGraph(ExtendedTopologyGraph<V> etg,
+			CompactGraph base) {
+		this.flow = etg.getFlow();
+
+		// Assign vertex identifiers
+		List<Vertex> newVertices = new ArrayList<Vertex>();
+		Map<Vertex,Integer> newIds = new HashMap<Vertex,Integer>();
+		int sharedCount = 0;
+		if (base != null) {
+			this.sharedVertices = base.sharedVertices;
+			this.sharedIds = base.sharedIds;
+			sharedCount = this.sharedVertices.length;
+		}
+		Iterator<V> vertexIterator = etg.getVerticesIterator();
+		while (vertexIterator.hasNext()) {
+			V vertex = vertexIterator.next();
+			if (base != null && this.sharedIds.containsKey(vertex)) {
+				continue;
+			}
+			newIds.put(vertex, sharedCount + newVertices.size());
+			newVertices.add(vertex);
+		}
+		if (null == base) {
+			this.sharedVertices = newVertices.toArray(
+					new Vertex[newVertices.size()]);
+			this.sharedIds = newIds;
+			this.localVertices = new Vertex[0];
+			this.localIds = new HashMap<Vertex,Integer>();
+		}
+		else {
+			this.localVertices = newVertices.toArray(
+					new Vertex[newVertices.size()]);
+			this.localIds = newIds;
+		}
+		int vertexCount = this.getVertexCount();
+
+		// Collect edges, counting the edges leaving and entering each vertex
+		int edgeCount = etg.getEdgeCount();
+		int[] sources = new int[edgeCount];
+		int[] destinations = new int[edgeCount];
+		List<DirectedEdge<V>> edges = new ArrayList<DirectedEdge<V>>(
+				edgeCount);
+		this.outOffsets = new int[vertexCount + 1];
+		this.inOffsets = new int[vertexCount + 1];
+		Iterator<DirectedEdge<V>> edgeIterator = etg.getEdgesIterator();
+		while (edgeIterator.hasNext()) {
+			DirectedEdge<V> edge = edgeIterator.next();
+			int index = edges.size();
+			sources[index] = this.getVertexId(edge.getSource());
+			destinations[index] = this.getVertexId(edge.getDestination());
+			this.outOffsets[sources[index] + 1]++;
+			this.inOffsets[destinations[index] + 1]++;
+			edges.add(edge);
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			this.outOffsets[v + 1] += this.outOffsets[v];
+			this.inOffsets[v + 1] += this.inOffsets[v];
+		}
+
+		// Order edges by source vertex, preserving the graph's edge order
+		this.edgeSources = new int[edgeCount];
+		this.edgeDestinations = new int[edgeCount];
+		this.edgeWeights = new double[edgeCount];
+		this.edgeTypes = new byte[edgeCount];
+		this.edgeBlocked = new boolean[edgeCount];
+		this.inEdges = new int[edgeCount];
+		int[] nextOut = Arrays.copyOf(this.outOffsets, vertexCount);
+		int[] nextIn = Arrays.copyOf(this.inOffsets, vertexCount);
+		for (int index = 0; index < edgeCount; index++) {
+			DirectedEdge<V> edge = edges.get(index);
+			int id = nextOut[sources[index]]++;
+			this.edgeSources[id] = sources[index];
+			this.edgeDestinations[id] = destinations[index];
+			this.edgeWeights[id] = edge.getWeight();
+			this.edgeTypes[id] = (byte)(null == edge.getType() ? -1
+					: edge.getType().ordinal());
+			this.edgeBlocked[id] = etg.isBlocked(edge);
+			this.inEdges[nextIn[destinations[index]]++] = id;
+		}
+
+		// Identify endpoint vertices
+		this.flowSourceIds = new HashMap<PolicyGroup,Integer>();
+		if (etg.getFlowSourceVertices() != null) {
+			for (Entry<PolicyGroup, V> entry :
+					etg.getFlowSourceVertices().entrySet()) {
+				this.flowSourceIds.put(entry.getKey(),
+						this.getVertexId(entry.getValue()));
+			}
+		}
+		this.flowDestinationId = this.getVertexId(
+				etg.getFlowDestinationVertex());
+	}
+
+	/**
+	 * Get the flow associated with the graph.
+	 * @return the flow associated with the graph, null if the graph is not
+	 *		customized to a particular flow
+	 */
+	public Flow getFlow() {
+		return this.flow;
+	}
+
+	/**
+	 * Get the number of vertex identifiers. Vertices that are shared with
+	 * other compact graphs, but are not part of this graph, have no edges.
+	 * @return the number of vertex identifiers
+	 */
+	public int getVertexCount() {
+		return this.sharedVertices.length + this.localVertices.length;
+	}
+
+	/**
+	 * Get the number of edges in the graph.
+	 * @return the number of edges in the graph
+	 */
+	public int getEdgeCount() {
+		return this.edgeSources.length;
+	}
+
+	/**
+	 * Get a vertex based on its identifier.
+	 * @param id vertex identifier
+	 * @return the vertex with the identifier
+	 */
+	public Vertex getVertex(int id) {
+		if (id < this.sharedVertices.length) {
+			return this.sharedVertices[id];
+		}
+		return this.localVertices[id - this.sharedVertices.length];
+	}
+
+	/**
+	 * Get the identifier of a vertex.
+	 * @param vertex the vertex whose identifier to get
+	 * @return the identifier of the vertex, -1 if the vertex has no identifier
+	 */
+	public int getVertexId(Vertex vertex) {
+		if (null == vertex) {
+			return -1;
+		}
+		Integer id = this.sharedIds.get(vertex);
+		if (null == id) {
+			id = this.localIds.get(vertex);
+		}
+		return (null == id ? -1 : id);
+	}
+
+	/**
+	 * Get the identifier another compact graph uses for a vertex in this
+	 * graph.
+	 * @param other the compact graph whose identifier to get
+	 * @param id identifier of the vertex in this graph
+	 * @return the identifier of the vertex in the other graph, -1 if the other
+	 *		graph has no such vertex
+	 */
+	public int getVertexId(CompactGraph other, int id) {
+		if (id < this.sharedVertices.length
+				&& this.sharedVertices == other.sharedVertices) {
+			return id;
+		}
+		return other.getVertexId(this.getVertex(id));
+	}
+
+	/**
+	 * Get the identifier of the vertex representing a source of the flow.
+	 * @param source source policy group
+	 * @return identifier of the source vertex, -1 if none exists
+	 */
+	public int getFlowSourceId(PolicyGroup source) {
+		Integer id = this.flowSourceIds.get(source);
+		return (null == id ? -1 : id);
+	}
+
+	/**
+	 * Get the identifier of the vertex representing the flow's destination.
+	 * @return identifier of the destination vertex, -1 if none exists
+	 */
+	public int getFlowDestinationId() {
+		return this.flowDestinationId;
+	}
+
+	/**
+	 * Get the identifier of the first edge leaving a vertex. The edges leaving
+	 * the vertex have identifiers from this value up to, but excluding,
+	 * {@link #getOutEdgesEnd(int)}.
+	 * @param vertex vertex identifier
+	 * @return identifier of the first edge leaving the vertex
+	 */
+	public int getOutEdgesStart(int vertex) {
+		return this.outOffsets[vertex];
+	}
+
+	/**
+	 * Get the identifier after the last edge leaving a vertex.
+	 * @param vertex vertex identifier
+	 * @return identifier after the last edge leaving the vertex
+	 */
+	public int getOutEdgesEnd(int vertex) {
+		return this.outOffsets[vertex + 1];
+	}
+
+	/**
+	 * Get the number of edges entering a vertex.
+	 * @param vertex vertex identifier
+	 * @return number of edges entering the vertex
+	 */
+	public int getInDegree(int vertex) {
+		return this.inOffsets[vertex + 1] - this.inOffsets[vertex];
+	}
+
+	/**
+	 * Get one of the edges entering a vertex.
+	 * @param vertex vertex identifier
+	 * @param index index of the edge, from 0 to the vertex's in-degree
+	 * @return identifier of the edge
+	 */
+	public int getInEdge(int vertex, int index) {
+		return this.inEdges[this.inOffsets[vertex] + index];
+	}
+
+	/**
+	 * Get the source vertex of an edge.
+	 * @param edge edge identifier
+	 * @return identifier of the edge's source vertex
+	 */
+	public int getEdgeSource(int edge) {
+		return this.edgeSources[edge];
+	}
+
+	/**
+	 * Get the destination vertex of an edge.
+	 * @param edge edge identifier
+	 * @return identifier of the edge's destination vertex
+	 */
+	public int getEdgeDestination(int edge) {
+		return this.edgeDestinations[edge];
+	}
+
+	/**
+	 * Get the weight of an edge.
+	 * @param edge edge identifier
+	 * @return weight of the edge
+	 */
+	public double getEdgeWeight(int edge) {
+		return this.edgeWeights[edge];
+	}
+
+	/**
+	 * Get the type of an edge.
+	 * @param edge edge identifier
+	 * @return type of the edge, null if the edge has no type
+	 */
+	public EdgeType getEdgeType(int edge) {
+		if (this.edgeTypes[edge] < 0) {
+			return null;
+		}
+		return EDGE_TYPES[this.edgeTypes[edge]];
+	}
+
+	/**
+	 * Check if an ACL prevents the flow's traffic from traversing an edge.
+	 * @param edge edge identifier
+	 * @return true if an ACL blocks traffic on the edge, otherwise false
+	 */
+	public boolean isBlocked(int edge) {
+		return this.edgeBlocked[edge];
+	}
+
+	/**
+	 * Find the edge between two vertices.
+	 * @param source source vertex identifier
+	 * @param destination destination vertex identifier
+	 * @return identifier of the edge, -1 if none exists
+	 */
+	public int getEdge(int source, int destination) {
+		if (source < 0 || destination < 0) {
+			return -1;
+		}
+		for (int e = this.outOffsets[source]; e < this.outOffsets[source + 1];
+				e++) {
+			if (this.edgeDestinations[e] == destination) {
+				return e;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if a path exists between two vertices.
+	 * @param source source vertex identifier
+	 * @param destination destination vertex identifier
+	 * @return true if the destination is reachable from the source
+	 */
+	public boolean hasPath(int source, int destination) {
+		if (source < 0 || destination < 0) {
+			return false;
+		}
+		boolean[] visited = new boolean[this.getVertexCount()];
+		int[] queue = new int[this.getVertexCount()];
+		int head = 0;
+		int tail = 0;
+		visited[source] = true;
+		queue[tail++] = source;
+		while (head < tail) {
+			int vertex = queue[head++];
+			if (vertex == destination) {
+				return true;
+			}
+			for (int e = this.outOffsets[vertex];
+					e < this.outOffsets[vertex + 1]; e++) {
+				int next = this.edgeDestinations[e];
+				if (!visited[next]) {
+					visited[next] = true;
+					queue[tail++] = next;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Find all vertices from which a vertex can be reached, using a
+	 * breadth-first search over incoming edges.
+	 * @param destination destination vertex identifier
+	 * @return identifiers of the vertices from which a path to the destination
+	 *		exists, including the destination itself
+	 */
+	public BitSet getVerticesReaching(int destination) {
+		BitSet reaching = new BitSet(this.getVertexCount());
+		if (destination < 0) {
+			return reaching;
+		}
+		int[] queue = new int[this.getVertexCount()];
+		int head = 0;
+		int tail = 0;
+		reaching.set(destination);
+		queue[tail++] = destination;
+		while (head < tail) {
+			int vertex = queue[head++];
+			for (int i = this.inOffsets[vertex];
+					i < this.inOffsets[vertex + 1]; i++) {
+				int previous = this.edgeSources[this.inEdges[i]];
+				if (!reaching.get(previous)) {
+					reaching.set(previous);
+					queue[tail++] = previous;
+				}
+			}
+		}
+		return reaching;
+	}
+
+	/**
+	 * Compute the maximum flow between two vertices.
+	 * @param source source vertex identifier
+	 * @param destination destination vertex identifier
+	 * @param capacities capacity of each edge
+	 * @param cutEdges list to which the identifiers of the edges forming a
+	 *		minimum cut are added; null if the cut is not needed
+	 * @return the value of the maximum flow
+	 */
+	public int getMaxFlow(int source, int destination, int[] capacities,
+			List<Integer> cutEdges) {
+		if (source < 0 || destination < 0) {
+			return 0;
+		}
+		int vertexCount = this.getVertexCount();
+		int[] flows = new int[this.getEdgeCount()];
+		int[] parents = new int[vertexCount];
+		int[] queue = new int[vertexCount];
+		boolean[] reached = new boolean[vertexCount];
+		int total = 0;
+		while (true) {
+			// Find a shortest augmenting path in the residual graph; a parent
+			// e >= 0 is a forward edge and ~e is a backward edge
+			Arrays.fill(reached, false);
+			int head = 0;
+			int tail = 0;
+			reached[source] = true;
+			queue[tail++] = source;
+			while (head < tail && !reached[destination]) {
+				int vertex = queue[head++];
+				for (int e = this.outOffsets[vertex];
+						e < this.outOffsets[vertex + 1]; e++) {
+					int next = this.edgeDestinations[e];
+					if (!reached[next] && flows[e] < capacities[e]) {
+						reached[next] = true;
+						parents[next] = e;
+						queue[tail++] = next;
+					}
+				}
+				for (int i = this.inOffsets[vertex];
+						i < this.inOffsets[vertex + 1]; i++) {
+					int e = this.inEdges[i];
+					int next = this.edgeSources[e];
+					if (!reached[next] && flows[e] > 0) {
+						reached[next] = true;
+						parents[next] = ~e;
+						queue[tail++] = next;
+					}
+				}
+			}
+			if (!reached[destination]) {
+				break;
+			}
+
+			// Push as much flow as possible along the path
+			int bottleneck = Integer.MAX_VALUE;
+			for (int v = destination; v != source; ) {
+				int e = parents[v];
+				if (e >= 0) {
+					bottleneck = Math.min(bottleneck, capacities[e] - flows[e]);
+					v = this.edgeSources[e];
+				}
+				else {
+					bottleneck = Math.min(bottleneck, flows[~e]);
+					v = this.edgeDestinations[~e];
+				}
+			}
+			for (int v = destination; v != source; ) {
+				int e = parents[v];
+				if (e >= 0) {
+					flows[e] += bottleneck;
+					v = this.edgeSources[e];
+				}
+				else {
+					flows[~e] -= bottleneck;
+					v = this.edgeDestinations[~e];
+				}
+			}
+			total += bottleneck;
+		}
+
+		// Edges from vertices reachable in the residual graph to vertices that
+		// are not reachable form a minimum cut
+		if (cutEdges != null) {
+			for (int e = 0; e < this.getEdgeCount(); e++) {
+				if (reached[this.edgeSources[e]]
+						&& !reached[this.edgeDestinations[e]]
+						&& capacities[e] > 0) {
+					cutEdges.add(e);
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Compute the minimum weight of a path from a vertex to every vertex.
+	 * @param source source vertex identifier
+	 * @return the minimum path weight for each vertex, with infinity for
+	 *		vertices that are not reachable from the source
+	 */
+	public double[] getShortestDistances(int source) {
+		int vertexCount = this.getVertexCount();
+		double[] distances = new double[vertexCount];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		if (source < 0) {
+			return distances;
+		}
+
+		// Binary heap of vertices keyed by distance; positions are -1 for
+		// vertices that have not been queued and -2 for settled vertices
+		int[] heap = new int[vertexCount];
+		int[] positions = new int[vertexCount];
+		Arrays.fill(positions, -1);
+		int size = 0;
+		distances[source] = 0;
+		heap[size] = source;
+		positions[source] = size++;
+		while (size > 0) {
+			int vertex = heap[0];
+			positions[vertex] = -2;
+			size--;
+			if (size > 0) {
+				heap[0] = heap[size];
+				positions[heap[0]] = 0;
+				this.siftDown(heap, positions, distances, size, 0);
+			}
+			for (int e = this.outOffsets[vertex];
+					e < this.outOffsets[vertex + 1]; e++) {
+				int next = this.edgeDestinations[e];
+				double distance = distances[vertex] + this.edgeWeights[e];
+				if (positions[next] == -2 || distance >= distances[next]) {
+					continue;
+				}
+				distances[next] = distance;
+				if (positions[next] == -1) {
+					heap[size] = next;
+					positions[next] = size++;
+				}
+				this.siftUp(heap, positions, distances, positions[next]);
+			}
+		}
+		return distances;
+	}
+
+	private void siftUp(int[] heap, int[] positions, double[] keys, int index) {
+		int vertex = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (keys[heap[parent]] <= keys[vertex]) {
+				break;
+			}
+			heap[index] = heap[parent];
+			positions[heap[index]] = index;
+			index = parent;
+		}
+		heap[index] = vertex;
+		positions[vertex] = index;
+	}
+
+	private void siftDown(int[] heap, int[] positions, double[] keys,
+			int size, int index) {
+		int vertex = heap[index];
+		while (2 * index + 1 < size) {
+			int child = 2 * index + 1;
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+				child++;
+			}
+			if (keys[vertex] <= keys[heap[child]]) {
+				break;
+			}
+			heap[index] = heap[child];
+			positions[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = vertex;
+		positions[vertex] = index;
+	}
+
+	/**
+	 * Find paths of minimum weight between two vertices.
+	 * @param source source vertex identifier
+	 * @param destination destination vertex identifier
+	 * @param limit maximum number of paths to find
+	 * @return up to limit loop-free paths of minimum weight, each given as the
+	 *		list of vertex identifiers from the source to the destination
+	 */
+	public List<List<Integer>> getShortestPaths(int source, int destination,
+			int limit) {
+		List<List<Integer>> paths = new ArrayList<List<Integer>>();
+		double[] distances = this.getShortestDistances(source);
+		if (destination < 0 || Double.isInfinite(distances[destination])) {
+			return paths;
+		}
+
+		// Find the vertices that can reach the destination using only edges
+		// that lie on a shortest path
+		int vertexCount = this.getVertexCount();
+		boolean[] onShortestPath = new boolean[vertexCount];
+		int[] stack = new int[vertexCount];
+		int top = 0;
+		onShortestPath[destination] = true;
+		stack[top++] = destination;
+		while (top > 0) {
+			int vertex = stack[--top];
+			for (int i = this.inOffsets[vertex];
+					i < this.inOffsets[vertex + 1]; i++) {
+				int e = this.inEdges[i];
+				int previous = this.edgeSources[e];
+				if (!onShortestPath[previous]
+						&& this.isTight(distances, e)) {
+					onShortestPath[previous] = true;
+					stack[top++] = previous;
+				}
+			}
+		}
+
+		// Enumerate paths along such edges
+		List<Integer> path = new ArrayList<Integer>();
+		path.add(source);
+		this.extendShortestPaths(distances, onShortestPath, path,
+				new boolean[vertexCount], destination, limit, paths);
+		return paths;
+	}
+
+	private boolean isTight(double[] distances, int edge) {
+		return (distances[this.edgeSources[edge]]
+				+ this.edgeWeights[edge] == distances[this.edgeDestinations[edge]]);
+	}
+
+	private void extendShortestPaths(double[] distances,
+			boolean[] onShortestPath, List<Integer> path, boolean[] onPath,
+			int destination, int limit, List<List<Integer>> paths) {
+		int vertex = path.get(path.size() - 1);
+		if (vertex == destination) {
+			paths.add(new ArrayList<Integer>(path));
+			return;
+		}
+		onPath[vertex] = true;
+		for (int e = this.outOffsets[vertex];
+				e < this.outOffsets[vertex + 1] && paths.size() < limit; e++) {
+			int next = this.edgeDestinations[e];
+			if (onShortestPath[next] && !onPath[next]
+					&& this.isTight(distances, e)) {
+				path.add(next);
+				this.extendShortestPaths(distances, onShortestPath, path,
+						onPath, destination, limit, paths);
+				path.remove(path.size() - 1);
+			}
+		}
+		onPath[vertex] = false;
+	}
+}
@@ -0,0 +1,224 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.io.Serializable;
+
+import org.batfish.representation.LineAction;
+import org.batfish.representation.Prefix;
+import org.batfish.representation.cisco.ExtendedAccessList;
+import org.batfish.representation.cisco.ExtendedAccessListLine;
+import org.batfish.representation.cisco.StandardAccessList;
+import org.batfish.representation.cisco.StandardAccessListLine;
+
+/**
+ * An ACL compiled into a first-match decision structure. The source prefix of
+ * each line is stored in a binary trie, so the lines whose source prefix
+ * covers a policy group are found by walking the trie along the policy
+ * group's address bits. Destination prefixes are stored as precomputed address
+ * ranges. Matching a policy group does not allocate any objects.
+ *
+ * The semantics are the same as {@link Flow#isBlocked(StandardAccessList)}
+ * and {@link Flow#isBlocked(ExtendedAccessList)}: the first line whose
+ * prefixes contain the flow's source (and destination) determines the
+ * outcome, and flows that match no line are blocked.
+ */
+public class CompiledAcl implements Serializable {
+	private static final long serialVersionUID = 4319071651473810223L;
+
+	/** Number of bits in an IPv4 address */
+	private static final int ADDRESS_BITS = 32;
+
+	/** Name of the ACL */
+	private String name;
+
+	/** Whether the ACL also matches on destination addresses */
+	private boolean extended;
+
+	/** Whether each line rejects traffic */
+	private boolean[] rejects;
+
+	/** First destination address matched by each line */
+	private long[] destinationStarts;
+
+	/** Last destination address matched by each line */
+	private long[] destinationEnds;
+
+	/** Root of the trie of source prefixes */
+	private TrieNode root;
+
+	/**
+	 * A node in the trie of source prefixes.
+	 */
+	private static class TrieNode implements Serializable {
+		private static final long serialVersionUID = -2106442318837580117L;
+
+		/** Children for the next address bit being 0 or 1 */
+		private TrieNode[] children = new TrieNode[2];
+
+		/** Lines, in ACL order, whose source prefix ends at this node */
+		private int[] lines = new int[0];
+	}
+
+	/**
+	 * Compile a standard ACL.
+	 * @param acl the ACL to compile
+	 */
+	public CompiledAcl(StandardAccessList acl) {
+		this(acl.getId(), false, acl.getLines().size());
+		int index = 0;
+		for (StandardAccessListLine line : acl.getLines()) {
+			Prefix prefix = new Prefix(line.getIP(),
+					ADDRESS_BITS - line.getWildcard().numWildcardBits());
+			this.addLine(index++, prefix, null,
+					line.getAction() == LineAction.REJECT);
+		}
+	}
+
+	/**
+	 * Compile an extended ACL.
+	 * @param acl the ACL to compile
+	 */
+	public CompiledAcl(ExtendedAccessList acl) {
+		this(acl.getId(), true, acl.getLines().size());
+		int index = 0;
+		for (ExtendedAccessListLine line : acl.getLines()) {
+			Prefix sourcePrefix = new Prefix(line.getSourceIp(),
+					ADDRESS_BITS - line.getSourceWildcard().numWildcardBits());
+			Prefix destinationPrefix = new Prefix(line.getDestinationIp(),
+					ADDRESS_BITS
+					- line.getDestinationWildcard().numWildcardBits());
+			// FIXME: Also check ports
+			this.addLine(index++, sourcePrefix, destinationPrefix,
+					line.getAction() == LineAction.REJECT);
+		}
+	}
+
+	/**
+	 * Create an empty compiled ACL.
+	 * @param name name of the ACL
+	 * @param extended whether the ACL matches on destination addresses
+	 * @param numLines number of lines in the ACL
+	 */
+	private CompiledAcl(String name, boolean extended, int numLines) {
+		this.name = name;
+		this.extended = extended;
+		this.rejects = new boolean[numLines];
+		this.destinationStarts = new long[numLines];
+		this.destinationEnds = new long[numLines];
+		this.root = new TrieNode();
+	}
+
+	/**
+	 * Add a line to the compiled ACL.
+	 * @param index position of the line in the ACL
+	 * @param sourcePrefix source prefix matched by the line
+	 * @param destinationPrefix destination prefix matched by the line; null
+	 * 			for standard ACLs
+	 * @param reject whether the line rejects traffic
+	 */
+	private void addLine(int index, Prefix sourcePrefix,
+			Prefix destinationPrefix, boolean reject) {
+		this.rejects[index] = reject;
+		if (destinationPrefix != null) {
+			this.destinationStarts[index] =
+					destinationPrefix.getNetworkAddress().asLong();
+			this.destinationEnds[index] =
+					destinationPrefix.getEndAddress().asLong();
+		}
+
+		// Lines are added in order, so the lines at each node stay sorted
+		long address = sourcePrefix.getNetworkAddress().asLong();
+		int length = sourcePrefix.getPrefixLength();
+		TrieNode node = this.root;
+		for (int depth = 0; depth < length; depth++) {
+			int bit = getBit(address, depth);
+			if (null == node.children[bit]) {
+				node.children[bit] = new TrieNode();
+			}
+			node = node.children[bit];
+		}
+		int[] lines = new int[node.lines.length + 1];
+		System.arraycopy(node.lines, 0, lines, 0, node.lines.length);
+		lines[node.lines.length] = index;
+		node.lines = lines;
+	}
+
+	/**
+	 * Get a bit of an address.
+	 * @param address the address
+	 * @param depth the position of the bit, starting from the most significant
+	 * @return the bit
+	 */
+	private static int getBit(long address, int depth) {
+		return (int)((address >>> (ADDRESS_BITS - 1 - depth)) & 1);
+	}
+
+	/**
+	 * Get the name of the ACL.
+	 * @return name of the ACL
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Determine whether the ACL also matches on destination addresses.
+	 * @return true if the ACL is an extended ACL; otherwise false
+	 */
+	public boolean isExtended() {
+		return this.extended;
+	}
+
+	/**
+	 * Checks if traffic between two policy groups is blocked by the ACL.
+	 * @param source the entities sending traffic
+	 * @param destination the entities receiving traffic; ignored for standard
+	 * 			ACLs
+	 * @return true if the traffic is blocked by the ACL; otherwise false
+	 */
+	public boolean isBlocked(PolicyGroup source, PolicyGroup destination) {
+		long sourceStart = source.getStartIp().asLong();
+		long sourceEnd = source.getEndIp().asLong();
+		long destinationStart = 0;
+		long destinationEnd = 0;
+		if (this.extended) {
+			destinationStart = destination.getStartIp().asLong();
+			destinationEnd = destination.getEndIp().asLong();
+		}
+
+		// Only prefixes along the bits shared by the first and last source
+		// address can contain the entire source
+		int first = Integer.MAX_VALUE;
+		TrieNode node = this.root;
+		int depth = 0;
+		while (node != null) {
+			for (int line : node.lines) {
+				if (line >= first) {
+					break;
+				}
+				if (!this.extended
+						|| (destinationStart >= this.destinationStarts[line]
+						&& destinationEnd <= this.destinationEnds[line])) {
+					first = line;
+					break;
+				}
+			}
+			if (depth == ADDRESS_BITS) {
+				break;
+			}
+			int bit = getBit(sourceStart, depth);
+			if (bit != getBit(sourceEnd, depth)) {
+				break;
+			}
+			node = node.children[bit];
+			depth++;
+		}
+
+		// "By default, there is an implicit deny all clause at the end of every
+		// ACL."
+		// [http://cisco.com/c/en/us/support/docs/ip/access-lists/26448-ACLsamples.html]
+		if (first == Integer.MAX_VALUE) {
+			return true;
+		}
+		return this.rejects[first];
+	}
+}
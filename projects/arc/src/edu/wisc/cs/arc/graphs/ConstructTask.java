@@ -1,5 +1,6 @@
 package edu.wisc.cs.arc.graphs;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,7 +10,7 @@ import java.util.concurrent.Callable;
 import edu.wisc.cs.arc.graphs.Flow;
 
 /**
- * A task that invokes a constructor to make a flow-specific extended topology 
+ * A task that invokes a constructor to make a flow-specific extended topology
  * graph.
  * @author Aaron Gember-Jacobson (agember@cs.wisc.edu)
  */
@@ -18,13 +19,23 @@ public class ConstructTask implements Callable<Map<Flow,ExtendedTopologyGraph>>
 
 	/** Non-flow-specific extended topology graph */
 	private ExtendedTopologyGraph baseEtg;
-	
+
 	/** Queue from which to pull flows to verify */
 	private Queue<Flow> queue;
 
 	/** Data Structure that maps a given flow to its list of sources */
 	private Map<PolicyGroup, List<PolicyGroup>> dstToSources;
-	
+
+	/** Compact form of the base ETG whose vertex identifiers the compact
+	 * flow ETGs reuse; null if flow ETGs should not be converted */
+	private CompactGraph compactBaseEtg;
+
+	/** Whether to prune flow ETGs before converting them */
+	private boolean prune;
+
+	/** Compact ETG for each flow; null if flow ETGs are not converted */
+	private Map<Flow, CompactGraph> compactEtgs;
+
 	/**
 	 * Create a task to invoke a constructor to make flow-specific extended
 	 * topology graphs.
@@ -33,33 +44,77 @@ public class ConstructTask implements Callable<Map<Flow,ExtendedTopologyGraph>>
 	 */
 	public ConstructTask(ExtendedTopologyGraph baseEtg, Queue<Flow> queue,
 						 Map<PolicyGroup, List<PolicyGroup>> dstToSources) {
+		this(baseEtg, queue, dstToSources, null, false);
+	}
+
+	/**
+	 * Create a task to invoke a constructor to make flow-specific extended
+	 * topology graphs and convert each of them to compact form as soon as it
+	 * is made. The flow-specific extended topology graphs are not kept.
+	 * @param baseEtg non-flow-specific extended topology graph
+	 * @param queue queue from which to pull flows to verify
+	 * @param compactBaseEtg compact form of the base ETG; null if flow ETGs
+	 * 		should be kept rather than converted
+	 * @param prune whether to prune flow ETGs before converting them
+	 */
+	public ConstructTask(ExtendedTopologyGraph baseEtg, Queue<Flow> queue,
+						 Map<PolicyGroup, List<PolicyGroup>> dstToSources,
+						 CompactGraph compactBaseEtg, boolean prune) {
 		this.baseEtg = baseEtg;
 		this.queue = queue;
 		this.dstToSources = dstToSources;
+		this.compactBaseEtg = compactBaseEtg;
+		this.prune = prune;
+		if (compactBaseEtg != null) {
+			this.compactEtgs = new LinkedHashMap<Flow, CompactGraph>();
+		}
 	}
-	
+
 	/**
 	 * Pulls flows from a queue and invokes the constructor for a flow-specific
 	 * extended topology graph for each flow, until the queue is empty.
 	 * @return extended topology graph for each flow for which the constructor
-	 * 			was invoked
+	 * 			was invoked; empty if the graphs were converted to compact form
 	 */
 	@Override
 	public Map<Flow,ExtendedTopologyGraph> call() throws Exception {
         int count = 0;
-		Map<Flow, ExtendedTopologyGraph> results = 
+		Map<Flow, ExtendedTopologyGraph> results =
 				new LinkedHashMap<Flow, ExtendedTopologyGraph>();
 		Flow flow = this.queue.poll();
 		while(flow != null) {
-			ExtendedTopologyGraph flowEtg = 
+			ExtendedTopologyGraph flowEtg =
 					(ExtendedTopologyGraph)this.baseEtg.clone();
+			List<Flow> flows = new ArrayList<Flow>();
 			if (flow.hasWildcardSource()) {
-				flowEtg.customize(flow, 
-						this.dstToSources.get(flow.getDestination()));
+				List<PolicyGroup> sources =
+						this.dstToSources.get(flow.getDestination());
+				flowEtg.customize(flow, sources);
+				for (PolicyGroup source : sources) {
+					flows.add(new Flow(source, flow.getDestination()));
+				}
 			} else {
 				flowEtg.customize(flow);
+				flows.add(flow);
+			}
+
+			// Keep the graph, or only its compact form; a wildcard graph is
+			// converted once and shared by all of its flows
+			if (null == this.compactEtgs) {
+				for (Flow customFlow : flows) {
+					results.put(customFlow, flowEtg);
+				}
+			}
+			else {
+				if (this.prune) {
+					flowEtg.prune();
+				}
+				CompactGraph compactEtg =
+						flowEtg.toCompactGraph(this.compactBaseEtg);
+				for (Flow customFlow : flows) {
+					this.compactEtgs.put(customFlow, compactEtg);
+				}
 			}
-			results.put(flow, flowEtg);
             count++;
             if (count % 100 == 0) {
                 baseEtg.logger.debug("Constructed "+count+" ETGs");
@@ -68,4 +123,14 @@ public class ConstructTask implements Callable<Map<Flow,ExtendedTopologyGraph>>
 		}
 		return results;
 	}
+
+	/**
+	 * Get the compact form of the extended topology graph for each flow for
+	 * which the constructor was invoked.
+	 * @return compact extended topology graph for each flow; null if the
+	 * 		graphs were not converted
+	 */
+	public Map<Flow, CompactGraph> getCompactEtgs() {
+		return this.compactEtgs;
+	}
 }
@@ -3,8 +3,10 @@ package edu.wisc.cs.arc.graphs;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.batfish.representation.Ip;
 import org.batfish.representation.Prefix;
@@ -45,6 +47,12 @@ public class Device implements Serializable {
 	/** Extended ACLs on the device */
 	private Map<String, ExtendedAccessList> extendedAcls;
 	
+	/** Compiled standard ACLs on the device */
+	private Map<String, CompiledAcl> compiledStandardAcls;
+	
+	/** Compiled extended ACLs on the device */
+	private Map<String, CompiledAcl> compiledExtendedAcls;
+	
 	/** Route maps on the device */
 	private Map<String, RouteMap> routeMaps;
 	
@@ -64,6 +72,8 @@ public class Device implements Serializable {
 		this.routingProcesses = new ArrayList<Process>();
 		this.standardAcls = null;
 		this.extendedAcls = null;
+		this.compiledStandardAcls = null;
+		this.compiledExtendedAcls = null;
 		this.routeMaps = null;
 		this.prefixLists = null;
 		this.external = true;
@@ -87,6 +97,25 @@ public class Device implements Serializable {
 		this.routeMaps = routeMaps;
 		this.prefixLists = prefixLists;
 		this.external = false;
+		
+		// Compile ACLs once, since they are checked for every edge of every
+		// flow's ETG
+		if (standardAcls != null) {
+			this.compiledStandardAcls = new HashMap<String, CompiledAcl>();
+			for (Entry<String, StandardAccessList> entry : 
+					standardAcls.entrySet()) {
+				this.compiledStandardAcls.put(entry.getKey(),
+						new CompiledAcl(entry.getValue()));
+			}
+		}
+		if (extendedAcls != null) {
+			this.compiledExtendedAcls = new HashMap<String, CompiledAcl>();
+			for (Entry<String, ExtendedAccessList> entry : 
+					extendedAcls.entrySet()) {
+				this.compiledExtendedAcls.put(entry.getKey(),
+						new CompiledAcl(entry.getValue()));
+			}
+		}
 	}
 	
 	/**
@@ -340,6 +369,32 @@ public class Device implements Serializable {
 		return this.extendedAcls.get(name);
 	}
 	
+	/**
+	 * Get the compiled form of a specific standard ACL on the device.
+	 * @param name name of the ACL
+	 * @return the compiled standard ACL with the given name; null if none 
+	 * 		exists
+	 */
+	public CompiledAcl getCompiledStandardAcl(String name) {
+		if (this.compiledStandardAcls == null) {
+			return null;
+		}
+		return this.compiledStandardAcls.get(name);
+	}
+	
+	/**
+	 * Get the compiled form of a specific extended ACL on the device.
+	 * @param name name of the ACL
+	 * @return the compiled extended ACL with the given name; null if none 
+	 * 		exists
+	 */
+	public CompiledAcl getCompiledExtendedAcl(String name) {
+		if (this.compiledExtendedAcls == null) {
+			return null;
+		}
+		return this.compiledExtendedAcls.get(name);
+	}
+	
 	/**
 	 * Get a specific route map on the device.
 	 * @param name name of the route map
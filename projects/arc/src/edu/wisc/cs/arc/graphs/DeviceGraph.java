@@ -447,10 +447,10 @@ public class DeviceGraph extends ExtendedTopologyGraph<DeviceVertex> {
 							destinationVertex, 0, EdgeType.INTER_DEVICE,
 							sourceIface, destinationIface);
 					if (null == sourceIface) {
-						edge.checkAndBlockIncoming(flow, device);
+						this.checkAndBlockIncoming(edge, flow, device);
 					}
 					else {
-						edge.checkAndBlockOutgoing(flow, device);
+						this.checkAndBlockOutgoing(edge, flow, device);
 					}
 				}
 			}
@@ -469,7 +469,7 @@ public class DeviceGraph extends ExtendedTopologyGraph<DeviceVertex> {
 			if (null == edge.getSourceInterface()) {
 				continue;
 			}
-			edge.checkAndBlockOutgoing(this.getFlow(), device);
+			this.checkAndBlockOutgoing(edge, this.getFlow(), device);
 		}
 		
 		for (DirectedEdge<DeviceVertex> edge : 
@@ -477,7 +477,7 @@ public class DeviceGraph extends ExtendedTopologyGraph<DeviceVertex> {
 			if (null == edge.getDestinationInterface()) {
 				continue;
 			}
-			edge.checkAndBlockIncoming(this.getFlow(), device);
+			this.checkAndBlockIncoming(edge, this.getFlow(), device);
 		}
 	
 		// FIXME: Account for route-maps
@@ -1,7 +1,5 @@
 package edu.wisc.cs.arc.graphs;
 
-import org.batfish.representation.cisco.ExtendedAccessList;
-import org.batfish.representation.cisco.StandardAccessList;
 import org.jgrapht.graph.DefaultWeightedEdge;
 
 /**
@@ -18,8 +16,6 @@ public class DirectedEdge<V extends Vertex> extends DefaultWeightedEdge {
 	
 	private Interface destinationInterface = null;
 	
-	private boolean blocked = false;
-	
 	public enum EdgeType {
 		INTER_DEVICE,
 		INTRA_DEVICE,
@@ -106,52 +102,75 @@ public class DirectedEdge<V extends Vertex> extends DefaultWeightedEdge {
 	}
 	
 	/**
-	 * Indicate that an ACL prevents traffic from traversing the edge.
+	 * Check if the outgoing ACL on the edge's source interface prevents a
+	 * flow's traffic from traversing the edge. Whether the edge is blocked is
+	 * recorded by the flow's extended topology graph, because edges are
+	 * shared between the graphs for different flows.
+	 * @param flow the flow whose traffic should be checked
+	 * @param device the device to which the source interface belongs
+	 * @param decisions cache of ACL decisions; null to always evaluate ACLs
+	 * @return true if an ACL blocks the flow on the edge, otherwise false
 	 */
-	public void markBlocked() {
-		this.blocked = true;
-	}
-	
-	/**
-	 * Check if an ACL prevents traffic from traversing the edge.
-	 * @return true if an ACL blocks traffic on the edge, otherwise false
-	 */
-	public boolean isBlocked() {
-		return this.blocked;
-	}
-	
-	public void checkAndBlockOutgoing(Flow flow, Device device) {
+	public boolean isBlockedOutgoing(Flow flow, Device device,
+			AclDecisionCache decisions) {
 		Interface iface = this.getSourceInterface();
         if (null == iface) {
-            return; // FIXME
+            return false; // FIXME
         }
 		if (iface.getOutgoingFilter() != null) {
-			StandardAccessList stdAcl = device.getStandardAcl(
+			CompiledAcl stdAcl = device.getCompiledStandardAcl(
 							iface.getOutgoingFilter());
-			ExtendedAccessList extAcl = device.getExtendedAcl(
+			CompiledAcl extAcl = device.getCompiledExtendedAcl(
 							iface.getOutgoingFilter());
-			if ((stdAcl != null && flow.isBlocked(stdAcl))
-					|| (extAcl != null && flow.isBlocked(extAcl))) {
-				this.markBlocked();
+			if ((stdAcl != null && isBlocked(stdAcl, flow, decisions))
+					|| (extAcl != null && isBlocked(extAcl, flow, decisions))) {
+				return true;
 			}
 		}
+		return false;
 	}
 	
-	public void checkAndBlockIncoming(Flow flow, Device device) {
+	/**
+	 * Check if the incoming ACL on the edge's destination interface prevents
+	 * a flow's traffic from traversing the edge.
+	 * @param flow the flow whose traffic should be checked
+	 * @param device the device to which the destination interface belongs
+	 * @param decisions cache of ACL decisions; null to always evaluate ACLs
+	 * @return true if an ACL blocks the flow on the edge, otherwise false
+	 */
+	public boolean isBlockedIncoming(Flow flow, Device device,
+			AclDecisionCache decisions) {
 		Interface iface = this.getDestinationInterface();
         if (null == iface) {
-            return; // FIXME
+            return false; // FIXME
         }
 		if (iface.getIncomingFilter() != null) {
-			StandardAccessList stdAcl = device.getStandardAcl(
+			CompiledAcl stdAcl = device.getCompiledStandardAcl(
 							iface.getIncomingFilter());
-			ExtendedAccessList extAcl = device.getExtendedAcl(
+			CompiledAcl extAcl = device.getCompiledExtendedAcl(
 							iface.getIncomingFilter());
-			if ((stdAcl != null && flow.isBlocked(stdAcl))
-					|| (extAcl != null && flow.isBlocked(extAcl))) {
-				this.markBlocked();
+			if ((stdAcl != null && isBlocked(stdAcl, flow, decisions))
+					|| (extAcl != null && isBlocked(extAcl, flow, decisions))) {
+				return true;
 			}
 		}
+		return false;
+	}
+	
+	/**
+	 * Check if an ACL blocks a flow, consulting a cache of decisions if one
+	 * is provided.
+	 * @param acl the ACL to check
+	 * @param flow the flow whose traffic should be checked
+	 * @param decisions cache of ACL decisions; null to always evaluate ACLs
+	 * @return true if the ACL blocks the flow, otherwise false
+	 */
+	private static boolean isBlocked(CompiledAcl acl, Flow flow,
+			AclDecisionCache decisions) {
+		if (null == decisions) {
+			return flow.isBlocked(acl);
+		}
+		return decisions.isBlocked(acl, flow);
 	}
 	
 	/**
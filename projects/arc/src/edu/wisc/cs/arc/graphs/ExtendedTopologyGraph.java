@@ -6,8 +6,7 @@ import java.util.*;
 
 import edu.wisc.cs.arc.modifiers.CanonicalETGConverter;
 import edu.wisc.cs.arc.modifiers.ModifierException;
-import org.jgrapht.Graphs;
-import org.jgrapht.graph.DefaultDirectedWeightedGraph;
+import org.jgrapht.DirectedGraph;
 
 import edu.wisc.cs.arc.GeneratorException;
 import edu.wisc.cs.arc.Logger;
@@ -30,8 +29,15 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
   /** Settings for ETG generation */
   protected transient Settings settings;
 
-  /** Underlying graph representation */
-  private DefaultDirectedWeightedGraph<V,DirectedEdge<V>> graph;
+  /** Underlying graph representation; for a flow-specific graph this is an
+   * overlay on top of the graph from which it was cloned */
+  private OverlayGraph<V> graph;
+
+  /** Edges through which an ACL prevents the flow's traffic from passing */
+  private Set<DirectedEdge<V>> blockedEdges;
+
+  /** Cache of ACL decisions shared by all graphs cloned from this graph */
+  private transient AclDecisionCache aclDecisions;
 
   /** Flow whose extended topology graph this is */
   private Flow flow;
@@ -49,8 +55,8 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
     this.settings = settings;
     this.logger = settings.getLogger();
     this.flow = null;
-    this.graph = new DefaultDirectedWeightedGraph<V,DirectedEdge<V>>(
-        new DirectedEdgeFactory<V>());
+    this.graph = new OverlayGraph<V>(new DirectedEdgeFactory<V>());
+    this.blockedEdges = new HashSet<DirectedEdge<V>>();
   }
 
   /**
@@ -76,7 +82,10 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
   }*/
 
   /**
-   * Create a copy of the extended topology graph.
+   * Create a copy of the extended topology graph. The copy shares the
+   * vertices and edges of this graph and only stores the vertices and edges
+   * that are subsequently added to, removed from, or changed in the copy.
+   * This graph must not be modified while the copy is in use.
    * @return a new extended topology graph
    */
   @SuppressWarnings("unchecked")
@@ -90,14 +99,9 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
     }
     etgClone.logger = this.logger;
     etgClone.settings = this.settings;
-    etgClone.graph = new DefaultDirectedWeightedGraph<V,DirectedEdge<V>>(
-        new DirectedEdgeFactory<V>());
-    Graphs.addAllVertices(etgClone.graph, this.graph.vertexSet());
-    for (DirectedEdge<V> edge : this.graph.edgeSet()) {
-      etgClone.addEdge(edge.getSource(), edge.getDestination(),
-          edge.getWeight(), edge.getType(), edge.getSourceInterface(),
-          edge.getDestinationInterface());
-    }
+    etgClone.aclDecisions = this.aclDecisions;
+    etgClone.graph = new OverlayGraph<V>(this.graph);
+    etgClone.blockedEdges = new HashSet<DirectedEdge<V>>(this.blockedEdges);
     etgClone.flow = this.flow;
     etgClone.flowSourceVertices =
         etgClone.getFlowSourceVertices();
@@ -276,7 +280,7 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
       double weight, EdgeType type) {
     DirectedEdge<V> edge = this.graph.addEdge(source, destination);
     if (null == edge) {
-      edge = this.graph.getEdge(source, destination);
+      edge = this.getWritableEdge(this.graph.getEdge(source, destination));
     }
     this.graph.setEdgeWeight(edge, weight);
     edge.setType(type);
@@ -344,7 +348,94 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
   public void setEdgeWeight(V source, V destination, double weight){
     DirectedEdge<V> edge = this.graph.getEdge(source, destination);
     if (edge != null) {
-      this.graph.setEdgeWeight(edge, weight);
+      this.graph.setEdgeWeight(this.getWritableEdge(edge), weight);
+    }
+  }
+
+  /**
+   * Get a version of an edge that can be modified without affecting the
+   * graph from which this graph was cloned.
+   * @param edge an edge in the graph
+   * @return the edge, or the copy that replaced it in this graph
+   */
+  private DirectedEdge<V> getWritableEdge(DirectedEdge<V> edge) {
+    DirectedEdge<V> writable = this.graph.getWritableEdge(edge);
+    if (writable != edge && this.blockedEdges.remove(edge)) {
+      this.blockedEdges.add(writable);
+    }
+    return writable;
+  }
+
+  /**
+   * Indicate that an ACL prevents the flow's traffic from traversing an edge.
+   * @param edge the edge to mark as blocked
+   */
+  public void markBlocked(DirectedEdge<V> edge) {
+    this.blockedEdges.add(edge);
+  }
+
+  /**
+   * Check if an ACL prevents the flow's traffic from traversing an edge.
+   * @param edge the edge to check
+   * @return true if an ACL blocks traffic on the edge, otherwise false
+   */
+  public boolean isBlocked(DirectedEdge<V> edge) {
+    return this.blockedEdges.contains(edge);
+  }
+
+  /**
+   * Set the settings and logger used by this graph. They are not serialized,
+   * so they must be set again after the graph is read from disk.
+   * @param settings settings for ETG generation
+   */
+  public void setSettings(Settings settings) {
+    this.settings = settings;
+    this.logger = settings.getLogger();
+  }
+
+  /**
+   * Set the cache of ACL decisions used when customizing this graph and the
+   * graphs cloned from it.
+   * @param aclDecisions cache of ACL decisions; null to always evaluate ACLs
+   */
+  public void setAclDecisionCache(AclDecisionCache aclDecisions) {
+    this.aclDecisions = aclDecisions;
+  }
+
+  /**
+   * Get the cache of ACL decisions used when customizing this graph.
+   * @return cache of ACL decisions; null if ACLs are always evaluated
+   */
+  public AclDecisionCache getAclDecisionCache() {
+    return this.aclDecisions;
+  }
+
+  /**
+   * Mark an edge as blocked if the outgoing ACL on the edge's source
+   * interface blocks a flow.
+   * @param edge the edge to check
+   * @param flow the flow whose traffic should be checked
+   * @param device the device to which the edge's source interface belongs
+   */
+  protected void checkAndBlockOutgoing(DirectedEdge<V> edge, Flow flow,
+      Device device) {
+    if (edge.isBlockedOutgoing(flow, device, this.aclDecisions)) {
+      this.markBlocked(edge);
+    }
+  }
+
+  /**
+   * Mark an edge as blocked if the incoming ACL on the edge's destination
+   * interface blocks a flow.
+   * @param edge the edge to check
+   * @param flow the flow whose traffic should be checked
+   * @param device the device to which the edge's destination interface
+   *    belongs
+   */
+  protected void checkAndBlockIncoming(DirectedEdge<V> edge, Flow flow,
+      Device device) {
+    if (edge.isBlockedIncoming(flow, device, this.aclDecisions)) {
+      this.markBlocked(edge);
     }
   }
 
@@ -471,7 +562,7 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
       if (DirectedEdge.INFINITE_WEIGHT == edge.getWeight()) {
         label = "inf";
       }
-      if (edge.isBlocked()) {
+      if (this.isBlocked(edge)) {
           label += " [BLOCKED]";
       }
       gvCode += "\t\"" + edge.getSource().getName() + "\" -> \""
@@ -512,11 +603,12 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
     List<DirectedEdge<V>> edgesToRemove = new ArrayList<DirectedEdge<V>>();
     for (DirectedEdge<V> edge : this.graph.edgeSet()) {
       if (DirectedEdge.INFINITE_WEIGHT == edge.getWeight()
-          || edge.isBlocked()) {
+          || this.isBlocked(edge)) {
         edgesToRemove.add(edge);
       }
     }
     this.graph.removeAllEdges(edgesToRemove);
+    this.blockedEdges.removeAll(edgesToRemove);
 
     // Remove vertices with zero in-degree or zero out-degree
     List<V> verticesToRemove = new ArrayList<V>();
@@ -623,9 +715,27 @@ public abstract class ExtendedTopologyGraph<V extends Vertex> implements
     return this.graph.vertexSet().size();
   }
 
-  public DefaultDirectedWeightedGraph<V,DirectedEdge<V>> getGraph() {
+  public DirectedGraph<V,DirectedEdge<V>> getGraph() {
     return this.graph;
   }
+
+  /**
+   * Create an immutable, array-based form of the graph.
+   * @return a compact form of the graph
+   */
+  public CompactGraph toCompactGraph() {
+    return new CompactGraph(this, null);
+  }
+
+  /**
+   * Create an immutable, array-based form of the graph that reuses the
+   * vertex identifiers of another compact graph.
+   * @param base compact graph whose vertex identifiers should be reused
+   * @return a compact form of the graph
+   */
+  public CompactGraph toCompactGraph(CompactGraph base) {
+    return new CompactGraph(this, base);
+  }
   
   /**
    * Determine if two ETGs are equivalent.
@@ -174,6 +174,15 @@ public class Flow implements Serializable {
     	return true;
     }
     
+    /**
+     * Checks if the flow is blocked by a compiled ACL.
+     * @param acl compiled access control list to check
+     * @return true if the flow is blocked the ACL; otherwise false
+     */
+    public boolean isBlocked(CompiledAcl acl) {
+    	return acl.isBlocked(this.source, this.destination);
+    }
+    
     /**
      * Checks if the flow is blocked by a route map.
      * @param routeMap route map to check
@@ -0,0 +1,286 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Determines which flows need a flow-specific ETG and which flows can share
+ * an ETG with a wildcard source. A flow needs a flow-specific ETG if it is
+ * blocked by the incoming ACL of an interface whose prefix is contained in the
+ * flow's destination, or by the outgoing ACL of an interface whose prefix is
+ * contained in the flow's source.
+ *
+ * Rather than checking every (source, destination) pair against every
+ * interface, the planner evaluates each interface ACL once against the
+ * policy groups on the other end of the flow, so the cost is proportional to
+ * the number of ACL lines times the number of policy groups.
+ */
+public class FlowPlanner {
+
+	/** Policy groups from which flows are defined */
+	private List<PolicyGroup> policyGroups;
+
+	/** Destinations for which each source needs a flow-specific ETG */
+	private BitSet[] blockedDestinations;
+
+	/** Sources for which each destination needs a flow-specific ETG */
+	private BitSet[] blockedSources;
+
+	/** Sources blocked by each standard ACL */
+	private Map<CompiledAcl, BitSet> standardAclSources;
+
+	/** Sources blocked by each extended ACL for each destination */
+	private Map<CompiledAcl, Map<PolicyGroup, BitSet>> extendedAclSources;
+
+	/** Destinations blocked by each extended ACL for each source */
+	private Map<CompiledAcl, Map<PolicyGroup, BitSet>>
+			extendedAclDestinations;
+
+	/**
+	 * Plan the ETGs needed for all flows between a set of policy groups.
+	 * @param policyGroups the policy groups from which to define flows
+	 * @param devices the devices whose interface ACLs may block flows
+	 */
+	public FlowPlanner(Collection<PolicyGroup> policyGroups,
+			Collection<Device> devices) {
+		this.policyGroups = new ArrayList<PolicyGroup>(policyGroups);
+		this.blockedDestinations = new BitSet[this.policyGroups.size()];
+		this.blockedSources = new BitSet[this.policyGroups.size()];
+		this.standardAclSources = new HashMap<CompiledAcl, BitSet>();
+		this.extendedAclSources =
+				new HashMap<CompiledAcl, Map<PolicyGroup, BitSet>>();
+		this.extendedAclDestinations =
+				new HashMap<CompiledAcl, Map<PolicyGroup, BitSet>>();
+
+		for (Device device : devices) {
+			for (Interface iface : device.getInterfaces()) {
+				if (!iface.hasPrefix()) {
+					continue;
+				}
+				for (int i = 0; i < this.policyGroups.size(); i++) {
+					PolicyGroup group = this.policyGroups.get(i);
+					if (!group.contains(iface.getPrefix())) {
+						continue;
+					}
+					if (iface.getIncomingFilter() != null) {
+						this.planIncoming(i, device,
+								iface.getIncomingFilter());
+					}
+					if (iface.getOutgoingFilter() != null) {
+						this.planOutgoing(i, device,
+								iface.getOutgoingFilter());
+					}
+				}
+			}
+
+			// FIXME: Also check for static routes
+		}
+	}
+
+	/**
+	 * Mark the flows to a destination that are blocked by an incoming ACL.
+	 * @param destination index of the destination policy group
+	 * @param device device on which the ACL is defined
+	 * @param aclName name of the ACL
+	 */
+	private void planIncoming(int destination, Device device, String aclName) {
+		CompiledAcl stdAcl = device.getCompiledStandardAcl(aclName);
+		if (stdAcl != null) {
+			this.markBlocked(this.getBlockedSources(stdAcl), destination);
+		}
+		CompiledAcl extAcl = device.getCompiledExtendedAcl(aclName);
+		if (extAcl != null) {
+			this.markBlocked(this.getBlockedSources(extAcl,
+					this.policyGroups.get(destination)), destination);
+		}
+	}
+
+	/**
+	 * Mark the flows from a source that are blocked by an outgoing ACL.
+	 * @param source index of the source policy group
+	 * @param device device on which the ACL is defined
+	 * @param aclName name of the ACL
+	 */
+	private void planOutgoing(int source, Device device, String aclName) {
+		CompiledAcl stdAcl = device.getCompiledStandardAcl(aclName);
+		if (stdAcl != null && this.getBlockedSources(stdAcl).get(source)) {
+			BitSet all = new BitSet(this.policyGroups.size());
+			all.set(0, this.policyGroups.size());
+			this.markBlocked(source, all);
+		}
+		CompiledAcl extAcl = device.getCompiledExtendedAcl(aclName);
+		if (extAcl != null) {
+			this.markBlocked(source, this.getBlockedDestinations(extAcl,
+					this.policyGroups.get(source)));
+		}
+	}
+
+	/**
+	 * Get the sources blocked by a standard ACL.
+	 * @param acl the ACL to evaluate
+	 * @return indices of the blocked source policy groups
+	 */
+	private BitSet getBlockedSources(CompiledAcl acl) {
+		BitSet blocked = this.standardAclSources.get(acl);
+		if (null == blocked) {
+			blocked = new BitSet(this.policyGroups.size());
+			for (int s = 0; s < this.policyGroups.size(); s++) {
+				// Standard ACLs only consider the source
+				if (acl.isBlocked(this.policyGroups.get(s), null)) {
+					blocked.set(s);
+				}
+			}
+			this.standardAclSources.put(acl, blocked);
+		}
+		return blocked;
+	}
+
+	/**
+	 * Get the sources blocked by an extended ACL for a specific destination.
+	 * @param acl the ACL to evaluate
+	 * @param destination the destination of the flows
+	 * @return indices of the blocked source policy groups
+	 */
+	private BitSet getBlockedSources(CompiledAcl acl,
+			PolicyGroup destination) {
+		Map<PolicyGroup, BitSet> byDestination =
+				this.extendedAclSources.get(acl);
+		if (null == byDestination) {
+			byDestination = new HashMap<PolicyGroup, BitSet>();
+			this.extendedAclSources.put(acl, byDestination);
+		}
+		BitSet blocked = byDestination.get(destination);
+		if (null == blocked) {
+			blocked = new BitSet(this.policyGroups.size());
+			for (int s = 0; s < this.policyGroups.size(); s++) {
+				if (acl.isBlocked(this.policyGroups.get(s), destination)) {
+					blocked.set(s);
+				}
+			}
+			byDestination.put(destination, blocked);
+		}
+		return blocked;
+	}
+
+	/**
+	 * Get the destinations blocked by an extended ACL for a specific source.
+	 * @param acl the ACL to evaluate
+	 * @param source the source of the flows
+	 * @return indices of the blocked destination policy groups
+	 */
+	private BitSet getBlockedDestinations(CompiledAcl acl,
+			PolicyGroup source) {
+		Map<PolicyGroup, BitSet> bySource =
+				this.extendedAclDestinations.get(acl);
+		if (null == bySource) {
+			bySource = new HashMap<PolicyGroup, BitSet>();
+			this.extendedAclDestinations.put(acl, bySource);
+		}
+		BitSet blocked = bySource.get(source);
+		if (null == blocked) {
+			blocked = new BitSet(this.policyGroups.size());
+			for (int d = 0; d < this.policyGroups.size(); d++) {
+				if (acl.isBlocked(source, this.policyGroups.get(d))) {
+					blocked.set(d);
+				}
+			}
+			bySource.put(source, blocked);
+		}
+		return blocked;
+	}
+
+	/**
+	 * Mark flows from a set of sources to a destination as needing
+	 * flow-specific ETGs.
+	 * @param sources indices of the source policy groups
+	 * @param destination index of the destination policy group
+	 */
+	private void markBlocked(BitSet sources, int destination) {
+		for (int s = sources.nextSetBit(0); s >= 0;
+				s = sources.nextSetBit(s + 1)) {
+			this.markBlocked(s, destination);
+		}
+	}
+
+	/**
+	 * Mark flows from a source to a set of destinations as needing
+	 * flow-specific ETGs.
+	 * @param source index of the source policy group
+	 * @param destinations indices of the destination policy groups
+	 */
+	private void markBlocked(int source, BitSet destinations) {
+		for (int d = destinations.nextSetBit(0); d >= 0;
+				d = destinations.nextSetBit(d + 1)) {
+			this.markBlocked(source, d);
+		}
+	}
+
+	/**
+	 * Mark a flow as needing a flow-specific ETG.
+	 * @param source index of the source policy group
+	 * @param destination index of the destination policy group
+	 */
+	private void markBlocked(int source, int destination) {
+		if (source == destination) {
+			return;
+		}
+		if (null == this.blockedDestinations[source]) {
+			this.blockedDestinations[source] = new BitSet();
+		}
+		this.blockedDestinations[source].set(destination);
+		if (null == this.blockedSources[destination]) {
+			this.blockedSources[destination] = new BitSet();
+		}
+		this.blockedSources[destination].set(source);
+	}
+
+	/**
+	 * Get the flows that need flow-specific ETGs.
+	 * @return flows ordered by source and then destination
+	 */
+	public List<Flow> getCustomFlows() {
+		List<Flow> flows = new ArrayList<Flow>();
+		for (int s = 0; s < this.policyGroups.size(); s++) {
+			BitSet destinations = this.blockedDestinations[s];
+			if (null == destinations) {
+				continue;
+			}
+			for (int d = destinations.nextSetBit(0); d >= 0;
+					d = destinations.nextSetBit(d + 1)) {
+				flows.add(new Flow(this.policyGroups.get(s),
+						this.policyGroups.get(d)));
+			}
+		}
+		return flows;
+	}
+
+	/**
+	 * Get the sources that can share an ETG with a wildcard source for each
+	 * destination.
+	 * @return the sources for each destination; destinations for which all
+	 * 			flows need flow-specific ETGs are omitted
+	 */
+	public Map<PolicyGroup, List<PolicyGroup>> getWildcardSources() {
+		Map<PolicyGroup, List<PolicyGroup>> dstToSources =
+				new LinkedHashMap<PolicyGroup, List<PolicyGroup>>();
+		for (int d = 0; d < this.policyGroups.size(); d++) {
+			BitSet blocked = this.blockedSources[d];
+			List<PolicyGroup> sources = new ArrayList<PolicyGroup>();
+			for (int s = 0; s < this.policyGroups.size(); s++) {
+				if (s == d || (blocked != null && blocked.get(s))) {
+					continue;
+				}
+				sources.add(this.policyGroups.get(s));
+			}
+			if (sources.size() > 0) {
+				dstToSources.put(this.policyGroups.get(d), sources);
+			}
+		}
+		return dstToSources;
+	}
+}
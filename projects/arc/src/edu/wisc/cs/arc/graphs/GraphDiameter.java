@@ -0,0 +1,219 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wisc.cs.arc.GeneratorException;
+
+/**
+ * Computes the diameter of a graph: the largest number of hops on a shortest
+ * path between any two vertices, considering only pairs of vertices where the
+ * second vertex is reachable from the first. Hop distances are computed with
+ * breadth-first searches over a compact graph, so the cost is proportional to
+ * the number of vertices times the number of edges, rather than the cube of
+ * the number of vertices.
+ */
+public class GraphDiameter {
+	
+	/** Compute the exact diameter */
+	public static final String EXACT = "exact";
+	
+	/** Compute a lower bound on the diameter */
+	public static final String BOUND = "bound";
+	
+	/** Number of alternating forward and backward searches used to compute a
+	 * lower bound */
+	private static final int SWEEPS = 4;
+	
+	/** Graph whose diameter to compute */
+	private CompactGraph graph;
+	
+	/**
+	 * Prepare to compute the diameter of a graph.
+	 * @param graph graph whose diameter to compute
+	 */
+	public GraphDiameter(CompactGraph graph) {
+		this.graph = graph;
+	}
+	
+	/**
+	 * Compute the exact diameter with a breadth-first search from every
+	 * vertex.
+	 * @param parallelism number of threads to use for the searches
+	 * @return the diameter of the graph
+	 */
+	public int getDiameter(int parallelism) {
+		if (parallelism <= 1) {
+			return new EccentricityTask(new AtomicInteger(0)).call();
+		}
+		
+		// Each thread takes the next vertex from which to search
+		AtomicInteger nextVertex = new AtomicInteger(0);
+		ExecutorService threadPool = Executors.newFixedThreadPool(parallelism);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < parallelism; t++) {
+			futures.add(threadPool.submit(new EccentricityTask(nextVertex)));
+		}
+		
+		int diameter = 0;
+		try {
+			for (Future<Integer> future : futures) {
+				diameter = Math.max(diameter, future.get());
+			}
+		}
+		catch (Exception exception) {
+			throw new GeneratorException("Diameter computation failed",
+					exception);
+		}
+		finally {
+			threadPool.shutdown();
+		}
+		return diameter;
+	}
+	
+	/**
+	 * Compute a lower bound on the diameter using a few breadth-first
+	 * searches. The first search starts from the vertex with the most
+	 * outgoing edges; each following search starts from the farthest vertex
+	 * found by the previous search and follows edges in the opposite
+	 * direction. The bound is the largest distance found by any search.
+	 * @return a lower bound on the diameter of the graph
+	 */
+	public int getDiameterLowerBound() {
+		int vertexCount = this.graph.getVertexCount();
+		if (0 == vertexCount) {
+			return 0;
+		}
+		int start = 0;
+		for (int v = 1; v < vertexCount; v++) {
+			if (this.getOutDegree(v) > this.getOutDegree(start)) {
+				start = v;
+			}
+		}
+		
+		int[] distances = new int[vertexCount];
+		int[] queue = new int[vertexCount];
+		int bound = 0;
+		boolean reverse = false;
+		for (int sweep = 0; sweep < SWEEPS; sweep++) {
+			int farthest = this.search(start, reverse, distances, queue);
+			bound = Math.max(bound, distances[farthest]);
+			if (farthest == start) {
+				break;
+			}
+			start = farthest;
+			reverse = !reverse;
+		}
+		return bound;
+	}
+	
+	/**
+	 * Compute the largest number of hops from a vertex to any vertex
+	 * reachable from it.
+	 * @param source vertex identifier
+	 * @return the eccentricity of the vertex
+	 */
+	public int getEccentricity(int source) {
+		int[] distances = new int[this.graph.getVertexCount()];
+		int[] queue = new int[this.graph.getVertexCount()];
+		return distances[this.search(source, false, distances, queue)];
+	}
+	
+	/**
+	 * Get the number of edges leaving a vertex.
+	 * @param vertex vertex identifier
+	 * @return number of outgoing edges
+	 */
+	private int getOutDegree(int vertex) {
+		return this.graph.getOutEdgesEnd(vertex)
+				- this.graph.getOutEdgesStart(vertex);
+	}
+	
+	/**
+	 * Compute the number of hops from (or to) a vertex.
+	 * @param source vertex from which to start the search
+	 * @param reverse whether to follow edges from their destination to their
+	 * 			source
+	 * @param distances array in which to store the number of hops to each
+	 * 			vertex; -1 for unreachable vertices
+	 * @param queue array to use as the search queue
+	 * @return the last vertex reached, which is one of the farthest vertices
+	 */
+	private int search(int source, boolean reverse, int[] distances,
+			int[] queue) {
+		Arrays.fill(distances, -1);
+		int head = 0;
+		int tail = 0;
+		distances[source] = 0;
+		queue[tail++] = source;
+		int vertex = source;
+		while (head < tail) {
+			vertex = queue[head++];
+			if (reverse) {
+				for (int i = 0; i < this.graph.getInDegree(vertex); i++) {
+					int next = this.graph.getEdgeSource(
+							this.graph.getInEdge(vertex, i));
+					if (distances[next] < 0) {
+						distances[next] = distances[vertex] + 1;
+						queue[tail++] = next;
+					}
+				}
+			}
+			else {
+				for (int e = this.graph.getOutEdgesStart(vertex);
+						e < this.graph.getOutEdgesEnd(vertex); e++) {
+					int next = this.graph.getEdgeDestination(e);
+					if (distances[next] < 0) {
+						distances[next] = distances[vertex] + 1;
+						queue[tail++] = next;
+					}
+				}
+			}
+		}
+		return vertex;
+	}
+	
+	/**
+	 * A task that computes the eccentricity of vertices until all vertices
+	 * have been considered.
+	 */
+	private class EccentricityTask implements Callable<Integer> {
+		
+		/** Next vertex whose eccentricity to compute */
+		private AtomicInteger nextVertex;
+		
+		/**
+		 * Create a task.
+		 * @param nextVertex next vertex whose eccentricity to compute, shared
+		 * 			by all tasks
+		 */
+		private EccentricityTask(AtomicInteger nextVertex) {
+			this.nextVertex = nextVertex;
+		}
+		
+		/**
+		 * Compute the eccentricity of vertices.
+		 * @return the largest eccentricity computed by this task
+		 */
+		@Override
+		public Integer call() {
+			int vertexCount = graph.getVertexCount();
+			int[] distances = new int[vertexCount];
+			int[] queue = new int[vertexCount];
+			int max = 0;
+			int source = this.nextVertex.getAndIncrement();
+			while (source < vertexCount) {
+				max = Math.max(max, distances[search(source, false,
+						distances, queue)]);
+				source = this.nextVertex.getAndIncrement();
+			}
+			return max;
+		}
+	}
+}
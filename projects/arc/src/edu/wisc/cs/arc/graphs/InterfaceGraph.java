@@ -252,11 +252,12 @@ public class InterfaceGraph extends ExtendedTopologyGraph<InterfaceVertex> {
 						destinationVertex, 0, EdgeType.INTER_DEVICE,
 						sourceIface, destinationIface);
 				if (null == sourceIface) {
-					edge.checkAndBlockIncoming(flow, 
+					this.checkAndBlockIncoming(edge, flow, 
 							destinationIface.getDevice());
 				}
 				else {
-					edge.checkAndBlockOutgoing(flow, sourceIface.getDevice());
+					this.checkAndBlockOutgoing(edge,
+							flow, sourceIface.getDevice());
 				}
 			}
 		}
@@ -269,7 +270,8 @@ public class InterfaceGraph extends ExtendedTopologyGraph<InterfaceVertex> {
 				if (null == edge.getSourceInterface()) {
 					continue;
 				}
-				edge.checkAndBlockOutgoing(this.getFlow(), iface.getDevice());
+				this.checkAndBlockOutgoing(edge,
+						this.getFlow(), iface.getDevice());
 			}
 			
 			for (DirectedEdge<InterfaceVertex> edge : 
@@ -277,7 +279,8 @@ public class InterfaceGraph extends ExtendedTopologyGraph<InterfaceVertex> {
 				if (null == edge.getDestinationInterface()) {
 					continue;
 				}
-				edge.checkAndBlockIncoming(this.getFlow(), iface.getDevice());
+				this.checkAndBlockIncoming(edge,
+						this.getFlow(), iface.getDevice());
 			}
 		}
 	
@@ -0,0 +1,518 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.EdgeFactory;
+import org.jgrapht.WeightedGraph;
+import org.jgrapht.graph.AbstractGraph;
+import org.jgrapht.graph.DefaultDirectedWeightedGraph;
+
+/**
+ * A directed weighted graph that is layered on top of another graph. The
+ * overlay references the vertices and edges of the underlying graph and only
+ * stores the vertices and edges that were added to, or hidden from, the
+ * overlay. Edges of the underlying graph are never modified: changing the
+ * weight of such an edge replaces it with a copy that belongs to the overlay.
+ * The underlying graph must not be modified while the overlay is in use.
+ */
+public class OverlayGraph<V extends Vertex>
+		extends AbstractGraph<V,DirectedEdge<V>>
+		implements DirectedGraph<V,DirectedEdge<V>>,
+		WeightedGraph<V,DirectedEdge<V>>, Serializable {
+	private static final long serialVersionUID = 4719934181457520123L;
+
+	/** Underlying graph; null if the overlay stands on its own */
+	private OverlayGraph<V> base;
+
+	/** Vertices and edges added to the overlay, along with the vertices of
+	 * the underlying graph to which added edges are incident */
+	private DefaultDirectedWeightedGraph<V,DirectedEdge<V>> local;
+
+	/** Vertices added to the overlay that are not in the underlying graph */
+	private Set<V> addedVertices;
+
+	/** Vertices of the underlying graph hidden by the overlay */
+	private Set<V> removedVertices;
+
+	/** Edges of the underlying graph hidden by the overlay */
+	private Set<DirectedEdge<V>> removedEdges;
+
+	/**
+	 * Create an empty graph.
+	 * @param edgeFactory factory used to create edges
+	 */
+	public OverlayGraph(EdgeFactory<V,DirectedEdge<V>> edgeFactory) {
+		this.base = null;
+		this.local = new DefaultDirectedWeightedGraph<V,DirectedEdge<V>>(
+				edgeFactory);
+		this.addedVertices = new LinkedHashSet<V>();
+		this.removedVertices = new HashSet<V>();
+		this.removedEdges = new HashSet<DirectedEdge<V>>();
+	}
+
+	/**
+	 * Create an overlay on top of an existing graph.
+	 * @param base the graph to layer the overlay on top of
+	 */
+	public OverlayGraph(OverlayGraph<V> base) {
+		this(base.getEdgeFactory());
+		this.base = base;
+	}
+
+	/**
+	 * Check if a vertex is part of the underlying graph.
+	 * @param vertex the vertex to check
+	 * @return true if the underlying graph contains the vertex
+	 */
+	private boolean inBase(V vertex) {
+		return (this.base != null && this.base.containsVertex(vertex));
+	}
+
+	/**
+	 * Make sure a vertex is part of the overlay's local graph, so local edges
+	 * can be incident to it.
+	 * @param vertex the vertex to add
+	 */
+	private void addLocalVertex(V vertex) {
+		if (!this.local.containsVertex(vertex)) {
+			this.local.addVertex(vertex);
+		}
+	}
+
+	/**
+	 * Get a version of an edge that can be modified without affecting the
+	 * underlying graph. If the edge belongs to the underlying graph, then it
+	 * is hidden and replaced by a copy that belongs to the overlay.
+	 * @param edge an edge in the graph
+	 * @return the edge, or its replacement
+	 */
+	DirectedEdge<V> getWritableEdge(DirectedEdge<V> edge) {
+		if (this.local.containsEdge(edge) || !this.containsEdge(edge)) {
+			return edge;
+		}
+		this.removedEdges.add(edge);
+		this.addLocalVertex(edge.getSource());
+		this.addLocalVertex(edge.getDestination());
+		DirectedEdge<V> copy = this.local.addEdge(edge.getSource(),
+				edge.getDestination());
+		this.local.setEdgeWeight(copy, edge.getWeight());
+		copy.setType(edge.getType());
+		copy.setInterfaces(edge.getSourceInterface(),
+				edge.getDestinationInterface());
+		return copy;
+	}
+
+	/**
+	 * Get the number of vertices and edges stored by the overlay, rather
+	 * than referenced from the underlying graph.
+	 * @return number of vertices and edges added to or hidden by the overlay
+	 */
+	public int getOverlaySize() {
+		return this.addedVertices.size() + this.local.edgeSet().size()
+				+ this.removedVertices.size() + this.removedEdges.size();
+	}
+
+	@Override
+	public boolean addVertex(V vertex) {
+		if (null == vertex) {
+			throw new NullPointerException();
+		}
+		if (this.containsVertex(vertex)) {
+			return false;
+		}
+
+		// A hidden vertex of the underlying graph reappears without its edges
+		if (this.inBase(vertex)) {
+			this.removedVertices.remove(vertex);
+			return true;
+		}
+
+		this.local.addVertex(vertex);
+		this.addedVertices.add(vertex);
+		return true;
+	}
+
+	@Override
+	public boolean removeVertex(V vertex) {
+		if (!this.containsVertex(vertex)) {
+			return false;
+		}
+		List<DirectedEdge<V>> edges =
+				new ArrayList<DirectedEdge<V>>(this.edgesOf(vertex));
+		for (DirectedEdge<V> edge : edges) {
+			this.removeEdge(edge);
+		}
+		if (this.local.containsVertex(vertex)) {
+			this.local.removeVertex(vertex);
+			this.addedVertices.remove(vertex);
+		}
+		if (this.inBase(vertex)) {
+			this.removedVertices.add(vertex);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean containsVertex(V vertex) {
+		return (this.local.containsVertex(vertex)
+				|| (this.inBase(vertex)
+						&& !this.removedVertices.contains(vertex)));
+	}
+
+	@Override
+	public Set<V> vertexSet() {
+		return new VertexSet();
+	}
+
+	@Override
+	public DirectedEdge<V> addEdge(V source, V destination) {
+		this.assertVertexExist(source);
+		this.assertVertexExist(destination);
+		if (this.getEdge(source, destination) != null) {
+			return null;
+		}
+		this.addLocalVertex(source);
+		this.addLocalVertex(destination);
+		return this.local.addEdge(source, destination);
+	}
+
+	@Override
+	public boolean addEdge(V source, V destination, DirectedEdge<V> edge) {
+		if (null == edge) {
+			throw new NullPointerException();
+		}
+		this.assertVertexExist(source);
+		this.assertVertexExist(destination);
+		if (this.containsEdge(edge)
+				|| this.getEdge(source, destination) != null) {
+			return false;
+		}
+		this.addLocalVertex(source);
+		this.addLocalVertex(destination);
+		return this.local.addEdge(source, destination, edge);
+	}
+
+	@Override
+	public boolean removeEdge(DirectedEdge<V> edge) {
+		if (this.local.containsEdge(edge)) {
+			return this.local.removeEdge(edge);
+		}
+		if (this.containsEdge(edge)) {
+			this.removedEdges.add(edge);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public DirectedEdge<V> removeEdge(V source, V destination) {
+		DirectedEdge<V> edge = this.getEdge(source, destination);
+		if (edge != null) {
+			this.removeEdge(edge);
+		}
+		return edge;
+	}
+
+	@Override
+	public boolean containsEdge(DirectedEdge<V> edge) {
+		return (this.local.containsEdge(edge)
+				|| (this.base != null && !this.removedEdges.contains(edge)
+						&& this.base.containsEdge(edge)));
+	}
+
+	@Override
+	public DirectedEdge<V> getEdge(V source, V destination) {
+		if (this.local.containsVertex(source)
+				&& this.local.containsVertex(destination)) {
+			DirectedEdge<V> edge = this.local.getEdge(source, destination);
+			if (edge != null) {
+				return edge;
+			}
+		}
+		if (this.base != null && !this.removedVertices.contains(source)
+				&& !this.removedVertices.contains(destination)) {
+			DirectedEdge<V> edge = this.base.getEdge(source, destination);
+			if (edge != null && !this.removedEdges.contains(edge)) {
+				return edge;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Set<DirectedEdge<V>> getAllEdges(V source, V destination) {
+		if (!this.containsVertex(source)
+				|| !this.containsVertex(destination)) {
+			return null;
+		}
+		DirectedEdge<V> edge = this.getEdge(source, destination);
+		if (null == edge) {
+			return Collections.emptySet();
+		}
+		return Collections.singleton(edge);
+	}
+
+	@Override
+	public Set<DirectedEdge<V>> edgeSet() {
+		return new EdgeSet();
+	}
+
+	@Override
+	public Set<DirectedEdge<V>> outgoingEdgesOf(V vertex) {
+		this.assertVertexExist(vertex);
+		if (!this.inBase(vertex)) {
+			return this.local.outgoingEdgesOf(vertex);
+		}
+		if (this.removedEdges.isEmpty() && !this.local.containsVertex(vertex)) {
+			return this.base.outgoingEdgesOf(vertex);
+		}
+		Set<DirectedEdge<V>> edges = new LinkedHashSet<DirectedEdge<V>>();
+		for (DirectedEdge<V> edge : this.base.outgoingEdgesOf(vertex)) {
+			if (!this.removedEdges.contains(edge)) {
+				edges.add(edge);
+			}
+		}
+		if (this.local.containsVertex(vertex)) {
+			edges.addAll(this.local.outgoingEdgesOf(vertex));
+		}
+		return Collections.unmodifiableSet(edges);
+	}
+
+	@Override
+	public Set<DirectedEdge<V>> incomingEdgesOf(V vertex) {
+		this.assertVertexExist(vertex);
+		if (!this.inBase(vertex)) {
+			return this.local.incomingEdgesOf(vertex);
+		}
+		if (this.removedEdges.isEmpty() && !this.local.containsVertex(vertex)) {
+			return this.base.incomingEdgesOf(vertex);
+		}
+		Set<DirectedEdge<V>> edges = new LinkedHashSet<DirectedEdge<V>>();
+		for (DirectedEdge<V> edge : this.base.incomingEdgesOf(vertex)) {
+			if (!this.removedEdges.contains(edge)) {
+				edges.add(edge);
+			}
+		}
+		if (this.local.containsVertex(vertex)) {
+			edges.addAll(this.local.incomingEdgesOf(vertex));
+		}
+		return Collections.unmodifiableSet(edges);
+	}
+
+	@Override
+	public Set<DirectedEdge<V>> edgesOf(V vertex) {
+		Set<DirectedEdge<V>> edges = new LinkedHashSet<DirectedEdge<V>>(
+				this.incomingEdgesOf(vertex));
+		edges.addAll(this.outgoingEdgesOf(vertex));
+		return Collections.unmodifiableSet(edges);
+	}
+
+	@Override
+	public int inDegreeOf(V vertex) {
+		this.assertVertexExist(vertex);
+		int degree = 0;
+		if (this.local.containsVertex(vertex)) {
+			degree += this.local.inDegreeOf(vertex);
+		}
+		if (this.inBase(vertex)) {
+			degree += this.countVisible(this.base.incomingEdgesOf(vertex));
+		}
+		return degree;
+	}
+
+	@Override
+	public int outDegreeOf(V vertex) {
+		this.assertVertexExist(vertex);
+		int degree = 0;
+		if (this.local.containsVertex(vertex)) {
+			degree += this.local.outDegreeOf(vertex);
+		}
+		if (this.inBase(vertex)) {
+			degree += this.countVisible(this.base.outgoingEdgesOf(vertex));
+		}
+		return degree;
+	}
+
+	/**
+	 * Count the edges of the underlying graph that are not hidden.
+	 * @param edges edges of the underlying graph
+	 * @return number of edges that are not hidden by the overlay
+	 */
+	private int countVisible(Set<DirectedEdge<V>> edges) {
+		if (this.removedEdges.isEmpty()) {
+			return edges.size();
+		}
+		int count = 0;
+		for (DirectedEdge<V> edge : edges) {
+			if (!this.removedEdges.contains(edge)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public V getEdgeSource(DirectedEdge<V> edge) {
+		return edge.getSource();
+	}
+
+	@Override
+	public V getEdgeTarget(DirectedEdge<V> edge) {
+		return edge.getDestination();
+	}
+
+	@Override
+	public double getEdgeWeight(DirectedEdge<V> edge) {
+		return edge.getWeight();
+	}
+
+	/**
+	 * Set the weight of an edge. If the edge belongs to the underlying graph,
+	 * then the weight is set on a copy of the edge that replaces it in the
+	 * overlay.
+	 * @param edge edge whose weight should be set
+	 * @param weight new weight for the edge
+	 */
+	@Override
+	public void setEdgeWeight(DirectedEdge<V> edge, double weight) {
+		this.local.setEdgeWeight(this.getWritableEdge(edge), weight);
+	}
+
+	@Override
+	public EdgeFactory<V,DirectedEdge<V>> getEdgeFactory() {
+		return this.local.getEdgeFactory();
+	}
+
+	/**
+	 * Read-only view of the vertices in the overlay: the visible vertices of
+	 * the underlying graph, followed by the vertices added to the overlay.
+	 */
+	private class VertexSet extends AbstractSet<V> {
+		@Override
+		public Iterator<V> iterator() {
+			final Iterator<V> baseIterator = (null == base ? null
+					: base.vertexSet().iterator());
+			final Iterator<V> addedIterator = addedVertices.iterator();
+			return new Iterator<V>() {
+				private V next = advance();
+
+				private V advance() {
+					while (baseIterator != null && baseIterator.hasNext()) {
+						V vertex = baseIterator.next();
+						if (!removedVertices.contains(vertex)) {
+							return vertex;
+						}
+					}
+					if (addedIterator.hasNext()) {
+						return addedIterator.next();
+					}
+					return null;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return (next != null);
+				}
+
+				@Override
+				public V next() {
+					if (null == next) {
+						throw new NoSuchElementException();
+					}
+					V current = next;
+					next = advance();
+					return current;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return (null == base ? 0 : base.vertexSet().size())
+					- removedVertices.size() + addedVertices.size();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(Object vertex) {
+			return containsVertex((V)vertex);
+		}
+	}
+
+	/**
+	 * Read-only view of the edges in the overlay: the visible edges of the
+	 * underlying graph, followed by the edges added to the overlay.
+	 */
+	private class EdgeSet extends AbstractSet<DirectedEdge<V>> {
+		@Override
+		public Iterator<DirectedEdge<V>> iterator() {
+			final Iterator<DirectedEdge<V>> baseIterator = (null == base ? null
+					: base.edgeSet().iterator());
+			final Iterator<DirectedEdge<V>> localIterator =
+					local.edgeSet().iterator();
+			return new Iterator<DirectedEdge<V>>() {
+				private DirectedEdge<V> next = advance();
+
+				private DirectedEdge<V> advance() {
+					while (baseIterator != null && baseIterator.hasNext()) {
+						DirectedEdge<V> edge = baseIterator.next();
+						if (!removedEdges.contains(edge)) {
+							return edge;
+						}
+					}
+					if (localIterator.hasNext()) {
+						return localIterator.next();
+					}
+					return null;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return (next != null);
+				}
+
+				@Override
+				public DirectedEdge<V> next() {
+					if (null == next) {
+						throw new NoSuchElementException();
+					}
+					DirectedEdge<V> current = next;
+					next = advance();
+					return current;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return (null == base ? 0 : base.edgeSet().size())
+					- removedEdges.size() + local.edgeSet().size();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(Object edge) {
+			return containsEdge((DirectedEdge<V>)edge);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.batfish.representation.Ip;
+import org.batfish.representation.IpProtocol;
+
+/**
+ * Splits a set of policy groups into the smallest set of non-overlapping
+ * policy groups that covers the same addresses, ports, and protocols. The
+ * address space is swept once from the lowest to the highest address
+ * boundary; each slab between consecutive boundaries is refined by the port
+ * boundaries and protocols of the groups that cover the entire slab.
+ *
+ * Each resulting group takes its internal/external label from the most
+ * specific group that covers it: the group with the highest start address,
+ * then the lowest end address, then the highest start port, then the lowest
+ * end port, then the fewest protocols. For two groups this is the same as
+ * {@link PolicyGroup#getNonOverlapping(PolicyGroup)}: the contained group
+ * labels the overlap if one group contains the other, and the group that
+ * starts later labels the overlap otherwise.
+ */
+public class PolicyGroupAtomizer {
+
+	/**
+	 * Compute non-overlapping policy groups.
+	 * @param policyGroups the policy groups to split
+	 * @return non-overlapping policy groups, ordered by address
+	 */
+	public static Set<PolicyGroup> atomize(
+			Collection<PolicyGroup> policyGroups) {
+		// Sort groups and drop duplicates, keeping the first of equal groups
+		List<PolicyGroup> sorted = new ArrayList<PolicyGroup>(policyGroups);
+		Collections.sort(sorted);
+		List<PolicyGroup> groups = new ArrayList<PolicyGroup>(
+				new LinkedHashSet<PolicyGroup>(sorted));
+
+		// Collect address boundaries
+		TreeSet<Long> boundaries = new TreeSet<Long>();
+		for (PolicyGroup group : groups) {
+			boundaries.add(group.getStartIp().asLong());
+			boundaries.add(group.getEndIp().asLong() + 1);
+		}
+
+		// Order groups by the boundary at which they stop covering addresses
+		List<PolicyGroup> byEnd = new ArrayList<PolicyGroup>(groups);
+		Collections.sort(byEnd, new Comparator<PolicyGroup>() {
+			@Override
+			public int compare(PolicyGroup a, PolicyGroup b) {
+				return Long.compare(a.getEndIp().asLong(),
+						b.getEndIp().asLong());
+			}
+		});
+
+		// Sweep over the address boundaries, tracking the groups that cover
+		// the current slab
+		Set<PolicyGroup> atoms = new LinkedHashSet<PolicyGroup>();
+		Set<PolicyGroup> active = new LinkedHashSet<PolicyGroup>();
+		int nextStart = 0;
+		int nextEnd = 0;
+		Long slabStart = boundaries.isEmpty() ? null : boundaries.first();
+		while (slabStart != null) {
+			while (nextEnd < byEnd.size() && byEnd.get(nextEnd).getEndIp()
+					.asLong() + 1 == slabStart) {
+				active.remove(byEnd.get(nextEnd++));
+			}
+			while (nextStart < groups.size() && groups.get(nextStart)
+					.getStartIp().asLong() == slabStart) {
+				active.add(groups.get(nextStart++));
+			}
+			Long slabEnd = boundaries.higher(slabStart);
+			if (slabEnd != null && active.size() > 0) {
+				refineSlab(new Ip(slabStart), new Ip(slabEnd - 1),
+						new ArrayList<PolicyGroup>(active), atoms);
+			}
+			slabStart = slabEnd;
+		}
+		return atoms;
+	}
+
+	/**
+	 * Split a slab of addresses by the port ranges and protocols of the groups
+	 * that cover it.
+	 * @param startIp first address in the slab
+	 * @param endIp last address in the slab
+	 * @param covering groups that cover the entire slab
+	 * @param atoms set to which the non-overlapping groups are added
+	 */
+	private static void refineSlab(Ip startIp, Ip endIp,
+			List<PolicyGroup> covering, Set<PolicyGroup> atoms) {
+		TreeSet<Integer> portBoundaries = new TreeSet<Integer>();
+		for (PolicyGroup group : covering) {
+			portBoundaries.add(group.getStartPort());
+			portBoundaries.add(group.getEndPort() + 1);
+		}
+
+		Integer startPort = portBoundaries.first();
+		while (startPort != null) {
+			Integer nextPort = portBoundaries.higher(startPort);
+			if (null == nextPort) {
+				break;
+			}
+			int endPort = nextPort - 1;
+
+			// Group protocols by the set of groups that cover them
+			Map<List<PolicyGroup>, EnumSet<IpProtocol>> protocolClasses =
+					new LinkedHashMap<List<PolicyGroup>, EnumSet<IpProtocol>>();
+			for (IpProtocol protocol : IpProtocol.values()) {
+				List<PolicyGroup> coveringProtocol =
+						new ArrayList<PolicyGroup>();
+				for (PolicyGroup group : covering) {
+					if (group.getStartPort() <= startPort
+							&& group.getEndPort() >= endPort
+							&& group.getProtocols().contains(protocol)) {
+						coveringProtocol.add(group);
+					}
+				}
+				if (coveringProtocol.isEmpty()) {
+					continue;
+				}
+				EnumSet<IpProtocol> protocols =
+						protocolClasses.get(coveringProtocol);
+				if (null == protocols) {
+					protocols = EnumSet.of(protocol);
+					protocolClasses.put(coveringProtocol, protocols);
+				}
+				else {
+					protocols.add(protocol);
+				}
+			}
+
+			for (Map.Entry<List<PolicyGroup>, EnumSet<IpProtocol>> entry :
+					protocolClasses.entrySet()) {
+				PolicyGroup atom = new PolicyGroup(startIp, endIp, startPort,
+						endPort, entry.getValue());
+				atom.setInternal(getMostSpecific(entry.getKey()).isInternal());
+				atoms.add(atom);
+			}
+
+			startPort = nextPort;
+		}
+	}
+
+	/**
+	 * Find the most specific of the groups covering a region.
+	 * @param covering groups covering a region, ordered by address
+	 * @return the group whose label applies to the region
+	 */
+	private static PolicyGroup getMostSpecific(List<PolicyGroup> covering) {
+		PolicyGroup best = covering.get(0);
+		for (PolicyGroup group : covering) {
+			if (isMoreSpecific(group, best)) {
+				best = group;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Determine if one group is more specific than another.
+	 * @param a group to check
+	 * @param b group to compare against
+	 * @return true if a is strictly more specific than b
+	 */
+	private static boolean isMoreSpecific(PolicyGroup a, PolicyGroup b) {
+		long aStart = a.getStartIp().asLong();
+		long bStart = b.getStartIp().asLong();
+		if (aStart != bStart) {
+			return aStart > bStart;
+		}
+		long aEnd = a.getEndIp().asLong();
+		long bEnd = b.getEndIp().asLong();
+		if (aEnd != bEnd) {
+			return aEnd < bEnd;
+		}
+		if (a.getStartPort() != b.getStartPort()) {
+			return a.getStartPort() > b.getStartPort();
+		}
+		if (a.getEndPort() != b.getEndPort()) {
+			return a.getEndPort() < b.getEndPort();
+		}
+		return a.getProtocols().size() < b.getProtocols().size();
+	}
+}
@@ -236,6 +236,13 @@ public class Process implements Comparable<Process>, Serializable{
 		this.adjacentProcesses.add(adjacentProcess);
 	}
 	
+	/**
+	 * Forget all adjacent routing processes.
+	 */
+	public void clearAdjacentProcesses() {
+		this.adjacentProcesses.clear();
+	}
+	
 	public Iterator<Process> getAdjacentProcessesIterator() {
 		return this.adjacentProcesses.iterator();
 	}
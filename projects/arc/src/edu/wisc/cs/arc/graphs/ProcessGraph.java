@@ -27,6 +27,9 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 	/** A list of device-interface pairs based on interfaces' IP address */
 	private Map<Ip, Map<Device, Interface>> interfacesByAddress;
 	
+	/** Index of the addresses in interfacesByAddress; shared by clones */
+	private transient AddressIndex addressIndex;
+	
 	/** A list of internal devices */
 	private List<Device> devices;
 	
@@ -44,6 +47,10 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 	
 	/** Instance-based ETG constructed while this ETG is constructed */
 	private InstanceGraph instanceEtg;
+	
+	/** Edge weights before they are adjusted for route redistribution and 
+	 * scaled */
+	private transient Map<DirectedEdge<ProcessVertex>, Double> rawEdgeWeights;
 
 	/**
 	 * Create a process-based extended topology graph based on device 
@@ -67,6 +74,7 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 		for (Device device : deviceEtg.getDevices().values()) {
 			this.addDevice(device);
 		}
+		this.addressIndex = new AddressIndex(this.interfacesByAddress);
 		
 		// Add vertices
 		this.constructVertices();
@@ -83,6 +91,18 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 		return this.instanceEtg;
 	}
 	
+	/**
+	 * Get the index of interface addresses, building it if necessary (e.g.,
+	 * after the graph was deserialized).
+	 * @return index of interface addresses
+	 */
+	private synchronized AddressIndex getAddressIndex() {
+		if (null == this.addressIndex) {
+			this.addressIndex = new AddressIndex(this.interfacesByAddress);
+		}
+		return this.addressIndex;
+	}
+	
 	/**
 	 * Customize the graph for a specific flow.
 	 * @param flow the flow for which the graph should be customized
@@ -123,6 +143,7 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 	public Object clone() {
 		ProcessGraph pgClone = (ProcessGraph)super.clone();
 		pgClone.interfacesByAddress = this.interfacesByAddress;
+		pgClone.addressIndex = this.getAddressIndex();
 		pgClone.devices = this.devices;
 		pgClone.bgpWithOutsidePeers = this.bgpWithOutsidePeers;
 		pgClone.maxIGPLinkCost = this.maxIGPLinkCost;
@@ -209,17 +230,7 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 	private void constructEdges() {
 		// Set up edges for adjacencies to other routing processes
 		for (Device device : this.devices) {			
-			for (Process routingProcess : device.getRoutingProcesses()) {
-				if (routingProcess.isBgpProcess()) {
-					this.constructBgpPeeringEdges(routingProcess);
-				}
-				else if (routingProcess.isOspfProcess()) {
-					this.constructOspfNeighborEdges(routingProcess);
-				}
-				else if (routingProcess.isStaticProcess()) {
-					this.constructStaticRouteEdges(routingProcess);
-				}
-			}
+			this.constructAdjacencyEdges(device);
 		}
 				
 		// Set up edges for route redistribution
@@ -228,6 +239,43 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 					device.getRoutingProcesses());
 		}
 		
+		// Remember the unadjusted edge weights
+		this.rawEdgeWeights = 
+				new HashMap<DirectedEdge<ProcessVertex>, Double>();
+		Iterator<DirectedEdge<ProcessVertex>> iterator = 
+				this.getEdgesIterator();
+		while (iterator.hasNext()) {
+			DirectedEdge<ProcessVertex> edge = iterator.next();
+			this.rawEdgeWeights.put(edge, edge.getWeight());
+		}
+		
+		this.adjustEdgeWeights();
+	}
+	
+	/**
+	 * Add edges for adjacencies between a device's routing processes and the
+	 * routing processes on other devices.
+	 * @param device the device whose routing processes' adjacencies to add
+	 */
+	private void constructAdjacencyEdges(Device device) {
+		for (Process routingProcess : device.getRoutingProcesses()) {
+			if (routingProcess.isBgpProcess()) {
+				this.constructBgpPeeringEdges(routingProcess);
+			}
+			else if (routingProcess.isOspfProcess()) {
+				this.constructOspfNeighborEdges(routingProcess);
+			}
+			else if (routingProcess.isStaticProcess()) {
+				this.constructStaticRouteEdges(routingProcess);
+			}
+		}
+	}
+	
+	/**
+	 * Generate the instance-based ETG and adjust the weights of edges for
+	 * route redistribution accordingly.
+	 */
+	private void adjustEdgeWeights() {
 		// Generate instance graph
 		this.instanceEtg = new InstanceGraph(this);
 		
@@ -814,9 +862,19 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 	 * Add edges for the source(s) and destination of the flow.
 	 */
 	protected void constructEndpointEdges() {
-		Set<PolicyGroup> sources = this.getFlowSourceVertices().keySet();
-		for (PolicyGroup source : sources) {
-			this.constructSourceEndpointEdges(source);
+		// Interfaces connected to the destination are the same for every
+		// source, so they are found once per device
+		Map<Device, Interface> destinationIfaces = 
+				new HashMap<Device, Interface>();
+		
+		// Find the interface addresses within every source in one sweep over
+		// the address index, rather than one search per source
+		List<PolicyGroup> sources = new ArrayList<PolicyGroup>(
+				this.getFlowSourceVertices().keySet());
+		int[][] sourcePositions = this.getAddressIndex().getContained(sources);
+		for (int i = 0; i < sources.size(); i++) {
+			this.constructSourceEndpointEdges(sources.get(i),
+					sourcePositions[i], destinationIfaces);
 		}
 		
 		this.constructDestinationEndpointEdges(this.getFlow().getDestination());
@@ -836,25 +894,18 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 			}
 		}
 		
-		// Add edges from process vertices to destination vertex
-		for (Entry<Ip,Map<Device,Interface>> interfacesForAddress :
-				this.interfacesByAddress.entrySet()) {
+		// Add edges from process vertices to destination vertex; we only care
+		// about interfaces whose prefix falls within the destination policy
+		// group
+		AddressIndex index = this.getAddressIndex();
+		for (int position : index.getContained(destination)) {
 			ProcessVertex sourceVertex = null;
-			ProcessVertex destinationVertex = null;
-
-			// We only care about interfaces whose prefix falls within the
-			//  destination policy groups
-			if (destination.contains(interfacesForAddress.getKey())) {
-				destinationVertex = this.getFlowDestinationVertex();
-			}
-			else {
-				continue;
-			}
+			ProcessVertex destinationVertex = this.getFlowDestinationVertex();
 
 			// Iterate over all devices that have an interface whose address
 			// falls within the destination policy group
 			for (Entry<Device,Interface> interfaceEntry :
-					interfacesForAddress.getValue().entrySet()) {
+					index.getInterfaces(position).entrySet()) {
 				Device device = interfaceEntry.getKey();
 				Interface iface = interfaceEntry.getValue();
 
@@ -878,7 +929,8 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 						// For a graph covering a single flow, check if
 						// edges need to be marked as blocked
 						if (!this.getFlow().hasWildcardSource()) {
-							edge.checkAndBlockOutgoing(this.getFlow(), device);
+							this.checkAndBlockOutgoing(edge,
+									this.getFlow(), device);
 						}
 					}
 				}
@@ -889,8 +941,14 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 	/**
 	 * Add edges for a specific source.
 	 * @param source the source for whom to add edges
+	 * @param positions positions in the address index of the interface
+	 * 			addresses within the source
+	 * @param destinationIfaces interface connected to the flow's destination
+	 * 			on each device checked so far; null for devices with no such
+	 * 			interface
 	 */
-	private void constructSourceEndpointEdges(PolicyGroup source) {
+	private void constructSourceEndpointEdges(PolicyGroup source,
+			int[] positions, Map<Device, Interface> destinationIfaces) {
 		// If source is external, then connect to all external interfaces
 		if (!source.isInternal()) {
 			for (Process process : bgpWithOutsidePeers) {
@@ -901,31 +959,32 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 			}
 		}
 
-		// Add edges from source vertex to process vertices
-		for (Entry<Ip,Map<Device,Interface>> interfacesForAddress :
-				this.interfacesByAddress.entrySet()) {
-			// We only care about interfaces whose prefix falls within the
-			// source policy group
-			if (!source.contains(interfacesForAddress.getKey())) {
-				continue;
-			}
-
+		// Add edges from source vertex to process vertices; we only care
+		// about interfaces whose prefix falls within the source policy group
+		AddressIndex index = this.getAddressIndex();
+		for (int position : positions) {
 			// Iterate over all devices that have an interface whose address
 			// falls within the source policy group
 			for (Entry<Device,Interface> interfaceEntry :
-					interfacesForAddress.getValue().entrySet()) {
+					index.getInterfaces(position).entrySet()) {
 				Device device = interfaceEntry.getKey();
 				Interface iface = interfaceEntry.getValue();
 
 				// See if the destination is also connected to the device
 				Interface flowDestinationIface = null;
-				for (Interface deviceIface : device.getInterfaces()) {
-					if (deviceIface.hasPrefix()
-							&& this.getFlow().getDestination().contains(
-							deviceIface.getPrefix())) {
-						flowDestinationIface = deviceIface;
-						break;
+				if (destinationIfaces.containsKey(device)) {
+					flowDestinationIface = destinationIfaces.get(device);
+				}
+				else {
+					for (Interface deviceIface : device.getInterfaces()) {
+						if (deviceIface.hasPrefix()
+								&& this.getFlow().getDestination().contains(
+								deviceIface.getPrefix())) {
+							flowDestinationIface = deviceIface;
+							break;
+						}
 					}
+					destinationIfaces.put(device, flowDestinationIface);
 				}
 
 				// Multiplier used to compute weights for edges from the source
@@ -953,7 +1012,8 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 						// For a graph covering a single flow, check if
 						// edges need to be marked as blocked
 						if (!this.getFlow().hasWildcardSource()) {
-							edge.checkAndBlockIncoming(this.getFlow(), device);
+							this.checkAndBlockIncoming(edge,
+									this.getFlow(), device);
 						}
 					}
 
@@ -969,7 +1029,8 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 								EdgeType.INTER_DEVICE, flowDestinationIface,
 								null);
 						if (!this.getFlow().hasWildcardSource()) {
-							edge.checkAndBlockOutgoing(this.getFlow(), device);
+							this.checkAndBlockOutgoing(edge,
+									this.getFlow(), device);
 						}	
 					}
 
@@ -1007,7 +1068,8 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 				/*if (null == edge.getSourceInterface()) {
 					continue;
 				}*/
-				edge.checkAndBlockOutgoing(this.getFlow(), process.getDevice());
+				this.checkAndBlockOutgoing(edge,
+						this.getFlow(), process.getDevice());
 			}
 			
 			for (DirectedEdge<ProcessVertex> edge : 
@@ -1015,7 +1077,8 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 				/*if (null == edge.getDestinationInterface()) {
 					continue;
 				}*/
-				edge.checkAndBlockIncoming(this.getFlow(), process.getDevice());
+				this.checkAndBlockIncoming(edge,
+						this.getFlow(), process.getDevice());
 			}
 		}
 	
@@ -1095,6 +1158,142 @@ public class ProcessGraph extends ExtendedTopologyGraph<ProcessVertex> {
 	}
 
 	
+	/**
+	 * Update the graph in place after some devices' configurations changed.
+	 * Only the vertices of removed and added devices and the adjacency edges
+	 * of devices physically connected to them are reconstructed; edge weights
+	 * are then re-derived for the entire graph.
+	 * @param deviceEtg device-based ETG for the updated set of devices
+	 * @param removedDevices devices whose old configurations are no longer
+	 * 		present
+	 * @param addedDevices devices whose new configurations were not present
+	 */
+	public void updateDevices(DeviceGraph deviceEtg, 
+			Collection<Device> removedDevices, Collection<Device> addedDevices) {
+		// Determine which unchanged devices neighbor a changed device, before
+		// and after the change
+		Set<String> neighbors = new LinkedHashSet<String>();
+		for (Device device : removedDevices) {
+			this.addNeighbors(this.deviceEtg, device, neighbors);
+		}
+		for (Device device : addedDevices) {
+			this.addNeighbors(deviceEtg, device, neighbors);
+		}
+		for (Device device : removedDevices) {
+			neighbors.remove(device.getName());
+		}
+		for (Device device : addedDevices) {
+			neighbors.remove(device.getName());
+		}
+		
+		// Remove vertices, and thereby edges, for old routing processes
+		for (Device device : removedDevices) {
+			for (Process process : device.getRoutingProcesses()) {
+				this.removeVertex(process.getInVertex());
+				this.removeVertex(process.getOutVertex());
+				this.bgpWithOutsidePeers.remove(process);
+			}
+		}
+		
+		// Re-derive device information
+		this.deviceEtg = deviceEtg;
+		this.devices = new ArrayList<Device>();
+		this.interfacesByAddress = 
+				new HashMap<Ip, Map<Device, Interface>>();
+		this.maxIGPLinkCost = 0;
+		this.internalASes = new LinkedHashSet<Integer>();
+		for (Device device : deviceEtg.getDevices().values()) {
+			this.addDevice(device);
+		}
+		this.addressIndex = new AddressIndex(this.interfacesByAddress);
+		
+		// Add vertices for new routing processes
+		for (Device device : addedDevices) {
+			for (Process process : device.getRoutingProcesses()) {
+				this.addVertex(process.getInVertex());
+				this.addVertex(process.getOutVertex());
+			}
+		}
+		
+		// Remove adjacency edges from neighboring devices' routing processes
+		List<Device> neighborDevices = new ArrayList<Device>();
+		for (String name : neighbors) {
+			Device device = deviceEtg.getDevices().get(name);
+			if (null == device) {
+				continue;
+			}
+			neighborDevices.add(device);
+			for (Process process : device.getRoutingProcesses()) {
+				for (DirectedEdge<ProcessVertex> edge : 
+						new ArrayList<DirectedEdge<ProcessVertex>>(
+							this.getOutgoingEdges(process.getOutVertex()))) {
+					if (EdgeType.INTER_DEVICE == edge.getType()) {
+						this.removeEdge(edge);
+					}
+				}
+				process.clearAdjacentProcesses();
+				this.bgpWithOutsidePeers.remove(process);
+			}
+		}
+		
+		// Reconstruct adjacency edges for new and neighboring devices, and
+		// route redistribution edges for new devices
+		for (Device device : addedDevices) {
+			this.constructAdjacencyEdges(device);
+		}
+		for (Device device : neighborDevices) {
+			this.constructAdjacencyEdges(device);
+		}
+		for (Device device : addedDevices) {
+			this.constructRouteRedistributionEdges(
+					device.getRoutingProcesses());
+		}
+		
+		// Restore unadjusted weights on surviving edges, and remember the
+		// unadjusted weights of new edges
+		Map<DirectedEdge<ProcessVertex>, Double> edgeWeights = 
+				new HashMap<DirectedEdge<ProcessVertex>, Double>();
+		Iterator<DirectedEdge<ProcessVertex>> iterator = 
+				this.getEdgesIterator();
+		while (iterator.hasNext()) {
+			DirectedEdge<ProcessVertex> edge = iterator.next();
+			Double weight = this.rawEdgeWeights.get(edge);
+			if (null == weight) {
+				weight = edge.getWeight();
+			}
+			else {
+				this.setEdgeWeight(edge.getSource(), edge.getDestination(),
+						weight);
+			}
+			edgeWeights.put(edge, weight);
+		}
+		this.rawEdgeWeights = edgeWeights;
+		
+		this.adjustEdgeWeights();
+	}
+	
+	/**
+	 * Add the names of the devices physically connected to a device.
+	 * @param deviceEtg device-based ETG containing the device
+	 * @param device the device whose neighbors to add
+	 * @param neighbors the set to which the neighbors' names are added
+	 */
+	private void addNeighbors(DeviceGraph deviceEtg, Device device,
+			Set<String> neighbors) {
+		DeviceVertex vertex = deviceEtg.getVertex(device.getName());
+		if (null == vertex) {
+			return;
+		}
+		for (DirectedEdge<DeviceVertex> edge : 
+				deviceEtg.getOutgoingEdges(vertex)) {
+			neighbors.add(edge.getDestination().getName());
+		}
+		for (DirectedEdge<DeviceVertex> edge : 
+				deviceEtg.getIncomingEdges(vertex)) {
+			neighbors.add(edge.getSource().getName());
+		}
+	}
+	
 	/** 
 	 * Remove a link from the topology graph.
 	 * @param link the link to remove
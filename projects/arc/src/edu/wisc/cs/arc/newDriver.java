@@ -10,6 +10,7 @@ import java.io.ObjectOutputStream;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -23,10 +24,6 @@ import org.apache.commons.io.FileUtils;
 import org.batfish.representation.Ip;
 import org.batfish.representation.VendorConfiguration;
 import org.batfish.representation.cisco.CiscoVendorConfiguration;
-import org.batfish.representation.cisco.ExtendedAccessList;
-import org.batfish.representation.cisco.StandardAccessList;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.FloydWarshallShortestPaths;
 
 import edu.wisc.cs.arc.configs.ConfigurationParser;
 import edu.wisc.cs.arc.graphs.Process.ProcessType;
@@ -34,11 +31,14 @@ import edu.wisc.cs.arc.verifiers.AlwaysBlocked;
 import edu.wisc.cs.arc.verifiers.AlwaysIsolated;
 import edu.wisc.cs.arc.verifiers.AlwaysReachable;
 import edu.wisc.cs.arc.verifiers.ComputedPaths;
+import edu.wisc.cs.arc.verifiers.CountingResultSink;
 import edu.wisc.cs.arc.verifiers.CurrentlyBlocked;
 import edu.wisc.cs.arc.verifiers.Equivalent;
-import edu.wisc.cs.arc.virl.Scenario;
+import edu.wisc.cs.arc.verifiers.FailureScenarios;
+import edu.wisc.cs.arc.verifiers.VerificationResultSink;
 import edu.wisc.cs.arc.virl.VirlConfigurationGenerator;
 import edu.wisc.cs.arc.virl.VirlOutputParser;
+import edu.wisc.cs.arc.virl.VirlOutputParser.ScenarioIterator;
 
 /**
  * Starts the ETG generator.
@@ -46,10 +46,14 @@ import edu.wisc.cs.arc.virl.VirlOutputParser;
  */
 public class newDriver {
 
+	/** Devices and ETGs retained across runs in incremental mode */
+	private static IncrementalSession session;
+
 	public static void main(String[] args) {
+		Scanner scanner = new Scanner(System.in);
 		while(true){
 			System.out.println("please input: <-var x -configs dir> or <q to quit>:");
-			Scanner scanner = new Scanner(System.in);
+			if(!scanner.hasNextLine())break;
 			String temp = scanner.nextLine();
 			if(temp.equals("q"))break;
 			String[] input = temp.split(" ");
@@ -72,69 +76,120 @@ public class newDriver {
 
 		logger.info(settings.toString());
 
-		// Parse configurations
-		ConfigurationParser parser = new ConfigurationParser(logger,
-				settings.getConfigsDirection(), settings.shouldParallelize());
-		long startTime = System.currentTimeMillis();
-		Map<String, VendorConfiguration> vendorConfigs = parser.parse();
-		Map<String, String> rawConfigs = parser.getRawConfigurations();
-		long endTime = System.currentTimeMillis();
-		System.out.println("TIME: parse "+(endTime - startTime)+" ms");
+		// Reuse devices and ETGs from the previous run, if requested
+		IncrementalSession incremental = null;
+		if (settings.shouldRunIncrementally()) {
+			if (null == session || !session.isCompatible(settings)) {
+				session = new IncrementalSession(settings);
+			}
+			incremental = session;
+		}
+		else {
+			session = null;
 
-		// Exclude non-routers, if requested
-		if (settings.shouldExcludeNonRouters()) {
-			List<String> devicesToExclude = new ArrayList<String>();
+			// Without a session, no edge deltas describe how the ETGs of
+			// cached max flows changed
+			maxFlowutil.invalidateDeltas();
+		}
 
-			// Check each device configuration to see if it contains a router
-			// stanza
-			for (Entry<String,VendorConfiguration> configEntry :
-					vendorConfigs.entrySet()) {
-				if (configEntry.getValue() instanceof CiscoVendorConfiguration){
-					CiscoVendorConfiguration ciscoConfig =
-							(CiscoVendorConfiguration)configEntry.getValue();
-					if (0 == ciscoConfig.getBgpProcesses().size()
-							&& 0 == ciscoConfig.getOspfProcesses().size()) {
-						devicesToExclude.add(configEntry.getKey());
+		// Reuse parsed configurations and ETGs cached on disk, if requested
+		EtgCache cache = null;
+		if (settings.shouldUseCache()) {
+			cache = new EtgCache(settings);
+		}
+
+		long startTime;
+		long endTime;
+		Map<String, VendorConfiguration> vendorConfigs;
+		Map<String, String> rawConfigs;
+		List<Device> devices;
+		if (incremental != null) {
+			// Parse changed configurations
+			startTime = System.currentTimeMillis();
+			int changedDevices = incremental.loadConfigurations(settings);
+			endTime = System.currentTimeMillis();
+			System.out.println("TIME: parse "+(endTime - startTime)+" ms");
+			System.out.println("COUNT: changedDevices "+changedDevices);
+			vendorConfigs = incremental.getVendorConfigurations();
+			rawConfigs = incremental.getRawConfigurations();
+			devices = incremental.getDevices();
+		}
+		else {
+			// Parse configurations, or load them from the cache
+			startTime = System.currentTimeMillis();
+			if (cache != null) {
+				vendorConfigs = cache.loadConfigurations(settings);
+				rawConfigs = cache.getRawConfigurations();
+			}
+			else {
+				ConfigurationParser parser = new ConfigurationParser(logger,
+						settings.getConfigsDirection(),
+						settings.shouldParallelize());
+				vendorConfigs = parser.parse();
+				rawConfigs = parser.getRawConfigurations();
+			}
+			endTime = System.currentTimeMillis();
+			System.out.println("TIME: parse "+(endTime - startTime)+" ms");
+			if (cache != null) {
+				System.out.println("COUNT: cachedConfigs "
+						+ cache.getConfigurationHits());
+			}
+
+			// Exclude non-routers, if requested
+			if (settings.shouldExcludeNonRouters()) {
+				List<String> devicesToExclude = new ArrayList<String>();
+
+				// Check each device configuration to see if it contains a router
+				// stanza
+				for (Entry<String,VendorConfiguration> configEntry :
+						vendorConfigs.entrySet()) {
+					if (configEntry.getValue() instanceof CiscoVendorConfiguration){
+						CiscoVendorConfiguration ciscoConfig =
+								(CiscoVendorConfiguration)configEntry.getValue();
+						if (0 == ciscoConfig.getBgpProcesses().size()
+								&& 0 == ciscoConfig.getOspfProcesses().size()) {
+							devicesToExclude.add(configEntry.getKey());
+						}
+					}
+					else {
+						throw new GeneratorException(
+								"Only Cisco configurations are supported");
 					}
 				}
-				else {
-					throw new GeneratorException(
-							"Only Cisco configurations are supported");
+
+				// Remove devices without a router stanza
+				for (String deviceToExclude : devicesToExclude) {
+					vendorConfigs.remove(deviceToExclude);
+					rawConfigs.remove(deviceToExclude);
 				}
 			}
 
-			// Remove devices without a router stanza
-			for (String deviceToExclude : devicesToExclude) {
-				vendorConfigs.remove(deviceToExclude);
-				rawConfigs.remove(deviceToExclude);
+			// Anonymize device names, if requested
+			if (settings.shouldAnonymize()) {
+				Map<String, VendorConfiguration> anonVendorConfigs =
+						new LinkedHashMap<String, VendorConfiguration>();
+				int i = 0;
+				for (Entry<String, VendorConfiguration> entry :
+						vendorConfigs.entrySet()) {
+					anonVendorConfigs.put("dev"+i, entry.getValue());
+					i++;
+				}
+				vendorConfigs = anonVendorConfigs;
 			}
-		}
 
-		// Anonymize device names, if requested
-		if (settings.shouldAnonymize()) {
-			Map<String, VendorConfiguration> anonVendorConfigs =
-					new LinkedHashMap<String, VendorConfiguration>();
-			int i = 0;
+			// Extract configuration details
+			devices = new ArrayList<Device>();
 			for (Entry<String, VendorConfiguration> entry :
 					vendorConfigs.entrySet()) {
-				anonVendorConfigs.put("dev"+i, entry.getValue());
-				i++;
-			}
-			vendorConfigs = anonVendorConfigs;
-		}
-
-		// Extract configuration details
-		List<Device> devices = new ArrayList<Device>();
-		for (Entry<String, VendorConfiguration> entry :
-				vendorConfigs.entrySet()) {
-			if (entry.getValue() instanceof CiscoVendorConfiguration) {
-				Device device = new Device(entry.getKey(),
-						(CiscoVendorConfiguration)entry.getValue(), logger);
-				devices.add(device);
-			}
-			else {
-				throw new GeneratorException(
-						"Only Cisco configurations are supported");
+				if (entry.getValue() instanceof CiscoVendorConfiguration) {
+					Device device = new Device(entry.getKey(),
+							(CiscoVendorConfiguration)entry.getValue(), logger);
+					devices.add(device);
+				}
+				else {
+					throw new GeneratorException(
+							"Only Cisco configurations are supported");
+				}
 			}
 		}
 
@@ -147,7 +202,31 @@ public class newDriver {
 
 		// Generate device-based ETG
 		logger.info("*** Generate device-based ETG ***");
-		DeviceGraph deviceEtg = new DeviceGraph(devices, settings);
+		DeviceGraph deviceEtg = null;
+		ProcessGraph processEtg = null;
+		ExtendedTopologyGraph baseEtg = null;
+		boolean cachedEtgs = false;
+		startTime = System.currentTimeMillis();
+		if (incremental != null) {
+			incremental.buildEtgs(settings);
+			deviceEtg = incremental.getDeviceEtg();
+			processEtg = incremental.getProcessEtg();
+			System.out.println("COUNT: edgeDeltas "
+					+ incremental.getEdgeDeltas().size());
+		}
+		else if (cache != null && cache.loadEtgs(settings)) {
+			cachedEtgs = true;
+			deviceEtg = cache.getDeviceEtg();
+			processEtg = cache.getProcessEtg();
+			baseEtg = cache.getBaseEtg();
+			endTime = System.currentTimeMillis();
+			System.out.println("TIME: loadCachedETGs "+(endTime - startTime)
+					+" ms");
+		}
+		else {
+			deviceEtg = new DeviceGraph(devices, settings);
+		}
+		endTime = System.currentTimeMillis();
 		System.out.println("COUNT: deviceETGVertices "
 				+ deviceEtg.getVertexCount());
 		System.out.println("COUNT: deviceETGEdges "
@@ -155,15 +234,19 @@ public class newDriver {
 
 		// Create process-based ETG
 		logger.info("*** Generate process-based ETG ***");
-		startTime = System.currentTimeMillis();
-		ProcessGraph processEtg = new ProcessGraph(deviceEtg, settings);
-		ExtendedTopologyGraph baseEtg = processEtg;
-		endTime = System.currentTimeMillis();
+		if (null == processEtg) {
+			startTime = System.currentTimeMillis();
+			processEtg = new ProcessGraph(deviceEtg, settings);
+			endTime = System.currentTimeMillis();
+		}
+		if (null == baseEtg) {
+			baseEtg = processEtg;
+		}
 		System.out.println("TIME: baseETG "+(endTime - startTime)+" ms");
 		logger.info(baseEtg.toString());
 
 		// Convert process-based ETG to interface-based ETG
-		if (settings.shouldGenerateInterfaceETG()) {
+		if (settings.shouldGenerateInterfaceETG() && !cachedEtgs) {
 			logger.info("*** Generate interface-based ETG ***");
 			baseEtg = new InterfaceGraph(processEtg);
 		}
@@ -180,20 +263,25 @@ public class newDriver {
 		System.out.println("COUNT: staticProcesses "
 				+ processEtg.numberOfType(ProcessType.STATIC));
 
-		FloydWarshallShortestPaths<Vertex,DirectedEdge<Vertex>> fwsp =
-				new FloydWarshallShortestPaths<Vertex, DirectedEdge<Vertex>>(
-						baseEtg.getGraph());
-		// TODO : Check if this definition of diameter is correct. Is it the max
-		// of all the pair-wise shortest paths or the longest path through the
-		// graph ?
-		int diameter = 0;
-		for (GraphPath<Vertex,DirectedEdge<Vertex>> path :
-				fwsp.getShortestPaths()) {
-			if (path.getEdgeList().size() > diameter) {
-				diameter = path.getEdgeList().size();
+		// Compute the number of hops on the longest of the shortest paths
+		// between all pairs of vertices, if requested
+		if (settings.shouldComputeDiameter()) {
+			startTime = System.currentTimeMillis();
+			GraphDiameter diameter = new GraphDiameter(
+					baseEtg.toCompactGraph());
+			if (GraphDiameter.EXACT.equals(settings.getDiameterMode())) {
+				System.out.println("COUNT: baseETGDiameter "
+						+ diameter.getDiameter(settings.shouldParallelize()
+								? settings.getThreadCount() : 1));
+			}
+			else {
+				System.out.println("COUNT: baseETGDiameterLowerBound "
+						+ diameter.getDiameterLowerBound());
 			}
+			endTime = System.currentTimeMillis();
+			System.out.println("TIME: diameter " + (endTime - startTime)
+					+ " ms");
 		}
-		System.out.println("COUNT: baseETGDiameter " + diameter);
 
 		// Generate Base Instance Graph
 		logger.info("*** Generate instance-based ETG ***");
@@ -223,6 +311,7 @@ public class newDriver {
 				settings);
 
 		Map<Flow,? extends ExtendedTopologyGraph> flowEtgs = null;
+		Map<Flow, CompactGraph> compactEtgs = null;
 
         /* // Measure memory usage
         Runtime runtime = Runtime.getRuntime();
@@ -245,9 +334,28 @@ public class newDriver {
         long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("MEM: preFlowETGs " + memoryBefore);*/
 
-		if (settings.shouldGenerateFlowETGs()) {
-			// Create ETGs for every possible flow
-			flowEtgs = generateFlowETGs(settings, baseEtg, policyGroups, devices);
+		if (cachedEtgs) {
+			flowEtgs = cache.getFlowEtgs();
+		}
+		else {
+			if (settings.shouldGenerateFlowETGs()) {
+				// Convert ETGs to compact form as they are created, unless
+				// they are needed in full after they are created
+				if (settings.shouldUseCompactEtgs()
+						&& !shouldKeepFlowETGs(settings, cache)) {
+					compactEtgs = new LinkedHashMap<Flow, CompactGraph>();
+				}
+
+				// Create ETGs for every possible flow
+				flowEtgs = generateFlowETGs(settings, baseEtg, policyGroups,
+						devices, compactEtgs);
+			}
+
+			// Store ETGs in the cache before they are pruned
+			if (cache != null) {
+				cache.storeEtgs(settings, deviceEtg, processEtg, baseEtg,
+						flowEtgs);
+			}
 		}
 
 		/* // Measure memory usage
@@ -283,11 +391,36 @@ public class newDriver {
 		}
 
 		// Run verification tasks
-		if (flowEtgs != null) {
-			runVerificationTasks(settings, flowEtgs, deviceEtg);
+		if (flowEtgs != null || compactEtgs != null) {
+			runVerificationTasks(settings, flowEtgs, compactEtgs, deviceEtg,
+					baseEtg);
 		}
 	}
 
+	/**
+	 * Determine if the per-flow ETGs are needed after they are created, other
+	 * than in compact form.
+	 * @param settings settings
+	 * @param cache cache in which the ETGs are stored; null if none
+	 * @return true if the ETGs must be kept, false if only their compact form
+	 * 		is needed
+	 */
+	private static boolean shouldKeepFlowETGs(Settings settings,
+			EtgCache cache) {
+		return (cache != null
+				|| settings.shouldGenerateGraphs()
+				|| settings.shouldSerializeETGs()
+				|| settings.shouldVerifyCurrentlyBlocked()
+				|| settings.shouldVerifyEquivalence()
+				|| settings.shouldVerifyAlwaysIsolated()
+				|| settings.shouldVerifyFailureScenarios()
+				|| settings.shouldVerifyPaths()
+				// The min cut reported with each result maps back to the
+				// inter-device edges of the ETG
+				|| (settings.shouldVerifyAlwaysReachable()
+						&& !settings.shouldSummarizeVerificationResults()));
+	}
+
 	/**
 	 * Determine policy groups
 	 * @param vendorConfigs
@@ -349,7 +482,7 @@ public class newDriver {
 		logger.info("*** Processed Policy Groups ***");
 		startTime = System.currentTimeMillis();
 		Set<PolicyGroup> nonOverlappingGroups =
-				PolicyGroup.getNonOverlapping(groups);
+				PolicyGroupAtomizer.atomize(groups);
 		endTime = System.currentTimeMillis();
 		System.out.println("TIME: separatePolicyGroups " +
 				(endTime - startTime) + " ms");
@@ -393,46 +526,33 @@ public class newDriver {
 	 * @param settings
 	 * @param baseEtg the ETG on which to base the ETG for each flow
 	 * @param policyGroups the policy groups from which to define flows
-	 * @return the created ETGs
+	 * @param compactEtgs map to which the compact form of each flow's ETG is
+	 * 		added as soon as the ETG is created, in which case the ETGs are
+	 * 		not kept; null to keep the ETGs
+	 * @return the created ETGs; null if they were only kept in compact form
 	 */
 	private static Map<Flow,ExtendedTopologyGraph> generateFlowETGs(
 			Settings settings, ExtendedTopologyGraph baseEtg,
-			Set<PolicyGroup> policyGroups, List<Device> devices) {
+			Set<PolicyGroup> policyGroups, List<Device> devices,
+			Map<Flow, CompactGraph> compactEtgs) {
 		Logger logger = settings.getLogger();
 
 		// Create a queue of flows for which to construct ETGs
 		Queue<Flow> queue = new ConcurrentLinkedQueue<Flow>();
-		List<Flow> flows = new ArrayList<Flow>(policyGroups.size()
-				* policyGroups.size() - policyGroups.size());
-		for (PolicyGroup source : policyGroups) {
-			for (PolicyGroup destination : policyGroups) {
-				if (source.equals(destination)) {
-					continue;
-				}
-				Flow flow = new Flow(source, destination);
-				flows.add(flow);
-			}
-		}
+		// Determine which flows need flow-specific ETGs and which flows can
+		// use an ETG with multiple sources and a common destination
+		FlowPlanner planner = new FlowPlanner(policyGroups, devices);
 
 		System.out.println("Flows requiring specific ETGs:");
+		for (Flow flow : planner.getCustomFlows()) {
+			System.out.println(flow.toString());
+			queue.add(flow);
+		}
+
 		Map<PolicyGroup, List<PolicyGroup>> dstToSources =
-				new HashMap<PolicyGroup, List<PolicyGroup>>();
-		// Check if a flow needs a custom ETG or we can use an ETG with multiple
-		// sources and a common destination
-		for (Flow flow : flows) {
-			if (flowNeedsCustomEtg(flow, devices)) {
-				System.out.println(flow.toString());
-				queue.add(flow);
-			}
-			else {
-				if (!dstToSources.containsKey(flow.getDestination())) {
-					dstToSources.put(flow.getDestination(),
-							new ArrayList<PolicyGroup>());
-					Flow wildcardFlow = new Flow(flow.getDestination());
-					queue.add(wildcardFlow);
-				}
-				dstToSources.get(flow.getDestination()).add(flow.getSource());
-			}
+				planner.getWildcardSources();
+		for (PolicyGroup destination : dstToSources.keySet()) {
+			queue.add(new Flow(destination));
 		}
 
 		System.out.println("Flows requiring general ETGs:");
@@ -471,10 +591,16 @@ public class newDriver {
         long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
         System.out.println("MEM: preFlowETGs " + memoryBefore);*/
 
-		// Generate flow-specific ETGs
+		// Generate flow-specific ETGs, sharing ACL decisions between them
 		Map<Flow, ExtendedTopologyGraph> flowEtgs =
 				new LinkedHashMap<Flow, ExtendedTopologyGraph>();
+		AclDecisionCache aclDecisions = new AclDecisionCache();
+		baseEtg.setAclDecisionCache(aclDecisions);
 		long startTime = System.currentTimeMillis();
+		CompactGraph compactBaseEtg = null;
+		if (compactEtgs != null) {
+			compactBaseEtg = baseEtg.toCompactGraph();
+		}
 		if (settings.shouldParallelize()) {
 			// Create a thread pool
 			int numThreads = Runtime.getRuntime().availableProcessors();
@@ -482,21 +608,27 @@ public class newDriver {
 					numThreads);
 
 			// Start a VerificationTask for each thread
+			List<ConstructTask> tasks = new ArrayList<ConstructTask>(numThreads);
 			List<Future<Map<Flow,ExtendedTopologyGraph>>> futures =
 					new ArrayList<Future<Map<Flow,ExtendedTopologyGraph>>>(
 							numThreads);
 			for (int t = 0; t < numThreads; t++) {
-				ConstructTask task = new ConstructTask(baseEtg, queue, dstToSources);
+				ConstructTask task = new ConstructTask(baseEtg, queue,
+						dstToSources, compactBaseEtg, settings.shouldPrune());
+				tasks.add(task);
 				futures.add(threadPool.submit(task));
 			}
 
 			// Get the results from each thread
 			try {
-				for (Future<Map<Flow,ExtendedTopologyGraph>> future : futures) {
+				for (int t = 0; t < numThreads; t++) {
 					// Get the result from the thread, waiting for the thread to
 					// complete, if necessary
-					Map<Flow,ExtendedTopologyGraph> result = future.get();
+					Map<Flow,ExtendedTopologyGraph> result = futures.get(t).get();
 					flowEtgs.putAll(result);
+					if (compactEtgs != null) {
+						compactEtgs.putAll(tasks.get(t).getCompactEtgs());
+					}
 				}
 			}
 			catch (Exception exception) {
@@ -508,25 +640,22 @@ public class newDriver {
 			}
 		}
 		else {
-			while (!queue.isEmpty()) {
-				Flow flow = queue.remove();
-				ExtendedTopologyGraph flowEtg =
-						(ExtendedTopologyGraph)baseEtg.clone();
-				if (flow.hasWildcardSource()) {
-					List<PolicyGroup> sources = dstToSources.get(flow.getDestination());
-					flowEtg.customize(flow, sources);
-					for (PolicyGroup source : sources) {
-						Flow tmpFlow = new Flow(source, flow.getDestination());
-						flowEtgs.put(tmpFlow, flowEtg);
-					}
-				} else {
-					flowEtg.customize(flow);
-					flowEtgs.put(flow, flowEtg);
-				}
+			ConstructTask task = new ConstructTask(baseEtg, queue,
+					dstToSources, compactBaseEtg, settings.shouldPrune());
+			try {
+				flowEtgs.putAll(task.call());
+			}
+			catch (Exception exception) {
+				throw new GeneratorException("Generation task failed",
+						exception);
+			}
+			if (compactEtgs != null) {
+				compactEtgs.putAll(task.getCompactEtgs());
 			}
 		}
 		long endTime = System.currentTimeMillis();
 		System.out.println("TIME: flowETGs "+(endTime - startTime)+" ms");
+		logger.debug("ACL decisions: " + aclDecisions);
 
         /*// Measure memory usage
         try {
@@ -550,58 +679,10 @@ public class newDriver {
         long memoryUsed = memoryAfter - memoryBefore;
 		System.out.println("MEM: onlyFlowETGs " + memoryUsed);*/
 
-		return flowEtgs;
-	}
-
-	/**
-	 * Given a flow, and a list of network devices, check if the flow contains any ACL blocking its traffic class
-	 */
-	private static boolean flowNeedsCustomEtg(Flow flow, List<Device> devices) {
-		for (Device device : devices) {
-			for (Interface deviceIface: device.getInterfaces()) {
-				if (deviceIface.hasPrefix()) {
-					if ((flow.getDestination().contains(deviceIface.getPrefix()) &&
-							checkIfIncomingIsBlocked(flow, deviceIface)) ||
-							flow.getSource().contains(deviceIface.getPrefix()) &&
-									checkIfOutgoingIsBlocked(flow, deviceIface)) {
-						return true;
-					}
-				}
-			}
-
-			// FIXME: Also check for static routes
-		}
-		return false;
-	}
-
-	private static boolean checkIfIncomingIsBlocked(Flow flow, Interface deviceIface) {
-		if (deviceIface.getIncomingFilter() != null) {
-			Device device = deviceIface.getDevice();
-			StandardAccessList stdAcl = device.getStandardAcl(
-					deviceIface.getIncomingFilter());
-			ExtendedAccessList extAcl = device.getExtendedAcl(
-					deviceIface.getIncomingFilter());
-			if ((stdAcl != null && flow.isBlocked(stdAcl))
-					|| (extAcl != null && flow.isBlocked(extAcl))) {
-				return true;
-			}
+		if (compactEtgs != null) {
+			return null;
 		}
-		return false;
-	}
-
-	private static boolean checkIfOutgoingIsBlocked(Flow flow, Interface deviceIface) {
-		if (deviceIface.getOutgoingFilter() != null) {
-			Device device = deviceIface.getDevice();
-			StandardAccessList stdAcl = device.getStandardAcl(
-					deviceIface.getOutgoingFilter());
-			ExtendedAccessList extAcl = device.getExtendedAcl(
-					deviceIface.getOutgoingFilter());
-			if ((stdAcl != null && flow.isBlocked(stdAcl))
-					|| (extAcl != null && flow.isBlocked(extAcl))) {
-				return true;
-			}
-		}
-		return false;
+		return flowEtgs;
 	}
 
 	/**
@@ -732,33 +813,58 @@ public class newDriver {
 	/**
 	 * Run verification tasks.
 	 * @param settings settings
-	 * @param flowEtgs the per-flow ETGs to use for verification
+	 * @param flowEtgs the per-flow ETGs to use for verification; null if
+	 * 		only their compact form was kept
+	 * @param compactEtgs compact form of the per-flow ETGs, if they were
+	 * 		converted as they were created; otherwise null
+	 * @param baseEtg the ETG on which the per-flow ETGs are based
 	 */
 	private static void runVerificationTasks(Settings settings,
 											 Map<Flow, ? extends ExtendedTopologyGraph> flowEtgs,
-											 DeviceGraph deviceEtg) {
+											 Map<Flow, CompactGraph> compactEtgs,
+											 DeviceGraph deviceEtg, ExtendedTopologyGraph<?> baseEtg) {
+
+		// Create the sink that outputs verification results; results for
+		// properties whose per-flow output is summarized are only counted
+		VerificationResultSink output = VerificationResultSink.create(
+				settings.getResultsFormat(), settings.getResultsFile());
+		CountingResultSink summary = new CountingResultSink(null);
+		VerificationResultSink perflowOutput =
+				(settings.shouldSummarizeVerificationResults() ? summary : output);
 
 		// Verify currently blocked
-		Map<Flow, Boolean> currentlyBlockedResults = null;
+		Set<Flow> currentlyBlockedFlows = null;
 		if (settings.shouldVerifyCurrentlyBlocked()) {
 			CurrentlyBlocked verifier = new CurrentlyBlocked(flowEtgs,settings);
 
-			// Run verification
+			// Remember which flows are currently blocked, so they can be flagged
+			// if they are not always blocked
+			VerificationResultSink sink = perflowOutput;
+			if (settings.shouldVerifyAlwaysBlocked()) {
+				final Set<Flow> blocked = Collections.newSetFromMap(
+						new ConcurrentHashMap<Flow, Boolean>());
+				final VerificationResultSink next = perflowOutput;
+				sink = new VerificationResultSink() {
+					@Override
+					public void accept(Object context, Flow flow, boolean result,
+							boolean flagged, String detail) {
+						if (result) {
+							blocked.add(flow);
+						}
+						next.accept(context, flow, result, flagged, detail);
+					}
+				};
+				currentlyBlockedFlows = blocked;
+			}
+
+			// Run verification and output results
 			long startTime = System.currentTimeMillis();
-			currentlyBlockedResults = verifier.verifyAll(null);
+			perflowOutput.begin("currentlyBlocked", "Currently Blocked");
+			verifier.verifyAll(null, sink);
+			perflowOutput.end();
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: currentlyBlocked " + (endTime - startTime)
 					+ " ms");
-
-			// Output results
-			if (!settings.shouldSummarizeVerificationResults()) {
-				System.out.println("*** Currently Blocked ***");
-				for (Entry<Flow, Boolean> result :
-						currentlyBlockedResults.entrySet()) {
-					System.out.println("\t" + result.getValue() + "\t"
-							+ result.getKey());
-				}
-			}
 		}
 
 		// Verify equivalence
@@ -797,23 +903,18 @@ public class newDriver {
 				e.printStackTrace();
 			}
 
-			// Run verification
+			// Run verification and output results
 			long startTime = System.currentTimeMillis();
-			Map<Flow, Boolean> results = verifier.verifyAll(comparisonEtgs);
+			output.begin("equivalent", "Equivalent");
+			verifier.verifyAll(comparisonEtgs, output);
+			output.end();
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: equivalent " + (endTime - startTime)
 					+ " ms");
-
-			// Output results
-			System.out.println("*** Equivalent ***");
-			for (Entry<Flow, Boolean> result : results.entrySet()) {
-				System.out.println("\t" + result.getValue() + "\t"
-						+ result.getKey());
-			}
 		}
 
-		// Prune ETGs
-		if (settings.shouldPrune()) {
+		// Prune ETGs, unless they were pruned when they were converted
+		if (settings.shouldPrune() && flowEtgs != null) {
 			long startTime = System.currentTimeMillis();
 			for (ExtendedTopologyGraph flowEtg : flowEtgs.values()) {
 				flowEtg.prune();
@@ -822,91 +923,129 @@ public class newDriver {
 			System.out.println("TIME: pruneETGs "+(endTime - startTime)+" ms");
 		}
 
+		// Convert ETGs to compact form, if requested and not already done
+		if (settings.shouldUseCompactEtgs() && null == compactEtgs) {
+			long startTime = System.currentTimeMillis();
+			CompactGraph compactBaseEtg = baseEtg.toCompactGraph();
+			compactEtgs = new LinkedHashMap<Flow, CompactGraph>();
+
+			// A wildcard ETG is shared by all of its flows, so it is only
+			// converted once
+			Map<ExtendedTopologyGraph<?>, CompactGraph> converted =
+					new IdentityHashMap<ExtendedTopologyGraph<?>,
+							CompactGraph>();
+			for (Flow flow : flowEtgs.keySet()) {
+				ExtendedTopologyGraph<?> flowEtg = flowEtgs.get(flow);
+				CompactGraph compactEtg = converted.get(flowEtg);
+				if (null == compactEtg) {
+					compactEtg = flowEtg.toCompactGraph(compactBaseEtg);
+					converted.put(flowEtg, compactEtg);
+				}
+				compactEtgs.put(flow, compactEtg);
+			}
+			long endTime = System.currentTimeMillis();
+			System.out.println("TIME: compactETGs "+(endTime - startTime)
+					+" ms");
+		}
+
 		// Verify always blocked
 		if (settings.shouldVerifyAlwaysBlocked()) {
 			AlwaysBlocked verifier = new AlwaysBlocked(flowEtgs, settings);
+			verifier.setCompactEtgs(compactEtgs);
+
+			// Flag flows that are currently blocked but not always blocked
+			VerificationResultSink sink = output;
+			if (currentlyBlockedFlows != null) {
+				final Set<Flow> blocked = currentlyBlockedFlows;
+				final VerificationResultSink next = output;
+				sink = new VerificationResultSink() {
+					@Override
+					public void accept(Object context, Flow flow, boolean result,
+							boolean flagged, String detail) {
+						next.accept(context, flow, result,
+								flagged || (!result && blocked.contains(flow)),
+								detail);
+					}
+				};
+			}
 
-			// Run verification
+			// Run verification and output results
 			long startTime = System.currentTimeMillis();
-			Map<Flow, Boolean> results = verifier.verifyAll(null);
+			output.begin("alwaysBlocked", "Always Blocked");
+			verifier.verifyAll(null, sink);
+			output.end();
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: alwaysBlocked " + (endTime - startTime)
 					+ " ms");
-
-			// Output results
-			System.out.println("*** Always Blocked ***");
-			for (Entry<Flow, Boolean> result : results.entrySet()) {
-				String exclaim = "";
-				if (currentlyBlockedResults != null
-						&& currentlyBlockedResults.get(result.getKey())
-						&& !result.getValue()) {
-					exclaim = "!";
-				}
-				System.out.println("\t" + result.getValue() + exclaim + "\t"
-						+ result.getKey());
-			}
 		}
 
 		// Verify always reachable
 		if (settings.shouldVerifyAlwaysReachable()) {
 			int maxFailuresExclusive =
 					settings.getAlwaysReachableFailureCount();
-			AlwaysReachable verifier = new AlwaysReachable(flowEtgs, settings);
+			AlwaysReachable verifier = new AlwaysReachable(flowEtgs, settings,
+					baseEtg);
+			verifier.setCompactEtgs(compactEtgs);
 
-			// Run verification
+			// Run verification and output results, including the failures that
+			// disconnect each flow
 			long startTime = System.currentTimeMillis();
-			Map<Flow, Boolean> results = verifier.verifyAll(
-					maxFailuresExclusive);
+			perflowOutput.begin("alwaysReachable", "Always Reachable (< "
+					+ maxFailuresExclusive + " failures)");
+			verifier.verifyAll(maxFailuresExclusive, perflowOutput);
+			perflowOutput.end();
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: alwaysReachable " + (endTime - startTime)
 					+ " ms");
-
-			// Output results
-			if (!settings.shouldSummarizeVerificationResults()) {
-				System.out.println("*** Always Reachable (< "
-						+ maxFailuresExclusive + " failures) ***");
-				for (Entry<Flow, Boolean> result : results.entrySet()) {
-					System.out.println("\t" + result.getValue() + "\t"
-							+ result.getKey());
-				}
-			}
 		}
 		
-		//maxFlowutil.testadd();
-		//maxFlowutil.testdel();
+		// Verify reachability in enumerated link failure scenarios
+		if (settings.shouldVerifyFailureScenarios()) {
+			int maxFailures = settings.getMaxLinkFailures();
+			FailureScenarios verifier = new FailureScenarios(flowEtgs,
+					settings, deviceEtg);
+			verifier.setCompactEtgs(compactEtgs);
+
+			// Run verification and output results, including the failures that
+			// disconnect each flow
+			long startTime = System.currentTimeMillis();
+			perflowOutput.begin("failureScenarios", "Failure Scenarios (<= "
+					+ maxFailures + " link failures)");
+			verifier.verifyAll(maxFailures, perflowOutput);
+			perflowOutput.end();
+			long endTime = System.currentTimeMillis();
+			System.out.println("COUNT: failureScenarios "
+					+ verifier.getScenarioCount(maxFailures));
+			System.out.println("COUNT: failureScenariosExamined "
+					+ verifier.getExaminedCount());
+			System.out.println("TIME: failureScenarios "
+					+ (endTime - startTime) + " ms");
+		}
+
 		//DirectedEdgeFactory newedge = new DirectedEdgeFactory("20.0.0.0-20.0.0.255 1-65535 [TCP, UDP]");
 
 		// Verify always isolated
 		if (settings.shouldVerifyAlwaysIsolated()) {
 			AlwaysIsolated verifier = new AlwaysIsolated(flowEtgs, settings);
+			verifier.setCompactEtgs(compactEtgs);
 
-			// Run verification
+			// Run verification and output results
 			long startTime = System.currentTimeMillis();
-			Map<Flow,Map<Flow,Boolean>> results =
-					new LinkedHashMap<Flow,Map<Flow,Boolean>>();
-			for (Flow flow : flowEtgs.keySet()) {
-				Map<Flow,Boolean> flowResults = verifier.verifyAll(flow);
-				if (!settings.shouldSummarizeVerificationResults()) {
-					results.put(flow, flowResults);
-				}
+			if (!settings.shouldSummarizeVerificationResults()) {
+				output.begin("alwaysIsolated", "Always Isolated");
+				verifier.verifyAllPairs(output);
+				output.end();
+			}
+			else {
+				long isolatedPairs = verifier.countIsolatedPairs();
+				long allPairs = (long)flowEtgs.size() * flowEtgs.size();
+				System.out.println("COUNT: alwaysIsolatedTrue " + isolatedPairs);
+				System.out.println("COUNT: alwaysIsolatedFalse "
+						+ (allPairs - isolatedPairs));
 			}
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: alwaysIsolated " + (endTime - startTime)
 					+ " ms");
-
-			// Output results
-			if (!settings.shouldSummarizeVerificationResults()) {
-				System.out.println("*** Always Isolated ***");
-				for (Entry<Flow,Map<Flow,Boolean>> flowResults :
-						results.entrySet()) {
-					for (Entry<Flow,Boolean> result :
-							flowResults.getValue().entrySet()) {
-						System.out.println("\t" + result.getValue() + "\t"
-								+ flowResults.getKey() + " | "
-								+ result.getKey());
-					}
-				}
-			}
 		}
 
 		// Verify paths
@@ -922,42 +1061,54 @@ public class newDriver {
 				}
 			}
 
-			// Run verification
+			// Run verification and output results; results are counted to
+			// determine if all paths matched
 			ComputedPaths verifier = new ComputedPaths(flowEtgs, settings);
+			verifier.setCompactEtgs(compactEtgs);
+			CountingResultSink pathResults = new CountingResultSink(
+					(settings.shouldSummarizeVerificationResults() ? null : output));
 			long startTime = System.currentTimeMillis();
 			VirlOutputParser virlOutputParser = new VirlOutputParser(
 					settings.getFIBfile(), deviceEtg, settings.getLogger());
-			Map<Scenario,Map<Flow,Boolean>> results =
-					new LinkedHashMap<Scenario,Map<Flow,Boolean>>();
-			for (Scenario scenario : virlOutputParser.parse()) {
-				Map<Flow,Boolean> scenarioResults =
-						verifier.verifyAll(scenario);
-				results.put(scenario, scenarioResults);
+			output.begin("computedPaths", "Computed Paths");
+			pathResults.begin("computedPaths", "Computed Paths");
+			ScenarioIterator scenarios = virlOutputParser.parseIncrementally();
+			try {
+				verifier.verifyAll(scenarios, pathResults);
 			}
+			finally {
+				scenarios.close();
+			}
+			pathResults.end();
+			output.end();
 			long endTime = System.currentTimeMillis();
 			System.out.println("TIME: computedPaths "+(endTime - startTime)
 					+" ms");
 
-			// Output results
-			System.out.println("*** Computed Paths ***");
-			boolean allMatch = true;
-			for (Entry<Scenario,Map<Flow,Boolean>> scenarioResults :
-					results.entrySet()) {
-				for (Entry<Flow,Boolean> result :
-						scenarioResults.getValue().entrySet()) {
-					if (!settings.shouldSummarizeVerificationResults()) {
-						System.out.println("\t" + result.getValue() + "\t"
-								+ scenarioResults.getKey() + " | "
-								+ result.getKey());
-					}
-					allMatch = (allMatch && result.getValue());
-				}
+			if (settings.shouldSummarizeVerificationResults()) {
+				System.out.println(pathResults);
 			}
+
+			boolean allMatch =
+					(0 == pathResults.getFalseCount("computedPaths"));
 			if (allMatch) {
 				System.out.println("All paths matched");
 			} else {
 				System.out.println("Some paths did not match");
 			}
 		}
+
+		// Output counts of summarized per-flow results
+		if (settings.shouldSummarizeVerificationResults()
+				&& summary.toString().length() > 0) {
+			System.out.println(summary);
+		}
+
+		// Output counts of results, if requested
+		if (output instanceof CountingResultSink
+				&& output.toString().length() > 0) {
+			System.out.println(output);
+		}
+		output.close();
 	}
 }
@@ -1,24 +1,50 @@
 package edu.wisc.cs.arc.verifiers;
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.DirectedGraph;
 
 import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.CompactGraph;
 import edu.wisc.cs.arc.graphs.DirectedEdge;
 import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
 import edu.wisc.cs.arc.graphs.Flow;
 import edu.wisc.cs.arc.graphs.Vertex;
 
 /**
- * Checks if a flow is always blocked.
+ * Checks if a flow is always blocked. The vertices that can reach the
+ * destination are computed once per ETG, or compact ETG, so flows that share
+ * an ETG with a wildcard source are all answered from a single search. Only
+ * the searches of ETGs shared by several flows are kept, as bitmaps over
+ * vertex identifiers, and each is dropped once all of its flows have been
+ * answered.
  * @author Aaron Gember-Jacobson (agember@cs.wisc.edu)
  */
 @SuppressWarnings("rawtypes")
 public class AlwaysBlocked extends Verifier {
 	
+	/** Identifiers of the vertices from which the destination can be reached
+	 * in each ETG, or compact ETG, shared by flows that have not yet been
+	 * answered */
+	private Map<Object, BitSet> reachesDestination;
+	
+	/** Number of flows that have not yet been answered for each ETG, or
+	 * compact ETG, shared by more than one flow; null until first needed */
+	private Map<Object, Integer> unansweredFlows;
+	
+	/** Identifier of each vertex that can reach the destination in an ETG */
+	private ConcurrentHashMap<Vertex, Integer> vertexIds;
+	
+	/** Next vertex identifier to assign */
+	private AtomicInteger nextVertexId;
+	
 	/**
 	 * Construct a verifier.
 	 * @param etgs the extended topology graphs to use for verification
@@ -27,6 +53,10 @@ public class AlwaysBlocked extends Verifier {
 	public AlwaysBlocked(Map<Flow, ? extends ExtendedTopologyGraph> etgs, 
 			Settings settings) {
 		super(etgs, settings);
+		this.reachesDestination = new IdentityHashMap<Object, BitSet>();
+		this.unansweredFlows = null;
+		this.vertexIds = new ConcurrentHashMap<Vertex, Integer>();
+		this.nextVertexId = new AtomicInteger();
 	}
 
 	/**
@@ -37,28 +67,156 @@ public class AlwaysBlocked extends Verifier {
 	 */
 	@Override
 	public boolean verify(Flow flow, Object arg) {
+		// Check if a path exists in the compact ETG, if requested
+		if (this.compactEtgs != null) {
+			CompactGraph compactEtg = this.getCompactEtg(flow);
+			BitSet reaching = this.getCachedReaching(compactEtg);
+			if (null == reaching) {
+				reaching = compactEtg.getVerticesReaching(
+						compactEtg.getFlowDestinationId());
+			}
+			this.answered(compactEtg, reaching);
+			int source = compactEtg.getFlowSourceId(flow.getSource());
+			return (source < 0 || !reaching.get(source));
+		}
+		
 		// Get ETG
 		ExtendedTopologyGraph etg = this.etgs.get(flow);
 		if (null == etg) {
 			throw new VerifierException("No ETG for flow "+flow);
 		}
-		settings.getLogger().debug("Verify always blocked for " 
-				+ flow.toString());
-		settings.getLogger().debug("\tSource vertex=" 
-				+ etg.getFlowSourceVertex(flow.getSource())
-				+ " Present=" + (etg.getVertex(etg.getFlowSourceVertex(
-						flow.getSource()).getName()) != null));
-		settings.getLogger().debug("\tETG flow=" + etg.getFlow());
+		if (settings.getLogger().isDebugEnabled()) {
+			settings.getLogger().debug("Verify always blocked for " 
+					+ flow.toString());
+			settings.getLogger().debug("\tSource vertex=" 
+					+ etg.getFlowSourceVertex(flow.getSource())
+					+ " Present=" + (etg.getVertex(etg.getFlowSourceVertex(
+							flow.getSource()).getName()) != null));
+			settings.getLogger().debug("\tETG flow=" + etg.getFlow());
+			
+			Iterator<Vertex> iterator = etg.getVerticesIterator();
+			while (iterator.hasNext()) {
+				settings.getLogger().debug("\t"+iterator.next());
+			}
+		}
 		
-		Iterator<Vertex> iterator = etg.getVerticesIterator();
+		// Check if a path exists
+		BitSet reaching = this.getCachedReaching(etg);
+		if (null == reaching) {
+			reaching = this.getVerticesReachingDestination(etg);
+		}
+		this.answered(etg, reaching);
+		Vertex source = etg.getFlowSourceVertex(flow.getSource());
+		Integer sourceId = (null == source ? null : this.vertexIds.get(source));
+		return (null == sourceId || !reaching.get(sourceId));
+	}
+	
+	/**
+	 * Get the cached search result for an ETG.
+	 * @param graph the ETG, or compact ETG
+	 * @return the vertices from which the destination can be reached; null if
+	 * 		the search has not been done or its result is not kept
+	 */
+	private synchronized BitSet getCachedReaching(Object graph) {
+		return this.reachesDestination.get(graph);
+	}
+	
+	/**
+	 * Record that a flow has been answered using the search result for its
+	 * ETG. The result is kept while other flows that share the ETG have not
+	 * been answered, and dropped after the last of them.
+	 * @param graph the flow's ETG, or compact ETG
+	 * @param reaching the vertices from which the destination can be reached
+	 */
+	private synchronized void answered(Object graph, BitSet reaching) {
+		if (null == this.unansweredFlows) {
+			this.unansweredFlows = countSharingFlows(null == this.compactEtgs ?
+					this.etgs : this.compactEtgs);
+		}
+		Integer remaining = this.unansweredFlows.get(graph);
+		if (null == remaining) {
+			return;
+		}
+		if (remaining > 1) {
+			this.unansweredFlows.put(graph, remaining - 1);
+			this.reachesDestination.put(graph, reaching);
+		}
+		else {
+			this.unansweredFlows.remove(graph);
+			this.reachesDestination.remove(graph);
+		}
+	}
+	
+	/**
+	 * Count the flows that share each graph.
+	 * @param graphs the graph for each flow
+	 * @return the number of flows for each graph that is shared by more than
+	 * 		one flow
+	 */
+	private static Map<Object, Integer> countSharingFlows(
+			Map<Flow, ?> graphs) {
+		Map<Object, Integer> counts = new IdentityHashMap<Object, Integer>();
+		for (Object graph : graphs.values()) {
+			Integer count = counts.get(graph);
+			counts.put(graph, (null == count ? 1 : count + 1));
+		}
+		Iterator<Integer> iterator = counts.values().iterator();
 		while (iterator.hasNext()) {
-			settings.getLogger().debug("\t"+iterator.next());
+			if (iterator.next() < 2) {
+				iterator.remove();
+			}
+		}
+		return counts;
+	}
+	
+	/**
+	 * Get the identifier of a vertex, assigning one if needed. Flow ETGs share
+	 * most of their vertices, so the identifiers are shared by all ETGs.
+	 * @param vertex the vertex
+	 * @return the vertex's identifier
+	 */
+	private int getVertexId(Vertex vertex) {
+		Integer id = this.vertexIds.get(vertex);
+		if (null == id) {
+			Integer newId = this.nextVertexId.getAndIncrement();
+			id = this.vertexIds.putIfAbsent(vertex, newId);
+			if (null == id) {
+				id = newId;
+			}
+		}
+		return id;
+	}
+	
+	/**
+	 * Find all vertices from which an ETG's destination vertex can be reached
+	 * using a breadth-first search over incoming edges.
+	 * @param etg the ETG to search
+	 * @return identifiers of the vertices from which a path to the destination
+	 * 		exists
+	 */
+	@SuppressWarnings("unchecked")
+	private BitSet getVerticesReachingDestination(ExtendedTopologyGraph etg) {
+		BitSet reaching = new BitSet();
+		DirectedGraph<Vertex, DirectedEdge> graph = etg.getGraph();
+		Vertex destination = etg.getFlowDestinationVertex();
+		if (null == destination || !graph.containsVertex(destination)) {
+			return reaching;
 		}
 		
-		// Check if a path exists
-		List<DirectedEdge> path = DijkstraShortestPath.findPathBetween(
-				etg.getGraph(), etg.getFlowSourceVertex(flow.getSource()),
-				etg.getFlowDestinationVertex());
-		return (null == path);
+		Queue<Vertex> queue = new ArrayDeque<Vertex>();
+		reaching.set(this.getVertexId(destination));
+		queue.add(destination);
+		while (!queue.isEmpty()) {
+			Vertex vertex = queue.remove();
+			for (DirectedEdge edge : graph.incomingEdgesOf(vertex)) {
+				Vertex source = edge.getSource();
+				int id = this.getVertexId(source);
+				if (!reaching.get(id)) {
+					reaching.set(id);
+					queue.add(source);
+				}
+			}
+		}
+		return reaching;
 	}
 }
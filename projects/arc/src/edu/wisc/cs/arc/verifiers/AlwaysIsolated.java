@@ -1,20 +1,26 @@
 package edu.wisc.cs.arc.verifiers;
 
-import java.util.Iterator;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import edu.wisc.cs.arc.Settings;
-import edu.wisc.cs.arc.graphs.DirectedEdge;
 import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
 import edu.wisc.cs.arc.graphs.Flow;
 
 /**
- * Checks if two flows always traverse different links.
+ * Checks if two flows always traverse different links. The edges of all ETGs
+ * are indexed once, so each pair of flows is checked with a bitmap
+ * intersection.
  * @author Aaron Gember-Jacobson (agember@cs.wisc.edu)
  */
 @SuppressWarnings("rawtypes")
 public class AlwaysIsolated extends Verifier {
 	
+	/** Index of the edges in the ETGs; built on first use */
+	private IsolationIndex index;
+	
 	/**
 	 * Construct a verifier.
 	 * @param etgs the extended topology graphs to use for verification
@@ -52,15 +58,113 @@ public class AlwaysIsolated extends Verifier {
 		// If any edges are shared between the ETGs, then isolation is not
 		// guaranteed: in the worst case all links have failed except those
 		// used in paths that contain a common edge.
-		Iterator<DirectedEdge> iterator = etgA.getEdgesIterator();
-		while(iterator.hasNext()) {
-			DirectedEdge edgeA = iterator.next();
-			if (etgB.getGraph().containsEdge(edgeA.getSource(), 
-					edgeA.getDestination())) {
-				return false;
+		return this.getIndex().isIsolated(etgA, etgB);
+	}
+	
+	/**
+	 * Check the property for all pairs of flows.
+	 * @return a table of flows and the result of the property check for
+	 * 		each pair of flows
+	 */
+	public Map<Flow,Map<Flow,Boolean>> verifyAllPairs() {
+		final Map<Flow,Map<Flow,Boolean>> results =
+				new LinkedHashMap<Flow,Map<Flow,Boolean>>();
+		this.verifyAllPairs(new VerificationResultSink() {
+			@Override
+			public void accept(Object context, Flow flow, boolean result,
+					boolean flagged, String detail) {
+				Map<Flow,Boolean> flowResults = results.get(context);
+				if (null == flowResults) {
+					flowResults = new LinkedHashMap<Flow,Boolean>();
+					results.put((Flow)context, flowResults);
+				}
+				flowResults.put(flow, result);
+			}
+		});
+		return results;
+	}
+	
+	/**
+	 * Check the property for all pairs of flows, passing each result to a
+	 * sink as soon as it is produced. The flows that share an edge with each
+	 * flow are found by combining, for each of the flow's edges, the flows
+	 * that contain the edge. Only one flow's sharing bitmap is held at a time.
+	 * @param sink sink that receives the result for each pair of flows; the
+	 * 		first flow of the pair is passed as the context
+	 */
+	public void verifyAllPairs(VerificationResultSink sink) {
+		IsolationIndex index = this.getIndex();
+		for (Entry<Flow, ? extends ExtendedTopologyGraph> entryA :
+				this.etgs.entrySet()) {
+			BitSet sharing = index.getSharingEtgs(entryA.getValue());
+			for (Entry<Flow, ? extends ExtendedTopologyGraph> entryB :
+					this.etgs.entrySet()) {
+				sink.accept(entryA.getKey(), entryB.getKey(),
+						!sharing.get(index.getEtgId(entryB.getValue())), false,
+						null);
 			}
 		}
+	}
+	
+	/**
+	 * Count the ordered pairs of flows for which the property holds, without
+	 * materializing the result for every pair.
+	 * @return number of ordered pairs of flows that are always isolated
+	 */
+	public long countIsolatedPairs() {
+		IsolationIndex index = this.getIndex();
 		
-		return true;
+		// Count the flows that use each ETG
+		Map<Integer, Integer> flowsPerEtg = new LinkedHashMap<Integer, Integer>();
+		for (ExtendedTopologyGraph etg : this.etgs.values()) {
+			int etgId = index.getEtgId(etg);
+			Integer count = flowsPerEtg.get(etgId);
+			flowsPerEtg.put(etgId, (null == count ? 1 : count + 1));
+		}
+		int[] flowCounts = new int[flowsPerEtg.size()];
+		for (Entry<Integer, Integer> entry : flowsPerEtg.entrySet()) {
+			flowCounts[entry.getKey()] = entry.getValue();
+		}
+		
+		// Flows are isolated from all flows whose ETGs share no edges
+		long isolated = 0;
+		BitSet counted = new BitSet(flowCounts.length);
+		for (ExtendedTopologyGraph etg : this.etgs.values()) {
+			int etgId = index.getEtgId(etg);
+			if (counted.get(etgId)) {
+				continue;
+			}
+			counted.set(etgId);
+			BitSet sharing = index.getSharingEtgs(etg);
+			long notIsolated = 0;
+			for (int otherId = sharing.nextSetBit(0); otherId >= 0;
+					otherId = sharing.nextSetBit(otherId + 1)) {
+				notIsolated += flowCounts[otherId];
+			}
+			isolated += flowCounts[etgId]
+					* (this.etgs.size() - notIsolated);
+		}
+		return isolated;
+	}
+	
+	/**
+	 * Get the index of edges in the ETGs, building it if necessary.
+	 * @return index of the edges in the ETGs
+	 */
+	private synchronized IsolationIndex getIndex() {
+		if (null == this.index) {
+			this.index = new IsolationIndex(this.etgs);
+		}
+		return this.index;
+	}
+	
+	/**
+	 * Get the flow from which a flow is checked for isolation.
+	 * @param arg the other flow
+	 * @return the other flow
+	 */
+	@Override
+	protected Object getContext(Object arg) {
+		return arg;
 	}
 }
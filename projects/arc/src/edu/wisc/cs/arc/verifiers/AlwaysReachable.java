@@ -1,17 +1,25 @@
 package edu.wisc.cs.arc.verifiers;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jgrapht.Graphs;
-import org.jgrapht.alg.MinSourceSinkCut;
 import org.jgrapht.graph.DefaultDirectedWeightedGraph;
 
 import edu.tsinghua.lyf.maxFlow;
 import edu.tsinghua.lyf.maxFlowutil;
+import edu.tsinghua.lyf.vertexIndex;
 import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.CompactGraph;
 import edu.wisc.cs.arc.graphs.DirectedEdge;
 import edu.wisc.cs.arc.graphs.DirectedEdge.EdgeType;
+import edu.wisc.cs.arc.graphs.DirectedEdgeFactory;
 import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
 import edu.wisc.cs.arc.graphs.Flow;
 import edu.wisc.cs.arc.graphs.Vertex;
@@ -24,6 +32,13 @@ import edu.wisc.cs.arc.graphs.Vertex;
 @SuppressWarnings("rawtypes")
 public class AlwaysReachable extends Verifier {
 	
+	/** Vertex index shared by the max-flow computations for all flows */
+	private vertexIndex baseIndex;
+	
+	/** Minimum cut found for each flow, as inter-device edges of the flow's 
+	 * ETG */
+	private Map<Flow, List<DirectedEdge>> minCuts;
+	
 	/**
 	 * Construct a verifier.
 	 * @param etgs the extended topology graphs to use for verification
@@ -31,7 +46,23 @@ public class AlwaysReachable extends Verifier {
 	 */
 	public AlwaysReachable(Map<Flow, ? extends ExtendedTopologyGraph> etgs,
 			Settings settings) {
+		this(etgs, settings, null);
+	}
+	
+	/**
+	 * Construct a verifier.
+	 * @param etgs the extended topology graphs to use for verification
+	 * @param settings the settings to use during verification
+	 * @param baseEtg the ETG on which the per-flow ETGs are based; its 
+	 * 		vertices are indexed once for all flows
+	 */
+	public AlwaysReachable(Map<Flow, ? extends ExtendedTopologyGraph> etgs,
+			Settings settings, ExtendedTopologyGraph<?> baseEtg) {
 		super(etgs, settings);
+		this.minCuts = new ConcurrentHashMap<Flow, List<DirectedEdge>>();
+		if (baseEtg != null) {
+			this.baseIndex = new vertexIndex(baseEtg.getGraph().vertexSet());
+		}
 	}
 
 	/**
@@ -47,21 +78,25 @@ public class AlwaysReachable extends Verifier {
 		}
 		int maxFailuresExclusive = (Integer)arg;
 		
+		if (this.compactEtgs != null) {
+			return this.verifyCompact(flow, maxFailuresExclusive);
+		}
+		
 		// Get ETG
-		ExtendedTopologyGraph etg = this.etgs.get(flow);
+		ExtendedTopologyGraph<?> etg = this.etgs.get(flow);
 		if (null == etg) {
 			throw new VerifierException("No ETG for flow "+flow);
 		}
 		
 		// Create unit weight graph
-		DefaultDirectedWeightedGraph<Vertex,DirectedEdge> unitWeightGraph =
-				new DefaultDirectedWeightedGraph<Vertex,DirectedEdge>(
-						DirectedEdge.class);
+		DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>> unitWeightGraph =
+				new DefaultDirectedWeightedGraph<Vertex,DirectedEdge<Vertex>>(
+						new DirectedEdgeFactory<Vertex>());
 		Graphs.addAllVertices(unitWeightGraph, etg.getGraph().vertexSet());
-		Iterator<DirectedEdge> iterator = etg.getEdgesIterator();
+		Iterator<? extends DirectedEdge<?>> iterator = etg.getEdgesIterator();
 		while (iterator.hasNext()) {
-			DirectedEdge edge = iterator.next();
-			DirectedEdge newEdge = unitWeightGraph.addEdge(edge.getSource(), 
+			DirectedEdge<?> edge = iterator.next();
+			DirectedEdge<Vertex> newEdge = unitWeightGraph.addEdge(edge.getSource(), 
 					edge.getDestination());
 			if (EdgeType.INTER_DEVICE == edge.getType()) {
 				unitWeightGraph.setEdgeWeight(newEdge, 1);
@@ -75,23 +110,155 @@ public class AlwaysReachable extends Verifier {
 		// We can tolerate up to maxFailures failures and still have 
 		// reachability if the min cut (or max flow) onthe unit weight graph is 
 		// at least one unit more than maxFailures
-		MinSourceSinkCut<Vertex,DirectedEdge> minCutAlgorithm = 
-				new MinSourceSinkCut<Vertex,DirectedEdge>(unitWeightGraph);
-		//System.out.println(System.nanoTime());
-		minCutAlgorithm.computeMinCut(etg.getFlowSourceVertex(flow.getSource()),
-				etg.getFlowDestinationVertex());
 		Vertex source = etg.getFlowSourceVertex(flow.getSource());
 		Vertex dest = etg.getFlowDestinationVertex();
-		//System.out.println(source);
-		//System.out.println(dest);
-
-		//double minCut = minCutAlgorithm.getCutWeight();
-		//System.out.println(minCut);
-		double minCut = maxFlowutil.getResult(unitWeightGraph, source, dest);
-		//System.out.println(minCut);
-        if (flow.getDestination().getStartIp().asLong()==0) {
-            System.out.println("MINCUT: " + minCut + " " + flow.toString());
-        }
+		double minCut = maxFlowutil.getResult(flow, unitWeightGraph, source,
+				dest, this.settings.getMaxFlowEngine(), this.baseIndex);
+		
+		// Keep the edges forming the min cut; these are a smallest set of 
+		// link failures that disconnect the flow
+		Map<Vertex, Set<Vertex>> cutEnds = new HashMap<Vertex, Set<Vertex>>();
+		for (DirectedEdge<Vertex> unitEdge : 
+				maxFlowutil.getMinCut(flow, source, dest)) {
+			addCutEnds(cutEnds, unitEdge.getSource(), 
+					unitEdge.getDestination());
+		}
+		this.minCuts.put(flow, getInterDeviceEdges(etg, cutEnds));
+		
+		this.logMinCut(flow, minCut);
 		return (minCut > maxFailuresExclusive);
 	}
+	
+	/**
+	 * Check the property for a specific flow using its compact ETG. The max 
+	 * flow is computed directly on the compact ETG, rather than by a cached
+	 * max-flow engine.
+	 * @param flow flow for which to check the property
+	 * @param maxFailuresExclusive maximum number of link failures to tolerate
+	 * @return true if the property holds, otherwise false
+	 */
+	private boolean verifyCompact(Flow flow, int maxFailuresExclusive) {
+		CompactGraph compactEtg = this.getCompactEtg(flow);
+		
+		// Inter-device edges have unit capacity; other edges cannot fail
+		int[] capacities = new int[compactEtg.getEdgeCount()];
+		for (int e = 0; e < capacities.length; e++) {
+			if (EdgeType.INTER_DEVICE == compactEtg.getEdgeType(e)) {
+				capacities[e] = 1;
+			}
+			else {
+				capacities[e] = maxFlow.INFINITE_CAPACITY;
+			}
+		}
+		
+		List<Integer> cut = new ArrayList<Integer>();
+		double minCut = compactEtg.getMaxFlow(
+				compactEtg.getFlowSourceId(flow.getSource()),
+				compactEtg.getFlowDestinationId(), capacities, cut);
+		
+		// Keep the inter-device edges forming the min cut, if the ETG was kept
+		ExtendedTopologyGraph<?> etg = null;
+		if (this.etgs != null) {
+			etg = this.etgs.get(flow);
+		}
+		if (etg != null) {
+			Map<Vertex, Set<Vertex>> cutEnds = 
+					new HashMap<Vertex, Set<Vertex>>();
+			for (int e : cut) {
+				addCutEnds(cutEnds, 
+						compactEtg.getVertex(compactEtg.getEdgeSource(e)),
+						compactEtg.getVertex(compactEtg.getEdgeDestination(e)));
+			}
+			this.minCuts.put(flow, getInterDeviceEdges(etg, cutEnds));
+		}
+		else {
+			this.minCuts.put(flow, new ArrayList<DirectedEdge>());
+		}
+		
+		this.logMinCut(flow, minCut);
+		return (minCut > maxFailuresExclusive);
+	}
+	
+	/**
+	 * Log the min cut of a flow whose destination starts at address zero.
+	 * @param flow the flow
+	 * @param minCut value of the flow's min cut
+	 */
+	private void logMinCut(Flow flow, double minCut) {
+		if (flow.getDestination().getStartIp().asLong() == 0
+				&& settings.getLogger().isDebugEnabled()) {
+			settings.getLogger().debug("MINCUT: " + minCut + " " + flow);
+		}
+	}
+	
+	/**
+	 * Record the endpoints of an edge in a minimum cut.
+	 * @param cutEnds the destinations of the cut edges, keyed by source
+	 * @param source the source of the cut edge
+	 * @param destination the destination of the cut edge
+	 */
+	private static void addCutEnds(Map<Vertex, Set<Vertex>> cutEnds,
+			Vertex source, Vertex destination) {
+		Set<Vertex> destinations = cutEnds.get(source);
+		if (null == destinations) {
+			destinations = new HashSet<Vertex>();
+			cutEnds.put(source, destinations);
+		}
+		destinations.add(destination);
+	}
+	
+	/**
+	 * Find the inter-device edges of an ETG that are part of a minimum cut.
+	 * @param etg the ETG whose edges to search
+	 * @param cutEnds the destinations of the cut edges, keyed by source
+	 * @return the inter-device edges of the ETG that are in the cut
+	 */
+	private static List<DirectedEdge> getInterDeviceEdges(
+			ExtendedTopologyGraph<?> etg, Map<Vertex, Set<Vertex>> cutEnds) {
+		List<DirectedEdge> cutEdges = new ArrayList<DirectedEdge>();
+		if (cutEnds.isEmpty()) {
+			return cutEdges;
+		}
+		Iterator<? extends DirectedEdge<?>> iterator = etg.getEdgesIterator();
+		while (iterator.hasNext()) {
+			DirectedEdge<?> edge = iterator.next();
+			if (EdgeType.INTER_DEVICE != edge.getType()) {
+				continue;
+			}
+			Set<Vertex> destinations = cutEnds.get(edge.getSource());
+			if (destinations != null 
+					&& destinations.contains(edge.getDestination())) {
+				cutEdges.add(edge);
+			}
+		}
+		return cutEdges;
+	}
+	
+	/**
+	 * Get the minimum cut found when the property was last checked for a 
+	 * flow.
+	 * @param flow flow whose minimum cut to get
+	 * @return the inter-device edges forming the minimum cut, or null if the
+	 * 		property has not been checked for the flow
+	 */
+	public List<DirectedEdge> getMinCut(Flow flow) {
+		return this.minCuts.get(flow);
+	}
+	
+	/**
+	 * Get the failures that disconnect a flow for which the property does not
+	 * hold.
+	 * @param flow flow for which the property was checked
+	 * @param result the result of the check
+	 * @return the minimum cut, or null if the property holds or no cut was
+	 * 		found
+	 */
+	@Override
+	protected String getDetail(Flow flow, boolean result) {
+		List<DirectedEdge> minCut = this.getMinCut(flow);
+		if (result || null == minCut || 0 == minCut.size()) {
+			return null;
+		}
+		return "cut: " + minCut;
+	}
 }
@@ -1,20 +1,28 @@
 package edu.wisc.cs.arc.verifiers;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jgrapht.GraphPath;
 import org.jgrapht.alg.DijkstraShortestPath;
 import org.jgrapht.alg.KShortestPaths;
 
 import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.CompactGraph;
 import edu.wisc.cs.arc.graphs.Device;
 import edu.wisc.cs.arc.graphs.DirectedEdge;
 import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
 import edu.wisc.cs.arc.graphs.Flow;
 import edu.wisc.cs.arc.graphs.InterfaceVertex;
 import edu.wisc.cs.arc.graphs.ProcessVertex;
+import edu.wisc.cs.arc.graphs.Vertex;
 import edu.wisc.cs.arc.virl.Scenario;
 
 /**
@@ -24,6 +32,10 @@ import edu.wisc.cs.arc.virl.Scenario;
  */
 @SuppressWarnings("rawtypes")
 public class ComputedPaths extends Verifier {
+	/** Number of scenarios per thread that may be read ahead of the scenarios
+	 * being verified */
+	private static final int PENDING_SCENARIOS_PER_THREAD = 2;
+	
 	/**
 	 * Construct a verifier.
 	 * @param etgs the extended topology graphs to use for verification
@@ -58,29 +70,44 @@ public class ComputedPaths extends Verifier {
 		ExtendedTopologyGraph failureEtg = (ExtendedTopologyGraph)etg.clone();
 		failureEtg.removeLinks(scenario.getFailedLinks());
 		
-		// Compute path using ETG
-		KShortestPaths shortestPaths = new KShortestPaths(etg.getGraph(), 
-				etg.getFlowSourceVertex(flow.getSource()), 2);
-		List<GraphPath> paths = shortestPaths.getPaths(
-				etg.getFlowDestinationVertex());
-		
-		List<List<DirectedEdge>> etgEdgePaths = 
-				new ArrayList<List<DirectedEdge>>();
-		if (paths != null) {
-			double minWeight = paths.get(0).getWeight();
-			for (GraphPath path : paths) {
-				if (path.getWeight() > minWeight) {
-					break;
+		List<List<Device>> etgPaths = new ArrayList<List<Device>>();
+		if (this.compactEtgs != null) {
+			// Compute path using compact ETG
+			CompactGraph compactEtg = this.getCompactEtg(flow);
+			for (List<Integer> path : compactEtg.getShortestPaths(
+					compactEtg.getFlowSourceId(flow.getSource()),
+					compactEtg.getFlowDestinationId(), 2)) {
+				List<Vertex> destinations = new ArrayList<Vertex>();
+				for (int i = 1; i < path.size(); i++) {
+					destinations.add(compactEtg.getVertex(path.get(i)));
 				}
-				etgEdgePaths.add(path.getEdgeList());
+				etgPaths.add(this.convertVertexPath(destinations));
 			}
 		}
-		
-		List<List<Device>> etgPaths = new ArrayList<List<Device>>();
-		for (List<DirectedEdge> etgEdgePath : etgEdgePaths) {
-			List<Device> etgPath = this.convertPath(etgEdgePath);
-			if (etgPath != null) {
-				etgPaths.add(etgPath);
+		else {
+			// Compute path using ETG
+			KShortestPaths shortestPaths = new KShortestPaths(etg.getGraph(), 
+					etg.getFlowSourceVertex(flow.getSource()), 2);
+			List<GraphPath> paths = shortestPaths.getPaths(
+					etg.getFlowDestinationVertex());
+			
+			List<List<DirectedEdge>> etgEdgePaths = 
+					new ArrayList<List<DirectedEdge>>();
+			if (paths != null) {
+				double minWeight = paths.get(0).getWeight();
+				for (GraphPath path : paths) {
+					if (path.getWeight() > minWeight) {
+						break;
+					}
+					etgEdgePaths.add(path.getEdgeList());
+				}
+			}
+			
+			for (List<DirectedEdge> etgEdgePath : etgEdgePaths) {
+				List<Device> etgPath = this.convertPath(etgEdgePath);
+				if (etgPath != null) {
+					etgPaths.add(etgPath);
+				}
 			}
 		}
 		
@@ -168,6 +195,58 @@ public class ComputedPaths extends Verifier {
 		return equal;
 	}
 	
+	/**
+	 * Check the property for all flows in each scenario. Scenarios are
+	 * verified as they are read, so results for earlier scenarios are produced
+	 * while later scenarios are still being parsed. When parallelizing,
+	 * multiple scenarios are verified at once, and only a few scenarios per
+	 * thread are read ahead of the scenarios being verified.
+	 * @param scenarios the scenarios against which to check the property
+	 * @param sink sink that receives the result for each flow and scenario
+	 */
+	public void verifyAll(Iterator<Scenario> scenarios,
+			final VerificationResultSink sink) {
+		if (!this.settings.shouldParallelize()) {
+			while (scenarios.hasNext()) {
+				this.verifyAll(scenarios.next(), sink);
+			}
+			return;
+		}
+		
+		int threads = this.settings.getThreadCount();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+		try {
+			while (scenarios.hasNext()) {
+				// Wait for the oldest scenario before reading too far ahead
+				if (pending.size() >= threads * PENDING_SCENARIOS_PER_THREAD) {
+					pending.removeFirst().get();
+				}
+				final Scenario scenario = scenarios.next();
+				pending.add(pool.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						verifyAll(scenario, sink);
+						return null;
+					}
+				}));
+			}
+			while (!pending.isEmpty()) {
+				pending.removeFirst().get();
+			}
+		}
+		catch (Exception exception) {
+			for (Future<?> future : pending) {
+				future.cancel(false);
+			}
+			exception.printStackTrace();
+			throw new VerifierException("Verication task failed",exception);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
 	/**
 	 * Convert ETG-based path to a list of devices
 	 * @param edgePath list of edges in the path
@@ -179,21 +258,32 @@ public class ComputedPaths extends Verifier {
 			return null;
 		}
 
+		List<Vertex> destinations = new ArrayList<Vertex>();
+		for (DirectedEdge edge : edgePath) {
+			destinations.add(edge.getDestination());
+		}
+		return this.convertVertexPath(destinations);
+	}
+	
+	/**
+	 * Convert ETG-based path to a list of devices
+	 * @param vertexPath list of vertices in the path, excluding the source
+	 * @return list of devices
+	 */
+	private List<Device> convertVertexPath(List<Vertex> vertexPath) {
 		List<Device> devicePath = new ArrayList<Device>();
 		Device lastDevice = null;
-		for (DirectedEdge edge : edgePath) {
+		for (Vertex vertex : vertexPath) {
 			Device currentDevice = null;
 			
 			// Get the device based on the type of vertices in the edge
-			if (edge.getDestination() instanceof ProcessVertex) {
-				ProcessVertex destination = 
-						(ProcessVertex)edge.getDestination();
+			if (vertex instanceof ProcessVertex) {
+				ProcessVertex destination = (ProcessVertex)vertex;
 				if (destination.getProcess() != null) {
 					currentDevice = destination.getProcess().getDevice();
 				}
-			} else if (edge.getDestination() instanceof InterfaceVertex) {
-				InterfaceVertex destination = 
-						(InterfaceVertex)edge.getDestination();
+			} else if (vertex instanceof InterfaceVertex) {
+				InterfaceVertex destination = (InterfaceVertex)vertex;
 				if (destination.getInterface() != null) {
 					currentDevice = destination.getInterface().getDevice();
 				}
@@ -206,4 +296,14 @@ public class ComputedPaths extends Verifier {
 		}
 		return devicePath;
 	}
+	
+	/**
+	 * Get the scenario against which flows are checked.
+	 * @param arg the scenario
+	 * @return the scenario
+	 */
+	@Override
+	protected Object getContext(Object arg) {
+		return arg;
+	}
 }
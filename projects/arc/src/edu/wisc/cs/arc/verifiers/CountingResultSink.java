@@ -0,0 +1,97 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import edu.wisc.cs.arc.graphs.Flow;
+
+/**
+ * Counts the number of flows for which each property holds and does not hold.
+ * Results may optionally be passed on to another sink.
+ */
+public class CountingResultSink extends VerificationResultSink {
+	
+	/** Sink to which results are passed on; null if none */
+	private VerificationResultSink next;
+	
+	/** Number of results that were true and false for each property */
+	private Map<String, long[]> counts;
+	
+	/** Counts for the current property */
+	private long[] current;
+	
+	/**
+	 * Create a counting sink.
+	 * @param next sink to which results are passed on; null if results should
+	 * 			only be counted
+	 */
+	public CountingResultSink(VerificationResultSink next) {
+		this.next = next;
+		this.counts = new LinkedHashMap<String, long[]>();
+		this.current = null;
+	}
+	
+	@Override
+	public synchronized void begin(String name, String title) {
+		this.current = this.counts.get(name);
+		if (null == this.current) {
+			this.current = new long[2];
+			this.counts.put(name, this.current);
+		}
+	}
+	
+	@Override
+	public void accept(Object context, Flow flow, boolean result,
+			boolean flagged, String detail) {
+		synchronized(this) {
+			if (null == this.current) {
+				this.begin("unnamed", "unnamed");
+			}
+			this.current[result ? 0 : 1]++;
+		}
+		if (this.next != null) {
+			this.next.accept(context, flow, result, flagged, detail);
+		}
+	}
+	
+	@Override
+	public synchronized void end() {
+		this.current = null;
+	}
+	
+	/**
+	 * Get the number of results that were true for a property.
+	 * @param name short name of the property
+	 * @return number of true results
+	 */
+	public synchronized long getTrueCount(String name) {
+		long[] count = this.counts.get(name);
+		return (null == count ? 0 : count[0]);
+	}
+	
+	/**
+	 * Get the number of results that were false for a property.
+	 * @param name short name of the property
+	 * @return number of false results
+	 */
+	public synchronized long getFalseCount(String name) {
+		long[] count = this.counts.get(name);
+		return (null == count ? 0 : count[1]);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Entry<String, long[]> entry : this.counts.entrySet()) {
+			if (builder.length() > 0) {
+				builder.append("\n");
+			}
+			builder.append("COUNT: " + entry.getKey() + "True "
+					+ entry.getValue()[0] + "\n");
+			builder.append("COUNT: " + entry.getKey() + "False "
+					+ entry.getValue()[1]);
+		}
+		return builder.toString();
+	}
+}
@@ -9,6 +9,7 @@ import edu.wisc.cs.arc.Settings;
 import edu.wisc.cs.arc.graphs.DirectedEdge;
 import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
 import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.Vertex;
 
 /**
  * Checks if a flow is always blocked.
@@ -36,13 +37,23 @@ public class CurrentlyBlocked extends Verifier {
 	@Override
 	public boolean verify(Flow flow, Object arg) {
 		// Get ETG
-		ExtendedTopologyGraph etg = this.etgs.get(flow);
+		ExtendedTopologyGraph<?> etg = this.etgs.get(flow);
 		if (null == etg) {
 			throw new VerifierException("No ETG for flow "+flow);
 		}
-		
+		return this.isBlocked(flow, etg);
+	}
+	
+	/**
+	 * Check if a flow is blocked in its ETG.
+	 * @param flow flow for which to check the property
+	 * @param etg the flow's ETG
+	 * @return true if the flow is blocked, otherwise false
+	 */
+	private <V extends Vertex> boolean isBlocked(Flow flow,
+			ExtendedTopologyGraph<V> etg) {
 		// Find the shortest path to the destination
-		List<DirectedEdge> dstPath = DijkstraShortestPath.findPathBetween(
+		List<DirectedEdge<V>> dstPath = DijkstraShortestPath.findPathBetween(
 				etg.getGraph(), etg.getFlowSourceVertex(flow.getSource()),
 				etg.getFlowDestinationVertex());
 		
@@ -53,8 +64,8 @@ public class CurrentlyBlocked extends Verifier {
 		}
 		
 		double dstPathCost = 0;
-		for (DirectedEdge edge : dstPath) {
-			if (edge.isBlocked()) {
+		for (DirectedEdge<V> edge : dstPath) {
+			if (etg.isBlocked(edge)) {
 				System.out.println("BLOCKED: " + flow.toString() + " ON " 
 						+ edge.toString());
 				return true;
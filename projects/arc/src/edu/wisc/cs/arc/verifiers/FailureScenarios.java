@@ -0,0 +1,531 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.CompactGraph;
+import edu.wisc.cs.arc.graphs.DeviceGraph;
+import edu.wisc.cs.arc.graphs.DeviceVertex;
+import edu.wisc.cs.arc.graphs.DirectedEdge;
+import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.Interface;
+import edu.wisc.cs.arc.graphs.InterfaceVertex;
+import edu.wisc.cs.arc.graphs.ProcessVertex;
+import edu.wisc.cs.arc.graphs.Vertex;
+import edu.wisc.cs.arc.virl.Link;
+
+/**
+ * Checks if a source and destination can communicate in every scenario with
+ * at most k link failures. Scenarios are generated from the links in the
+ * device-based extended topology graph and the inter-device edges of the
+ * flows' ETGs, rather than emulated. A link is identified by the interfaces
+ * at its ends, so parallel links between two devices fail independently.
+ *
+ * Scenarios that fail none of the links used by a flow's ETG cannot change
+ * whether the flow is reachable, so they are never examined. The remaining
+ * scenarios are explored by failing, one at a time, each link on a path that
+ * survives the failures chosen so far: a scenario that leaves such a path
+ * intact cannot disconnect the flow. Each examined scenario is checked with a
+ * search over the compact ETG that skips the edges of failed links and edges
+ * blocked by ACLs, so the ETG is never cloned or modified.
+ */
+@SuppressWarnings("rawtypes")
+public class FailureScenarios extends Verifier {
+
+	/** Physical links, indexed by identifier */
+	private List<Link> links;
+
+	/** Identifier for each link, keyed by the device and interface at each
+	 * end of the link */
+	private Map<String, Map<String, Integer>> linkIds;
+
+	/** Smallest sets of failed links that disconnect each flow */
+	private Map<Flow, List<BitSet>> disconnectingFailures;
+
+	/** Number of scenarios examined for all flows */
+	private AtomicLong examined;
+
+	/** Compact ETG and the links its edges traverse, for each ETG, or compact
+	 * ETG, that has been verified */
+	private Map<Object, LinkedEtg> linkedEtgs;
+
+	/**
+	 * The compact form of an ETG and the link traversed by each of its edges.
+	 */
+	private static class LinkedEtg {
+		/** The compact ETG */
+		private final CompactGraph compactEtg;
+
+		/** Link traversed by each edge of the compact ETG, -1 if none */
+		private final int[] edgeLinks;
+
+		private LinkedEtg(CompactGraph compactEtg, int[] edgeLinks) {
+			this.compactEtg = compactEtg;
+			this.edgeLinks = edgeLinks;
+		}
+	}
+
+	/**
+	 * Construct a verifier.
+	 * @param etgs the extended topology graphs to use for verification
+	 * @param settings the settings to use during verification
+	 * @param deviceEtg the device-based ETG whose links may fail
+	 */
+	public FailureScenarios(Map<Flow, ? extends ExtendedTopologyGraph> etgs,
+			Settings settings, DeviceGraph deviceEtg) {
+		super(etgs, settings);
+		this.links = new ArrayList<Link>();
+		this.linkIds = new HashMap<String, Map<String, Integer>>();
+		this.disconnectingFailures =
+				new ConcurrentHashMap<Flow, List<BitSet>>();
+		this.examined = new AtomicLong(0);
+		this.linkedEtgs = Collections.synchronizedMap(
+				new IdentityHashMap<Object, LinkedEtg>());
+
+		// The device-based ETG has at most one edge between two devices, so
+		// parallel links are found from the edges of the flows' ETGs
+		Iterator<DirectedEdge<DeviceVertex>> iterator =
+				deviceEtg.getEdgesIterator();
+		while (iterator.hasNext()) {
+			this.addLink(iterator.next());
+		}
+		Set<ExtendedTopologyGraph> indexed = Collections.newSetFromMap(
+				new IdentityHashMap<ExtendedTopologyGraph, Boolean>());
+		for (ExtendedTopologyGraph<?> etg : etgs.values()) {
+			if (!indexed.add(etg)) {
+				continue;
+			}
+			Iterator<? extends DirectedEdge<?>> edges = etg.getEdgesIterator();
+			while (edges.hasNext()) {
+				this.addLink(edges.next());
+			}
+		}
+	}
+
+	/**
+	 * Assign an identifier to the link traversed by an edge, if the edge
+	 * traverses a link that has not been seen before.
+	 * @param edge the edge
+	 */
+	private void addLink(DirectedEdge<?> edge) {
+		String[] ends = getLinkEnds(edge);
+		if (null == ends || this.getLinkId(ends[0], ends[1]) >= 0) {
+			return;
+		}
+		Interface srcIface = getInterface(edge.getSource(),
+				edge.getSourceInterface());
+		Interface dstIface = getInterface(edge.getDestination(),
+				edge.getDestinationInterface());
+		int linkId = this.links.size();
+		this.links.add(new Link(getDeviceName(edge.getSource()),
+				(null == srcIface ? null : srcIface.getName()),
+				getDeviceName(edge.getDestination()),
+				(null == dstIface ? null : dstIface.getName())));
+		this.putLinkId(ends[0], ends[1], linkId);
+		this.putLinkId(ends[1], ends[0], linkId);
+	}
+
+	/**
+	 * Record the identifier of a link.
+	 * @param srcEnd device and interface at one end of the link
+	 * @param dstEnd device and interface at the other end of the link
+	 * @param linkId identifier of the link
+	 */
+	private void putLinkId(String srcEnd, String dstEnd, int linkId) {
+		Map<String, Integer> dstIds = this.linkIds.get(srcEnd);
+		if (null == dstIds) {
+			dstIds = new HashMap<String, Integer>();
+			this.linkIds.put(srcEnd, dstIds);
+		}
+		dstIds.put(dstEnd, linkId);
+	}
+
+	/**
+	 * Get the identifier of a link.
+	 * @param srcEnd device and interface at one end of the link
+	 * @param dstEnd device and interface at the other end of the link
+	 * @return identifier of the link, -1 if there is no such link
+	 */
+	private int getLinkId(String srcEnd, String dstEnd) {
+		Map<String, Integer> dstIds = this.linkIds.get(srcEnd);
+		if (null == dstIds) {
+			return -1;
+		}
+		Integer linkId = dstIds.get(dstEnd);
+		return (null == linkId ? -1 : linkId);
+	}
+
+	/**
+	 * Get the identifier of the link traversed by an edge.
+	 * @param edge the edge
+	 * @return identifier of the link, -1 if the edge does not traverse a link
+	 */
+	private int getLinkId(DirectedEdge<?> edge) {
+		String[] ends = getLinkEnds(edge);
+		return (null == ends ? -1 : this.getLinkId(ends[0], ends[1]));
+	}
+
+	/**
+	 * Get the ends of the link traversed by an edge.
+	 * @param edge the edge
+	 * @return the device and interface at the source and destination end of
+	 * 		the link, null if the edge does not connect two devices
+	 */
+	private static String[] getLinkEnds(DirectedEdge<?> edge) {
+		String srcName = getDeviceName(edge.getSource());
+		String dstName = getDeviceName(edge.getDestination());
+		if (null == srcName || null == dstName || srcName.equals(dstName)) {
+			return null;
+		}
+		Interface srcIface = getInterface(edge.getSource(),
+				edge.getSourceInterface());
+		Interface dstIface = getInterface(edge.getDestination(),
+				edge.getDestinationInterface());
+		return new String[] {
+				srcName + ":" + (null == srcIface ? "" : srcIface.getName()),
+				dstName + ":" + (null == dstIface ? "" : dstIface.getName()) };
+	}
+
+	/**
+	 * Get the interface at one end of an edge.
+	 * @param vertex the vertex at that end of the edge
+	 * @param edgeIface the interface stored with the edge, null if none
+	 * @return the interface stored with the edge, or the interface associated
+	 * 		with the vertex if the edge does not store one; null if neither
+	 * 		is known
+	 */
+	private static Interface getInterface(Vertex vertex, Interface edgeIface) {
+		if (edgeIface != null) {
+			return edgeIface;
+		}
+		if (vertex instanceof InterfaceVertex) {
+			return ((InterfaceVertex)vertex).getInterface();
+		}
+		return null;
+	}
+
+	/**
+	 * Check the property for a specific flow.
+	 * @param flow flow for which to check the property
+	 * @param arg maximum number of link failures
+	 * @return true if the property holds, otherwise false
+	 */
+	@Override
+	public boolean verify(Flow flow, Object arg) {
+		if (!(arg instanceof Integer)) {
+			throw new VerifierException("Argument must be an integer");
+		}
+		int maxFailures = (Integer)arg;
+
+		// Get ETG and compact ETG
+		ExtendedTopologyGraph<?> etg = this.etgs.get(flow);
+		if (null == etg) {
+			throw new VerifierException("No ETG for flow "+flow);
+		}
+		LinkedEtg linkedEtg = this.getLinkedEtg(flow, etg);
+		CompactGraph compactEtg = linkedEtg.compactEtg;
+		int[] edgeLinks = linkedEtg.edgeLinks;
+
+		// Explore scenarios that fail links on surviving paths
+		List<BitSet> disconnecting = new ArrayList<BitSet>();
+		this.search(compactEtg, edgeLinks,
+				compactEtg.getFlowSourceId(flow.getSource()),
+				compactEtg.getFlowDestinationId(), new BitSet(), maxFailures,
+				new HashSet<BitSet>(), disconnecting);
+		disconnecting = getMinimal(disconnecting);
+		this.disconnectingFailures.put(flow, disconnecting);
+		return disconnecting.isEmpty();
+	}
+
+	/**
+	 * Get the compact form of a flow's ETG, along with the link traversed by
+	 * each of its edges. Both are computed once per ETG, or per compact ETG if
+	 * compact ETGs were provided, and shared by all the flows that use it.
+	 * @param flow the flow
+	 * @param etg the flow's ETG
+	 * @return the flow's compact ETG and the links its edges traverse
+	 */
+	private LinkedEtg getLinkedEtg(Flow flow, ExtendedTopologyGraph<?> etg) {
+		CompactGraph compactEtg = null;
+		Object key = etg;
+		if (this.compactEtgs != null) {
+			compactEtg = this.getCompactEtg(flow);
+			key = compactEtg;
+		}
+		LinkedEtg linkedEtg = this.linkedEtgs.get(key);
+		if (linkedEtg != null) {
+			return linkedEtg;
+		}
+		if (null == compactEtg) {
+			compactEtg = etg.toCompactGraph();
+		}
+
+		// Determine which link, if any, each edge traverses; the compact ETG
+		// does not record the interfaces of its edges
+		int[] edgeLinks = new int[compactEtg.getEdgeCount()];
+		Arrays.fill(edgeLinks, -1);
+		Iterator<? extends DirectedEdge<?>> iterator = etg.getEdgesIterator();
+		while (iterator.hasNext()) {
+			DirectedEdge<?> edge = iterator.next();
+			int e = compactEtg.getEdge(
+					compactEtg.getVertexId(edge.getSource()),
+					compactEtg.getVertexId(edge.getDestination()));
+			if (e >= 0) {
+				edgeLinks[e] = this.getLinkId(edge);
+			}
+		}
+
+		linkedEtg = new LinkedEtg(compactEtg, edgeLinks);
+		this.linkedEtgs.put(key, linkedEtg);
+		return linkedEtg;
+	}
+
+	/**
+	 * Find the scenarios, extending a set of failed links, that disconnect a
+	 * flow.
+	 * @param compactEtg the flow's compact ETG
+	 * @param edgeLinks link traversed by each edge, -1 if none
+	 * @param source identifier of the flow's source vertex
+	 * @param destination identifier of the flow's destination vertex
+	 * @param failed links failed in the current scenario
+	 * @param remaining number of additional links that may fail
+	 * @param explored scenarios already examined
+	 * @param disconnecting list to which scenarios that disconnect the flow
+	 * 		are added
+	 */
+	private void search(CompactGraph compactEtg, int[] edgeLinks, int source,
+			int destination, BitSet failed, int remaining,
+			Set<BitSet> explored, List<BitSet> disconnecting) {
+		if (!explored.add((BitSet)failed.clone())) {
+			return;
+		}
+		this.examined.incrementAndGet();
+
+		List<Integer> pathLinks = this.findPath(compactEtg, edgeLinks, source,
+				destination, failed);
+		if (null == pathLinks) {
+			disconnecting.add((BitSet)failed.clone());
+			return;
+		}
+		if (0 == remaining) {
+			return;
+		}
+		for (int linkId : pathLinks) {
+			failed.set(linkId);
+			this.search(compactEtg, edgeLinks, source, destination, failed,
+					remaining - 1, explored, disconnecting);
+			failed.clear(linkId);
+		}
+	}
+
+	/**
+	 * Find a path that avoids failed links and edges blocked by ACLs.
+	 * @param compactEtg the flow's compact ETG
+	 * @param edgeLinks link traversed by each edge, -1 if none
+	 * @param source identifier of the flow's source vertex
+	 * @param destination identifier of the flow's destination vertex
+	 * @param failed links that have failed
+	 * @return the distinct links traversed by the path, null if no path exists
+	 */
+	private List<Integer> findPath(CompactGraph compactEtg, int[] edgeLinks,
+			int source, int destination, BitSet failed) {
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		int[] parentEdges = new int[compactEtg.getVertexCount()];
+		Arrays.fill(parentEdges, -1);
+		boolean[] visited = new boolean[compactEtg.getVertexCount()];
+		int[] queue = new int[compactEtg.getVertexCount()];
+		int head = 0;
+		int tail = 0;
+		visited[source] = true;
+		queue[tail++] = source;
+		while (head < tail && !visited[destination]) {
+			int vertex = queue[head++];
+			for (int e = compactEtg.getOutEdgesStart(vertex);
+					e < compactEtg.getOutEdgesEnd(vertex); e++) {
+				if (compactEtg.isBlocked(e)
+						|| (edgeLinks[e] >= 0 && failed.get(edgeLinks[e]))) {
+					continue;
+				}
+				int next = compactEtg.getEdgeDestination(e);
+				if (!visited[next]) {
+					visited[next] = true;
+					parentEdges[next] = e;
+					queue[tail++] = next;
+				}
+			}
+		}
+		if (!visited[destination]) {
+			return null;
+		}
+
+		// Collect the links along the path
+		List<Integer> pathLinks = new ArrayList<Integer>();
+		for (int vertex = destination; vertex != source;
+				vertex = compactEtg.getEdgeSource(parentEdges[vertex])) {
+			int linkId = edgeLinks[parentEdges[vertex]];
+			if (linkId >= 0 && !pathLinks.contains(linkId)) {
+				pathLinks.add(linkId);
+			}
+		}
+		return pathLinks;
+	}
+
+	/**
+	 * Get the name of the device associated with a vertex.
+	 * @param vertex the vertex
+	 * @return name of the device, null if the vertex is not associated with a
+	 * 		device
+	 */
+	private static String getDeviceName(Vertex vertex) {
+		if (vertex instanceof ProcessVertex) {
+			ProcessVertex processVertex = (ProcessVertex)vertex;
+			if (processVertex.getProcess() != null) {
+				return processVertex.getProcess().getDevice().getName();
+			}
+		}
+		else if (vertex instanceof InterfaceVertex) {
+			InterfaceVertex interfaceVertex = (InterfaceVertex)vertex;
+			if (interfaceVertex.getInterface() != null) {
+				return interfaceVertex.getInterface().getDevice().getName();
+			}
+		}
+		else if (vertex instanceof DeviceVertex) {
+			DeviceVertex deviceVertex = (DeviceVertex)vertex;
+			if (deviceVertex.getDevice() != null) {
+				return deviceVertex.getDevice().getName();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove sets of failed links that contain another set.
+	 * @param failures sets of failed links
+	 * @return sets that do not contain any other set, smallest first
+	 */
+	private static List<BitSet> getMinimal(List<BitSet> failures) {
+		List<BitSet> sorted = new ArrayList<BitSet>(failures);
+		Collections.sort(sorted, new Comparator<BitSet>() {
+			@Override
+			public int compare(BitSet a, BitSet b) {
+				return Integer.compare(a.cardinality(), b.cardinality());
+			}
+		});
+		List<BitSet> minimal = new ArrayList<BitSet>();
+		for (BitSet failure : sorted) {
+			boolean contains = false;
+			for (BitSet smaller : minimal) {
+				BitSet common = (BitSet)smaller.clone();
+				common.and(failure);
+				if (common.equals(smaller)) {
+					contains = true;
+					break;
+				}
+			}
+			if (!contains) {
+				minimal.add(failure);
+			}
+		}
+		return minimal;
+	}
+
+	/**
+	 * Get the smallest sets of failed links that disconnect a flow, found
+	 * when the property was last checked for the flow.
+	 * @param flow flow whose failures to get
+	 * @return sets of failed links, or null if the property has not been
+	 * 		checked for the flow
+	 */
+	public List<List<Link>> getDisconnectingFailures(Flow flow) {
+		List<BitSet> failures = this.disconnectingFailures.get(flow);
+		if (null == failures) {
+			return null;
+		}
+		List<List<Link>> result = new ArrayList<List<Link>>();
+		for (BitSet failure : failures) {
+			List<Link> failedLinks = new ArrayList<Link>();
+			for (int linkId = failure.nextSetBit(0); linkId >= 0;
+					linkId = failure.nextSetBit(linkId + 1)) {
+				failedLinks.add(this.links.get(linkId));
+			}
+			result.add(failedLinks);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of links that may fail.
+	 * @return number of physical links
+	 */
+	public int getLinkCount() {
+		return this.links.size();
+	}
+
+	/**
+	 * Get the number of scenarios with at most k link failures.
+	 * @param maxFailures maximum number of link failures
+	 * @return number of scenarios, or Long.MAX_VALUE if there are more
+	 */
+	public long getScenarioCount(int maxFailures) {
+		long total = 0;
+		long combinations = 1;
+		int n = this.links.size();
+		for (int k = 0; k <= Math.min(maxFailures, n); k++) {
+			if (k > 0) {
+				// C(n,k) = C(n,k-1) * (n-k+1) / k
+				if (combinations > Long.MAX_VALUE / (n - k + 1)) {
+					return Long.MAX_VALUE;
+				}
+				combinations = combinations * (n - k + 1) / k;
+			}
+			if (total > Long.MAX_VALUE - combinations) {
+				return Long.MAX_VALUE;
+			}
+			total += combinations;
+		}
+		return total;
+	}
+
+	/**
+	 * Get the number of scenarios examined for all flows.
+	 * @return number of scenarios for which reachability was checked
+	 */
+	public long getExaminedCount() {
+		return this.examined.get();
+	}
+
+	/**
+	 * Get the failures that disconnect a flow for which the property does not
+	 * hold.
+	 * @param flow flow for which the property was checked
+	 * @param result the result of the check
+	 * @return the smallest sets of failed links, or null if the property holds
+	 */
+	@Override
+	protected String getDetail(Flow flow, boolean result) {
+		if (result) {
+			return null;
+		}
+		List<List<Link>> failures = this.getDisconnectingFailures(flow);
+		if (null == failures) {
+			return null;
+		}
+		return "failures: " + failures;
+	}
+}
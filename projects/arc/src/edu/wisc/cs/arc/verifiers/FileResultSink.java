@@ -0,0 +1,156 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import edu.wisc.cs.arc.graphs.Flow;
+
+/**
+ * Writes verification results to a file as comma-separated values or
+ * newline-delimited JSON objects, one record per result. Records are written
+ * through a fixed-size buffer, so a verifier producing results faster than
+ * they can be written waits for the file instead of accumulating results in
+ * memory.
+ */
+public class FileResultSink extends VerificationResultSink {
+	
+	/** Columns in each record */
+	private static final String[] COLUMNS = {"property", "context", "flow",
+			"result", "flagged", "detail"};
+	
+	/** Writer for the file */
+	private BufferedWriter writer;
+	
+	/** Whether records are written as JSON objects */
+	private boolean json;
+	
+	/** Short name of the current property */
+	private String property;
+	
+	/**
+	 * Create a sink that writes to a file.
+	 * @param file path to the file
+	 * @param format {@link VerificationResultSink#CSV} or
+	 * 			{@link VerificationResultSink#NDJSON}
+	 */
+	public FileResultSink(String file, String format) {
+		this.json = NDJSON.equals(format);
+		this.property = null;
+		try {
+			this.writer = new BufferedWriter(new FileWriter(file));
+			if (!this.json) {
+				this.writeRecord(COLUMNS);
+			}
+		}
+		catch (IOException e) {
+			throw new VerifierException("Cannot write results to " + file, e);
+		}
+	}
+	
+	@Override
+	public synchronized void begin(String name, String title) {
+		this.property = name;
+	}
+	
+	@Override
+	public synchronized void accept(Object context, Flow flow, boolean result,
+			boolean flagged, String detail) {
+		String[] values = {this.property,
+				(context != null ? context.toString() : null),
+				flow.toString(), Boolean.toString(result),
+				Boolean.toString(flagged), detail};
+		try {
+			this.writeRecord(values);
+		}
+		catch (IOException e) {
+			throw new VerifierException("Cannot write result for " + flow, e);
+		}
+	}
+	
+	@Override
+	public synchronized void end() {
+		this.property = null;
+	}
+	
+	@Override
+	public synchronized void close() {
+		try {
+			this.writer.close();
+		}
+		catch (IOException e) {
+			throw new VerifierException("Cannot close results file", e);
+		}
+	}
+	
+	/**
+	 * Write a record to the file.
+	 * @param values the value of each column; null for an empty value
+	 * @throws IOException if the record cannot be written
+	 */
+	private void writeRecord(String[] values) throws IOException {
+		StringBuilder record = new StringBuilder();
+		if (this.json) {
+			record.append("{");
+			for (int i = 0; i < COLUMNS.length; i++) {
+				if (i > 0) {
+					record.append(",");
+				}
+				record.append(quoteJson(COLUMNS[i]) + ":");
+				if (null == values[i]) {
+					record.append("null");
+				} else if (3 == i || 4 == i) {
+					record.append(values[i]);
+				} else {
+					record.append(quoteJson(values[i]));
+				}
+			}
+			record.append("}");
+		}
+		else {
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					record.append(",");
+				}
+				if (values[i] != null) {
+					record.append(quoteCsv(values[i]));
+				}
+			}
+		}
+		this.writer.write(record.toString());
+		this.writer.newLine();
+	}
+	
+	/**
+	 * Quote a value for a CSV record, if necessary.
+	 * @param value the value to quote
+	 * @return the value, quoted if it contains a separator, quote, or newline
+	 */
+	private static String quoteCsv(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+				&& value.indexOf('\n') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+	
+	/**
+	 * Quote a value as a JSON string.
+	 * @param value the value to quote
+	 * @return the value as a JSON string
+	 */
+	private static String quoteJson(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ('"' == c || '\\' == c) {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int)c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append("\"").toString();
+	}
+}
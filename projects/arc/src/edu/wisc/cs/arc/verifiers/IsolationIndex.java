@@ -0,0 +1,228 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import edu.wisc.cs.arc.graphs.DirectedEdge;
+import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.Vertex;
+
+/**
+ * Index of the edges contained in a set of ETGs. Every distinct (source,
+ * destination) vertex pair is assigned an integer identifier. Each ETG is
+ * represented by a bitmap of its edge identifiers, and each edge identifier
+ * maps to the set of ETGs that contain it. ETGs shared by multiple flows
+ * are indexed once.
+ *
+ * Per-flow ETGs contain most of the base ETG's edges, so a bitmap is the
+ * smallest form for the edges of an ETG. The ETGs that contain an edge are
+ * stored as a sorted array of ETG identifiers while the edge is in few ETGs,
+ * and as a bitmap once the array would be larger than the bitmap. For F
+ * indexed ETGs, an edge contained in k of them therefore takes about
+ * min(4k, F/8) bytes, rather than F/8 bytes for every edge.
+ */
+@SuppressWarnings("rawtypes")
+public class IsolationIndex {
+
+	/** Identifier for each edge, keyed by source and destination vertex */
+	private Map<Vertex, Map<Vertex, Integer>> edgeIds;
+
+	/** Identifier for each ETG */
+	private Map<ExtendedTopologyGraph, Integer> etgIds;
+
+	/** Edges contained in each ETG, indexed by ETG identifier */
+	private List<BitSet> etgEdges;
+
+	/** ETGs that contain each edge, indexed by edge identifier */
+	private List<EtgSet> edgeEtgs;
+
+	/**
+	 * Set of ETG identifiers. Identifiers must be added in increasing order.
+	 */
+	private static class EtgSet {
+		/** Identifiers in the set, in increasing order; null if the set is
+		 * stored as a bitmap */
+		private int[] ids = new int[1];
+
+		/** Number of identifiers in the array */
+		private int size = 0;
+
+		/** Identifiers in the set; null if the set is stored as an array */
+		private BitSet bitmap = null;
+
+		/**
+		 * Add an identifier to the set. When the array is full, the set is
+		 * converted to a bitmap if the bitmap would be smaller than the array.
+		 * @param id the identifier to add; at least as large as every
+		 * 		identifier already in the set
+		 */
+		private void add(int id) {
+			if (this.bitmap != null) {
+				this.bitmap.set(id);
+				return;
+			}
+			if (this.size > 0 && this.ids[this.size - 1] == id) {
+				return;
+			}
+			if (this.size == this.ids.length) {
+				if ((long)this.size * Integer.SIZE > id + 1) {
+					this.bitmap = new BitSet(id + 1);
+					for (int i = 0; i < this.size; i++) {
+						this.bitmap.set(this.ids[i]);
+					}
+					this.bitmap.set(id);
+					this.ids = null;
+					this.size = 0;
+					return;
+				}
+				this.ids = Arrays.copyOf(this.ids, this.size * 2);
+			}
+			this.ids[this.size++] = id;
+		}
+
+		/**
+		 * Store the set in its smaller form, once no more identifiers will be
+		 * added.
+		 */
+		private void trim() {
+			if (null == this.bitmap) {
+				this.ids = Arrays.copyOf(this.ids, this.size);
+			}
+			else if ((long)this.bitmap.cardinality() * Integer.SIZE
+					< this.bitmap.length()) {
+				this.size = this.bitmap.cardinality();
+				this.ids = new int[this.size];
+				int i = 0;
+				for (int id = this.bitmap.nextSetBit(0); id >= 0;
+						id = this.bitmap.nextSetBit(id + 1)) {
+					this.ids[i++] = id;
+				}
+				this.bitmap = null;
+			}
+		}
+
+		/**
+		 * Add the identifiers in the set to a bitmap.
+		 * @param result bitmap to which the identifiers are added
+		 */
+		private void addTo(BitSet result) {
+			if (this.bitmap != null) {
+				result.or(this.bitmap);
+				return;
+			}
+			for (int i = 0; i < this.size; i++) {
+				result.set(this.ids[i]);
+			}
+		}
+	}
+
+	/**
+	 * Index the edges in a set of ETGs.
+	 * @param etgs the ETG for each flow
+	 */
+	public IsolationIndex(Map<Flow, ? extends ExtendedTopologyGraph> etgs) {
+		this.edgeIds = new HashMap<Vertex, Map<Vertex, Integer>>();
+		this.etgIds = new IdentityHashMap<ExtendedTopologyGraph, Integer>();
+		this.etgEdges = new ArrayList<BitSet>();
+		this.edgeEtgs = new ArrayList<EtgSet>();
+		for (ExtendedTopologyGraph<?> etg : etgs.values()) {
+			if (this.etgIds.containsKey(etg)) {
+				continue;
+			}
+			int etgId = this.etgEdges.size();
+			this.etgIds.put(etg, etgId);
+			BitSet edges = new BitSet();
+			Iterator<? extends DirectedEdge<?>> iterator =
+					etg.getEdgesIterator();
+			while (iterator.hasNext()) {
+				DirectedEdge<?> edge = iterator.next();
+				int edgeId = this.getEdgeId(edge.getSource(),
+						edge.getDestination());
+				edges.set(edgeId);
+				this.edgeEtgs.get(edgeId).add(etgId);
+			}
+			this.etgEdges.add(edges);
+		}
+		for (EtgSet edgeEtgs : this.edgeEtgs) {
+			edgeEtgs.trim();
+		}
+	}
+
+	/**
+	 * Get the identifier for an edge, assigning a new identifier if the edge
+	 * has not been seen before.
+	 * @param source source vertex of the edge
+	 * @param destination destination vertex of the edge
+	 * @return the edge's identifier
+	 */
+	private int getEdgeId(Vertex source, Vertex destination) {
+		Map<Vertex, Integer> destinationIds = this.edgeIds.get(source);
+		if (null == destinationIds) {
+			destinationIds = new HashMap<Vertex, Integer>();
+			this.edgeIds.put(source, destinationIds);
+		}
+		Integer edgeId = destinationIds.get(destination);
+		if (null == edgeId) {
+			edgeId = this.edgeEtgs.size();
+			destinationIds.put(destination, edgeId);
+			this.edgeEtgs.add(new EtgSet());
+		}
+		return edgeId;
+	}
+
+	/**
+	 * Get the identifier for an ETG.
+	 * @param etg the ETG whose identifier to get
+	 * @return the ETG's identifier
+	 */
+	public int getEtgId(ExtendedTopologyGraph etg) {
+		Integer etgId = this.etgIds.get(etg);
+		if (null == etgId) {
+			throw new VerifierException("ETG is not indexed");
+		}
+		return etgId;
+	}
+
+	/**
+	 * Get the number of distinct edges in the indexed ETGs.
+	 * @return number of distinct edges
+	 */
+	public int getEdgeCount() {
+		return this.edgeEtgs.size();
+	}
+
+	/**
+	 * Check if two ETGs have no edges in common.
+	 * @param etgA first ETG
+	 * @param etgB second ETG
+	 * @return true if the ETGs share no edges, otherwise false
+	 */
+	public boolean isIsolated(ExtendedTopologyGraph etgA,
+			ExtendedTopologyGraph etgB) {
+		return !this.etgEdges.get(this.getEtgId(etgA)).intersects(
+				this.etgEdges.get(this.getEtgId(etgB)));
+	}
+
+	/**
+	 * Get the ETGs that share at least one edge with an ETG.
+	 * @param etg the ETG whose edges to consider
+	 * @return identifiers of the ETGs that share an edge with the ETG,
+	 * 		including the ETG itself if it has any edges
+	 */
+	public BitSet getSharingEtgs(ExtendedTopologyGraph etg) {
+		BitSet sharing = new BitSet(this.etgEdges.size());
+		BitSet edges = this.etgEdges.get(this.getEtgId(etg));
+		for (int edgeId = edges.nextSetBit(0); edgeId >= 0;
+				edgeId = edges.nextSetBit(edgeId + 1)) {
+			this.edgeEtgs.get(edgeId).addTo(sharing);
+		}
+		return sharing;
+	}
+}
@@ -0,0 +1,49 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.io.PrintStream;
+
+import edu.wisc.cs.arc.graphs.Flow;
+
+/**
+ * Prints verification results to standard output, one line per result.
+ */
+public class StdoutResultSink extends VerificationResultSink {
+	
+	/** Stream to which results are printed */
+	private PrintStream out;
+	
+	/**
+	 * Create a sink that prints to standard output.
+	 */
+	public StdoutResultSink() {
+		this(System.out);
+	}
+	
+	/**
+	 * Create a sink that prints to a stream.
+	 * @param out stream to which results are printed
+	 */
+	public StdoutResultSink(PrintStream out) {
+		this.out = out;
+	}
+	
+	@Override
+	public synchronized void begin(String name, String title) {
+		this.out.println("*** " + title + " ***");
+	}
+	
+	@Override
+	public synchronized void accept(Object context, Flow flow, boolean result,
+			boolean flagged, String detail) {
+		this.out.println("\t" + result + (flagged ? "!" : "") + "\t"
+				+ (context != null ? context + " | " : "") + flow);
+		if (detail != null) {
+			this.out.println("\t\t" + detail);
+		}
+	}
+	
+	@Override
+	public synchronized void close() {
+		this.out.flush();
+	}
+}
@@ -0,0 +1,74 @@
+package edu.wisc.cs.arc.verifiers;
+
+import edu.wisc.cs.arc.graphs.Flow;
+
+/**
+ * Receives the results of a verifier as they are produced, so results do not
+ * need to be held in memory until all flows have been verified. Sinks may be
+ * called concurrently by multiple verification tasks; a sink that blocks while
+ * writing a result also blocks the task that produced it.
+ */
+public abstract class VerificationResultSink {
+	
+	/** Format that prints results to standard output */
+	public static final String STDOUT = "stdout";
+	
+	/** Format that only counts results */
+	public static final String COUNT = "count";
+	
+	/** Format that writes comma-separated values to a file */
+	public static final String CSV = "csv";
+	
+	/** Format that writes newline-delimited JSON objects to a file */
+	public static final String NDJSON = "ndjson";
+	
+	/**
+	 * Create a sink for a format.
+	 * @param format name of the format
+	 * @param file file to which results are written; only used by the CSV
+	 * 			and NDJSON formats
+	 * @return a new sink, or null if the format is unknown
+	 */
+	public static VerificationResultSink create(String format, String file) {
+		if (STDOUT.equals(format)) {
+			return new StdoutResultSink();
+		} else if (COUNT.equals(format)) {
+			return new CountingResultSink(null);
+		} else if (CSV.equals(format) || NDJSON.equals(format)) {
+			return new FileResultSink(file, format);
+		}
+		return null;
+	}
+	
+	/**
+	 * Start receiving the results for a property.
+	 * @param name short name of the property
+	 * @param title human-readable description of the property
+	 */
+	public void begin(String name, String title) {
+	}
+	
+	/**
+	 * Receive the result of a property check.
+	 * @param context what the flow was checked against (e.g., another flow or
+	 * 			a scenario); null if the result only depends on the flow
+	 * @param flow flow for which the property was checked
+	 * @param result true if the property holds, otherwise false
+	 * @param flagged whether the result disagrees with another property
+	 * @param detail additional explanation of the result; null if none
+	 */
+	public abstract void accept(Object context, Flow flow, boolean result,
+			boolean flagged, String detail);
+	
+	/**
+	 * Stop receiving the results for the current property.
+	 */
+	public void end() {
+	}
+	
+	/**
+	 * Release any resources held by the sink.
+	 */
+	public void close() {
+	}
+}
@@ -0,0 +1,167 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import edu.wisc.cs.arc.graphs.CompactGraph;
+import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
+import edu.wisc.cs.arc.graphs.Flow;
+
+/**
+ * Runs verifiers in parallel on a work-stealing thread pool that is shared by
+ * all verifiers using the same number of threads. Flows are ordered by the
+ * size of their ETGs, largest first, so the most expensive flows start early
+ * rather than delaying the end of a run. Flows with small ETGs are grouped
+ * into batches to reduce the number of tasks the pool must schedule.
+ */
+@SuppressWarnings("rawtypes")
+public class VerificationScheduler {
+	
+	/** Number of batches to create for each thread, so threads that finish
+	 * early can take work from threads with expensive flows */
+	private static final int BATCHES_PER_THREAD = 8;
+	
+	/** Schedulers shared by all verifiers, keyed by number of threads */
+	private static final Map<Integer, VerificationScheduler> shared =
+			new HashMap<Integer, VerificationScheduler>();
+	
+	/** Pool of threads on which flows are verified */
+	private ForkJoinPool pool;
+	
+	/**
+	 * Get the scheduler shared by all verifiers that use a given number of
+	 * threads, creating it if necessary. Schedulers are never shut down, so 
+	 * runs with a different number of threads do not interrupt each other;
+	 * the pool's threads are daemon threads and exit when idle.
+	 * @param parallelism number of threads to use
+	 * @return the shared scheduler
+	 */
+	public static synchronized VerificationScheduler getScheduler(
+			int parallelism) {
+		VerificationScheduler scheduler = shared.get(parallelism);
+		if (null == scheduler) {
+			scheduler = new VerificationScheduler(parallelism);
+			shared.put(parallelism, scheduler);
+		}
+		return scheduler;
+	}
+	
+	/**
+	 * Create a scheduler.
+	 * @param parallelism number of threads to use
+	 */
+	public VerificationScheduler(int parallelism) {
+		this.pool = new ForkJoinPool(parallelism);
+	}
+	
+	/**
+	 * Get the number of threads used by the scheduler.
+	 * @return number of threads
+	 */
+	public int getParallelism() {
+		return this.pool.getParallelism();
+	}
+	
+	/**
+	 * Check the property for all flows in parallel, waiting for all flows to
+	 * be verified.
+	 * @param verifier verifier to invoke
+	 * @param arg optional argument to pass to verification procedure
+	 * @param sink sink that receives the result for each flow
+	 */
+	public void verifyAll(Verifier verifier, Object arg,
+			VerificationResultSink sink) {
+		// Submit batches in order, so the largest flows are started first
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (List<Flow> batch : this.getBatches(verifier)) {
+			futures.add(this.pool.submit(
+					new VerificationTask(verifier, batch, arg, sink)));
+		}
+		
+		// Wait for each batch to complete
+		try {
+			for (Future<Integer> future : futures) {
+				future.get();
+			}
+		}
+		catch (Exception exception) {
+			for (Future<Integer> future : futures) {
+				future.cancel(false);
+			}
+			exception.printStackTrace();
+			throw new VerifierException("Verication task failed",exception);
+		}
+	}
+	
+	/**
+	 * Divide flows into batches, ordered by decreasing cost.
+	 * @param verifier verifier whose flows to divide
+	 * @return batches of flows
+	 */
+	private List<List<Flow>> getBatches(Verifier verifier) {
+		// Estimate the cost of verifying each flow
+		final Map<Flow, Long> costs = new HashMap<Flow, Long>();
+		long totalCost = 0;
+		for (Flow flow : verifier.getFlows()) {
+			long cost = getCost(verifier, flow);
+			costs.put(flow, cost);
+			totalCost += cost;
+		}
+		List<Flow> flows = new ArrayList<Flow>(verifier.getFlows());
+		Collections.sort(flows, new Comparator<Flow>() {
+			@Override
+			public int compare(Flow a, Flow b) {
+				return Long.compare(costs.get(b), costs.get(a));
+			}
+		});
+		
+		// Flows whose cost exceeds the target are verified on their own;
+		// cheaper flows are grouped until the batch reaches the target
+		long targetCost = Math.max(1,
+				totalCost / (this.getParallelism() * BATCHES_PER_THREAD));
+		List<List<Flow>> batches = new ArrayList<List<Flow>>();
+		List<Flow> batch = new ArrayList<Flow>();
+		long batchCost = 0;
+		for (Flow flow : flows) {
+			batch.add(flow);
+			batchCost += costs.get(flow);
+			if (batchCost >= targetCost) {
+				batches.add(batch);
+				batch = new ArrayList<Flow>();
+				batchCost = 0;
+			}
+		}
+		if (batch.size() > 0) {
+			batches.add(batch);
+		}
+		return batches;
+	}
+	
+	/**
+	 * Estimate the cost of verifying a flow.
+	 * @param verifier verifier that checks the flow
+	 * @param flow the flow
+	 * @return the number of vertices and edges in the flow's ETG
+	 */
+	private static long getCost(Verifier verifier, Flow flow) {
+		if (null == verifier.etgs) {
+			CompactGraph compactEtg = verifier.compactEtgs.get(flow);
+			if (null == compactEtg) {
+				return 1;
+			}
+			return compactEtg.getVertexCount() + compactEtg.getEdgeCount();
+		}
+		ExtendedTopologyGraph etg = verifier.etgs.get(flow);
+		if (null == etg) {
+			return 1;
+		}
+		return etg.getGraph().vertexSet().size()
+				+ etg.getGraph().edgeSet().size();
+	}
+}
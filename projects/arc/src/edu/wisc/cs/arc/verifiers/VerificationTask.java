@@ -1,65 +1,87 @@
 package edu.wisc.cs.arc.verifiers;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Queue;
+import java.util.List;
 import java.util.concurrent.Callable;
 
+import edu.wisc.cs.arc.graphs.CompactGraph;
+import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
 import edu.wisc.cs.arc.graphs.Flow;
 
 /**
- * A task that invokes a verifier for a queue of flows.
+ * A task that invokes a verifier for a batch of flows.
  * @author Aaron Gember-Jacobson (agember@cs.wisc.edu)
  */
-public class VerificationTask implements Callable<Map<Flow,Boolean>> {
+public class VerificationTask implements Callable<Integer> {
 
 	/** Verifier to invoke */
 	private Verifier verifier;
 	
-	/** Queue from which to pull flows to verify */
-	private Queue<Flow> queue;
+	/** Flows to verify */
+	private List<Flow> flows;
 	
 	/** Optional argument to pass to verification procedure */
 	private Object arg;
 	
+	/** Sink that receives the result for each flow */
+	private VerificationResultSink sink;
+	
 	/**
-	 * Create a task to invoke a verifier for a queue of flows.
+	 * Create a task to invoke a verifier for a batch of flows.
 	 * @param verifier verifier to invoke
-	 * @param queue queue from which to pull flows to verify
+	 * @param flows flows to verify
 	 * @param arg optional argument to pass to verification procedure
+	 * @param sink sink that receives the result for each flow
 	 */
-	public VerificationTask(Verifier verifier, Queue<Flow> queue, Object arg) {
+	public VerificationTask(Verifier verifier, List<Flow> flows, Object arg,
+			VerificationResultSink sink) {
 		this.verifier = verifier;
-		this.queue = queue;
+		this.flows = flows;
 		this.arg = arg;
+		this.sink = sink;
 	}
 	
 	/**
-	 * Pulls flows from a queue and invokes the verifier for each flow, until
-	 * the queue is empty.
-	 * @return results for each flow for which the verification procedure was
+	 * Invokes the verifier for each flow in the batch.
+	 * @return number of flows for which the verification procedure was
 	 * 			invoked
 	 */
 	@Override
-	public Map<Flow,Boolean> call() throws Exception {
-		Map<Flow, Boolean> results = new HashMap<Flow, Boolean>();
-		Flow flow = this.queue.poll();
-		while(flow != null) {
+	public Integer call() throws Exception {
+		int count = 0;
+		for (Flow flow : this.flows) {
 			long startTime = System.nanoTime();
 			boolean result = verifier.verify(flow, this.arg);
-			results.put(flow, result);
 			long endTime = System.nanoTime();
+			verifier.report(this.sink, flow, this.arg, result);
+			count++;
 			if (verifier.settings.shouldOutputPerflowVerifcationTimes()) {
-            	System.out.println("TIMEONE: " 
-            			+ verifier.getClass().getSimpleName()
-            			+ " " + (endTime - startTime) + " ns "
-            			+ verifier.etgs.get(flow).getGraph().vertexSet().size()
-            			+ " vertices " 
-            			+ verifier.etgs.get(flow).getGraph().edgeSet().size()
-            			+ " edges " + result);
-            }
-			flow = this.queue.poll();
+	            	System.out.println("TIMEONE: " 
+	            			+ verifier.getClass().getSimpleName()
+	            			+ " " + (endTime - startTime) + " ns "
+	            			+ this.getSize(flow) + " " + result);
+	            }
+		}
+		return count;
+	}
+	
+	/**
+	 * Describe the size of a flow's extended topology graph. The compact form
+	 * is used when the verifier does not keep the flow's full graph.
+	 * @param flow the flow
+	 * @return the number of vertices and edges in the flow's graph
+	 */
+	private String getSize(Flow flow) {
+		int vertexCount, edgeCount;
+		if (null == verifier.etgs) {
+			CompactGraph compactEtg = verifier.compactEtgs.get(flow);
+			vertexCount = compactEtg.getVertexCount();
+			edgeCount = compactEtg.getEdgeCount();
+		}
+		else {
+			ExtendedTopologyGraph<?> etg = verifier.etgs.get(flow);
+			vertexCount = etg.getGraph().vertexSet().size();
+			edgeCount = etg.getGraph().edgeSet().size();
 		}
-		return results;
+		return vertexCount + " vertices " + edgeCount + " edges";
 	}
 }
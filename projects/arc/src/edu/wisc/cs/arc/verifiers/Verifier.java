@@ -1,16 +1,12 @@
 package edu.wisc.cs.arc.verifiers;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Set;
 
 import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.CompactGraph;
 import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
 import edu.wisc.cs.arc.graphs.Flow;
 
@@ -21,9 +17,14 @@ import edu.wisc.cs.arc.graphs.Flow;
 @SuppressWarnings("rawtypes")
 public abstract class Verifier {
 	
-	/** The ETGs to use for verification */
+	/** The ETGs to use for verification; null if only the compact forms of
+	 * the ETGs were kept */
 	protected Map<Flow, ? extends ExtendedTopologyGraph> etgs;
 	
+	/** Compact forms of the ETGs; null if verification should use the ETGs
+	 * directly */
+	protected Map<Flow, CompactGraph> compactEtgs;
+	
 	/** Settings for the verification process */
 	protected Settings settings;
 
@@ -36,6 +37,39 @@ public abstract class Verifier {
 			Settings settings) {
 		this.etgs = etgs;
 		this.settings = settings;
+		this.compactEtgs = null;
+	}
+	
+	/**
+	 * Use compact forms of the ETGs for verification.
+	 * @param compactEtgs compact form of the ETG for each flow
+	 */
+	public void setCompactEtgs(Map<Flow, CompactGraph> compactEtgs) {
+		this.compactEtgs = compactEtgs;
+	}
+	
+	/**
+	 * Get the compact form of the ETG for a flow.
+	 * @param flow flow whose compact ETG to get
+	 * @return the compact ETG for the flow
+	 */
+	protected CompactGraph getCompactEtg(Flow flow) {
+		CompactGraph compactEtg = this.compactEtgs.get(flow);
+		if (null == compactEtg) {
+			throw new VerifierException("No compact ETG for flow "+flow);
+		}
+		return compactEtg;
+	}
+	
+	/**
+	 * Get the flows for which to check the property.
+	 * @return the flows that have an ETG
+	 */
+	protected Set<Flow> getFlows() {
+		if (null == this.etgs) {
+			return this.compactEtgs.keySet();
+		}
+		return this.etgs.keySet();
 	}
 	
 	/**
@@ -45,62 +79,75 @@ public abstract class Verifier {
 	 *         each flow
 	 */
 	public Map<Flow,Boolean> verifyAll(Object arg) {
-		Map<Flow, Boolean> results = new LinkedHashMap<Flow, Boolean>();
-		
-		if (this.settings.shouldParallelize()) {
-			// Create a queue of flows to verify
-			Queue<Flow> queue = new ConcurrentLinkedQueue<Flow>();
-			queue.addAll(this.etgs.keySet());
-			
-			// Create a thread pool
-			int numThreads = Runtime.getRuntime().availableProcessors();
-			ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
-			
-			// Start a VerificationTask for each thread
-			List<Future<Map<Flow,Boolean>>> futures = 
-					new ArrayList<Future<Map<Flow,Boolean>>>(numThreads);
-			for (int t = 0; t < numThreads; t++) {
-				VerificationTask task = new VerificationTask(this, queue, arg);
-				futures.add(threadPool.submit(task));
-			}
-			
-			// Get the results from each thread
-			try {
-				for (Future<Map<Flow,Boolean>> future : futures) {
-					
-						// Get the result from the thread, waiting for the thread to
-						// complete, if necessary
-						Map<Flow, Boolean> result = future.get();
-						results.putAll(result);
-				}
-			}
-			catch (Exception exception) {
-				exception.printStackTrace();
-				throw new VerifierException("Verication task failed",exception);
-			}
-			finally {
-				threadPool.shutdown();
+		final Map<Flow, Boolean> results = Collections.synchronizedMap(
+				new LinkedHashMap<Flow, Boolean>());
+		this.verifyAll(arg, new VerificationResultSink() {
+			@Override
+			public void accept(Object context, Flow flow, boolean result,
+					boolean flagged, String detail) {
+				results.put(flow, result);
 			}
+		});
+		return results;
+	}
+	
+	/**
+	 * Check the property for all flows, passing each result to a sink as soon
+	 * as it is produced.
+	 * @param arg optional additional argument
+	 * @param sink sink that receives the result for each flow
+	 */
+	public void verifyAll(Object arg, VerificationResultSink sink) {
+		if (this.settings.shouldParallelize()) {
+			VerificationScheduler.getScheduler(this.settings.getThreadCount())
+					.verifyAll(this, arg, sink);
 		}
 		else 
 		{
-			for (Flow flow : this.etgs.keySet()) {
+			for (Flow flow : this.getFlows()) {
 				long startTime = System.nanoTime();
 				boolean result = this.verify(flow, arg);
-				results.put(flow, result);
 				long endTime = System.nanoTime();
+				this.report(sink, flow, arg, result);
 	            if (settings.shouldOutputPerflowVerifcationTimes()) {
 	            	System.out.println("TIMEONE: " 
 	            			+ this.getClass().getSimpleName()
 	            			+ " " + (endTime - startTime) + " ns");
-	            			/*+ this.etgs.get(flow).getGraph().vertexSet().size()
-	            			+ " vertices " 
-	            			+ this.etgs.get(flow).getGraph().edgeSet().size()
-	            			+ " edges " + result);*/
 	            }
 			}
 		}
-		return results;
+	}
+	
+	/**
+	 * Pass the result of a property check to a sink.
+	 * @param sink sink that receives the result
+	 * @param flow flow for which the property was checked
+	 * @param arg optional additional argument used for the check
+	 * @param result the result of the check
+	 */
+	protected void report(VerificationResultSink sink, Flow flow, Object arg,
+			boolean result) {
+		sink.accept(this.getContext(arg), flow, result, false,
+				this.getDetail(flow, result));
+	}
+	
+	/**
+	 * Get what a flow is checked against, for inclusion with each result.
+	 * @param arg optional additional argument
+	 * @return the context for each result; null by default
+	 */
+	protected Object getContext(Object arg) {
+		return null;
+	}
+	
+	/**
+	 * Get an explanation of the result of a property check.
+	 * @param flow flow for which the property was checked
+	 * @param result the result of the check
+	 * @return an explanation of the result; null by default
+	 */
+	protected String getDetail(Flow flow, boolean result) {
+		return null;
 	}
 	
 	/**
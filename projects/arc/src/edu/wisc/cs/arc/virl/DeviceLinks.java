@@ -0,0 +1,98 @@
+package edu.wisc.cs.arc.virl;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import edu.wisc.cs.arc.graphs.Device;
+import edu.wisc.cs.arc.graphs.DeviceGraph;
+import edu.wisc.cs.arc.graphs.DeviceVertex;
+import edu.wisc.cs.arc.graphs.DirectedEdge;
+import edu.wisc.cs.arc.graphs.Interface;
+
+/**
+ * The links of a physical topology, indexed by interface. The index depends
+ * only on the device-based ETG, so it is built once and shared by all the
+ * failure scenarios computed on that topology.
+ */
+public class DeviceLinks {
+
+	/** Device at the other end of each interface's link */
+	private Map<Interface, Device> connectedDevices;
+
+	/** Identifier for each device, used to track visited devices */
+	private Map<Device, Integer> deviceIds;
+
+	/**
+	 * Index the links of a physical topology. The index gives the same result
+	 * as {@link DeviceGraph#getConnectedDevice(Interface)}: a link that leaves
+	 * from an interface takes precedence over a link that arrives at it.
+	 * @param deviceEtg the physical topology
+	 */
+	public DeviceLinks(DeviceGraph deviceEtg) {
+		Map<String, Device> devices = deviceEtg.getDevices();
+		this.deviceIds = new HashMap<Device, Integer>();
+		for (Device device : devices.values()) {
+			this.deviceIds.put(device, this.deviceIds.size());
+		}
+
+		Map<Interface, Device> outgoing =
+				new IdentityHashMap<Interface, Device>();
+		Map<Interface, Device> incoming =
+				new IdentityHashMap<Interface, Device>();
+		Iterator<DeviceVertex> iterator = deviceEtg.getVerticesIterator();
+		while (iterator.hasNext()) {
+			DeviceVertex vertex = iterator.next();
+			for (DirectedEdge<DeviceVertex> edge :
+					deviceEtg.getOutgoingEdges(vertex)) {
+				Interface iface = edge.getSourceInterface();
+				if (iface != null && !outgoing.containsKey(iface)) {
+					outgoing.put(iface,
+							devices.get(edge.getDestination().getName()));
+				}
+			}
+			for (DirectedEdge<DeviceVertex> edge :
+					deviceEtg.getIncomingEdges(vertex)) {
+				Interface iface = edge.getDestinationInterface();
+				if (iface != null && !incoming.containsKey(iface)) {
+					incoming.put(iface,
+							devices.get(edge.getSource().getName()));
+				}
+			}
+		}
+		for (Map.Entry<Interface, Device> entry : incoming.entrySet()) {
+			if (!outgoing.containsKey(entry.getKey())) {
+				outgoing.put(entry.getKey(), entry.getValue());
+			}
+		}
+		this.connectedDevices = outgoing;
+	}
+
+	/**
+	 * Get the device at the other end of an interface's link.
+	 * @param iface the interface
+	 * @return the connected device; null if the interface has no link
+	 */
+	public Device getConnectedDevice(Interface iface) {
+		return this.connectedDevices.get(iface);
+	}
+
+	/**
+	 * Get the identifier of a device.
+	 * @param device the device
+	 * @return the device's identifier; null if the device is not in the
+	 * 		topology
+	 */
+	public Integer getDeviceId(Device device) {
+		return this.deviceIds.get(device);
+	}
+
+	/**
+	 * Get the number of devices in the topology.
+	 * @return the number of devices
+	 */
+	public int getDeviceCount() {
+		return this.deviceIds.size();
+	}
+}
@@ -5,14 +5,96 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.batfish.representation.Ip;
+
 import edu.wisc.cs.arc.graphs.PolicyGroup;
 
 public class FIB {
+	/** Number of bits in an IPv4 address */
+	private static final int ADDRESS_BITS = 32;
+	
 	private List<FIBEntry> entries;
+	
+	/** Root of a binary trie of entry prefixes, used for longest prefix
+	 * matching */
+	private TrieNode root;
+	
+	/**
+	 * A node in the trie of entry prefixes.
+	 */
+	private static class TrieNode {
+		/** Children for the next address bit being 0 or 1 */
+		private TrieNode[] children = new TrieNode[2];
+		
+		/** Index of the first entry whose prefix ends at this node; -1 if
+		 * none */
+		private int entry = -1;
+		
+		/** Index of the best entry whose prefix ends at or below this node;
+		 * -1 if none */
+		private int subtreeBest = -1;
+	}
 
 	public FIB(List<String> lines) {
 		this.entries = new ArrayList<FIBEntry>();
 		this.parse(lines);
+		this.buildTrie();
+	}
+	
+	/**
+	 * Add all entries to the trie of entry prefixes.
+	 */
+	private void buildTrie() {
+		this.root = new TrieNode();
+		for (int index = 0; index < this.entries.size(); index++) {
+			FIBEntry entry = this.entries.get(index);
+			long address = entry.getPrefix().getNetworkAddress().asLong();
+			TrieNode node = this.root;
+			node.subtreeBest = this.getBetter(node.subtreeBest, index);
+			for (int depth = 0; depth < entry.getPrefixLength(); depth++) {
+				int bit = getBit(address, depth);
+				if (null == node.children[bit]) {
+					node.children[bit] = new TrieNode();
+				}
+				node = node.children[bit];
+				node.subtreeBest = this.getBetter(node.subtreeBest, index);
+			}
+			if (node.entry < 0) {
+				node.entry = index;
+			}
+		}
+	}
+	
+	/**
+	 * Get a bit of an address.
+	 * @param address the address
+	 * @param depth the position of the bit, starting from the most significant
+	 * @return the bit
+	 */
+	private static int getBit(long address, int depth) {
+		return (int)((address >>> (ADDRESS_BITS - 1 - depth)) & 1);
+	}
+	
+	/**
+	 * Choose the better of two entries: the entry with the longer prefix, or
+	 * the earlier entry if the prefixes have the same length.
+	 * @param a index of the first entry; -1 if none
+	 * @param b index of the second entry; -1 if none
+	 * @return index of the better entry; -1 if neither is an entry
+	 */
+	private int getBetter(int a, int b) {
+		if (a < 0) {
+			return b;
+		}
+		if (b < 0) {
+			return a;
+		}
+		int lengthA = this.entries.get(a).getPrefixLength();
+		int lengthB = this.entries.get(b).getPrefixLength();
+		if (lengthA != lengthB) {
+			return (lengthA > lengthB ? a : b);
+		}
+		return Math.min(a, b);
 	}
 	
 	private void parse(List<String> lines) {
@@ -99,17 +181,90 @@ public class FIB {
 		}
 	}
 	
+	/**
+	 * Get the entry with the longest prefix that overlaps a destination.
+	 * @param destination the destination to match
+	 * @return the matching entry with the longest prefix, or the earliest such
+	 * 		entry if several have the same length; null if no entry matches
+	 */
 	public FIBEntry getMatchingEntry(PolicyGroup destination) {
-		FIBEntry bestEntry = null;
-		for (FIBEntry entry : this.entries) {
-			if (entry.matches(destination)) {
-				if ((null == bestEntry) || (entry.getPrefixLength() 
-						> bestEntry.getPrefixLength())) {
-					bestEntry = entry;
+		long start = destination.getStartIp().asLong();
+		long end = destination.getEndIp().asLong();
+		
+		// Prefixes that contain the first or last address
+		int best = this.getBestOnPath(start, -1);
+		if (end != start) {
+			best = this.getBestOnPath(end, best);
+		}
+		
+		// Prefixes that lie entirely between the first and last address are
+		// found by splitting the range into aligned blocks
+		long blockStart = start;
+		while (end != start && blockStart <= end) {
+			int length = ADDRESS_BITS;
+			while (length > 0) {
+				long size = 1L << (ADDRESS_BITS - length + 1);
+				if (blockStart % size != 0 || blockStart + size - 1 > end) {
+					break;
 				}
+				length--;
 			}
+			TrieNode node = this.getNode(blockStart, length);
+			if (node != null) {
+				best = this.getBetter(best, node.subtreeBest);
+			}
+			blockStart += 1L << (ADDRESS_BITS - length);
+		}
+		
+		if (best < 0 || !this.entries.get(best).matches(destination)) {
+			return null;
+		}
+		return this.entries.get(best);
+	}
+	
+	/**
+	 * Get the entry with the longest prefix that contains an address.
+	 * @param address the address to match
+	 * @return the matching entry with the longest prefix, or the earliest such
+	 * 		entry if several have the same length; null if no entry matches
+	 */
+	public FIBEntry getMatchingEntry(Ip address) {
+		int best = this.getBestOnPath(address.asLong(), -1);
+		return (best < 0 ? null : this.entries.get(best));
+	}
+	
+	/**
+	 * Find the best entry whose prefix contains an address.
+	 * @param address the address to match
+	 * @param best index of the best entry found so far; -1 if none
+	 * @return index of the best entry; -1 if none
+	 */
+	private int getBestOnPath(long address, int best) {
+		TrieNode node = this.root;
+		int depth = 0;
+		while (node != null) {
+			best = this.getBetter(best, node.entry);
+			if (depth == ADDRESS_BITS) {
+				break;
+			}
+			node = node.children[getBit(address, depth++)];
+		}
+		return best;
+	}
+	
+	/**
+	 * Get the trie node for a prefix.
+	 * @param address network address of the prefix
+	 * @param length length of the prefix
+	 * @return the node for the prefix; null if no entry's prefix is contained
+	 * 		in the prefix
+	 */
+	private TrieNode getNode(long address, int length) {
+		TrieNode node = this.root;
+		for (int depth = 0; depth < length && node != null; depth++) {
+			node = node.children[getBit(address, depth)];
 		}
-		return bestEntry;
+		return node;
 	}
 	
 	public String toString() {
@@ -54,6 +54,14 @@ public class FIBEntry {
 		return entry.intersects(destination);
 	}
 	
+	/**
+	 * Get the destination prefix.
+	 * @return the destination prefix
+	 */
+	public Prefix getPrefix() {
+		return this.prefix;
+	}
+	
 	/**
 	 * Get the length of the prefix.
 	 * @return length of the prefix
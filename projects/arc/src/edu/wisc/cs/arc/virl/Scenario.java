@@ -1,6 +1,7 @@
 package edu.wisc.cs.arc.virl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,7 +13,6 @@ import edu.wisc.cs.arc.graphs.DeviceVertex;
 import edu.wisc.cs.arc.graphs.DirectedEdge;
 import edu.wisc.cs.arc.graphs.Flow;
 import edu.wisc.cs.arc.graphs.Interface;
-import edu.wisc.cs.arc.graphs.PolicyGroup;
 import edu.wisc.cs.arc.verifiers.VerifierException;
 
 /**
@@ -32,14 +32,23 @@ public class Scenario {
 	/** Physical topology */
 	private DeviceGraph deviceEtg;
 	
+	/** Links of the physical topology, indexed by interface */
+	private DeviceLinks deviceLinks;
+	
 	/**
 	 * Create a failure scenario.
+	 * @param deviceEtg the physical topology
+	 * @param deviceLinks the links of the physical topology, shared by all
+	 * 		scenarios on the topology
+	 * @param logger logger
 	 */
-	public Scenario(DeviceGraph deviceEtg, Logger logger) {
+	public Scenario(DeviceGraph deviceEtg, DeviceLinks deviceLinks, 
+			Logger logger) {
 		this.logger = logger;
 		this.fibs = new HashMap<String, FIB>();
 		this.failedLinks = new ArrayList<Link>();
 		this.deviceEtg = deviceEtg;
+		this.deviceLinks = deviceLinks;
 	}
 	
 	/**
@@ -93,12 +102,10 @@ public class Scenario {
 	 * @return computed path
 	 */
 	public List<Device> computePath(Flow flow, Device startingDevice) {
-		DeviceGraph flowEtg = (DeviceGraph)deviceEtg.clone();
-		flowEtg.customize(flow);
-				
 		List<Device> path = new ArrayList<Device>();
+		BitSet visited = new BitSet(this.deviceLinks.getDeviceCount());
 		Device currentDevice = startingDevice;
-		while (!path.contains(currentDevice)) {
+		while (this.visit(currentDevice, visited, path)) {
 			// Add device to path
 			path.add(currentDevice);
 			
@@ -123,8 +130,7 @@ public class Scenario {
 			// If the interface isn't specified, then we need to lookup the next
 			// hop to determine the outgoing interface
 			if (null == outIface) {
-				FIBEntry outEntry = fib.getMatchingEntry(
-						new PolicyGroup(entry.getNextHop(),entry.getNextHop()));
+				FIBEntry outEntry = fib.getMatchingEntry(entry.getNextHop());
 				if (null == outEntry || null == outEntry.getInterface()) {
 					throw new VerifierException("Unexpected FIB structure");
 				}
@@ -137,7 +143,7 @@ public class Scenario {
 			}
 			
 			// Determine which device is next
-			Device nextDevice = this.deviceEtg.getConnectedDevice(outIface);
+			Device nextDevice = this.deviceLinks.getConnectedDevice(outIface);
 			if (null == nextDevice) {
 				//throw new VerifierException("No device connected to " 
 				//		+ currentDevice + ":" + outIface);
@@ -149,6 +155,25 @@ public class Scenario {
 		return path;
 	}
 	
+	/**
+	 * Mark a device as visited.
+	 * @param device the device to visit
+	 * @param visited identifiers of the devices visited so far
+	 * @param path devices visited so far
+	 * @return true if the device was not visited before, otherwise false
+	 */
+	private boolean visit(Device device, BitSet visited, List<Device> path) {
+		Integer id = this.deviceLinks.getDeviceId(device);
+		if (null == id) {
+			return !path.contains(device);
+		}
+		if (visited.get(id)) {
+			return false;
+		}
+		visited.set(id);
+		return true;
+	}
+	
 	@Override
 	public String toString() {
 		if (0 == this.failedLinks.size()) {
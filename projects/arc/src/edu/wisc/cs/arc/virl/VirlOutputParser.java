@@ -1,15 +1,19 @@
 package edu.wisc.cs.arc.virl;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-
-import org.apache.commons.io.FileUtils;
+import java.util.NoSuchElementException;
 
 import edu.wisc.cs.arc.Logger;
 import edu.wisc.cs.arc.graphs.DeviceGraph;
+import edu.wisc.cs.arc.verifiers.VerifierException;
 
 /**
  * Handles the parsing of output from Cisco Virtual Internet Routing Lab (VIRL).
@@ -25,6 +29,9 @@ public class VirlOutputParser {
 	/** Device-based extended topology graph */
 	private DeviceGraph deviceEtg;
 	
+	/** Links of the device-based ETG, shared by all parsed scenarios */
+	private DeviceLinks deviceLinks;
+	
 	/**
 	 * Creates a new VIRL output parser.
 	 * @param path location of the output file
@@ -33,49 +40,166 @@ public class VirlOutputParser {
 		this.logger = logger;
 		this.outputFile = Paths.get(path).toFile();
 		this.deviceEtg = deviceEtg;
+		this.deviceLinks = new DeviceLinks(deviceEtg);
 	}
 	
 	/**
 	 * Parse VIRL output.
-	 * @return a list of scenarios contained in the output
+	 * @return a list of scenarios contained in the output; null if the output
+	 * 		cannot be read
 	 */
 	public List<Scenario> parse() {
 		List<Scenario> scenarios = new ArrayList<Scenario>();
-		List<String> outputLines;
+		ScenarioIterator iterator = null;
 		try {
-			outputLines = FileUtils.readLines(this.outputFile);
-		} catch (IOException e) {
+			iterator = this.parseIncrementally();
+			while (iterator.hasNext()) {
+				scenarios.add(iterator.next());
+			}
+		} catch (VerifierException e) {
 			e.printStackTrace();
 			return null;
-		}
-		
-		List<String> scenarioLines = new ArrayList<String>();
-		for (String line : outputLines) {
-			if (line.contains("START SCENARIO")) {
-				scenarioLines = new ArrayList<String>();
-			}
-			else if (line.contains("END SCENARIO")) {
-				Scenario scenario = this.parseScenario(scenarioLines);
-				scenarios.add(scenario);
-			}
-			else {
-				scenarioLines.add(line);
+		} finally {
+			if (iterator != null) {
+				iterator.close();
 			}
 		}
-		
 		return scenarios;
 	}
 	
 	/**
-	 * Parse a scenario contained in VIRL output
-	 * @param scenarioLines output associated with the scenario
-	 * @return the scenario
+	 * Parse VIRL output one scenario at a time. The output file is read as
+	 * scenarios are requested, so only the scenario currently being parsed is
+	 * held in memory. The caller must close the iterator if it stops before
+	 * reaching the end of the output.
+	 * @return an iterator over the scenarios contained in the output
+	 */
+	public ScenarioIterator parseIncrementally() {
+		try {
+			return new ScenarioIterator(new BufferedReader(
+					new FileReader(this.outputFile)));
+		} catch (IOException e) {
+			throw new VerifierException("Cannot read VIRL output "
+					+ this.outputFile, e);
+		}
+	}
+	
+	/**
+	 * Reads scenarios from VIRL output as they are requested.
 	 */
-	private Scenario parseScenario(List<String> scenarioLines) {
-		Scenario scenario = new Scenario(this.deviceEtg, this.logger);
-		List<String> fibLines = new ArrayList<String>();
-		String node = null;
-		for (String line : scenarioLines) {
+	public class ScenarioIterator implements Iterator<Scenario>, Closeable {
+		/** Reader for the output file; null once the file has been read */
+		private BufferedReader reader;
+		
+		/** Next scenario to return; null if it has not been read yet */
+		private Scenario next;
+		
+		/** Scenario being parsed */
+		private Scenario scenario;
+		
+		/** Device whose FIB is being parsed; null if none */
+		private String node;
+		
+		/** Lines of the FIB being parsed */
+		private List<String> fibLines;
+		
+		/**
+		 * Create an iterator over the scenarios in VIRL output.
+		 * @param reader reader for the output file
+		 */
+		private ScenarioIterator(BufferedReader reader) {
+			this.reader = reader;
+			this.next = null;
+			this.startScenario();
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (null == this.next) {
+				this.next = this.readScenario();
+			}
+			return (this.next != null);
+		}
+		
+		@Override
+		public Scenario next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Scenario scenario = this.next;
+			this.next = null;
+			return scenario;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		/**
+		 * Close the output file, if it has not been read to the end.
+		 */
+		@Override
+		public void close() {
+			if (null == this.reader) {
+				return;
+			}
+			try {
+				this.reader.close();
+			} catch (IOException e) {
+				throw new VerifierException("Cannot close VIRL output "
+						+ outputFile, e);
+			} finally {
+				this.reader = null;
+			}
+		}
+		
+		/**
+		 * Start parsing a new scenario.
+		 */
+		private void startScenario() {
+			this.scenario = new Scenario(deviceEtg, deviceLinks, logger);
+			this.node = null;
+			this.fibLines = new ArrayList<String>();
+		}
+		
+		/**
+		 * Read lines until the end of the next scenario.
+		 * @return the next scenario; null if there are no more scenarios
+		 */
+		private Scenario readScenario() {
+			if (null == this.reader) {
+				return null;
+			}
+			try {
+				String line = this.reader.readLine();
+				while (line != null) {
+					if (line.contains("START SCENARIO")) {
+						this.startScenario();
+					}
+					else if (line.contains("END SCENARIO")) {
+						Scenario scenario = this.scenario;
+						this.startScenario();
+						return scenario;
+					}
+					else {
+						this.parseLine(line);
+					}
+					line = this.reader.readLine();
+				}
+				this.close();
+				return null;
+			} catch (IOException e) {
+				throw new VerifierException("Cannot read VIRL output "
+						+ outputFile, e);
+			}
+		}
+		
+		/**
+		 * Parse a line of output associated with the current scenario.
+		 * @param line the line to parse
+		 */
+		private void parseLine(String line) {
 			// Failed link
 			if (line.startsWith("DOWN")) {
 				int startIfaceNode = line.indexOf(' ') + 1;
@@ -98,33 +222,27 @@ public class VirlOutputParser {
 				String dstNode = link.substring(startDst, endDst);
 				logger.debug("Failed link: " + srcNode + " -- " + dstNode);
 				
-				/*int startSrc = line.indexOf('(') + 1;
-				int endSrc = line.indexOf(' ', startSrc);
-				int startDst = endSrc + 1;
-				int endDst = line.indexOf(')', startDst);
-				
-				String srcNode = line.substring(startSrc, endSrc);
-				String dstNode = line.substring(startDst, endDst);*/
-
-				scenario.addFailedLink(new Link(srcNode, dstNode));
+				this.scenario.addFailedLink(new Link(srcNode, dstNode));
 			}
 			// Start FIB
 			else if (line.startsWith("FIB")) {
-				node = line.substring(4);
-				fibLines = new ArrayList<String>();
+				this.node = line.substring(4);
+				this.fibLines = new ArrayList<String>();
 			}
 			// End FIB
-			else if (node != null && line.endsWith(node+"#")) {
-				FIB fib = new FIB(fibLines);
-				logger.debug(node + "\n" + fib.toString());
-				scenario.addFIB(node, fib);
-				node = null;
+			else if (this.node != null && line.endsWith(this.node+"#")) {
+				FIB fib = new FIB(this.fibLines);
+				if (logger.isDebugEnabled()) {
+					logger.debug(this.node + "\n" + fib.toString());
+				}
+				this.scenario.addFIB(this.node, fib);
+				this.node = null;
+				this.fibLines = new ArrayList<String>();
 			}
 			// FIB line
 			else {
-				fibLines.add(line);
+				this.fibLines.add(line);
 			}
 		}
-		return scenario;
 	}
 }
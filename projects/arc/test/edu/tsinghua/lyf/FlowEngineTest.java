@@ -0,0 +1,125 @@
+package edu.tsinghua.lyf;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlowEngineTest {
+
+	private static final String[] ENGINES = { maxFlowutil.EDMONDS_KARP,
+			maxFlowutil.DINIC, maxFlowutil.PUSH_RELABEL };
+
+	/**
+	 * Build a residual graph from (source, destination, capacity) triples.
+	 */
+	private static residualGraph buildGraph(int nodes, int[][] edges) {
+		residualGraph residual = new residualGraph(nodes, edges.length);
+		for (int[] edge : edges) {
+			residual.addCapacity(edge[0], edge[1], edge[2]);
+		}
+		return residual;
+	}
+
+	/**
+	 * Check that every engine computes the expected max flow.
+	 */
+	private static void assertMaxFlow(int expected, int nodes, int[][] edges,
+			int source, int dest, int limit) {
+		for (String name : ENGINES) {
+			residualGraph residual = buildGraph(nodes, edges);
+			int flow = maxFlowutil.newEngine(name).augment(residual, source,
+					dest, limit);
+			Assert.assertEquals(name, expected, flow);
+			assertValidFlow(name, residual, source, dest, flow);
+		}
+	}
+
+	/**
+	 * Check capacity constraints and flow conservation in a residual graph.
+	 */
+	private static void assertValidFlow(String name, residualGraph residual,
+			int source, int dest, int value) {
+		int[] excess = new int[residual.nodenumber];
+		for (int arc = 0; arc < residual.arcnumber; arc += 2) {
+			int flow = residual.getFlow(arc);
+			Assert.assertTrue(name, flow >= 0 && flow <= residual.graph[arc]);
+			excess[residual.getSource(arc)] -= flow;
+			excess[residual.to[arc]] += flow;
+		}
+		for (int v = 0; v < excess.length; v++) {
+			if (v == source) {
+				Assert.assertEquals(name, -value, excess[v]);
+			}
+			else if (v == dest) {
+				Assert.assertEquals(name, value, excess[v]);
+			}
+			else {
+				Assert.assertEquals(name, 0, excess[v]);
+			}
+		}
+	}
+
+	@Test
+	public void testKnownValue() {
+		int[][] edges = { {0,1,16}, {0,2,13}, {1,2,10}, {2,1,4}, {1,3,12},
+				{3,2,9}, {2,4,14}, {4,3,7}, {3,5,20}, {4,5,4} };
+		assertMaxFlow(23, 6, edges, 0, 5, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testLimit() {
+		int[][] edges = { {0,1,16}, {0,2,13}, {1,2,10}, {2,1,4}, {1,3,12},
+				{3,2,9}, {2,4,14}, {4,3,7}, {3,5,20}, {4,5,4} };
+		assertMaxFlow(5, 6, edges, 0, 5, 5);
+	}
+
+	@Test
+	public void testZeroCapacity() {
+		int[][] edges = { {0,1,0}, {1,3,5}, {0,2,3}, {2,3,3}, {1,2,0} };
+		assertMaxFlow(3, 4, edges, 0, 3, Integer.MAX_VALUE);
+
+		int[][] blocked = { {0,1,0}, {1,2,4} };
+		assertMaxFlow(0, 3, blocked, 0, 2, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testDisconnected() {
+		int[][] edges = { {0,1,4}, {2,3,4}, {3,2,1} };
+		assertMaxFlow(0, 4, edges, 0, 3, Integer.MAX_VALUE);
+
+		int[][] reversed = { {1,0,4}, {2,1,4} };
+		assertMaxFlow(0, 3, reversed, 0, 2, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testUnitCapacities() {
+		// Two edge-disjoint paths plus a cross edge, as in a unit-weight ETG
+		int[][] edges = { {0,1,maxFlow.INFINITE_CAPACITY},
+				{0,2,maxFlow.INFINITE_CAPACITY}, {1,3,1}, {2,4,1}, {1,4,1},
+				{3,5,maxFlow.INFINITE_CAPACITY},
+				{4,5,maxFlow.INFINITE_CAPACITY} };
+		assertMaxFlow(3, 6, edges, 0, 5, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testEnginesAgree() {
+		Random random = new Random(2017);
+		for (int i = 0; i < 200; i++) {
+			int nodes = 2 + random.nextInt(12);
+			int[][] edges = new int[random.nextInt(nodes * 3)][];
+			for (int e = 0; e < edges.length; e++) {
+				edges[e] = new int[] { random.nextInt(nodes),
+						random.nextInt(nodes), random.nextInt(6) };
+				if (edges[e][0] == edges[e][1]) {
+					edges[e][2] = 0;
+				}
+			}
+			residualGraph residual = buildGraph(nodes, edges);
+			int expected = maxFlowutil.newEngine(maxFlowutil.EDMONDS_KARP)
+					.augment(residual, 0, nodes - 1, Integer.MAX_VALUE);
+			assertMaxFlow(expected, nodes, edges, 0, nodes - 1,
+					Integer.MAX_VALUE);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package edu.wisc.cs.arc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultDirectedWeightedGraph;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.tsinghua.lyf.maxFlowutil;
+import edu.tsinghua.lyf.vertexIndex;
+import edu.wisc.cs.arc.graphs.DirectedEdge;
+import edu.wisc.cs.arc.graphs.DirectedEdge.EdgeType;
+import edu.wisc.cs.arc.graphs.DirectedEdgeFactory;
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.PolicyGroup;
+import edu.wisc.cs.arc.graphs.PolicyGroupAtomizer;
+import edu.wisc.cs.arc.graphs.ProcessGraph;
+import edu.wisc.cs.arc.graphs.Vertex;
+
+public class IncrementalSessionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File configs;
+
+	/**
+	 * Write the configurations of three OSPF routers connected in a triangle,
+	 * each with its own LAN.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		maxFlowutil.maxFlowMap.clear();
+		this.configs = this.folder.newFolder("configs");
+		writeConfig(this.configs, "A", true);
+		writeConfig(this.configs, "B", true);
+		writeConfig(this.configs, "C", true);
+	}
+
+	@After
+	public void tearDown() {
+		maxFlowutil.maxFlowMap.clear();
+	}
+
+	/**
+	 * Write the configuration of a router in the triangle.
+	 * @param linkedBC whether the link between B and C is configured
+	 */
+	private static void writeConfig(File directory, String hostname,
+			boolean linkedBC) throws IOException {
+		StringBuilder config = new StringBuilder();
+		config.append("!\nversion 12.4\n!\nhostname " + hostname + "\n!\n");
+		int lan = hostname.charAt(0) - 'A' + 1;
+		StringBuilder networks = new StringBuilder();
+		int port = 1;
+		for (String peer : new String[] {"A", "B", "C"}) {
+			if (peer.equals(hostname) || (!linkedBC
+					&& (hostname + peer).matches("BC|CB"))) {
+				continue;
+			}
+			int low = Math.min(lan, peer.charAt(0) - 'A' + 1);
+			int high = Math.max(lan, peer.charAt(0) - 'A' + 1);
+			String subnet = "10.0." + low + high;
+			config.append("interface GigabitEthernet0/" + port++ + "\n");
+			config.append("    ip address " + subnet + "."
+					+ (low == lan ? 1 : 2) + " 255.255.255.0\n!\n");
+			networks.append("    network " + subnet + ".0 0.0.0.255 area 0\n");
+		}
+		config.append("interface GigabitEthernet0/" + port + "\n");
+		config.append("    ip address 10.1." + lan + ".1 255.255.255.0\n!\n");
+		networks.append("    network 10.1." + lan + ".0 0.0.0.255 area 0\n");
+		config.append("router ospf 1\n" + networks + "!\nend\n");
+		Files.write(new File(directory, hostname + ".cfg").toPath(),
+				config.toString().getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private Settings newSettings(boolean incremental) throws Exception {
+		String[] args = (incremental
+				? new String[] { "-configs", this.configs.getPath(),
+						"-incremental" }
+				: new String[] { "-configs", this.configs.getPath() });
+		return new Settings(args, new Logger(Logger.Level.FATAL));
+	}
+
+	/**
+	 * Load the configurations and build the ETGs for a session.
+	 */
+	private static void build(IncrementalSession session, Settings settings) {
+		session.loadConfigurations(settings);
+		session.buildEtgs(settings);
+	}
+
+	/**
+	 * Compute the max flow between every pair of LANs the same way the
+	 * always-reachable verifier does, using the max flows cached by earlier
+	 * runs.
+	 */
+	private static Map<Flow, Integer> getMaxFlows(IncrementalSession session,
+			Settings settings) {
+		ProcessGraph processEtg = session.getProcessEtg();
+		vertexIndex baseIndex = new vertexIndex(
+				processEtg.getGraph().vertexSet());
+		Set<PolicyGroup> groups = PolicyGroupAtomizer.atomize(
+				PolicyGroup.extract(session.getVendorConfigurations()));
+		Map<Flow, Integer> maxFlows = new LinkedHashMap<Flow, Integer>();
+		for (PolicyGroup source : groups) {
+			for (PolicyGroup destination : groups) {
+				if (source.equals(destination)
+						|| !source.toString().startsWith("10.1.")
+						|| !destination.toString().startsWith("10.1.")) {
+					continue;
+				}
+				Flow flow = new Flow(source, destination);
+				ProcessGraph flowEtg = (ProcessGraph)processEtg.clone();
+				flowEtg.customize(flow);
+				maxFlows.put(flow, maxFlowutil.getResult(flow,
+						getUnitWeightGraph(flowEtg),
+						flowEtg.getFlowSourceVertex(source),
+						flowEtg.getFlowDestinationVertex(),
+						settings.getMaxFlowEngine(), baseIndex));
+			}
+		}
+		return maxFlows;
+	}
+
+	private static DefaultDirectedWeightedGraph<Vertex, DirectedEdge<Vertex>>
+			getUnitWeightGraph(ProcessGraph etg) {
+		DefaultDirectedWeightedGraph<Vertex, DirectedEdge<Vertex>> graph =
+				new DefaultDirectedWeightedGraph<Vertex, DirectedEdge<Vertex>>(
+						new DirectedEdgeFactory<Vertex>());
+		Graphs.addAllVertices(graph, etg.getGraph().vertexSet());
+		Iterator<? extends DirectedEdge<?>> iterator = etg.getEdgesIterator();
+		while (iterator.hasNext()) {
+			DirectedEdge<?> edge = iterator.next();
+			graph.setEdgeWeight(graph.addEdge(edge.getSource(),
+					edge.getDestination()),
+					(EdgeType.INTER_DEVICE == edge.getType() ? 1
+							: DirectedEdge.INFINITE_WEIGHT));
+		}
+		return graph;
+	}
+
+	@Test
+	public void testRepairedMaxFlowsMatchFullRun() throws Exception {
+		Settings settings = this.newSettings(true);
+		IncrementalSession session = new IncrementalSession(settings);
+		build(session, settings);
+		Map<Flow, Integer> before = getMaxFlows(session, settings);
+		Assert.assertEquals(6, before.size());
+		for (Integer maxFlow : before.values()) {
+			Assert.assertEquals(2, maxFlow.intValue());
+		}
+
+		// Remove the link between B and C from B's configuration only
+		writeConfig(this.configs, "B", false);
+		Assert.assertEquals(1, session.loadConfigurations(settings));
+		session.buildEtgs(settings);
+		Assert.assertFalse(session.getEdgeDeltas().isEmpty());
+		Map<Flow, Integer> repaired = getMaxFlows(session, settings);
+
+		// Rebuild everything without any cached max flows
+		maxFlowutil.maxFlowMap.clear();
+		Settings fullSettings = this.newSettings(false);
+		IncrementalSession full = new IncrementalSession(fullSettings);
+		build(full, fullSettings);
+		Map<Flow, Integer> expected = getMaxFlows(full, fullSettings);
+
+		Assert.assertEquals(expected, repaired);
+		Assert.assertNotEquals(before, repaired);
+	}
+
+	@Test
+	public void testUnchangedConfigsAreNotReparsed() throws Exception {
+		Settings settings = this.newSettings(true);
+		IncrementalSession session = new IncrementalSession(settings);
+		Assert.assertEquals(3, session.loadConfigurations(settings));
+		session.buildEtgs(settings);
+		ProcessGraph processEtg = session.getProcessEtg();
+		int vertices = processEtg.getVertexCount();
+		int edges = processEtg.getEdgeCount();
+
+		Assert.assertEquals(0, session.loadConfigurations(settings));
+		session.buildEtgs(settings);
+		Assert.assertSame(processEtg, session.getProcessEtg());
+		Assert.assertTrue(session.getEdgeDeltas().isEmpty());
+		Assert.assertEquals(vertices, processEtg.getVertexCount());
+		Assert.assertEquals(edges, processEtg.getEdgeCount());
+	}
+}
@@ -0,0 +1,150 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.batfish.representation.Ip;
+import org.batfish.representation.IpProtocol;
+import org.batfish.representation.LineAction;
+import org.batfish.representation.Prefix;
+import org.batfish.representation.cisco.ExtendedAccessList;
+import org.batfish.representation.cisco.ExtendedAccessListLine;
+import org.batfish.representation.cisco.StandardAccessList;
+import org.batfish.representation.cisco.StandardAccessListLine;
+import org.batfish.util.SubRange;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AclDecisionCacheTest {
+
+	private CompiledAcl standard;
+
+	private CompiledAcl extended;
+
+	private List<Flow> flows;
+
+	/**
+	 * Compile a standard and an extended ACL, and create flows between four
+	 * policy groups, some of which each ACL blocks.
+	 */
+	@Before
+	public void setUp() {
+		StandardAccessList standardAcl = new StandardAccessList("standard");
+		standardAcl.addLine(new StandardAccessListLine(LineAction.REJECT,
+				new Ip("10.0.1.0"), new Ip("0.0.0.255")));
+		standardAcl.addLine(new StandardAccessListLine(LineAction.ACCEPT,
+				new Ip("0.0.0.0"), new Ip("255.255.255.255")));
+		this.standard = new CompiledAcl(standardAcl);
+
+		ExtendedAccessList extendedAcl = new ExtendedAccessList("extended");
+		extendedAcl.addLine(new ExtendedAccessListLine(LineAction.REJECT,
+				IpProtocol.IP, new Ip("0.0.0.0"), new Ip("255.255.255.255"),
+				new Ip("10.0.3.0"), new Ip("0.0.0.255"),
+				new ArrayList<SubRange>(), new ArrayList<SubRange>()));
+		extendedAcl.addLine(new ExtendedAccessListLine(LineAction.ACCEPT,
+				IpProtocol.IP, new Ip("10.0.0.0"), new Ip("0.0.255.255"),
+				new Ip("0.0.0.0"), new Ip("255.255.255.255"),
+				new ArrayList<SubRange>(), new ArrayList<SubRange>()));
+		this.extended = new CompiledAcl(extendedAcl);
+
+		List<PolicyGroup> groups = new ArrayList<PolicyGroup>();
+		for (int i = 1; i <= 4; i++) {
+			groups.add(new PolicyGroup(new Prefix("10.0." + i + ".0/24")));
+		}
+		this.flows = new ArrayList<Flow>();
+		for (PolicyGroup source : groups) {
+			for (PolicyGroup destination : groups) {
+				if (source != destination) {
+					this.flows.add(new Flow(source, destination));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesUncachedDecisions() {
+		AclDecisionCache cache = new AclDecisionCache();
+		for (int pass = 0; pass < 2; pass++) {
+			for (Flow flow : this.flows) {
+				Assert.assertEquals(flow.isBlocked(this.standard),
+						cache.isBlocked(this.standard, flow));
+				Assert.assertEquals(flow.isBlocked(this.extended),
+						cache.isBlocked(this.extended, flow));
+			}
+		}
+
+		// A standard ACL is evaluated once per source, and an extended ACL
+		// once per flow
+		Assert.assertEquals(4 + this.flows.size(), cache.getMisses());
+		Assert.assertEquals(4 + this.flows.size(), cache.size());
+		Assert.assertEquals(4 * this.flows.size() - cache.getMisses(),
+				cache.getHits());
+	}
+
+	@Test
+	public void testEquivalentFlowsShareDecisions() {
+		AclDecisionCache cache = new AclDecisionCache();
+		Flow flow = this.flows.get(0);
+		Assert.assertTrue(cache.isBlocked(this.standard, flow));
+		Flow copy = new Flow(new PolicyGroup(flow.getSource()),
+				new PolicyGroup(flow.getDestination()));
+		Assert.assertTrue(cache.isBlocked(this.standard, copy));
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testFullCacheStillAnswers() {
+		AclDecisionCache cache = new AclDecisionCache(2);
+		for (int pass = 0; pass < 2; pass++) {
+			for (Flow flow : this.flows) {
+				Assert.assertEquals(flow.isBlocked(this.extended),
+						cache.isBlocked(this.extended, flow));
+			}
+		}
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(2 * this.flows.size() - 2, cache.getMisses());
+	}
+
+	@Test
+	public void testSharedBetweenThreads() throws Exception {
+		final AclDecisionCache cache = new AclDecisionCache();
+		final int rounds = 50;
+		ExecutorService threadPool = Executors.newFixedThreadPool(4);
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		try {
+			for (int t = 0; t < 4; t++) {
+				futures.add(threadPool.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						boolean same = true;
+						for (int i = 0; i < rounds; i++) {
+							for (Flow flow : flows) {
+								same &= (flow.isBlocked(extended)
+										== cache.isBlocked(extended, flow));
+								same &= (flow.isBlocked(standard)
+										== cache.isBlocked(standard, flow));
+							}
+						}
+						return same;
+					}
+				}));
+			}
+			for (Future<Boolean> future : futures) {
+				Assert.assertTrue(future.get());
+			}
+		}
+		finally {
+			threadPool.shutdown();
+		}
+		Assert.assertEquals(4 + this.flows.size(), cache.size());
+		Assert.assertEquals(4 * rounds * 2 * this.flows.size(),
+				cache.getHits() + cache.getMisses());
+	}
+}
@@ -0,0 +1,261 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.batfish.representation.Prefix;
+import org.jgrapht.traverse.BreadthFirstIterator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.wisc.cs.arc.Logger;
+import edu.wisc.cs.arc.Settings;
+
+public class CompactGraphTest {
+
+	private Settings settings;
+
+	private Flow flow;
+
+	private Device s, a, b, c, d;
+
+	private Interface s1, a1, a2, a3, b1, b2, d1, d2;
+
+	/**
+	 * Create devices S, A, B, C, and D; S connects to A, and A connects to D
+	 * directly and through B. C has no links.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		this.settings = new Settings(new String[] { "-configs", "unused" },
+				new Logger(Logger.Level.FATAL));
+		this.flow = new Flow(new PolicyGroup(new Prefix("10.0.1.0/24")),
+				new PolicyGroup(new Prefix("10.0.2.0/24")));
+		this.s = new Device("S");
+		this.s1 = TestGraph.addInterface(this.s, "GigabitEthernet0/1",
+				"10.1.1.1/30");
+		this.a = new Device("A");
+		this.a1 = TestGraph.addInterface(this.a, "GigabitEthernet0/1",
+				"10.1.1.2/30");
+		this.a2 = TestGraph.addInterface(this.a, "GigabitEthernet0/2",
+				"10.1.2.1/30");
+		this.a3 = TestGraph.addInterface(this.a, "GigabitEthernet0/3",
+				"10.1.3.1/30");
+		this.b = new Device("B");
+		this.b1 = TestGraph.addInterface(this.b, "GigabitEthernet0/1",
+				"10.1.3.2/30");
+		this.b2 = TestGraph.addInterface(this.b, "GigabitEthernet0/2",
+				"10.1.4.1/30");
+		this.c = new Device("C");
+		TestGraph.addInterface(this.c, "GigabitEthernet0/1", "10.1.5.1/30");
+		this.d = new Device("D");
+		this.d1 = TestGraph.addInterface(this.d, "GigabitEthernet0/1",
+				"10.1.2.2/30");
+		this.d2 = TestGraph.addInterface(this.d, "GigabitEthernet0/2",
+				"10.1.4.2/30");
+	}
+
+	private TestGraph newEtg() {
+		TestGraph etg = new TestGraph(this.settings);
+		etg.customize(this.flow);
+		this.addTopology(etg);
+		etg.addSource(this.s);
+		etg.addDestination(this.d);
+		return etg;
+	}
+
+	private void addTopology(TestGraph etg) {
+		for (Device device : new Device[] {
+				this.s, this.a, this.b, this.c, this.d}) {
+			etg.addDevice(device);
+		}
+		etg.addLink(this.s1, this.a1);
+		etg.addLink(this.a2, this.d1);
+		etg.addLink(this.a3, this.b1);
+		etg.addLink(this.b2, this.d2);
+	}
+
+	/**
+	 * Check that a compact graph has the same vertices and edges as an ETG,
+	 * and that its edge ranges and incoming edge lists are consistent.
+	 */
+	private static void assertSameGraph(TestGraph etg,
+			CompactGraph compactEtg) {
+		Assert.assertEquals(etg.getVertexCount(), compactEtg.getVertexCount());
+		Assert.assertEquals(etg.getEdgeCount(), compactEtg.getEdgeCount());
+		Assert.assertEquals(etg.getFlow(), compactEtg.getFlow());
+
+		// Every vertex has a distinct identifier
+		Set<Integer> ids = new HashSet<Integer>();
+		for (InterfaceVertex vertex : etg.getGraph().vertexSet()) {
+			int id = compactEtg.getVertexId(vertex);
+			Assert.assertTrue(ids.add(id));
+			Assert.assertEquals(vertex, compactEtg.getVertex(id));
+		}
+
+		// Every edge is found with the same weight and type
+		for (DirectedEdge<InterfaceVertex> edge : etg.getGraph().edgeSet()) {
+			int id = compactEtg.getEdge(
+					compactEtg.getVertexId(edge.getSource()),
+					compactEtg.getVertexId(edge.getDestination()));
+			Assert.assertTrue(id >= 0);
+			Assert.assertEquals(edge.getWeight(),
+					compactEtg.getEdgeWeight(id), 0);
+			Assert.assertEquals(edge.getType(), compactEtg.getEdgeType(id));
+			Assert.assertFalse(compactEtg.isBlocked(id));
+		}
+
+		// Edge ranges partition the edges by source, and incoming edge lists
+		// match the in-degree of each vertex
+		int outEdges = 0;
+		int inEdges = 0;
+		for (int v = 0; v < compactEtg.getVertexCount(); v++) {
+			InterfaceVertex vertex = (InterfaceVertex)compactEtg.getVertex(v);
+			Assert.assertEquals(outEdges, compactEtg.getOutEdgesStart(v));
+			for (int e = compactEtg.getOutEdgesStart(v);
+					e < compactEtg.getOutEdgesEnd(v); e++) {
+				Assert.assertEquals(v, compactEtg.getEdgeSource(e));
+				outEdges++;
+			}
+			Assert.assertEquals(etg.getGraph().outDegreeOf(vertex),
+					compactEtg.getOutEdgesEnd(v)
+					- compactEtg.getOutEdgesStart(v));
+			Assert.assertEquals(etg.getGraph().inDegreeOf(vertex),
+					compactEtg.getInDegree(v));
+			for (int i = 0; i < compactEtg.getInDegree(v); i++) {
+				Assert.assertEquals(v, compactEtg.getEdgeDestination(
+						compactEtg.getInEdge(v, i)));
+				inEdges++;
+			}
+		}
+		Assert.assertEquals(compactEtg.getEdgeCount(), outEdges);
+		Assert.assertEquals(compactEtg.getEdgeCount(), inEdges);
+
+		Assert.assertEquals(compactEtg.getVertexId(etg.getFlowSourceVertex(
+				etg.getFlow().getSource())),
+				compactEtg.getFlowSourceId(etg.getFlow().getSource()));
+		Assert.assertEquals(compactEtg.getVertexId(
+				etg.getFlowDestinationVertex()),
+				compactEtg.getFlowDestinationId());
+	}
+
+	/**
+	 * Check that paths exist between the same vertices in a compact graph as
+	 * in an ETG, and that the vertices reaching each vertex agree.
+	 */
+	private static void assertSamePaths(TestGraph etg,
+			CompactGraph compactEtg) {
+		int count = compactEtg.getVertexCount();
+		BitSet[] reaching = new BitSet[count];
+		for (int v = 0; v < count; v++) {
+			reaching[v] = compactEtg.getVerticesReaching(v);
+		}
+		for (InterfaceVertex source : etg.getGraph().vertexSet()) {
+			Set<InterfaceVertex> reachable = new HashSet<InterfaceVertex>();
+			BreadthFirstIterator<InterfaceVertex,
+					DirectedEdge<InterfaceVertex>> iterator =
+					new BreadthFirstIterator<InterfaceVertex,
+							DirectedEdge<InterfaceVertex>>(
+							etg.getGraph(), source);
+			while (iterator.hasNext()) {
+				reachable.add(iterator.next());
+			}
+			int sourceId = compactEtg.getVertexId(source);
+			for (InterfaceVertex destination : etg.getGraph().vertexSet()) {
+				int destinationId = compactEtg.getVertexId(destination);
+				boolean expected = reachable.contains(destination);
+				Assert.assertEquals(source + " -> " + destination, expected,
+						compactEtg.hasPath(sourceId, destinationId));
+				Assert.assertEquals(source + " -> " + destination, expected,
+						reaching[destinationId].get(sourceId));
+			}
+		}
+	}
+
+	@Test
+	public void testConversion() {
+		TestGraph etg = this.newEtg();
+		CompactGraph compactEtg = etg.toCompactGraph();
+		assertSameGraph(etg, compactEtg);
+		Assert.assertEquals(-1, compactEtg.getEdge(
+				compactEtg.getVertexId(this.d1.getOutVertex()),
+				compactEtg.getVertexId(this.s1.getInVertex())));
+		Assert.assertEquals(-1, compactEtg.getVertexId(
+				new InterfaceVertex(null, Vertex.VertexType.NORMAL)));
+	}
+
+	@Test
+	public void testConversionOfClone() {
+		TestGraph etg = this.newEtg();
+		TestGraph clone = (TestGraph)etg.clone();
+		clone.removeLink(this.a2, this.d1);
+		assertSameGraph(clone, clone.toCompactGraph());
+		assertSameGraph(etg, etg.toCompactGraph());
+	}
+
+	@Test
+	public void testConversionWithBase() {
+		TestGraph baseEtg = new TestGraph(this.settings);
+		this.addTopology(baseEtg);
+		CompactGraph base = baseEtg.toCompactGraph();
+
+		TestGraph etg = (TestGraph)baseEtg.clone();
+		etg.customize(this.flow);
+		etg.removeLink(this.a2, this.d1);
+		etg.addSource(this.s);
+		etg.addDestination(this.d);
+		CompactGraph compactEtg = etg.toCompactGraph(base);
+		assertSamePaths(etg, compactEtg);
+
+		// Vertices of the base graph keep their identifiers, and the flow's
+		// endpoints get identifiers after them
+		for (InterfaceVertex vertex : baseEtg.getGraph().vertexSet()) {
+			int id = base.getVertexId(vertex);
+			Assert.assertEquals(id, compactEtg.getVertexId(vertex));
+			Assert.assertEquals(id, compactEtg.getVertexId(base, id));
+		}
+		Assert.assertEquals(base.getVertexCount() + 2,
+				compactEtg.getVertexCount());
+		Assert.assertTrue(compactEtg.getFlowDestinationId()
+				>= base.getVertexCount());
+		Assert.assertEquals(-1, compactEtg.getVertexId(base,
+				compactEtg.getFlowDestinationId()));
+	}
+
+	@Test
+	public void testPaths() {
+		TestGraph etg = this.newEtg();
+		CompactGraph compactEtg = etg.toCompactGraph();
+		assertSamePaths(etg, compactEtg);
+		int source = compactEtg.getFlowSourceId(this.flow.getSource());
+		int destination = compactEtg.getFlowDestinationId();
+		Assert.assertTrue(compactEtg.hasPath(source, destination));
+		Assert.assertFalse(compactEtg.hasPath(destination, source));
+		Assert.assertFalse(compactEtg.hasPath(-1, destination));
+		Assert.assertTrue(compactEtg.getVerticesReaching(-1).isEmpty());
+	}
+
+	@Test
+	public void testPathsAfterFailures() {
+		TestGraph etg = this.newEtg();
+
+		// The flow still reaches D through B
+		TestGraph clone = (TestGraph)etg.clone();
+		clone.removeLink(this.a2, this.d1);
+		CompactGraph compactEtg = clone.toCompactGraph();
+		assertSamePaths(clone, compactEtg);
+		Assert.assertTrue(compactEtg.hasPath(
+				compactEtg.getFlowSourceId(this.flow.getSource()),
+				compactEtg.getFlowDestinationId()));
+
+		// The flow no longer reaches D
+		clone.removeLink(this.b2, this.d2);
+		compactEtg = clone.toCompactGraph();
+		assertSamePaths(clone, compactEtg);
+		Assert.assertFalse(compactEtg.hasPath(
+				compactEtg.getFlowSourceId(this.flow.getSource()),
+				compactEtg.getFlowDestinationId()));
+	}
+}
@@ -1,10 +1,16 @@
 package edu.wisc.cs.arc.graphs;
 
+import java.util.ArrayList;
+
 import org.batfish.representation.Ip;
+import org.batfish.representation.IpProtocol;
 import org.batfish.representation.LineAction;
 import org.batfish.representation.Prefix;
+import org.batfish.representation.cisco.ExtendedAccessList;
+import org.batfish.representation.cisco.ExtendedAccessListLine;
 import org.batfish.representation.cisco.StandardAccessList;
 import org.batfish.representation.cisco.StandardAccessListLine;
+import org.batfish.util.SubRange;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -28,4 +34,76 @@ public class FlowTest {
 				new Ip("10.0.1.0"), new Ip("0.0.0.255")));
 		Assert.assertFalse(flow.isBlocked(acl));
 	}
+	
+	@Test
+	public void testCompiledStandard() {
+		Flow flow = new Flow(new PolicyGroup(new Prefix("10.0.1.0/24")),
+				new PolicyGroup(new Prefix("10.0.2.0/24")));
+		StandardAccessList acl = new StandardAccessList("blocked");
+		acl.addLine(new StandardAccessListLine(LineAction.ACCEPT, 
+				new Ip("10.0.1.0"), new Ip("0.0.0.127")));
+		acl.addLine(new StandardAccessListLine(LineAction.REJECT, 
+				new Ip("10.0.0.0"), new Ip("0.0.255.255")));
+		acl.addLine(new StandardAccessListLine(LineAction.ACCEPT, 
+				new Ip("0.0.0.0"), new Ip("255.255.255.255")));
+		Assert.assertTrue(flow.isBlocked(new CompiledAcl(acl)));
+		
+		acl = new StandardAccessList("allowed");
+		acl.addLine(new StandardAccessListLine(LineAction.ACCEPT, 
+				new Ip("10.0.1.0"), new Ip("0.0.0.255")));
+		acl.addLine(new StandardAccessListLine(LineAction.REJECT, 
+				new Ip("10.0.0.0"), new Ip("0.0.255.255")));
+		Assert.assertFalse(flow.isBlocked(new CompiledAcl(acl)));
+		
+		acl = new StandardAccessList("implicit");
+		acl.addLine(new StandardAccessListLine(LineAction.ACCEPT, 
+				new Ip("10.0.2.0"), new Ip("0.0.0.255")));
+		Assert.assertTrue(flow.isBlocked(new CompiledAcl(acl)));
+	}
+	
+	@Test
+	public void testCompiledExtended() {
+		ExtendedAccessList acl = new ExtendedAccessList("extended");
+		acl.addLine(newExtendedLine(LineAction.ACCEPT, 
+				"10.0.1.0", "0.0.0.127", "10.0.2.0", "0.0.0.255"));
+		acl.addLine(newExtendedLine(LineAction.REJECT, 
+				"10.0.0.0", "0.0.255.255", "10.0.2.0", "0.0.0.255"));
+		acl.addLine(newExtendedLine(LineAction.REJECT, 
+				"0.0.0.0", "255.255.255.255", "10.0.3.0", "0.0.0.255"));
+		acl.addLine(newExtendedLine(LineAction.ACCEPT, 
+				"10.0.1.0", "0.0.0.255", "10.0.3.0", "0.0.0.127"));
+		acl.addLine(newExtendedLine(LineAction.ACCEPT, 
+				"10.0.1.0", "0.0.0.255", "10.0.4.0", "0.0.0.255"));
+		CompiledAcl compiled = new CompiledAcl(acl);
+		
+		// Permitted by the first line
+		assertSameDecision(false, "10.0.1.0/25", "10.0.2.0/24", acl, compiled);
+		// Source is not within the first line, so the second line denies
+		assertSameDecision(true, "10.0.1.0/24", "10.0.2.0/24", acl, compiled);
+		// Denied by the third line before the fourth line permits
+		assertSameDecision(true, "10.0.1.0/25", "10.0.3.0/25", acl, compiled);
+		// Permitted by the last line
+		assertSameDecision(false, "10.0.1.0/24", "10.0.4.0/24", acl, compiled);
+		// Destination matches no line
+		assertSameDecision(true, "10.0.1.0/24", "10.0.5.0/24", acl, compiled);
+		// Source matches no line that covers the destination
+		assertSameDecision(true, "10.1.0.0/24", "10.0.4.0/24", acl, compiled);
+	}
+	
+	private static ExtendedAccessListLine newExtendedLine(LineAction action,
+			String srcIp, String srcWildcard, String dstIp, 
+			String dstWildcard) {
+		return new ExtendedAccessListLine(action, IpProtocol.IP, 
+				new Ip(srcIp), new Ip(srcWildcard), new Ip(dstIp), 
+				new Ip(dstWildcard), new ArrayList<SubRange>(), 
+				new ArrayList<SubRange>());
+	}
+	
+	private static void assertSameDecision(boolean blocked, String source,
+			String destination, ExtendedAccessList acl, CompiledAcl compiled) {
+		Flow flow = new Flow(new PolicyGroup(new Prefix(source)),
+				new PolicyGroup(new Prefix(destination)));
+		Assert.assertEquals(blocked, flow.isBlocked(acl));
+		Assert.assertEquals(blocked, flow.isBlocked(compiled));
+	}
 }
@@ -0,0 +1,284 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.batfish.representation.Prefix;
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.WeightedGraph;
+import org.jgrapht.graph.DefaultDirectedWeightedGraph;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.wisc.cs.arc.Logger;
+import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.Vertex.VertexType;
+
+public class OverlayGraphTest {
+
+	private InterfaceVertex a, b, c, d, e;
+
+	private OverlayGraph<InterfaceVertex> base;
+
+	/**
+	 * Build a base graph A->B->C->D with a shortcut A->C.
+	 */
+	@Before
+	public void setUp() {
+		this.a = newVertex("A");
+		this.b = newVertex("B");
+		this.c = newVertex("C");
+		this.d = newVertex("D");
+		this.e = newVertex("E");
+		this.base = new OverlayGraph<InterfaceVertex>(
+				new DirectedEdgeFactory<InterfaceVertex>());
+		addEdges(this.base);
+	}
+
+	private static InterfaceVertex newVertex(String name) {
+		InterfaceVertex vertex = new InterfaceVertex(null, VertexType.NORMAL);
+		vertex.setName(name);
+		return vertex;
+	}
+
+	private <G extends DirectedGraph<InterfaceVertex,
+			DirectedEdge<InterfaceVertex>>
+			& WeightedGraph<InterfaceVertex, DirectedEdge<InterfaceVertex>>>
+			void addEdges(G graph) {
+		graph.addVertex(this.a);
+		graph.addVertex(this.b);
+		graph.addVertex(this.c);
+		graph.addVertex(this.d);
+		graph.setEdgeWeight(graph.addEdge(this.a, this.b), 1);
+		graph.setEdgeWeight(graph.addEdge(this.b, this.c), 2);
+		graph.setEdgeWeight(graph.addEdge(this.c, this.d), 3);
+		graph.setEdgeWeight(graph.addEdge(this.a, this.c), 4);
+	}
+
+	/**
+	 * Describe the vertices of a graph by name.
+	 */
+	private static Set<String> getVertices(
+			DirectedGraph<InterfaceVertex, DirectedEdge<InterfaceVertex>>
+			graph) {
+		Set<String> vertices = new HashSet<String>();
+		int count = 0;
+		for (InterfaceVertex vertex : graph.vertexSet()) {
+			vertices.add(vertex.getName());
+			count++;
+		}
+		Assert.assertEquals(count, graph.vertexSet().size());
+		return vertices;
+	}
+
+	/**
+	 * Describe the edges of a graph by their ends and weight.
+	 */
+	private static Set<String> getEdges(
+			DirectedGraph<InterfaceVertex, DirectedEdge<InterfaceVertex>>
+			graph) {
+		Set<String> edges = new HashSet<String>();
+		int count = 0;
+		for (DirectedEdge<InterfaceVertex> edge : graph.edgeSet()) {
+			Assert.assertTrue(graph.containsEdge(edge));
+			edges.add(describe(edge));
+			count++;
+		}
+		Assert.assertEquals(count, graph.edgeSet().size());
+		return edges;
+	}
+
+	private static String describe(DirectedEdge<InterfaceVertex> edge) {
+		return edge.getSource().getName() + "->"
+				+ edge.getDestination().getName() + ":" + edge.getWeight();
+	}
+
+	/**
+	 * Check that an overlay has the same vertices, edges, and adjacency as a
+	 * graph built directly.
+	 */
+	private static void assertSameGraph(
+			DirectedGraph<InterfaceVertex, DirectedEdge<InterfaceVertex>>
+			expected,
+			OverlayGraph<InterfaceVertex> actual) {
+		Assert.assertEquals(getVertices(expected), getVertices(actual));
+		Assert.assertEquals(getEdges(expected), getEdges(actual));
+		for (InterfaceVertex vertex : expected.vertexSet()) {
+			Assert.assertTrue(actual.containsVertex(vertex));
+			Assert.assertEquals(expected.inDegreeOf(vertex),
+					actual.inDegreeOf(vertex));
+			Assert.assertEquals(expected.outDegreeOf(vertex),
+					actual.outDegreeOf(vertex));
+			Assert.assertEquals(expected.incomingEdgesOf(vertex).size(),
+					actual.incomingEdgesOf(vertex).size());
+			Assert.assertEquals(expected.outgoingEdgesOf(vertex).size(),
+					actual.outgoingEdgesOf(vertex).size());
+		}
+	}
+
+	@Test
+	public void testBaseUnchangedByOverlayEdits() {
+		Set<String> baseVertices = getVertices(this.base);
+		Set<String> baseEdges = getEdges(this.base);
+
+		OverlayGraph<InterfaceVertex> overlay =
+				new OverlayGraph<InterfaceVertex>(this.base);
+		overlay.removeEdge(this.a, this.c);
+		overlay.setEdgeWeight(overlay.getEdge(this.b, this.c), 7);
+		overlay.removeVertex(this.d);
+		overlay.addVertex(this.e);
+		overlay.setEdgeWeight(overlay.addEdge(this.c, this.e), 5);
+
+		Assert.assertEquals(baseVertices, getVertices(this.base));
+		Assert.assertEquals(baseEdges, getEdges(this.base));
+		Assert.assertEquals(2.0, this.base.getEdge(this.b, this.c)
+				.getWeight(), 0);
+		Assert.assertFalse(this.base.containsVertex(this.e));
+		Assert.assertNotNull(this.base.getEdge(this.a, this.c));
+		Assert.assertNotNull(this.base.getEdge(this.c, this.d));
+
+		Assert.assertNull(overlay.getEdge(this.a, this.c));
+		Assert.assertEquals(7.0, overlay.getEdge(this.b, this.c).getWeight(),
+				0);
+		Assert.assertFalse(overlay.containsVertex(this.d));
+		Assert.assertTrue(overlay.containsVertex(this.e));
+	}
+
+	@Test
+	public void testRemoveThenAddEdge() {
+		OverlayGraph<InterfaceVertex> overlay =
+				new OverlayGraph<InterfaceVertex>(this.base);
+		DirectedEdge<InterfaceVertex> original =
+				overlay.getEdge(this.a, this.b);
+		Assert.assertSame(original, overlay.removeEdge(this.a, this.b));
+		Assert.assertNull(overlay.getEdge(this.a, this.b));
+		Assert.assertFalse(overlay.containsEdge(original));
+		Assert.assertEquals(1, overlay.outgoingEdgesOf(this.a).size());
+
+		// The re-added edge belongs to the overlay, not the base graph
+		DirectedEdge<InterfaceVertex> added = overlay.addEdge(this.a, this.b);
+		Assert.assertNotNull(added);
+		Assert.assertNotSame(original, added);
+		overlay.setEdgeWeight(added, 9);
+		Assert.assertSame(added, overlay.getEdge(this.a, this.b));
+		Assert.assertFalse(overlay.containsEdge(original));
+		Assert.assertEquals(2, overlay.outDegreeOf(this.a));
+		Assert.assertEquals(1.0, this.base.getEdge(this.a, this.b)
+				.getWeight(), 0);
+
+		// Removing the re-added edge hides the edge again
+		Assert.assertTrue(overlay.removeEdge(added));
+		Assert.assertNull(overlay.getEdge(this.a, this.b));
+		Assert.assertEquals(1, overlay.outDegreeOf(this.a));
+		Assert.assertSame(original, this.base.getEdge(this.a, this.b));
+	}
+
+	@Test
+	public void testRemoveThenAddVertex() {
+		OverlayGraph<InterfaceVertex> overlay =
+				new OverlayGraph<InterfaceVertex>(this.base);
+		overlay.removeVertex(this.c);
+		Assert.assertNull(overlay.getEdge(this.b, this.c));
+
+		// A vertex of the base graph reappears without its edges
+		Assert.assertTrue(overlay.addVertex(this.c));
+		Assert.assertTrue(overlay.containsVertex(this.c));
+		Assert.assertEquals(0, overlay.inDegreeOf(this.c));
+		Assert.assertEquals(0, overlay.outDegreeOf(this.c));
+		Assert.assertNull(overlay.getEdge(this.c, this.d));
+		Assert.assertNotNull(this.base.getEdge(this.c, this.d));
+	}
+
+	@Test
+	public void testViewsMatchEquivalentGraph() {
+		OverlayGraph<InterfaceVertex> overlay =
+				new OverlayGraph<InterfaceVertex>(this.base);
+		overlay.removeEdge(this.a, this.c);
+		overlay.setEdgeWeight(overlay.getEdge(this.c, this.d), 6);
+		overlay.addVertex(this.e);
+		overlay.setEdgeWeight(overlay.addEdge(this.d, this.e), 5);
+		overlay.removeEdge(this.a, this.b);
+		overlay.setEdgeWeight(overlay.addEdge(this.a, this.b), 8);
+
+		// Build the same graph directly
+		DefaultDirectedWeightedGraph<InterfaceVertex,
+				DirectedEdge<InterfaceVertex>> expected =
+				new DefaultDirectedWeightedGraph<InterfaceVertex,
+						DirectedEdge<InterfaceVertex>>(
+						new DirectedEdgeFactory<InterfaceVertex>());
+		for (InterfaceVertex vertex : new InterfaceVertex[] {
+				this.a, this.b, this.c, this.d, this.e}) {
+			expected.addVertex(vertex);
+		}
+		expected.setEdgeWeight(expected.addEdge(this.a, this.b), 8);
+		expected.setEdgeWeight(expected.addEdge(this.b, this.c), 2);
+		expected.setEdgeWeight(expected.addEdge(this.c, this.d), 6);
+		expected.setEdgeWeight(expected.addEdge(this.d, this.e), 5);
+		assertSameGraph(expected, overlay);
+
+		// An overlay of the overlay sees the same graph
+		assertSameGraph(expected,
+				new OverlayGraph<InterfaceVertex>(overlay));
+	}
+
+	@Test
+	public void testCloneMatchesEquivalentGraph() {
+		DefaultDirectedWeightedGraph<InterfaceVertex,
+				DirectedEdge<InterfaceVertex>> expected =
+				new DefaultDirectedWeightedGraph<InterfaceVertex,
+						DirectedEdge<InterfaceVertex>>(
+						new DirectedEdgeFactory<InterfaceVertex>());
+		addEdges(expected);
+		assertSameGraph(expected,
+				new OverlayGraph<InterfaceVertex>(this.base));
+		assertSameGraph(expected, this.base);
+	}
+
+	@Test
+	public void testEtgCloneMatchesEquivalentEtg() throws Exception {
+		Settings settings = new Settings(new String[] { "-configs", "unused" },
+				new Logger(Logger.Level.FATAL));
+		Flow flow = new Flow(new PolicyGroup(new Prefix("10.0.1.0/24")),
+				new PolicyGroup(new Prefix("10.0.2.0/24")));
+		Device s = new Device("S");
+		Interface s1 = TestGraph.addInterface(s, "GigabitEthernet0/1",
+				"10.1.1.1/30");
+		Interface s2 = TestGraph.addInterface(s, "GigabitEthernet0/2",
+				"10.1.2.1/30");
+		Device d = new Device("D");
+		Interface d1 = TestGraph.addInterface(d, "GigabitEthernet0/1",
+				"10.1.1.2/30");
+		Interface d2 = TestGraph.addInterface(d, "GigabitEthernet0/2",
+				"10.1.2.2/30");
+
+		TestGraph etg = new TestGraph(settings);
+		etg.customize(flow);
+		etg.addDevice(s);
+		etg.addDevice(d);
+		etg.addLink(s1, d1);
+		etg.addLink(s2, d2);
+		etg.addSource(s);
+		etg.addDestination(d);
+		Set<String> baseEdges = getEdges(etg.getGraph());
+
+		// Fail one link in a clone
+		TestGraph clone = (TestGraph)etg.clone();
+		clone.removeLink(s2, d2);
+
+		TestGraph expected = new TestGraph(settings);
+		expected.customize(flow);
+		expected.addDevice(s);
+		expected.addDevice(d);
+		expected.addLink(s1, d1);
+		expected.addSource(s);
+		expected.addDestination(d);
+
+		Assert.assertTrue(clone.getGraph() instanceof OverlayGraph);
+		assertSameGraph(expected.getGraph(),
+				(OverlayGraph<InterfaceVertex>)clone.getGraph());
+		Assert.assertEquals(expected.getEdgeCount(), clone.getEdgeCount());
+		Assert.assertEquals(baseEdges, getEdges(etg.getGraph()));
+		Assert.assertNotNull(etg.getEdge(s2, d2));
+	}
+}
@@ -254,4 +254,37 @@ public class PolicyGroupTest {
 				PolicyGroup.getNonOverlapping(groups);
 		Assert.assertArrayEquals(expected.toArray(), nonOverlapping.toArray());
 	}
+	
+	@Test
+	public void testAtomizeChainedOverlap() {
+		Set<PolicyGroup> groups = new HashSet<PolicyGroup>();
+		groups.add(new PolicyGroup(new Prefix("10.0.2.0/24")));
+		groups.add(new PolicyGroup(new Prefix("10.0.2.0/23")));
+		groups.add(new PolicyGroup(new Prefix("10.0.3.0/24")));
+		
+		Set<PolicyGroup> expected = PolicyGroup.getNonOverlapping(groups);
+		
+		Set<PolicyGroup> atoms = PolicyGroupAtomizer.atomize(groups);
+		Assert.assertEquals(expected, atoms);
+	}
+	
+	@Test
+	public void testAtomizeNestedLabels() {
+		PolicyGroup outer = new PolicyGroup(new Prefix("0.0.0.0/0"));
+		PolicyGroup middle = new PolicyGroup(new Prefix("10.0.0.0/16"));
+		middle.setInternal(true);
+		PolicyGroup inner = new PolicyGroup(new Prefix("10.0.1.0/24"));
+		Set<PolicyGroup> groups = new HashSet<PolicyGroup>();
+		groups.add(outer);
+		groups.add(middle);
+		groups.add(inner);
+		
+		Set<PolicyGroup> atoms = PolicyGroupAtomizer.atomize(groups);
+		Assert.assertEquals(5, atoms.size());
+		for (PolicyGroup atom : atoms) {
+			boolean inMiddle = middle.contains(atom);
+			boolean inInner = inner.contains(atom);
+			Assert.assertEquals(inMiddle && !inInner, atom.isInternal());
+		}
+	}
 }
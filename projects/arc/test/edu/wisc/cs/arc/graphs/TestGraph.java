@@ -0,0 +1,135 @@
+package edu.wisc.cs.arc.graphs;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.batfish.representation.Prefix;
+
+import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.DirectedEdge.EdgeType;
+import edu.wisc.cs.arc.graphs.Vertex.VertexType;
+import edu.wisc.cs.arc.virl.Link;
+
+/**
+ * An interface-based ETG whose edges are added by hand.
+ */
+public class TestGraph extends ExtendedTopologyGraph<InterfaceVertex> {
+	private static final long serialVersionUID = 1L;
+
+	public TestGraph(Settings settings) {
+		super(settings);
+	}
+
+	@Override
+	public boolean customize(Flow flow) {
+		Map<PolicyGroup, InterfaceVertex> sourceVertices =
+				new HashMap<PolicyGroup, InterfaceVertex>();
+		sourceVertices.put(flow.getSource(),
+				new InterfaceVertex(null, VertexType.SOURCE));
+		return this.customize(flow, sourceVertices,
+				new InterfaceVertex(null, VertexType.DESTINATION));
+	}
+
+	@Override
+	public boolean customize(Flow flow, List<PolicyGroup> sources) {
+		Map<PolicyGroup, InterfaceVertex> sourceVertices =
+				new HashMap<PolicyGroup, InterfaceVertex>();
+		for (PolicyGroup source : sources) {
+			sourceVertices.put(source,
+					new InterfaceVertex(null, VertexType.SOURCE));
+		}
+		return this.customize(flow, sourceVertices,
+				new InterfaceVertex(null, VertexType.DESTINATION));
+	}
+
+	@Override
+	protected void constructEndpointEdges() {
+	}
+
+	@Override
+	protected void customizeEdges() {
+	}
+
+	@Override
+	public void removeLink(Link link) {
+	}
+
+	/**
+	 * Add the edges for a device, connecting each of its interfaces to
+	 * every other interface.
+	 */
+	public void addDevice(Device device) {
+		for (Interface iface : device.getInterfaces()) {
+			this.addVertex(iface.getInVertex());
+			this.addVertex(iface.getOutVertex());
+		}
+		for (Interface in : device.getInterfaces()) {
+			for (Interface out : device.getInterfaces()) {
+				if (in != out) {
+					this.addEdge(in.getInVertex(), out.getOutVertex(), 1,
+							EdgeType.INTRA_DEVICE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the edges for a link in both directions.
+	 */
+	public void addLink(Interface a, Interface b) {
+		this.addEdge(a.getOutVertex(), b.getInVertex(), 1,
+				EdgeType.INTER_DEVICE);
+		this.addEdge(b.getOutVertex(), a.getInVertex(), 1,
+				EdgeType.INTER_DEVICE);
+	}
+
+	/**
+	 * Connect the flow's sources to a device.
+	 */
+	public void addSource(Device device) {
+		for (InterfaceVertex source :
+				this.getFlowSourceVertices().values()) {
+			for (Interface iface : device.getInterfaces()) {
+				this.addEdge(source, iface.getOutVertex(), 0,
+						EdgeType.INTER_DEVICE);
+			}
+		}
+	}
+
+	/**
+	 * Connect a device to the flow's destination.
+	 */
+	public void addDestination(Device device) {
+		for (Interface iface : device.getInterfaces()) {
+			this.addEdge(iface.getInVertex(),
+					this.getFlowDestinationVertex(), 0,
+					EdgeType.INTER_DEVICE);
+		}
+	}
+
+	/**
+	 * Remove the edges for a link in both directions.
+	 */
+	public void removeLink(Interface a, Interface b) {
+		this.removeEdge(a.getOutVertex(), b.getInVertex());
+		this.removeEdge(b.getOutVertex(), a.getInVertex());
+	}
+
+	/**
+	 * Get the edge that leaves one interface and enters another.
+	 */
+	public DirectedEdge<InterfaceVertex> getEdge(Interface a, Interface b) {
+		return this.getGraph().getEdge(a.getOutVertex(), b.getInVertex());
+	}
+
+	/**
+	 * Create an interface and add it to a device.
+	 */
+	public static Interface addInterface(Device device, String name,
+			String prefix) {
+		Interface iface = new Interface(device, name, new Prefix(prefix));
+		device.addInterface(iface);
+		return iface;
+	}
+}
@@ -0,0 +1,188 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.batfish.representation.Prefix;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.wisc.cs.arc.Logger;
+import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.CompactGraph;
+import edu.wisc.cs.arc.graphs.Device;
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.Interface;
+import edu.wisc.cs.arc.graphs.PolicyGroup;
+import edu.wisc.cs.arc.graphs.TestGraph;
+
+public class AlwaysBlockedTest {
+
+	private Device s, a, d;
+
+	private Interface s1, a1, a2, d1;
+
+	private Flow reachable, blocked;
+
+	private Map<Flow, CompactGraph> compactEtgs;
+
+	private List<Flow> sharedFlows;
+
+	/**
+	 * Build compact ETGs for two flows over S-A-D: one flow can reach its
+	 * destination, and the other cannot because the link between A and D is
+	 * missing from its ETG.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		this.s = new Device("S");
+		this.s1 = TestGraph.addInterface(this.s, "GigabitEthernet0/1",
+				"10.1.1.1/30");
+		this.a = new Device("A");
+		this.a1 = TestGraph.addInterface(this.a, "GigabitEthernet0/1",
+				"10.1.1.2/30");
+		this.a2 = TestGraph.addInterface(this.a, "GigabitEthernet0/2",
+				"10.1.2.1/30");
+		this.d = new Device("D");
+		this.d1 = TestGraph.addInterface(this.d, "GigabitEthernet0/1",
+				"10.1.2.2/30");
+
+		Settings settings = newSettings();
+		PolicyGroup source = new PolicyGroup(new Prefix("10.0.1.0/24"));
+		this.reachable = new Flow(source,
+				new PolicyGroup(new Prefix("10.0.2.0/24")));
+		this.blocked = new Flow(source,
+				new PolicyGroup(new Prefix("10.0.3.0/24")));
+		this.compactEtgs = new HashMap<Flow, CompactGraph>();
+		this.compactEtgs.put(this.reachable,
+				this.newEtg(settings, this.reachable, true).toCompactGraph());
+		this.compactEtgs.put(this.blocked,
+				this.newEtg(settings, this.blocked, false).toCompactGraph());
+	}
+
+	private static Settings newSettings(String... args) throws Exception {
+		String[] allArgs = new String[args.length + 2];
+		allArgs[0] = "-configs";
+		allArgs[1] = "unused";
+		System.arraycopy(args, 0, allArgs, 2, args.length);
+		return new Settings(allArgs, new Logger(Logger.Level.FATAL));
+	}
+
+	private TestGraph newEtg(Settings settings, Flow flow, boolean linked) {
+		TestGraph etg = new TestGraph(settings);
+		etg.customize(flow);
+		this.addTopology(etg, linked);
+		return etg;
+	}
+
+	private void addTopology(TestGraph etg, boolean linked) {
+		etg.addDevice(this.s);
+		etg.addDevice(this.a);
+		etg.addDevice(this.d);
+		etg.addLink(this.s1, this.a1);
+		if (linked) {
+			etg.addLink(this.a2, this.d1);
+		}
+		etg.addSource(this.s);
+		etg.addDestination(this.d);
+	}
+
+	@Test
+	public void testCompactParallelTiming() throws Exception {
+		Settings settings = newSettings("-parallelize", "-threads", "2",
+				"-t");
+		AlwaysBlocked verifier = new AlwaysBlocked(null, settings);
+		verifier.setCompactEtgs(this.compactEtgs);
+
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Map<Flow, Boolean> results;
+		System.setOut(new PrintStream(output, true));
+		try {
+			results = verifier.verifyAll(null);
+		}
+		finally {
+			System.setOut(stdout);
+		}
+
+		Assert.assertEquals(Boolean.FALSE, results.get(this.reachable));
+		Assert.assertEquals(Boolean.TRUE, results.get(this.blocked));
+		int lines = 0;
+		for (String line : output.toString().split("\n")) {
+			if (line.startsWith("TIMEONE: AlwaysBlocked")) {
+				Assert.assertTrue(line, line.contains(" vertices "));
+				lines++;
+			}
+		}
+		Assert.assertEquals(2, lines);
+	}
+
+	@Test
+	public void testCompactSharedEtg() throws Exception {
+		Settings settings = newSettings();
+		TestGraph etg = this.newSharedEtg(settings);
+		CompactGraph compactEtg = etg.toCompactGraph();
+		Map<Flow, CompactGraph> compactEtgs =
+				new LinkedHashMap<Flow, CompactGraph>();
+		for (Flow flow : this.sharedFlows) {
+			compactEtgs.put(flow, compactEtg);
+		}
+		AlwaysBlocked verifier = new AlwaysBlocked(null, settings);
+		verifier.setCompactEtgs(compactEtgs);
+		this.assertSharedResults(verifier);
+	}
+
+	@Test
+	public void testSharedEtg() throws Exception {
+		Settings settings = newSettings();
+		TestGraph etg = this.newSharedEtg(settings);
+		Map<Flow, TestGraph> etgs = new LinkedHashMap<Flow, TestGraph>();
+		for (Flow flow : this.sharedFlows) {
+			etgs.put(flow, etg);
+		}
+		this.assertSharedResults(new AlwaysBlocked(etgs, settings));
+	}
+
+	/**
+	 * Build an ETG with a wildcard source shared by two sources, and
+	 * determine the flows that use it, including a flow whose source is not
+	 * part of the ETG.
+	 */
+	private TestGraph newSharedEtg(Settings settings) {
+		PolicyGroup destination = new PolicyGroup(new Prefix("10.0.2.0/24"));
+		PolicyGroup first = new PolicyGroup(new Prefix("10.0.1.0/24"));
+		PolicyGroup second = new PolicyGroup(new Prefix("10.0.4.0/24"));
+		PolicyGroup other = new PolicyGroup(new Prefix("10.0.5.0/24"));
+		TestGraph etg = new TestGraph(settings);
+		etg.customize(new Flow(destination), Arrays.asList(first, second));
+		this.addTopology(etg, true);
+		this.sharedFlows = new ArrayList<Flow>();
+		for (PolicyGroup source : Arrays.asList(first, second, other)) {
+			this.sharedFlows.add(new Flow(source, destination));
+		}
+		return etg;
+	}
+
+	/**
+	 * Check the flows that share an ETG, twice, so results are also correct
+	 * once the shared search has been dropped.
+	 */
+	private void assertSharedResults(AlwaysBlocked verifier) {
+		for (int i = 0; i < 2; i++) {
+			Map<Flow, Boolean> results = verifier.verifyAll(null);
+			Assert.assertEquals(Boolean.FALSE,
+					results.get(this.sharedFlows.get(0)));
+			Assert.assertEquals(Boolean.FALSE,
+					results.get(this.sharedFlows.get(1)));
+			Assert.assertEquals(Boolean.TRUE,
+					results.get(this.sharedFlows.get(2)));
+		}
+	}
+}
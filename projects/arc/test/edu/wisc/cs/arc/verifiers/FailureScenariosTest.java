@@ -0,0 +1,199 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.batfish.representation.Prefix;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.wisc.cs.arc.Logger;
+import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.CompactGraph;
+import edu.wisc.cs.arc.graphs.Device;
+import edu.wisc.cs.arc.graphs.DeviceGraph;
+import edu.wisc.cs.arc.graphs.ExtendedTopologyGraph;
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.Interface;
+import edu.wisc.cs.arc.graphs.PolicyGroup;
+import edu.wisc.cs.arc.graphs.TestGraph;
+import edu.wisc.cs.arc.virl.Link;
+
+public class FailureScenariosTest {
+
+	private Settings settings;
+
+	private Flow flow;
+
+	private TestGraph etg;
+
+	private Interface s1, s2, s3, a1, a2, a3, b1, b2, d1, d2;
+
+	/**
+	 * Build an ETG in which a flow from S to D can take two routes:
+	 * S-A-D, where S and A are joined by two parallel links, or S-B-D.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		this.settings = new Settings(new String[] { "-configs", "unused" },
+				new Logger(Logger.Level.FATAL));
+		this.flow = new Flow(new PolicyGroup(new Prefix("10.0.1.0/24")),
+				new PolicyGroup(new Prefix("10.0.2.0/24")));
+
+		Device s = new Device("S");
+		this.s1 = TestGraph.addInterface(s, "GigabitEthernet0/1", "10.1.1.1/30");
+		this.s2 = TestGraph.addInterface(s, "GigabitEthernet0/2", "10.1.2.1/30");
+		this.s3 = TestGraph.addInterface(s, "GigabitEthernet0/3", "10.1.3.1/30");
+		Device a = new Device("A");
+		this.a1 = TestGraph.addInterface(a, "GigabitEthernet0/1", "10.1.1.2/30");
+		this.a2 = TestGraph.addInterface(a, "GigabitEthernet0/2", "10.1.2.2/30");
+		this.a3 = TestGraph.addInterface(a, "GigabitEthernet0/3", "10.1.4.1/30");
+		Device b = new Device("B");
+		this.b1 = TestGraph.addInterface(b, "GigabitEthernet0/1", "10.1.3.2/30");
+		this.b2 = TestGraph.addInterface(b, "GigabitEthernet0/2", "10.1.5.1/30");
+		Device d = new Device("D");
+		this.d1 = TestGraph.addInterface(d, "GigabitEthernet0/1", "10.1.4.2/30");
+		this.d2 = TestGraph.addInterface(d, "GigabitEthernet0/2", "10.1.5.2/30");
+
+		this.etg = new TestGraph(this.settings);
+		this.etg.customize(this.flow);
+		for (Device device : Arrays.asList(s, a, b, d)) {
+			this.etg.addDevice(device);
+		}
+		this.etg.addLink(this.s1, this.a1);
+		this.etg.addLink(this.s2, this.a2);
+		this.etg.addLink(this.s3, this.b1);
+		this.etg.addLink(this.a3, this.d1);
+		this.etg.addLink(this.b2, this.d2);
+		this.etg.addSource(s);
+		this.etg.addDestination(d);
+	}
+
+	private FailureScenarios newVerifier() {
+		Map<Flow, ExtendedTopologyGraph<?>> etgs =
+				new HashMap<Flow, ExtendedTopologyGraph<?>>();
+		etgs.put(this.flow, this.etg);
+		return new FailureScenarios(etgs, this.settings,
+				new DeviceGraph(this.settings));
+	}
+
+	/**
+	 * Name a link by its ends, independent of direction.
+	 */
+	private static String getName(Link link) {
+		String src = link.getSourceDeviceName() + ":"
+				+ link.getSourceInterfaceName();
+		String dst = link.getDestinationDeviceName() + ":"
+				+ link.getDestinationInterfaceName();
+		return (src.compareTo(dst) < 0 ? src + "-" + dst : dst + "-" + src);
+	}
+
+	private static String getName(Interface a, Interface b) {
+		String src = a.getDevice().getName() + ":" + a.getName();
+		String dst = b.getDevice().getName() + ":" + b.getName();
+		return (src.compareTo(dst) < 0 ? src + "-" + dst : dst + "-" + src);
+	}
+
+	private static Set<String> cut(String... links) {
+		return new TreeSet<String>(Arrays.asList(links));
+	}
+
+	private Set<Set<String>> getFailures(FailureScenarios verifier) {
+		Set<Set<String>> failures = new HashSet<Set<String>>();
+		for (List<Link> failure :
+				verifier.getDisconnectingFailures(this.flow)) {
+			Set<String> names = new TreeSet<String>();
+			for (Link link : failure) {
+				names.add(getName(link));
+			}
+			failures.add(names);
+		}
+		return failures;
+	}
+
+	@Test
+	public void testParallelLinksAreDistinct() {
+		FailureScenarios verifier = this.newVerifier();
+		Assert.assertEquals(5, verifier.getLinkCount());
+	}
+
+	@Test
+	public void testNoFailures() {
+		FailureScenarios verifier = this.newVerifier();
+		Assert.assertTrue(verifier.verify(this.flow, 0));
+		Assert.assertTrue(verifier.getDisconnectingFailures(this.flow)
+				.isEmpty());
+	}
+
+	@Test
+	public void testSingleFailure() {
+		FailureScenarios verifier = this.newVerifier();
+		Assert.assertTrue(verifier.verify(this.flow, 1));
+	}
+
+	@Test
+	public void testMinimalCuts() {
+		String sa1 = getName(this.s1, this.a1);
+		String sa2 = getName(this.s2, this.a2);
+		String sb = getName(this.s3, this.b1);
+		String ad = getName(this.a3, this.d1);
+		String bd = getName(this.b2, this.d2);
+
+		// Failing both parallel links between S and A takes three failures
+		// together with one link on the other route
+		FailureScenarios verifier = this.newVerifier();
+		Assert.assertFalse(verifier.verify(this.flow, 2));
+		Set<Set<String>> expected = new HashSet<Set<String>>();
+		expected.add(cut(ad, sb));
+		expected.add(cut(ad, bd));
+		Assert.assertEquals(expected, this.getFailures(verifier));
+
+		Assert.assertFalse(verifier.verify(this.flow, 3));
+		expected.add(cut(sa1, sa2, sb));
+		expected.add(cut(sa1, sa2, bd));
+		Assert.assertEquals(expected, this.getFailures(verifier));
+	}
+
+	@Test
+	public void testBlockedEdgesAreSkipped() {
+		this.etg.markBlocked(this.etg.getEdge(this.a3, this.d1));
+		String sb = getName(this.s3, this.b1);
+		String bd = getName(this.b2, this.d2);
+
+		FailureScenarios verifier = this.newVerifier();
+		Assert.assertTrue(verifier.verify(this.flow, 0));
+		Assert.assertFalse(verifier.verify(this.flow, 1));
+		Set<Set<String>> expected = new HashSet<Set<String>>();
+		expected.add(cut(sb));
+		expected.add(cut(bd));
+		Assert.assertEquals(expected, this.getFailures(verifier));
+
+		this.etg.markBlocked(this.etg.getEdge(this.b2, this.d2));
+		verifier = this.newVerifier();
+		Assert.assertFalse(verifier.verify(this.flow, 0));
+		expected.clear();
+		expected.add(cut());
+		Assert.assertEquals(expected, this.getFailures(verifier));
+	}
+
+	@Test
+	public void testCompactEtg() {
+		FailureScenarios verifier = this.newVerifier();
+		Map<Flow, CompactGraph> compactEtgs =
+				new HashMap<Flow, CompactGraph>();
+		compactEtgs.put(this.flow, this.etg.toCompactGraph());
+		verifier.setCompactEtgs(compactEtgs);
+		Assert.assertFalse(verifier.verify(this.flow, 2));
+		Set<Set<String>> expected = new HashSet<Set<String>>();
+		String ad = getName(this.a3, this.d1);
+		expected.add(cut(ad, getName(this.s3, this.b1)));
+		expected.add(cut(ad, getName(this.b2, this.d2)));
+		Assert.assertEquals(expected, this.getFailures(verifier));
+	}
+}
@@ -0,0 +1,185 @@
+package edu.wisc.cs.arc.verifiers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.batfish.representation.Prefix;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.wisc.cs.arc.Logger;
+import edu.wisc.cs.arc.Settings;
+import edu.wisc.cs.arc.graphs.Device;
+import edu.wisc.cs.arc.graphs.DirectedEdge;
+import edu.wisc.cs.arc.graphs.Flow;
+import edu.wisc.cs.arc.graphs.Interface;
+import edu.wisc.cs.arc.graphs.InterfaceVertex;
+import edu.wisc.cs.arc.graphs.PolicyGroup;
+import edu.wisc.cs.arc.graphs.TestGraph;
+
+public class IsolationIndexTest {
+
+	/** Number of distinct ETGs */
+	private static final int ETG_COUNT = 100;
+
+	private Settings settings;
+
+	private Interface[][] links;
+
+	private List<TestGraph> etgs;
+
+	private Map<Flow, TestGraph> flowEtgs;
+
+	/**
+	 * Build ETGs that each contain some of four links: one link is in every
+	 * ETG, one is in a few ETGs far apart, one is in every tenth ETG, and one
+	 * is in a single ETG. One ETG has no edges, and one ETG is shared by two
+	 * flows.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		this.settings = new Settings(new String[] { "-configs", "unused" },
+				new Logger(Logger.Level.FATAL));
+		this.links = new Interface[4][];
+		for (int i = 0; i < this.links.length; i++) {
+			Device a = new Device("A" + i);
+			Device b = new Device("B" + i);
+			this.links[i] = new Interface[] {
+				TestGraph.addInterface(a, "GigabitEthernet0/1",
+						"10.1." + i + ".1/30"),
+				TestGraph.addInterface(b, "GigabitEthernet0/1",
+						"10.1." + i + ".2/30")
+			};
+		}
+
+		this.etgs = new ArrayList<TestGraph>();
+		this.flowEtgs = new LinkedHashMap<Flow, TestGraph>();
+		PolicyGroup source = new PolicyGroup(new Prefix("10.0.0.0/24"));
+		for (int i = 0; i < ETG_COUNT; i++) {
+			TestGraph etg = new TestGraph(this.settings);
+			if (i != ETG_COUNT - 2) {
+				this.addLink(etg, 0);
+			}
+			if (0 == i || 1 == i || ETG_COUNT - 1 == i) {
+				this.addLink(etg, 1);
+			}
+			if (0 == i % 10) {
+				this.addLink(etg, 2);
+			}
+			if (ETG_COUNT / 2 + 1 == i) {
+				this.addLink(etg, 3);
+			}
+			this.etgs.add(etg);
+			this.flowEtgs.put(new Flow(source, new PolicyGroup(
+					new Prefix("10.0." + (i + 1) + ".0/24"))), etg);
+		}
+		this.flowEtgs.put(new Flow(new PolicyGroup(new Prefix("10.2.0.0/24")),
+				new PolicyGroup(new Prefix("10.0.1.0/24"))), this.etgs.get(0));
+	}
+
+	private void addLink(TestGraph etg, int link) {
+		Interface a = this.links[link][0];
+		Interface b = this.links[link][1];
+		etg.addVertex(a.getInVertex());
+		etg.addVertex(a.getOutVertex());
+		etg.addVertex(b.getInVertex());
+		etg.addVertex(b.getOutVertex());
+		etg.addLink(a, b);
+	}
+
+	/**
+	 * Describe the edges of an ETG by their ends.
+	 */
+	private static Set<String> getEdges(TestGraph etg) {
+		Set<String> edges = new HashSet<String>();
+		for (DirectedEdge<InterfaceVertex> edge : etg.getGraph().edgeSet()) {
+			edges.add(edge.getSource() + "->" + edge.getDestination());
+		}
+		return edges;
+	}
+
+	private static boolean shareEdges(TestGraph etgA, TestGraph etgB) {
+		Set<String> edges = getEdges(etgA);
+		edges.retainAll(getEdges(etgB));
+		return !edges.isEmpty();
+	}
+
+	@Test
+	public void testSharedEtgIndexedOnce() {
+		IsolationIndex index = new IsolationIndex(this.flowEtgs);
+		Set<Integer> ids = new HashSet<Integer>();
+		for (TestGraph etg : this.etgs) {
+			ids.add(index.getEtgId(etg));
+		}
+		Assert.assertEquals(ETG_COUNT, ids.size());
+		Assert.assertEquals(8, index.getEdgeCount());
+		try {
+			index.getEtgId(new TestGraph(this.settings));
+			Assert.fail("Expected an exception for an ETG that is not indexed");
+		}
+		catch (VerifierException e) {
+		}
+	}
+
+	@Test
+	public void testIsolatedMatchesEdgeComparison() {
+		IsolationIndex index = new IsolationIndex(this.flowEtgs);
+		for (TestGraph etgA : this.etgs) {
+			for (TestGraph etgB : this.etgs) {
+				Assert.assertEquals(!shareEdges(etgA, etgB),
+						index.isIsolated(etgA, etgB));
+			}
+		}
+	}
+
+	@Test
+	public void testSharingMatchesEdgeComparison() {
+		IsolationIndex index = new IsolationIndex(this.flowEtgs);
+		for (TestGraph etgA : this.etgs) {
+			BitSet expected = new BitSet();
+			for (TestGraph etgB : this.etgs) {
+				if (shareEdges(etgA, etgB)) {
+					expected.set(index.getEtgId(etgB));
+				}
+			}
+			Assert.assertEquals(expected, index.getSharingEtgs(etgA));
+		}
+
+		// An ETG without edges shares no edges, not even with itself
+		TestGraph empty = this.etgs.get(ETG_COUNT - 2);
+		Assert.assertTrue(index.getSharingEtgs(empty).isEmpty());
+		Assert.assertTrue(index.isIsolated(empty, empty));
+	}
+
+	@Test
+	public void testCountMatchesPairs() {
+		AlwaysIsolated verifier = new AlwaysIsolated(this.flowEtgs,
+				this.settings);
+		final long[] isolated = new long[1];
+		verifier.verifyAllPairs(new VerificationResultSink() {
+			@Override
+			public void accept(Object context, Flow flow, boolean result,
+					boolean flagged, String detail) {
+				if (result) {
+					isolated[0]++;
+				}
+			}
+		});
+		long expected = 0;
+		for (TestGraph etgA : this.flowEtgs.values()) {
+			for (TestGraph etgB : this.flowEtgs.values()) {
+				if (!shareEdges(etgA, etgB)) {
+					expected++;
+				}
+			}
+		}
+		Assert.assertEquals(expected, isolated[0]);
+		Assert.assertEquals(expected, verifier.countIsolatedPairs());
+	}
+}
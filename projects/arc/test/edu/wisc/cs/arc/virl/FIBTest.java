@@ -0,0 +1,182 @@
+package edu.wisc.cs.arc.virl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.batfish.representation.Ip;
+import org.batfish.representation.Prefix;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.wisc.cs.arc.graphs.PolicyGroup;
+
+public class FIBTest {
+
+	/** Lines of the FIB under test */
+	private List<String> lines = new ArrayList<String>();
+
+	/** Entries corresponding to the lines, in the same order */
+	private List<FIBEntry> entries = new ArrayList<FIBEntry>();
+
+	/**
+	 * Add a directly connected entry.
+	 */
+	private void addConnected(String prefix) {
+		String iface = "GigabitEthernet0/" + this.entries.size();
+		this.lines.add("C     " + prefix + " is directly connected, " + iface);
+		this.entries.add(new FIBEntry(prefix, iface));
+	}
+
+	/**
+	 * Add an entry with a gateway.
+	 */
+	private void addGateway(String prefix, String gateway) {
+		this.lines.add("S     " + prefix + " [1/0] via " + gateway);
+		this.entries.add(new FIBEntry(prefix, gateway, null));
+	}
+
+	/**
+	 * Find the matching entry by scanning every entry, as FIB lookups did
+	 * before the trie was introduced.
+	 */
+	private FIBEntry linearScan(PolicyGroup destination) {
+		FIBEntry bestEntry = null;
+		for (FIBEntry entry : this.entries) {
+			if (entry.matches(destination)) {
+				if ((null == bestEntry) || (entry.getPrefixLength()
+						> bestEntry.getPrefixLength())) {
+					bestEntry = entry;
+				}
+			}
+		}
+		return bestEntry;
+	}
+
+	/**
+	 * Check that the FIB returns the same entry as a linear scan, and that
+	 * the entry has the expected prefix.
+	 */
+	private void assertMatch(FIB fib, String expected, PolicyGroup destination) {
+		FIBEntry entry = fib.getMatchingEntry(destination);
+		Assert.assertEquals(String.valueOf(this.linearScan(destination)),
+				String.valueOf(entry));
+		if (null == expected) {
+			Assert.assertNull(entry);
+		}
+		else {
+			Assert.assertEquals(new Prefix(expected), entry.getPrefix());
+		}
+	}
+
+	private void assertMatch(FIB fib, String expected, String address) {
+		Ip ip = new Ip(address);
+		this.assertMatch(fib, expected, new PolicyGroup(ip, ip));
+		FIBEntry entry = fib.getMatchingEntry(ip);
+		Assert.assertEquals(String.valueOf(this.linearScan(
+				new PolicyGroup(ip, ip))), String.valueOf(entry));
+	}
+
+	@Test
+	public void testDefaultRoute() {
+		this.addGateway("0.0.0.0/0", "10.0.0.1");
+		this.addConnected("10.0.0.0/24");
+		FIB fib = new FIB(this.lines);
+
+		this.assertMatch(fib, "0.0.0.0/0", "8.8.8.8");
+		this.assertMatch(fib, "0.0.0.0/0", "255.255.255.255");
+		this.assertMatch(fib, "10.0.0.0/24", "10.0.0.200");
+	}
+
+	@Test
+	public void testHostRoutes() {
+		this.addConnected("10.1.1.0/24");
+		this.addConnected("10.1.1.1/32");
+		this.addConnected("10.1.1.255/32");
+		FIB fib = new FIB(this.lines);
+
+		this.assertMatch(fib, "10.1.1.1/32", "10.1.1.1");
+		this.assertMatch(fib, "10.1.1.255/32", "10.1.1.255");
+		this.assertMatch(fib, "10.1.1.0/24", "10.1.1.2");
+		this.assertMatch(fib, "10.1.1.1/32",
+				new PolicyGroup(new Prefix("10.1.1.0/24")));
+	}
+
+	@Test
+	public void testOverlappingPrefixes() {
+		this.addConnected("10.0.0.0/8");
+		this.addConnected("10.1.0.0/16");
+		this.addConnected("10.1.2.0/24");
+		this.addConnected("10.1.0.0/16");
+		FIB fib = new FIB(this.lines);
+
+		this.assertMatch(fib, "10.1.2.0/24", "10.1.2.5");
+		this.assertMatch(fib, "10.1.0.0/16", "10.1.3.5");
+		this.assertMatch(fib, "10.0.0.0/8", "10.2.0.0");
+		this.assertMatch(fib, "10.1.2.0/24",
+				new PolicyGroup(new Prefix("10.0.0.0/8")));
+		this.assertMatch(fib, "10.1.0.0/16",
+				new PolicyGroup(new Ip("10.1.3.0"), new Ip("10.3.0.0")));
+	}
+
+	@Test
+	public void testMiss() {
+		this.addConnected("10.0.0.0/8");
+		this.addConnected("192.168.1.0/24");
+		FIB fib = new FIB(this.lines);
+
+		this.assertMatch(fib, null, "11.0.0.1");
+		this.assertMatch(fib, null, "192.168.2.1");
+		this.assertMatch(fib, null,
+				new PolicyGroup(new Ip("172.16.0.0"), new Ip("172.31.0.0")));
+		Assert.assertNull(new FIB(new ArrayList<String>()).getMatchingEntry(
+				new Ip("10.0.0.1")));
+	}
+
+	@Test
+	public void testMatchesLinearScan() {
+		Random random = new Random(2017);
+		for (int i = 0; i < 50; i++) {
+			this.lines.clear();
+			this.entries.clear();
+			int count = random.nextInt(30);
+			for (int e = 0; e < count; e++) {
+				int length = random.nextInt(33);
+				long address = randomAddress(random) & mask(length);
+				this.addConnected(new Ip(address).toString() + "/" + length);
+			}
+			FIB fib = new FIB(this.lines);
+
+			for (int d = 0; d < 50; d++) {
+				long start = randomAddress(random);
+				long end = start;
+				if (random.nextBoolean()) {
+					end = Math.min(0xFFFFFFFFL,
+							start + random.nextInt(1 << random.nextInt(25)));
+				}
+				PolicyGroup destination = new PolicyGroup(new Ip(start),
+						new Ip(end));
+				Assert.assertEquals(String.valueOf(
+						this.linearScan(destination)),
+						String.valueOf(fib.getMatchingEntry(destination)));
+			}
+		}
+	}
+
+	/**
+	 * Choose an address, favoring a few small ranges so prefixes overlap.
+	 */
+	private static long randomAddress(Random random) {
+		if (random.nextBoolean()) {
+			return random.nextLong() & 0xFFFFFFFFL;
+		}
+		return (10L << 24) | random.nextInt(1 << 12);
+	}
+
+	/**
+	 * Get the network mask for a prefix length.
+	 */
+	private static long mask(int length) {
+		return (0xFFFFFFFFL << (32 - length)) & 0xFFFFFFFFL;
+	}
+}